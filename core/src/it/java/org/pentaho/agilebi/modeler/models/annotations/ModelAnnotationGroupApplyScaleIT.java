@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyMode;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyStatus;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times groups of 1k and 10k {@link ShowHideMeasure} annotations against a cube with one measure per annotation in
+ * both apply modes, and checks the modes report the same statuses and leave the same schema. The best of a few rounds
+ * is printed rather than asserted, since it depends on the machine.
+ */
+public class ModelAnnotationGroupApplyScaleIT {
+  private static final String CUBE = "sales"; //$NON-NLS-1$
+  private static final int ROUNDS = 3;
+
+  @Test
+  public void testApply1k() throws Exception {
+    benchmark( 1000 );
+  }
+
+  @Test
+  public void testApply10k() throws Exception {
+    benchmark( 10000 );
+  }
+
+  private void benchmark( final int size ) throws Exception {
+    long fixpoint = Long.MAX_VALUE;
+    long planned = Long.MAX_VALUE;
+    for ( int round = 0; round < ROUNDS; round++ ) {
+      ModelAnnotationGroup fixpointGroup = group( size, ApplyMode.FIXPOINT );
+      ModelAnnotationGroup plannedGroup = group( size, ApplyMode.PLANNED );
+      Document fixpointSchema = schema( size );
+      Document plannedSchema = schema( size );
+
+      long start = System.nanoTime();
+      Map<ApplyStatus, List<ModelAnnotation>> expected = fixpointGroup.applyAnnotations( fixpointSchema );
+      fixpoint = Math.min( fixpoint, System.nanoTime() - start );
+      start = System.nanoTime();
+      Map<ApplyStatus, List<ModelAnnotation>> actual = plannedGroup.applyAnnotations( plannedSchema );
+      planned = Math.min( planned, System.nanoTime() - start );
+
+      for ( ApplyStatus applyStatus : ApplyStatus.values() ) {
+        assertEquals( expected.get( applyStatus ).size(), actual.get( applyStatus ).size() );
+      }
+      assertEquals( size, actual.get( ApplyStatus.SUCCESS ).size() );
+      assertEquals( size, hidden( fixpointSchema ) );
+      assertEquals( size, hidden( plannedSchema ) );
+    }
+    System.out.println( String.format( "%d annotations: fixpoint %.1f ms, planned %.1f ms", //$NON-NLS-1$
+      size, fixpoint / 1e6, planned / 1e6 ) );
+  }
+
+  private Document schema( final int size ) throws Exception {
+    Document schema = XMLHandler.loadXMLFile( getClass().getResourceAsStream( "resources/simple.mondrian.xml" ) );
+    Element cube = (Element) schema.getElementsByTagName( "Cube" ).item( 0 );
+    for ( int i = 0; i < size; i++ ) {
+      Element measure = schema.createElement( "Measure" );
+      measure.setAttribute( "name", measureName( i ) );
+      measure.setAttribute( "column", "column_" + i );
+      measure.setAttribute( "aggregator", "sum" );
+      cube.appendChild( measure );
+    }
+    return schema;
+  }
+
+  private ModelAnnotationGroup group( final int size, final ApplyMode applyMode ) {
+    ModelAnnotationGroup group = new ModelAnnotationGroup();
+    for ( int i = 0; i < size; i++ ) {
+      ShowHideMeasure hide = new ShowHideMeasure();
+      hide.setCube( CUBE );
+      hide.setName( measureName( i ) );
+      hide.setVisible( false );
+      group.add( new ModelAnnotation<ShowHideMeasure>( hide ) );
+    }
+    group.setApplyMode( applyMode );
+    return group;
+  }
+
+  private static int hidden( final Document schema ) {
+    NodeList measures = schema.getElementsByTagName( "Measure" );
+    int hidden = 0;
+    for ( int i = 0; i < measures.getLength(); i++ ) {
+      if ( "false".equals( ( (Element) measures.item( i ) ).getAttribute( "visible" ) ) ) {
+        hidden++;
+      }
+    }
+    return hidden;
+  }
+
+  private static String measureName( final int i ) {
+    return "Measure " + i; //$NON-NLS-1$
+  }
+}
@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.nodes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reports the retained heap per {@link LevelMetaData}, measured as the heap delta around a GC since JOL is not a
+ * dependency of this build. Run with -Dmodeler.footprint.levels=50000 to size the measurement like a large production
+ * model. The figure is approximate, so it is printed rather than asserted; {@link NodeFootprintTest} checks the lazy
+ * allocation itself.
+ */
+public class NodeFootprintIT {
+
+  private static final int LEVELS_PER_HIERARCHY = 25;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+  }
+
+  @Test
+  public void testLevelFootprint() {
+    int levels = Integer.getInteger( "modeler.footprint.levels", 5000 );
+    List<HierarchyMetaData> retained = new ArrayList<HierarchyMetaData>();
+
+    long before = usedHeap();
+    int created = 0;
+    for ( int i = 0; i < levels; i += LEVELS_PER_HIERARCHY ) {
+      HierarchyMetaData hierarchy = new HierarchyMetaData( "h" + i );
+      for ( int j = i; j < i + LEVELS_PER_HIERARCHY && j < levels; j++ ) {
+        hierarchy.add( new LevelMetaData( hierarchy, "l" + j ) );
+        created++;
+      }
+      retained.add( hierarchy );
+    }
+    long after = usedHeap();
+
+    System.out.println( "LevelMetaData footprint: " + ( after - before ) / levels + " bytes per level over " + levels
+        + " levels" );
+    assertEquals( levels, created );
+    assertEquals( ( levels + LEVELS_PER_HIERARCHY - 1 ) / LEVELS_PER_HIERARCHY, retained.size() );
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for ( int i = 0; i < 3; i++ ) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -63,7 +64,7 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
 
   private static final List<AggregationType> DEFAULT_AGGREGATION_LIST = new ArrayList<AggregationType>();
   private static final List<AggregationType> DEFAULT_NON_NUMERIC_AGGREGATION_LIST = new ArrayList<AggregationType>();
-  private static String locale;
+  private String locale;
   public static final String OLAP_SUFFIX = "_OLAP";
 
   // public static final String AGILE_BI_VERSION = "2.0" // Relational & OLAP models are in one LogicalModel. OLAP uses
@@ -89,11 +90,29 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
   }
 
   public BaseModelerWorkspaceHelper( String locale ) {
-    BaseModelerWorkspaceHelper.locale = locale;
+    this.locale = locale;
     autoModelStrategy = new SimpleAutoModelStrategy( locale );
   }
 
   public void populateDomain( ModelerWorkspace model ) throws ModelerException {
+    populateDomain( model, EnumSet.allOf( ModelSubtree.class ) );
+  }
+
+  /**
+   * Incremental variant of {@link #populateDomain(ModelerWorkspace)}. Only the subtrees the workspace reports as dirty
+   * are written back to the domain; the olap dimensions, cube measures and categories of clean subtrees are left as
+   * they were produced by the previous sync. Falls back to a full rebuild when the domain has not been populated yet.
+   * <p>
+   * Dirtiness is tracked per subtree, not per node: editing one dimension rebuilds the olap dimension usages of every
+   * dimension, and editing one measure rebuilds every cube measure.
+   */
+  public void syncDomain( ModelerWorkspace model ) throws ModelerException {
+    Set<ModelSubtree> dirty = EnumSet.noneOf( ModelSubtree.class );
+    dirty.addAll( model.getDirtySubtrees() );
+    populateDomain( model, dirty );
+  }
+
+  protected void populateDomain( ModelerWorkspace model, Set<ModelSubtree> subtrees ) throws ModelerException {
     Domain domain = model.getDomain();
     domain.setId( model.getModelName() );
 
@@ -104,10 +123,14 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
     }
 
     logicalModel.setId( "MODEL_1" );
+    String locale = model.getLocale();
     logicalModel.setName( new LocalizedString( locale, model.getModelName() ) );
     logicalModel.setProperty( "AGILE_BI_VERSION", AGILE_BI_VERSION );
 
-    populateCategories( model );
+    if ( subtrees.contains( ModelSubtree.CATEGORIES ) ) {
+      populateCategories( model );
+    }
+    model.clearDirtySubtrees( EnumSet.of( ModelSubtree.CATEGORIES ) );
 
     // =========================== OLAP ===================================== //
     if ( model.supportsOlap( domain ) ) {
@@ -118,6 +141,15 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
       logicalModel.setProperty( "AGILE_BI_VERSION", AGILE_BI_VERSION );
     }
 
+    populateCube( model, logicalModel, subtrees );
+    model.clearDirtySubtrees( EnumSet.of( ModelSubtree.DIMENSIONS, ModelSubtree.MEASURES ) );
+  }
+
+  /**
+   * Writes the dimensions and measures of the model to the olap cube of <code>logicalModel</code>, if it has any to
+   * write.
+   */
+  private void populateCube( ModelerWorkspace model, LogicalModel logicalModel, Set<ModelSubtree> subtrees ) {
     MainModelNode mainModelNode = model.getModel();
     if ( mainModelNode == null ) {
       return;
@@ -149,11 +181,35 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
     if ( factTable == null ) {
       throw new IllegalStateException( "Fact table is missing." );
     }
+
+    List<OlapCube> existingCubes = (List<OlapCube>) logicalModel.getProperty( "olap_cubes" );
+    boolean populated = existingCubes != null && !existingCubes.isEmpty();
+    OlapCube cube = populated ? existingCubes.get( 0 ) : new OlapCube();
+    if ( !populated || subtrees.contains( ModelSubtree.DIMENSIONS ) ) {
+      cube.setOlapDimensionUsages( populateDimensions( model, logicalModel, factTable ) );
+    }
+
+    cube.setLogicalTable( factTable );
+    // TODO find a better way to generate default names
+    //cube.setName( BaseMessages.getString(ModelerWorkspaceUtil.class, "ModelerWorkspaceUtil.Populate.CubeName", model.getModelName() ) ); //$NON-NLS-1$
+    cube.setName( model.getModelName() ); //$NON-NLS-1$
+
+    if ( !populated || subtrees.contains( ModelSubtree.MEASURES ) ) {
+      populateMeasures( model, cube );
+    }
+
+    List<OlapCube> cubes = new ArrayList<OlapCube>();
+    cubes.add( cube );
+    logicalModel.setProperty( "olap_cubes", cubes ); //$NON-NLS-1$
+  }
+
+  private List<OlapDimensionUsage> populateDimensions( ModelerWorkspace model, LogicalModel logicalModel,
+                                                      LogicalTable factTable ) {
+    Domain domain = model.getDomain();
     List<OlapDimensionUsage> usages = new ArrayList<OlapDimensionUsage>();
     List<OlapDimension> olapDimensions = new ArrayList<OlapDimension>();
-    List<OlapMeasure> measures = new ArrayList<OlapMeasure>();
 
-    for ( DimensionMetaData dim : dimensions ) {
+    for ( DimensionMetaData dim : model.getModel().getDimensions() ) {
 
       OlapDimension dimension = new OlapDimension();
       String dimTitle = dim.getName();
@@ -192,9 +248,11 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
               olapCloneLTable.addLogicalColumn( lCol );
             }
 
-            for ( IMemberAnnotation anno : lvl.getMemberAnnotations().values() ) {
-              if ( anno != null ) {
-                anno.saveAnnotations( level );
+            if ( lvl.hasMemberAnnotations() ) {
+              for ( IMemberAnnotation anno : lvl.getMemberAnnotations().values() ) {
+                if ( anno != null ) {
+                  anno.saveAnnotations( level );
+                }
               }
             }
 
@@ -219,14 +277,14 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
             LogicalColumn lc = memberProp.getLogicalColumn();
             if ( lc != null && !level.getLogicalColumns().contains( lc ) ) {
               if ( memberProp.getDescription() != null ) {
-                lc.setDescription( new LocalizedString( getLocale(), memberProp.getDescription() ) );
+                lc.setDescription( new LocalizedString( model.getLocale(), memberProp.getDescription() ) );
               }
               level.getLogicalColumns().add( lc );
             }
           }
           if ( lvl.getDescription() != null && !lvl.getDescription().equals( "" ) ) {
             OlapAnnotation description = new OlapAnnotation();
-            description.setName( "description." + getLocale() );
+            description.setName( "description." + model.getLocale() );
             description.setValue( lvl.getDescription() );
             level.getAnnotations().add( description );
           }
@@ -256,19 +314,20 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
 
     }
 
-    List<OlapCube> existingCubes = (List<OlapCube>) logicalModel.getProperty( "olap_cubes" );
-    OlapCube cube = existingCubes == null || existingCubes.isEmpty() ? new OlapCube() : existingCubes.get( 0 );
-    cube.setLogicalTable( factTable );
-    // TODO find a better way to generate default names
-    //cube.setName( BaseMessages.getString(ModelerWorkspaceUtil.class, "ModelerWorkspaceUtil.Populate.CubeName", model.getModelName() ) ); //$NON-NLS-1$
-    cube.setName( model.getModelName() ); //$NON-NLS-1$
-    cube.setOlapDimensionUsages( usages );
+    if ( olapDimensions.size() > 0 ) { // Metadata OLAP generator doesn't like empty lists.
+      logicalModel.setProperty( "olap_dimensions", olapDimensions ); //$NON-NLS-1$
+    }
+    return usages;
+  }
 
+  private void populateMeasures( ModelerWorkspace model, OlapCube cube ) {
+    List<OlapMeasure> measures = new ArrayList<OlapMeasure>();
     Map<String, LogicalColumn> backingColumns = new HashMap<String, LogicalColumn>();
+    Map<String, IdRegistry> tableIds = new HashMap<String, IdRegistry>();
     for ( MeasureMetaData f : model.getModel().getMeasures() ) {
       LogicalColumn lCol = f.getLogicalColumn();
       if ( f.getDescription() != null && !f.getDescription().equals( "" ) ) {
-        lCol.setDescription( new LocalizedString( getLocale(), f.getDescription() ) );
+        lCol.setDescription( new LocalizedString( model.getLocale(), f.getDescription() ) );
       }
       LogicalTable lTable = lCol.getLogicalTable();
       OlapMeasure measure = new OlapMeasure();
@@ -278,7 +337,12 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
       if ( backingColumns.containsKey( colKey ) ) {
         // already used, duplicate it
         LogicalColumn clone = (LogicalColumn) lCol.clone();
-        clone.setId( uniquify( clone.getId(), lTable.getLogicalColumns() ) );
+        IdRegistry ids = tableIds.get( lTable.getId() );
+        if ( ids == null ) {
+          ids = new IdRegistry( lTable.getLogicalColumns() );
+          tableIds.put( lTable.getId(), ids );
+        }
+        clone.setId( ids.uniquify( clone.getId() ) );
         lCol = clone;
       } else {
         backingColumns.put( colKey, lCol );
@@ -286,6 +350,11 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
 
       if ( !lTable.getLogicalColumns().contains( lCol ) ) {
         lTable.addLogicalColumn( lCol );
+        model.domainChanged();
+        IdRegistry ids = tableIds.get( lTable.getId() );
+        if ( ids != null ) {
+          ids.register( lCol.getId() );
+        }
       }
 
       if ( f.getDefaultAggregation() != null ) {
@@ -304,14 +373,6 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
     }
 
     cube.setOlapMeasures( measures );
-
-    if ( olapDimensions.size() > 0 ) { // Metadata OLAP generator doesn't like empty lists.
-      logicalModel.setProperty( "olap_dimensions", olapDimensions ); //$NON-NLS-1$
-    }
-    List<OlapCube> cubes = new ArrayList<OlapCube>();
-    cubes.add( cube );
-    logicalModel.setProperty( "olap_cubes", cubes ); //$NON-NLS-1$
-
   }
 
   private LogicalTable findOlapCloneForTableInDomain( LogicalTable supposedLTable, Domain domain ) {
@@ -339,45 +400,36 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
     }
   }
 
+  /**
+   * Returns <code>id</code>, or the first of <code>id_2</code>, <code>id_3</code>, ... not already used
+   * (case-insensitively) by one of the concepts. Callers generating many ids against the same concepts should hold an
+   * {@link IdRegistry} instead.
+   */
   public static final String uniquify( final String id, final List<? extends IConcept> concepts ) {
-    boolean gotNew = false;
-    boolean found = false;
-    int conceptNr = 1;
-    String newId = id;
-    while ( !gotNew ) {
-      for ( IConcept concept : concepts ) {
-        if ( concept.getId().equalsIgnoreCase( newId ) ) {
-          found = true;
-          break;
-        }
-      }
-      if ( found ) {
-        conceptNr++;
-        newId = id + "_" + conceptNr; //$NON-NLS-1$
-        found = false;
-      } else {
-        gotNew = true;
-      }
-    }
-    return newId;
+    return new IdRegistry( concepts ).uniquify( id );
   }
 
+  /**
+   * The default locale of workspaces created with this helper. Populating a workspace always uses the locale of that
+   * workspace's {@link ModelerContext}.
+   */
   public String getLocale() {
     return locale;
   }
 
   public void setLocale( String locale ) {
-    BaseModelerWorkspaceHelper.locale = locale;
+    this.locale = locale;
   }
 
   protected void populateCategories( ModelerWorkspace workspace ) {
     RelationalModelNode model = workspace.getRelationalModel();
+    String locale = workspace.getLocale();
     LogicalModel logicalModel = workspace.getDomain().getLogicalModels().get( 0 );
     logicalModel.getCategories().clear();
 
     for ( CategoryMetaData catMeta : model.getCategories() ) {
       Category cat = new Category();
-      cat.setName( new LocalizedString( this.getLocale(), catMeta.getName() ) );
+      cat.setName( new LocalizedString( locale, catMeta.getName() ) );
       cat.setId( catMeta.getName() );
 
       for ( FieldMetaData fieldMeta : catMeta ) {
@@ -386,9 +438,14 @@ public abstract class BaseModelerWorkspaceHelper implements IModelerWorkspaceHel
 
         if ( !lTable.getLogicalColumns().contains( lCol ) ) {
           lTable.addLogicalColumn( lCol );
+          workspace.domainChanged();
         }
 
+        boolean renamed = !fieldMeta.getName().equals( lCol.getName( locale ) );
         lCol.setName( new LocalizedString( locale, fieldMeta.getName() ) );
+        if ( renamed ) {
+          workspace.domainChanged();
+        }
         AggregationType type = fieldMeta.getDefaultAggregation();
         lCol.setAggregationType( type );
 
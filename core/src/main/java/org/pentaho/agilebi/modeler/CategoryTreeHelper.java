@@ -100,6 +100,7 @@ public class CategoryTreeHelper extends ModelerTreeHelper {
     for ( LogicalTable table : workspace.getLogicalModel( ModelerPerspective.REPORTING ).getLogicalTables() ) {
       table.getLogicalColumns().clear();
     }
+    workspace.domainChanged();
 
     workspace.getRelationalModel().getCategories().clear();
     workspace.setRelationalModelIsChanging( false, true );
@@ -0,0 +1,30 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.util.List;
+
+/**
+ * Runs the independent tasks of a bulk model rebuild, such as hydrating the dimensions of a published domain. The
+ * modeler core has no threading of its own; server-side callers plug in a concurrent implementation, see
+ * {@link org.pentaho.agilebi.modeler.util.ParallelHydrationExecutor}.
+ */
+public interface HydrationExecutor {
+
+  /**
+   * Runs every task and returns once all of them have completed. A task failure is rethrown once all tasks have
+   * finished.
+   */
+  void runAll( List<Runnable> tasks );
+}
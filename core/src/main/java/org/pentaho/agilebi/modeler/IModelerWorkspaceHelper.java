@@ -34,6 +34,8 @@ public interface IModelerWorkspaceHelper {
 
   void populateDomain( ModelerWorkspace model ) throws ModelerException;
 
+  void syncDomain( ModelerWorkspace model ) throws ModelerException;
+
   String getLocale();
 
   public AutoModelStrategy getAutoModelStrategy();
@@ -0,0 +1,90 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.metadata.model.concept.IConcept;
+
+/**
+ * Tracks the ids used by a set of concepts (typically the logical columns of one table) and hands out unique ones.
+ * Produces the same ids as {@link BaseModelerWorkspaceHelper#uniquify(String, List)}: the requested id if it is free,
+ * otherwise the first free of <code>id_2</code>, <code>id_3</code>, ... compared case-insensitively. Lookups are
+ * hashed and every base id remembers the last suffix it handed out, so generating many ids is linear instead of
+ * rescanning the concept list for each candidate.
+ */
+public class IdRegistry {
+
+  private final Set<String> usedIds = new HashSet<String>();
+  private final Map<String, Integer> nextSuffix = new HashMap<String, Integer>();
+
+  public IdRegistry() {
+  }
+
+  public IdRegistry( List<? extends IConcept> concepts ) {
+    for ( IConcept concept : concepts ) {
+      register( concept.getId() );
+    }
+  }
+
+  public boolean contains( String id ) {
+    return id != null && usedIds.contains( key( id ) );
+  }
+
+  /**
+   * Marks an id as used, e.g. when a concept is added without going through {@link #uniquify(String)}.
+   */
+  public void register( String id ) {
+    if ( id != null ) {
+      usedIds.add( key( id ) );
+    }
+  }
+
+  /**
+   * Returns a unique variant of <code>id</code> and reserves it.
+   */
+  public String uniquify( String id ) {
+    if ( id == null ) {
+      return null;
+    }
+    String idKey = key( id );
+    if ( usedIds.add( idKey ) ) {
+      return id;
+    }
+    Integer suffix = nextSuffix.get( idKey );
+    int conceptNr = suffix == null ? 2 : suffix.intValue();
+    String newId = id + "_" + conceptNr; //$NON-NLS-1$
+    while ( !usedIds.add( key( newId ) ) ) {
+      conceptNr++;
+      newId = id + "_" + conceptNr; //$NON-NLS-1$
+    }
+    nextSuffix.put( idKey, conceptNr + 1 );
+    return newId;
+  }
+
+  /**
+   * Folds case the same way {@link String#equalsIgnoreCase(String)} compares characters.
+   */
+  private static String key( String id ) {
+    char[] chars = id.toCharArray();
+    for ( int i = 0; i < chars.length; i++ ) {
+      chars[ i ] = Character.toLowerCase( Character.toUpperCase( chars[ i ] ) );
+    }
+    return new String( chars );
+  }
+}
@@ -0,0 +1,164 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.metadata.model.IPhysicalColumn;
+import org.pentaho.metadata.model.IPhysicalTable;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
+
+/**
+ * Hash index over the tables and columns of one perspective's {@link LogicalModel}, backing the find* lookups of
+ * {@link ModelerWorkspace}. Lookups keep the first-match semantics of the linear scans they replace. The index records
+ * the domain revision of the workspace it was built at, see {@link ModelerWorkspace#domainChanged()}.
+ */
+class LogicalModelIndex {
+
+  private final LogicalModel logicalModel;
+  private final ModelerPerspective perspective;
+  private final String locale;
+
+  private final List<LogicalTable> tables = new ArrayList<LogicalTable>();
+  private final Map<String, Integer> tablesByPhysicalId = new HashMap<String, Integer>();
+  private final Map<String, Integer> tablesById = new HashMap<String, Integer>();
+  private final Map<String, Map<String, LogicalColumn>> columnsByPhysicalId =
+      new HashMap<String, Map<String, LogicalColumn>>();
+  private final Map<String, LogicalColumn> columnsById = new HashMap<String, LogicalColumn>();
+  private final Map<String, LogicalColumn> columnsByName = new HashMap<String, LogicalColumn>();
+  private final Map<String, IdRegistry> columnIds = new HashMap<String, IdRegistry>();
+  private int revision;
+
+  LogicalModelIndex( LogicalModel logicalModel, ModelerPerspective perspective, String locale, int revision ) {
+    this.logicalModel = logicalModel;
+    this.perspective = perspective;
+    this.locale = locale;
+    this.revision = revision;
+
+    for ( LogicalTable table : logicalModel.getLogicalTables() ) {
+      Integer ordinal = tables.size();
+      tables.add( table );
+      putFirst( tablesByPhysicalId, table.getPhysicalTable().getId(), ordinal );
+      putFirst( tablesById, table.getId(), ordinal );
+      for ( LogicalColumn column : table.getLogicalColumns() ) {
+        indexColumn( column, table, ordinal );
+      }
+    }
+  }
+
+  /**
+   * @return true if this index was built for the given model and locale at the given domain revision.
+   */
+  boolean isCurrent( LogicalModel model, String locale, int revision ) {
+    return model == logicalModel && this.revision == revision && equal( this.locale, locale );
+  }
+
+  LogicalTable findTable( IPhysicalTable table ) {
+    Integer byPhysicalId = tablesByPhysicalId.get( table.getId() );
+    Integer byId = tablesById.get( table.getId() );
+    if ( byPhysicalId == null && byId == null ) {
+      return null;
+    }
+    if ( byPhysicalId == null ) {
+      return tables.get( byId );
+    }
+    if ( byId == null ) {
+      return tables.get( byPhysicalId );
+    }
+    return tables.get( Math.min( byPhysicalId, byId ) );
+  }
+
+  LogicalColumn findColumn( IPhysicalColumn column ) {
+    Map<String, LogicalColumn> columns = columnsByPhysicalId.get( column.getPhysicalTable().getId() );
+    return columns == null ? null : columns.get( column.getId() );
+  }
+
+  LogicalColumn findColumnById( String id ) {
+    return columnsById.get( id );
+  }
+
+  LogicalColumn findColumnByName( String name ) {
+    return columnsByName.get( name );
+  }
+
+  /**
+   * @return the registry of column ids used in <code>table</code>, built on first use.
+   */
+  IdRegistry getColumnIds( LogicalTable table ) {
+    IdRegistry ids = columnIds.get( table.getId() );
+    if ( ids == null ) {
+      ids = new IdRegistry( table.getLogicalColumns() );
+      columnIds.put( table.getId(), ids );
+    }
+    return ids;
+  }
+
+  /**
+   * Registers a column that was just appended to one of the indexed tables, bringing the index up to the revision the
+   * domain moved to with it.
+   */
+  void addColumn( LogicalColumn column, int revision ) {
+    this.revision = revision;
+    LogicalTable table = column.getLogicalTable();
+    for ( int i = 0; i < tables.size(); i++ ) {
+      if ( tables.get( i ) == table ) {
+        indexColumn( column, table, i );
+        return;
+      }
+    }
+  }
+
+  private void indexColumn( LogicalColumn column, LogicalTable table, int ordinal ) {
+    IdRegistry ids = columnIds.get( table.getId() );
+    if ( ids != null ) {
+      ids.register( column.getId() );
+    }
+    putFirst( columnsById, column.getId(), column );
+    if ( ordinal == 0 ) {
+      String name = column.getName( locale );
+      if ( name != null ) {
+        putFirst( columnsByName, name, column );
+      }
+    }
+    if ( isPerspectiveTable( table ) && column.getPhysicalColumn() != null ) {
+      String physicalTableId = table.getPhysicalTable().getId();
+      Map<String, LogicalColumn> columns = columnsByPhysicalId.get( physicalTableId );
+      if ( columns == null ) {
+        columns = new HashMap<String, LogicalColumn>();
+        columnsByPhysicalId.put( physicalTableId, columns );
+      }
+      putFirst( columns, column.getPhysicalColumn().getId(), column );
+    }
+  }
+
+  private boolean isPerspectiveTable( LogicalTable table ) {
+    boolean isOlapTable = table.getId().endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX );
+    return perspective == ModelerPerspective.ANALYSIS ? isOlapTable : !isOlapTable;
+  }
+
+  private static <V> void putFirst( Map<String, V> map, String key, V value ) {
+    if ( !map.containsKey( key ) ) {
+      map.put( key, value );
+    }
+  }
+
+  private static boolean equal( String a, String b ) {
+    return a == null ? b == null : a.equals( b );
+  }
+}
@@ -0,0 +1,23 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+/**
+ * The independently synchronized parts of a {@link ModelerWorkspace}. Each maps to one section of the domain written
+ * by {@link BaseModelerWorkspaceHelper#populateDomain(ModelerWorkspace)}: the olap dimensions, the olap cube measures
+ * and the reporting categories.
+ */
+public enum ModelSubtree {
+  DIMENSIONS, MEASURES, CATEGORIES
+}
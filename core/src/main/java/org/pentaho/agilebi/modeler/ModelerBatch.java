@@ -0,0 +1,55 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+/**
+ * A bulk edit session on a {@link ModelerWorkspace}. While a batch is open, node validation and "children" change
+ * notifications are suspended; committing runs a single validation pass over the model trees and fires one coalesced
+ * notification per touched node. Batches nest, only the outermost commit flushes.
+ *
+ * <pre>
+ * try ( ModelerBatch batch = workspace.beginBatch() ) {
+ *   ...
+ * }
+ * </pre>
+ */
+public class ModelerBatch implements AutoCloseable {
+
+  private final ModelerWorkspace workspace;
+  private boolean committed;
+
+  ModelerBatch( ModelerWorkspace workspace ) {
+    this.workspace = workspace;
+  }
+
+  /**
+   * Ends this batch. Calling it more than once has no effect.
+   */
+  public void commit() {
+    if ( committed ) {
+      return;
+    }
+    committed = true;
+    workspace.endBatch();
+  }
+
+  public boolean isCommitted() {
+    return committed;
+  }
+
+  @Override
+  public void close() {
+    commit();
+  }
+}
@@ -0,0 +1,36 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.io.Serializable;
+
+/**
+ * Per-workspace modeling state that used to be shared through the workspace helper, such as the locale used for every
+ * {@link org.pentaho.metadata.model.concept.types.LocalizedString} the modeler writes. Carried by the
+ * {@link ModelerWorkspace} so that workspaces for different locales can be modeled and populated concurrently.
+ */
+public class ModelerContext implements Serializable {
+
+  private static final long serialVersionUID = -3127064880352406213L;
+
+  private final String locale;
+
+  public ModelerContext( String locale ) {
+    this.locale = locale;
+  }
+
+  public String getLocale() {
+    return locale;
+  }
+}
@@ -149,6 +149,7 @@ public class ModelerController extends AbstractXulEventHandler {
       } else {
         catTreeHelper.onModelDrop( event );
       }
+      workspace.getHistory().checkpoint();
     } catch ( Exception e ) {
       event.setAccepted( false );
 
@@ -172,6 +173,7 @@ public class ModelerController extends AbstractXulEventHandler {
       } else {
         catTreeHelper.addField( getSelectedFields() );
       }
+      workspace.getHistory().checkpoint();
     } catch ( Exception e ) {
       try {
         XulMessageBox msg = null; //$NON-NLS-1$
@@ -345,7 +347,7 @@ public class ModelerController extends AbstractXulEventHandler {
     if ( workspace.getRelationalModel().size() > 0 ) {
       categoriesTree.setSelectedItems( Collections.singletonList( workspace.getRelationalModel() ) );
     }
-
+    workspace.getHistory().checkpoint();
   }
 
   @Bindable
@@ -439,7 +441,7 @@ public class ModelerController extends AbstractXulEventHandler {
           if ( returnCode == Status.ACCEPT ) {
             MeasuresCollection theMesaures = (MeasuresCollection) dimTreeHelper.getSelectedTreeItem();
             MeasureMetaData theMeasure =
-                new MeasureMetaData( "" + retVal, "", "" + retVal, workspace.getWorkspaceHelper().getLocale() ); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+                new MeasureMetaData( "" + retVal, "", "" + retVal, workspace.getLocale() ); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 
             theMeasure.setParent( theMesaures );
             theMeasure.validate();
@@ -656,8 +658,7 @@ public class ModelerController extends AbstractXulEventHandler {
           if ( returnCode == Status.ACCEPT ) {
             CategoryMetaData theCategory = (CategoryMetaData) catTreeHelper.getSelectedTreeItem();
             FieldMetaData theField =
-                new FieldMetaData( theCategory, "" + retVal, "", "" + retVal, workspace.getWorkspaceHelper()
-                    .getLocale() );
+                new FieldMetaData( theCategory, "" + retVal, "", "" + retVal, workspace.getLocale() );
 
             theField.validate();
             boolean prevChangeState = workspace.isModelChanging();
@@ -690,11 +691,23 @@ public class ModelerController extends AbstractXulEventHandler {
   @Bindable
   public void removeField() {
     dimTreeHelper.removeField();
+    workspace.getHistory().checkpoint();
   }
 
   @Bindable
   public void removeRelationalNode() {
     catTreeHelper.removeField();
+    workspace.getHistory().checkpoint();
+  }
+
+  @Bindable
+  public void undo() throws ModelerException {
+    workspace.getHistory().undo();
+  }
+
+  @Bindable
+  public void redo() throws ModelerException {
+    workspace.getHistory().redo();
   }
 
   @Bindable
@@ -724,6 +737,7 @@ public class ModelerController extends AbstractXulEventHandler {
   public void setModel( ModelerWorkspace model ) throws ModelerException {
     this.workspace = model;
     fireBindings();
+    workspace.getHistory().checkpoint();
   }
 
   @Bindable
@@ -823,7 +837,7 @@ public class ModelerController extends AbstractXulEventHandler {
 
     AvailableTable restrictToTable = null;
     AvailableItemCollection availableTables = workspace.getAvailableTables();
-    String name = restrictedPhysicalTable.getName( getWorkspaceHelper().getLocale() );
+    String name = restrictedPhysicalTable.getName( workspace.getLocale() );
     restrictToTable = availableTables.findAvailableTable( name );
     colController.show( workspace, selectedColumnBackedNode, columnType, restrictToTable );
   }
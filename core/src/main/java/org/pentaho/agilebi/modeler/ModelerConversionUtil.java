@@ -148,12 +148,13 @@ public class ModelerConversionUtil {
     List<LogicalRelationship> olapRelationships = new ArrayList<LogicalRelationship>();
 
     if ( relationalModel.getLogicalRelationships() != null ) {
+      OlapColumnMap olapColumns = new OlapColumnMap( olapModel );
       for ( LogicalRelationship rel : relationalModel.getLogicalRelationships() ) {
 
         if ( isOlap( rel.getFromColumn() ) && isOlap( rel.getToColumn() ) && isOlap( rel.getFromTable() )
             && isOlap( rel.getToTable() ) ) {
 
-          LogicalRelationship olapRel = duplicateRelationshipForOlap( rel, olapModel );
+          LogicalRelationship olapRel = duplicateRelationshipForOlap( rel, olapModel, olapColumns );
 
           olapRelationships.add( olapRel );
 
@@ -223,11 +224,22 @@ public class ModelerConversionUtil {
     olapModel.setProperty( "DUAL_MODELING_SCHEMA", "true" );
     olapModel.setProperty( "visible", "false" );
 
+    String locale = "en_US";
+    if ( logicalModel.getName().getLocales() != null && logicalModel.getName().getLocales().size() > 0 ) {
+      for ( String l : logicalModel.getName().getLocales() ) {
+        locale = l;
+        break;
+      }
+    }
+
     for ( LogicalTable table : logicalModel.getLogicalTables() ) {
       LogicalTable copiedTable = (LogicalTable) table.clone();
       copiedTable.setId( copiedTable.getId() + BaseModelerWorkspaceHelper.OLAP_SUFFIX );
 
       List<LogicalColumn> olapColumns = new ArrayList<LogicalColumn>();
+      IdRegistry olapColumnIds = new IdRegistry();
+      // every column id of this table shares the same prefix
+      String columnIdPrefix = "LC_" + ModelerWorkspace.toId( table.getPhysicalTable().getName( locale ) ) + "_";
       // set up the columns too
       for ( LogicalColumn col : table.getLogicalColumns() ) {
         LogicalColumn olapCol = new LogicalColumn();
@@ -257,19 +269,11 @@ public class ModelerConversionUtil {
         LocalizedString newName = appendOlap( col.getName() );
         olapCol.setName( newName );
 
-        String locale = "en_US";
-        if ( logicalModel.getName().getLocales() != null && logicalModel.getName().getLocales().size() > 0 ) {
-          for ( String l : logicalModel.getName().getLocales() ) {
-            locale = l;
-            break;
-          }
-        }
-
         String colId =
-            "LC_" + ModelerWorkspace.toId( table.getPhysicalTable().getName( locale ) ) + "_"
-                + ModelerWorkspace.toId( col.getPhysicalColumn().getId() ) + BaseModelerWorkspaceHelper.OLAP_SUFFIX;
+            columnIdPrefix + ModelerWorkspace.toId( col.getPhysicalColumn().getId() )
+                + BaseModelerWorkspaceHelper.OLAP_SUFFIX;
 
-        colId = BaseModelerWorkspaceHelper.uniquify( colId, olapColumns );
+        colId = olapColumnIds.uniquify( colId );
 
         olapCol.setId( colId );
         olapColumns.add( olapCol );
@@ -305,18 +309,20 @@ public class ModelerConversionUtil {
       olapModel.getLogicalRelationships().clear();
     }
     if ( relationalModel.getLogicalRelationships() != null ) {
+      OlapColumnMap olapColumns = new OlapColumnMap( olapModel );
       for ( LogicalRelationship rel : relationalModel.getLogicalRelationships() ) {
-        olapModel.addLogicalRelationship( duplicateRelationshipForOlap( rel, olapModel ) );
+        olapModel.addLogicalRelationship( duplicateRelationshipForOlap( rel, olapModel, olapColumns ) );
       }
     }
 
   }
 
-  private static LogicalRelationship duplicateRelationshipForOlap( LogicalRelationship rel, LogicalModel olapModel ) {
-    LogicalTable olapFromTable = findCorrespondingOlapTable( rel.getFromTable(), olapModel );
-    LogicalTable olapToTable = findCorrespondingOlapTable( rel.getToTable(), olapModel );
-    LogicalColumn olapFromCol = findCorrespondingOlapColumn( rel.getFromColumn(), olapModel );
-    LogicalColumn olapToCol = findCorrespondingOlapColumn( rel.getToColumn(), olapModel );
+  private static LogicalRelationship duplicateRelationshipForOlap( LogicalRelationship rel, LogicalModel olapModel,
+      OlapColumnMap olapColumns ) {
+    LogicalTable olapFromTable = olapColumns.findTable( rel.getFromTable() );
+    LogicalTable olapToTable = olapColumns.findTable( rel.getToTable() );
+    LogicalColumn olapFromCol = olapColumns.findColumn( rel.getFromColumn() );
+    LogicalColumn olapToCol = olapColumns.findColumn( rel.getToColumn() );
 
     LogicalRelationship olapRel =
         new LogicalRelationship( olapModel, olapFromTable, olapToTable, olapFromCol, olapToCol );
@@ -0,0 +1,174 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.agilebi.modeler.nodes.AbstractMetaDataModelNode;
+import org.pentaho.agilebi.modeler.nodes.NodeSnapshot;
+
+/**
+ * Undo and redo for the analysis and reporting trees of a {@link ModelerWorkspace}.
+ * <p>
+ * Each {@link #checkpoint()} records a revision as a {@link NodeSnapshot} of both trees, sharing every untouched
+ * subtree with the previous revision, so the history grows with the size of the edits rather than the size of the
+ * model. A checkpoint only visits the nodes edited since the previous one and their ancestors; edits must go through
+ * the node setters or child lists to be seen. Undo and redo put back only the nodes that differ between two revisions
+ * and then sync just the affected parts of the domain through
+ * {@link IModelerWorkspaceHelper#syncDomain(ModelerWorkspace)}.
+ * <p>
+ * Replacing the model trees, e.g. through {@link ModelerWorkspace#setDomain(org.pentaho.metadata.model.Domain)},
+ * starts a new history.
+ */
+public class ModelerHistory {
+
+  public static final int DEFAULT_LIMIT = 100;
+
+  private final ModelerWorkspace workspace;
+  private final List<Revision> revisions = new ArrayList<Revision>();
+  private int position = -1;
+  private int limit = DEFAULT_LIMIT;
+
+  ModelerHistory( ModelerWorkspace workspace ) {
+    this.workspace = workspace;
+  }
+
+  /**
+   * Records the current state of the model trees as a new revision, dropping anything that could be redone.
+   *
+   * @return false if nothing changed since the last revision
+   */
+  public boolean checkpoint() {
+    Revision current = position < 0 ? null : revisions.get( position );
+    if ( current != null && !current.matches( workspace ) ) {
+      clear();
+      current = null;
+    }
+    NodeSnapshot model = NodeSnapshot.capture( workspace.getModel(), current == null ? null : current.model );
+    NodeSnapshot relational =
+        NodeSnapshot.capture( workspace.getRelationalModel(), current == null ? null : current.relational );
+    if ( current != null && model == current.model && relational == current.relational ) {
+      return false;
+    }
+    while ( revisions.size() > position + 1 ) {
+      revisions.remove( revisions.size() - 1 );
+    }
+    revisions.add( new Revision( model, relational ) );
+    position++;
+    if ( revisions.size() > limit ) {
+      revisions.remove( 0 );
+      position--;
+    }
+    return true;
+  }
+
+  public boolean canUndo() {
+    return position > 0 || position == 0 && hasPendingEdits();
+  }
+
+  public boolean canRedo() {
+    return position < revisions.size() - 1 && !hasPendingEdits();
+  }
+
+  /**
+   * Steps back one revision. Edits made since the last checkpoint are recorded first, so they are what gets undone.
+   *
+   * @return false if there was nothing to undo
+   */
+  public boolean undo() throws ModelerException {
+    checkpoint();
+    if ( position <= 0 ) {
+      return false;
+    }
+    apply( revisions.get( position - 1 ), revisions.get( position ) );
+    position--;
+    return true;
+  }
+
+  /**
+   * Steps forward one revision. Edits made since the last undo discard the redo history instead.
+   *
+   * @return false if there was nothing to redo
+   */
+  public boolean redo() throws ModelerException {
+    checkpoint();
+    if ( position >= revisions.size() - 1 ) {
+      return false;
+    }
+    apply( revisions.get( position + 1 ), revisions.get( position ) );
+    position++;
+    return true;
+  }
+
+  public void clear() {
+    revisions.clear();
+    position = -1;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Sets how many revisions are kept; the oldest are discarded first.
+   */
+  public void setLimit( int limit ) {
+    if ( limit < 1 ) {
+      throw new IllegalArgumentException( "limit must be positive" ); //$NON-NLS-1$
+    }
+    this.limit = limit;
+    while ( revisions.size() > limit ) {
+      revisions.remove( 0 );
+      position--;
+    }
+  }
+
+  private boolean hasPendingEdits() {
+    if ( position < 0 ) {
+      return false;
+    }
+    Revision current = revisions.get( position );
+    return current.matches( workspace )
+        && ( NodeSnapshot.capture( workspace.getModel(), current.model ) != current.model
+            || NodeSnapshot.capture( workspace.getRelationalModel(), current.relational ) != current.relational );
+  }
+
+  private void apply( Revision target, Revision current ) throws ModelerException {
+    List<AbstractMetaDataModelNode> changed = new ArrayList<AbstractMetaDataModelNode>();
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      NodeSnapshot.restore( target.model, current.model, changed );
+      NodeSnapshot.restore( target.relational, current.relational, changed );
+    }
+    for ( AbstractMetaDataModelNode node : changed ) {
+      workspace.markSubtreeDirtyFor( node );
+    }
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+  }
+
+  private static class Revision {
+    private final NodeSnapshot model;
+    private final NodeSnapshot relational;
+
+    Revision( NodeSnapshot model, NodeSnapshot relational ) {
+      this.model = model;
+      this.relational = relational;
+    }
+
+    boolean matches( ModelerWorkspace workspace ) {
+      return ( model == null ? null : model.getNode() ) == workspace.getModel()
+          && ( relational == null ? null : relational.getNode() ) == workspace.getRelationalModel();
+    }
+  }
+}
@@ -199,6 +199,7 @@ public abstract class ModelerTreeHelper extends XulEventSourceAdapter {
     if ( lCol != null && lCol.getLogicalTable() != null ) {
       LogicalTable lTab = lCol.getLogicalTable();
       lTab.getLogicalColumns().remove( lCol );
+      workspace.domainChanged();
     }
   }
 
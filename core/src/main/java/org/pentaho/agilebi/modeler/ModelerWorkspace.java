@@ -17,8 +17,14 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.pentaho.agilebi.modeler.geo.GeoContext;
@@ -36,6 +42,7 @@ import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
 import org.pentaho.agilebi.modeler.nodes.MainModelNode;
 import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
 import org.pentaho.agilebi.modeler.nodes.MemberPropertyMetaData;
+import org.pentaho.agilebi.modeler.nodes.NodeSnapshot;
 import org.pentaho.agilebi.modeler.nodes.RelationalModelNode;
 import org.pentaho.agilebi.modeler.nodes.TimeRole;
 import org.pentaho.agilebi.modeler.nodes.annotations.AnalyzerDateFormatAnnotationFactory;
@@ -64,6 +71,7 @@ import org.pentaho.metadata.model.olap.OlapHierarchyLevel;
 import org.pentaho.metadata.model.olap.OlapMeasure;
 import org.pentaho.ui.xul.XulEventSourceAdapter;
 import org.pentaho.ui.xul.stereotype.Bindable;
+import org.pentaho.ui.xul.util.AbstractModelNode;
 
 /**
  * UI model behind the XUL-based interface. This class contains a reference from the context in which the modeling was
@@ -102,6 +110,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   private AbstractMetaDataModelNode selectedNode;
   private IAvailableItem selectedAvailableItem;
   private IModelerWorkspaceHelper workspaceHelper;
+  private ModelerContext context;
   private AbstractMetaDataModelNode selectedRelationalNode;
 
   private transient ModelerMode currentModellingMode = ModelerMode.ANALYSIS_AND_REPORTING;
@@ -115,21 +124,48 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
 
   private transient ModelerTreeHelper currentModelerTreeHelper;
 
+  private Set<ModelSubtree> dirtySubtrees = EnumSet.allOf( ModelSubtree.class );
+
+  private transient Map<ModelerPerspective, LogicalModelIndex> lookupIndexes;
+  private transient int domainRevision;
+
+  private transient HydrationExecutor hydrationExecutor;
+
+  private transient int batchDepth;
+  private transient List<AbstractMetaDataModelNode> batchTouched;
+  private transient Map<AbstractMetaDataModelNode, Boolean> batchSeen;
+  private transient Map<AbstractMetaDataModelNode, Boolean> batchDelivered;
+  private transient boolean batchTablesChanged;
+  private transient boolean batchRelationalChanged;
+
+  private transient ModelerHistory history;
+
+  private transient int modelRevision;
+
   public ModelerWorkspace( IModelerWorkspaceHelper helper ) {
     this( helper, null );
   }
 
   public ModelerWorkspace( IModelerWorkspaceHelper helper, GeoContext geoContext ) {
+    this( helper, geoContext, new ModelerContext( helper.getLocale() ) );
+  }
+
+  /**
+   * @param context
+   *          per-workspace state, such as the locale, used instead of the defaults of the helper
+   */
+  public ModelerWorkspace( IModelerWorkspaceHelper helper, GeoContext geoContext, ModelerContext context ) {
     this.isTemporary = true;
     this.workspaceHelper = helper;
+    this.context = context;
 
     setModel( new MainModelNode( this ) );
     setRelationalModel( new RelationalModelNode( this ) );
 
     this.geoContext = geoContext;
-    simpleAutoModelStrategy = new SimpleAutoModelStrategy( workspaceHelper.getLocale(), geoContext );
-    multiTableAutoModelStrategy = new MultiTableAutoModelStrategy( workspaceHelper.getLocale() );
-    starSchemaAutoModelStrategy = new StarSchemaAutoModelStrategy( workspaceHelper.getLocale(), geoContext );
+    simpleAutoModelStrategy = new SimpleAutoModelStrategy( getLocale(), geoContext );
+    multiTableAutoModelStrategy = new MultiTableAutoModelStrategy( getLocale() );
+    starSchemaAutoModelStrategy = new StarSchemaAutoModelStrategy( getLocale(), geoContext );
     AnalyzerDateFormatAnnotationFactory.register();
   }
 
@@ -137,6 +173,17 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     return geoContext;
   }
 
+  public ModelerContext getContext() {
+    return context;
+  }
+
+  /**
+   * @return the locale of this workspace's {@link ModelerContext}
+   */
+  public String getLocale() {
+    return context.getLocale();
+  }
+
   @Bindable
   public MainModelNode getModel() {
     return model;
@@ -145,6 +192,22 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   @Bindable
   public void setModel( MainModelNode model ) {
     this.model = model;
+    modelRevision++;
+    if ( model.getWorkspace() == null ) {
+      model.setWorkspace( this );
+    }
+    markSubtreeDirty( ModelSubtree.DIMENSIONS );
+    markSubtreeDirty( ModelSubtree.MEASURES );
+    model.getDimensions().addPropertyChangeListener( "children", new PropertyChangeListener() { //$NON-NLS-1$
+      public void propertyChange( PropertyChangeEvent evt ) {
+        markSubtreeDirty( ModelSubtree.DIMENSIONS );
+      }
+    } );
+    model.getMeasures().addPropertyChangeListener( "children", new PropertyChangeListener() { //$NON-NLS-1$
+      public void propertyChange( PropertyChangeEvent evt ) {
+        markSubtreeDirty( ModelSubtree.MEASURES );
+      }
+    } );
     model.addPropertyChangeListener( "children",
         new PropertyChangeListener() { //$NON-NLS-1$
 
@@ -169,6 +232,15 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   @Bindable
   public void setRelationalModel( RelationalModelNode model ) {
     this.relationalModel = model;
+    if ( model.getWorkspace() == null ) {
+      model.setWorkspace( this );
+    }
+    markSubtreeDirty( ModelSubtree.CATEGORIES );
+    relationalModel.getCategories().addPropertyChangeListener( "children", new PropertyChangeListener() { //$NON-NLS-1$
+      public void propertyChange( PropertyChangeEvent evt ) {
+        markSubtreeDirty( ModelSubtree.CATEGORIES );
+      }
+    } );
     relationalModel.addPropertyChangeListener( "children", new PropertyChangeListener() {
       public void propertyChange( PropertyChangeEvent evt ) {
         if ( !modelIsChanging ) {
@@ -391,8 +463,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
 
   public FieldMetaData createFieldForParentWithNode( CategoryMetaData parent, AvailableField selectedField ) {
     FieldMetaData field =
-        new FieldMetaData( parent, selectedField.getName(), "", selectedField.getDisplayName(), workspaceHelper
-            .getLocale() ); //$NON-NLS-1$
+        new FieldMetaData( parent, selectedField.getName(), "", selectedField.getDisplayName(), getLocale() ); //$NON-NLS-1$
     ColumnBackedNode node = createColumnBackedNode( selectedField, ModelerPerspective.REPORTING );
     field.setLogicalColumn( node.getLogicalColumn() );
     field.setFieldTypeDesc( node.getLogicalColumn().getDataType().getName() );
@@ -459,7 +530,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   public MeasureMetaData createMeasureForNode( AvailableField selectedField ) {
 
     MeasureMetaData meta =
-        new MeasureMetaData( selectedField.getName(), "", selectedField.getDisplayName(), workspaceHelper.getLocale() ); //$NON-NLS-1$
+        new MeasureMetaData( selectedField.getName(), "", selectedField.getDisplayName(), getLocale() ); //$NON-NLS-1$
     ColumnBackedNode node = createColumnBackedNode( selectedField, ModelerPerspective.ANALYSIS );
     meta.setLogicalColumn( node.getLogicalColumn() );
     return meta;
@@ -474,15 +545,19 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   }
 
   public LogicalColumn findLogicalColumn( String id ) {
-    LogicalColumn col = null;
-    for ( LogicalColumn c : getLogicalModel( currentModelerPerspective ).getLogicalTables().get( 0 )
-        .getLogicalColumns() ) {
-      if ( c.getName( workspaceHelper.getLocale() ).equals( id ) ) {
-        col = c;
-        break;
-      }
+    LogicalModelIndex index = getLookupIndex( currentModelerPerspective );
+    if ( index == null ) {
+      return null;
     }
-    return col;
+    return index.findColumnByName( id );
+  }
+
+  /**
+   * Finds a logical column by its id in the logical model of the given perspective.
+   */
+  public LogicalColumn findLogicalColumnById( String id, ModelerPerspective perspective ) {
+    LogicalModelIndex index = getLookupIndex( perspective );
+    return index == null ? null : index.findColumnById( id );
   }
 
   public LogicalTable findLogicalTable( IPhysicalTable table ) {
@@ -490,25 +565,44 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   }
 
   public LogicalTable findLogicalTable( IPhysicalTable table, ModelerPerspective perspective ) {
+    LogicalModelIndex index = getLookupIndex( perspective );
+    if ( index == null ) {
+      return null;
+    }
+    return index.findTable( table );
+  }
+
+  private LogicalModelIndex getLookupIndex( ModelerPerspective perspective ) {
     LogicalModel logicalModel = this.getLogicalModel( perspective );
     if ( logicalModel == null ) {
       return null;
     }
-    for ( LogicalTable logicalTable : logicalModel.getLogicalTables() ) {
-      if ( logicalTable.getPhysicalTable().equals( table )
-          || logicalTable.getPhysicalTable().getId().equals( table.getId() )
-          || logicalTable.getId().equals( table.getId() ) ) {
-
-        return logicalTable;
-        // boolean isOlapTable = logicalTable.getId().endsWith(BaseModelerWorkspaceHelper.OLAP_SUFFIX);
-        // if (perspective == ModelerPerspective.ANALYSIS && isOlapTable) {
-        // return logicalTable;
-        // } else if (perspective == ModelerPerspective.REPORTING && !isOlapTable) {
-        // return logicalTable;
-        // }
-      }
+    if ( lookupIndexes == null ) {
+      lookupIndexes = new EnumMap<ModelerPerspective, LogicalModelIndex>( ModelerPerspective.class );
     }
-    return null;
+    String locale = getLocale();
+    LogicalModelIndex index = lookupIndexes.get( perspective );
+    if ( index == null || !index.isCurrent( logicalModel, locale, domainRevision ) ) {
+      index = new LogicalModelIndex( logicalModel, perspective, locale, domainRevision );
+      lookupIndexes.put( perspective, index );
+    }
+    return index;
+  }
+
+  /**
+   * Moves the domain revision the lookup indexes behind the find* methods are checked against. Call after adding,
+   * removing, renaming or re-identifying logical tables or columns of the domain in place; the indexes are rebuilt on
+   * the next lookup.
+   */
+  public void domainChanged() {
+    domainRevision++;
+  }
+
+  /**
+   * @return a counter that moves on every {@link #domainChanged()}; lookups over the logical models can cache by it
+   */
+  public int getDomainRevision() {
+    return domainRevision;
   }
 
   public void setModelSource( IModelerSource source ) {
@@ -571,6 +665,8 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     // replace the domain with the new domain, which
     // makes sure the physical and logical columns are accurate
     domain = newDomain;
+    markAllSubtreesDirty();
+    domainChanged();
 
     for ( MeasureMetaData measure : model.getMeasures() ) {
       boolean found = false;
@@ -696,9 +792,33 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     setDomain( d, true );
   }
 
+  /**
+   * @return the undo/redo history of the model trees, created on first use
+   */
+  public ModelerHistory getHistory() {
+    if ( history == null ) {
+      history = new ModelerHistory( this );
+    }
+    return history;
+  }
+
+  public HydrationExecutor getHydrationExecutor() {
+    return hydrationExecutor;
+  }
+
+  /**
+   * Lets {@link #setDomain(Domain)} rebuild the dimensions of a published model concurrently. Dimensions are still
+   * attached to the model in domain order. Defaults to null, which hydrates them one after the other.
+   */
+  public void setHydrationExecutor( HydrationExecutor hydrationExecutor ) {
+    this.hydrationExecutor = hydrationExecutor;
+  }
+
   // this method signature is intended to provide a simpler path for unit testing the upConvert method on its own
   protected void setDomain( Domain d, boolean upConvertDesired ) {
     this.domain = d;
+    markAllSubtreesDirty();
+    domainChanged();
     this.setModelIsChanging( true );
     this.setRelationalModelIsChanging( true );
     this.model.getDimensions().clear();
@@ -708,134 +828,20 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
 
     if ( upConvertDesired ) {
       upConvertLegacyModel();
+      domainChanged();
     }
-    List<IAvailableItem> items = new ArrayList<IAvailableItem>();
-    for ( IPhysicalTable table : domain.getPhysicalModels().get( 0 ).getPhysicalTables() ) {
-      Boolean isFact = (Boolean) table.getProperty( "FACT_TABLE" );
-      items.add( new AvailableTable( table, isFact == null ? false : isFact.booleanValue() ) );
-    }
-
-    availableTables.setChildren( items );
-
-    fireTablesChanged();
-
-    LogicalModel lModel = domain.getLogicalModels().get( 0 );
-
-    setModelName( lModel.getName( workspaceHelper.getLocale() ) );
-    setRelationalModelName( lModel.getName( workspaceHelper.getLocale() ) );
+    loadAvailableTables();
 
-    // Set the type of modeling session. This will propagate to the UI
-    if ( supportsOlap( domain ) ) {
-      this.setModellingMode( ModelerMode.ANALYSIS_AND_REPORTING );
-    } else {
-      this.setModellingMode( ModelerMode.REPORTING_ONLY );
-    }
-
-    lModel = getLogicalModel( ModelerPerspective.ANALYSIS );
+    LogicalModel lModel = getLogicalModel( ModelerPerspective.ANALYSIS );
     List<OlapDimension> theDimensions = null;
+    OlapColumnMap olapColumns = null;
     if ( lModel != null ) {
       theDimensions = (List) lModel.getProperty( LogicalModel.PROPERTY_OLAP_DIMS ); //$NON-NLS-1$
+      olapColumns = new OlapColumnMap( lModel );
     }
     if ( theDimensions != null ) {
-      Iterator<OlapDimension> theDimensionItr = theDimensions.iterator();
-      while ( theDimensionItr.hasNext() ) {
-        OlapDimension theDimension = theDimensionItr.next();
-
-        DimensionMetaData theDimensionMD = new DimensionMetaData( theDimension.getName(), theDimension.getType() );
-        theDimensionMD.setTimeDimension( theDimension.isTimeDimension() );
-        List<OlapHierarchy> theHierarchies = (List) theDimension.getHierarchies();
-        Iterator<OlapHierarchy> theHierarchiesItr = theHierarchies.iterator();
-        while ( theHierarchiesItr.hasNext() ) {
-          OlapHierarchy theHierarchy = theHierarchiesItr.next();
-          HierarchyMetaData theHierarchyMD = new HierarchyMetaData( theHierarchy.getName() );
-
-          List<OlapHierarchyLevel> theLevels = theHierarchy.getHierarchyLevels();
-          Iterator<OlapHierarchyLevel> theLevelsItr = theLevels.iterator();
-          while ( theLevelsItr.hasNext() ) {
-            OlapHierarchyLevel theLevel = theLevelsItr.next();
-            LevelMetaData theLevelMD = new LevelMetaData( theHierarchyMD, theLevel.getName() );
-
-            theLevelMD.setParent( theHierarchyMD );
-
-            theLevelMD.setUniqueMembers( theLevel.isHavingUniqueMembers() );
-            if ( theDimensionMD.isTimeDimension() ) {
-              TimeRole role = TimeRole.fromMondrianAttributeValue( theLevel.getLevelType() );
-              if ( role != null ) {
-                theLevelMD.setDataRole( role );
-              }
-            }
-
-            // Make sure we're dealing with the OLAP copy. Note that duplicated columns will have an OLAP_[0-9]+ at the
-            // end
-            String refID;
-            LogicalColumn olapCol;
-
-            olapCol = theLevel.getReferenceColumn();
-            if ( olapCol != null ) {
-              refID = olapCol.getId();
-              if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
-                  && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
-                olapCol = ModelerConversionUtil.findCorrespondingOlapColumn( olapCol, lModel );
-                theLevel.setReferenceColumn( olapCol );
-              }
-              theLevelMD.setLogicalColumn( olapCol );
-            }
-
-            olapCol = theLevel.getReferenceOrdinalColumn();
-            if ( olapCol != null ) {
-              refID = olapCol.getId();
-              if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
-                  && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
-                olapCol = ModelerConversionUtil.findCorrespondingOlapColumn( olapCol, lModel );
-                theLevel.setReferenceOrdinalColumn( olapCol );
-              }
-              theLevelMD.setLogicalOrdinalColumn( olapCol );
-            }
-
-            olapCol = theLevel.getReferenceCaptionColumn();
-            if ( olapCol != null ) {
-              refID = olapCol.getId();
-              if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
-                  && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
-                olapCol = ModelerConversionUtil.findCorrespondingOlapColumn( olapCol, lModel );
-                theLevel.setReferenceCaptionColumn( olapCol );
-              }
-              theLevelMD.setLogicalCaptionColumn( olapCol );
-            }
-            // get any logicalColumns and turn them into member properties
-            if ( theLevel.getLogicalColumns() != null && theLevel.getLogicalColumns().size() > 0 ) {
-              for ( LogicalColumn lc : theLevel.getLogicalColumns() ) {
-                // BISERVER-11578 - Protect against null lc's in the collection. We still need to
-                // investigate why this can happen in the model.
-                if ( lc == null ) {
-                  continue;
-                }
-
-                if ( !lc.getId().endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
-                    && !lc.getId().contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
-                  // not pointing to the olap col
-                  lc = ModelerConversionUtil.findCorrespondingOlapColumn( lc, lModel );
-                }
-                MemberPropertyMetaData memberProp =
-                    new MemberPropertyMetaData( theLevelMD, lc.getName( workspaceHelper.getLocale() ) );
-                memberProp.setLogicalColumn( lc );
-                memberProp.setDescription( lc.getDescription( workspaceHelper.getLocale() ) );
-                theLevelMD.add( memberProp );
-              }
-            }
-            List<OlapAnnotation> annotations = theLevel.getAnnotations();
-            if ( annotations != null ) {
-              for ( OlapAnnotation anno : annotations ) {
-                IMemberAnnotation annoMeta = MemberAnnotationFactory.create( anno );
-                theLevelMD.getMemberAnnotations().put( anno.getName(), annoMeta );
-              }
-            }
-            theHierarchyMD.add( theLevelMD );
-          }
-
-          theHierarchyMD.setParent( theDimensionMD );
-          theDimensionMD.add( theHierarchyMD );
-        }
+      // hydrate first, possibly in parallel, then attach in the order of the domain
+      for ( DimensionMetaData theDimensionMD : hydrateDimensions( theDimensions, olapColumns ) ) {
         this.model.getDimensions().add( theDimensionMD );
       }
     }
@@ -853,10 +859,10 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
         while ( theMeasuresItr.hasNext() ) {
           OlapMeasure theMeasure = theMeasuresItr.next();
 
-          MeasureMetaData theMeasureMD = new MeasureMetaData( workspaceHelper.getLocale() );
+          MeasureMetaData theMeasureMD = new MeasureMetaData( getLocale() );
 
           if ( theMeasure.getName() == null || theMeasure.getName().length() == 0 ) {
-            theMeasureMD.setName( theMeasure.getLogicalColumn().getName( workspaceHelper.getLocale() ) );
+            theMeasureMD.setName( theMeasure.getLogicalColumn().getName( getLocale() ) );
           } else {
             theMeasureMD.setName( theMeasure.getName() );
           }
@@ -866,8 +872,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
           if ( !theMeasure.getLogicalColumn().getId().endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
               && !theMeasure.getLogicalColumn().getId().contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
             // change the backing column to the olap version
-            LogicalColumn olapCol =
-                ModelerConversionUtil.findCorrespondingOlapColumn( theMeasure.getLogicalColumn(), lModel );
+            LogicalColumn olapCol = olapColumns.findColumn( theMeasure.getLogicalColumn() );
             theMeasure.setLogicalColumn( olapCol );
           }
 
@@ -892,23 +897,23 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     lModel = this.getLogicalModel( ModelerPerspective.REPORTING );
     int i = 1;
     for ( Category cat : lModel.getCategories() ) {
-      String catName =
-          BaseModelerWorkspaceHelper.getCleanCategoryName( cat.getName( workspaceHelper.getLocale() ), this, i++ );
+      String catName = BaseModelerWorkspaceHelper.getCleanCategoryName( cat.getName( getLocale() ), this, i++ );
       CategoryMetaData catMeta = new CategoryMetaData( catName );
       for ( LogicalColumn col : cat.getLogicalColumns() ) {
         LogicalTable table = col.getLogicalTable();
 
         if ( !table.getLogicalColumns().contains( col ) ) {
           table.addLogicalColumn( col );
+          domainChanged();
         }
 
         Object formatMask = col.getProperty( "mask" );
-        String colName = col.getName( workspaceHelper.getLocale() );
+        String colName = col.getName( getLocale() );
         AggregationType aggType = col.getAggregationType();
 
         FieldMetaData field =
             new FieldMetaData( catMeta, colName, formatMask == null ? null : formatMask.toString(), colName,
-                workspaceHelper.getLocale() );
+                getLocale() );
         if ( aggType != null ) {
           field.setDefaultAggregation( aggType );
         } else {
@@ -924,6 +929,193 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     this.setModelIsChanging( false, true );
     this.setRelationalModelIsChanging( false, true );
 
+    if ( history != null ) {
+      // a freshly loaded domain is not undoable
+      history.clear();
+      history.checkpoint();
+    }
+  }
+
+  /**
+   * Loads a domain together with model trees already describing it, as recorded from another workspace, instead of
+   * hydrating the trees from the olap and category metadata of the domain. Node properties the domain does not hold,
+   * such as member annotations and data roles, are kept. The recorded trees are copied, not adopted.
+   *
+   * @param replacements
+   *          objects the recorded nodes refer to, such as logical columns, and what the copies refer to instead
+   */
+  public void setDomain( Domain d, NodeSnapshot model, NodeSnapshot relationalModel,
+      Map<Object, Object> replacements ) {
+    this.domain = d;
+    markAllSubtreesDirty();
+    domainChanged();
+    this.setModelIsChanging( true );
+    this.setRelationalModelIsChanging( true );
+    this.model.getDimensions().clear();
+    this.model.getMeasures().clear();
+    this.relationalModel.getCategories().clear();
+    this.availableTables.clear();
+
+    loadAvailableTables();
+    model.copyInto( this.model, replacements );
+    relationalModel.copyInto( this.relationalModel, replacements );
+
+    this.setModelIsChanging( false, true );
+    this.setRelationalModelIsChanging( false, true );
+
+    if ( history != null ) {
+      history.clear();
+      history.checkpoint();
+    }
+  }
+
+  private void loadAvailableTables() {
+    List<IAvailableItem> items = new ArrayList<IAvailableItem>();
+    for ( IPhysicalTable table : domain.getPhysicalModels().get( 0 ).getPhysicalTables() ) {
+      Boolean isFact = (Boolean) table.getProperty( "FACT_TABLE" );
+      items.add( new AvailableTable( table, isFact == null ? false : isFact.booleanValue() ) );
+    }
+
+    availableTables.setChildren( items );
+
+    fireTablesChanged();
+
+    LogicalModel lModel = domain.getLogicalModels().get( 0 );
+
+    setModelName( lModel.getName( getLocale() ) );
+    setRelationalModelName( lModel.getName( getLocale() ) );
+
+    // Set the type of modeling session. This will propagate to the UI
+    if ( supportsOlap( domain ) ) {
+      this.setModellingMode( ModelerMode.ANALYSIS_AND_REPORTING );
+    } else {
+      this.setModellingMode( ModelerMode.REPORTING_ONLY );
+    }
+  }
+
+  /**
+   * Rebuilds the modeler tree of one OLAP dimension, repointing level and member property columns to the OLAP copies.
+   * Touches nothing but the dimension itself, so independent dimensions can be hydrated concurrently.
+   */
+  private DimensionMetaData hydrateDimension( OlapDimension theDimension, OlapColumnMap olapColumns, String locale ) {
+    DimensionMetaData theDimensionMD = new DimensionMetaData( theDimension.getName(), theDimension.getType() );
+    theDimensionMD.setTimeDimension( theDimension.isTimeDimension() );
+    List<OlapHierarchy> theHierarchies = (List) theDimension.getHierarchies();
+    Iterator<OlapHierarchy> theHierarchiesItr = theHierarchies.iterator();
+    while ( theHierarchiesItr.hasNext() ) {
+      OlapHierarchy theHierarchy = theHierarchiesItr.next();
+      HierarchyMetaData theHierarchyMD = new HierarchyMetaData( theHierarchy.getName() );
+
+      List<OlapHierarchyLevel> theLevels = theHierarchy.getHierarchyLevels();
+      Iterator<OlapHierarchyLevel> theLevelsItr = theLevels.iterator();
+      while ( theLevelsItr.hasNext() ) {
+        OlapHierarchyLevel theLevel = theLevelsItr.next();
+        LevelMetaData theLevelMD = new LevelMetaData( theHierarchyMD, theLevel.getName() );
+
+        theLevelMD.setParent( theHierarchyMD );
+
+        theLevelMD.setUniqueMembers( theLevel.isHavingUniqueMembers() );
+        if ( theDimensionMD.isTimeDimension() ) {
+          TimeRole role = TimeRole.fromMondrianAttributeValue( theLevel.getLevelType() );
+          if ( role != null ) {
+            theLevelMD.setDataRole( role );
+          }
+        }
+
+        // Make sure we're dealing with the OLAP copy. Note that duplicated columns will have an OLAP_[0-9]+ at the
+        // end
+        String refID;
+        LogicalColumn olapCol;
+
+        olapCol = theLevel.getReferenceColumn();
+        if ( olapCol != null ) {
+          refID = olapCol.getId();
+          if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
+              && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
+            olapCol = olapColumns.findColumn( olapCol );
+            theLevel.setReferenceColumn( olapCol );
+          }
+          theLevelMD.setLogicalColumn( olapCol );
+        }
+
+        olapCol = theLevel.getReferenceOrdinalColumn();
+        if ( olapCol != null ) {
+          refID = olapCol.getId();
+          if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
+              && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
+            olapCol = olapColumns.findColumn( olapCol );
+            theLevel.setReferenceOrdinalColumn( olapCol );
+          }
+          theLevelMD.setLogicalOrdinalColumn( olapCol );
+        }
+
+        olapCol = theLevel.getReferenceCaptionColumn();
+        if ( olapCol != null ) {
+          refID = olapCol.getId();
+          if ( !refID.endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
+              && !refID.contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
+            olapCol = olapColumns.findColumn( olapCol );
+            theLevel.setReferenceCaptionColumn( olapCol );
+          }
+          theLevelMD.setLogicalCaptionColumn( olapCol );
+        }
+        // get any logicalColumns and turn them into member properties
+        if ( theLevel.getLogicalColumns() != null && theLevel.getLogicalColumns().size() > 0 ) {
+          for ( LogicalColumn lc : theLevel.getLogicalColumns() ) {
+            // BISERVER-11578 - Protect against null lc's in the collection. We still need to
+            // investigate why this can happen in the model.
+            if ( lc == null ) {
+              continue;
+            }
+
+            if ( !lc.getId().endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX )
+                && !lc.getId().contains( BaseModelerWorkspaceHelper.OLAP_SUFFIX + "_" ) ) {
+              // not pointing to the olap col
+              lc = olapColumns.findColumn( lc );
+            }
+            MemberPropertyMetaData memberProp = new MemberPropertyMetaData( theLevelMD, lc.getName( locale ) );
+            memberProp.setLogicalColumn( lc );
+            memberProp.setDescription( lc.getDescription( locale ) );
+            theLevelMD.add( memberProp );
+          }
+        }
+        List<OlapAnnotation> annotations = theLevel.getAnnotations();
+        if ( annotations != null ) {
+          for ( OlapAnnotation anno : annotations ) {
+            IMemberAnnotation annoMeta = MemberAnnotationFactory.create( anno );
+            theLevelMD.getMemberAnnotations().put( anno.getName(), annoMeta );
+          }
+        }
+        theHierarchyMD.add( theLevelMD );
+      }
+
+      theHierarchyMD.setParent( theDimensionMD );
+      theDimensionMD.add( theHierarchyMD );
+    }
+    return theDimensionMD;
+  }
+
+  private List<DimensionMetaData> hydrateDimensions( final List<OlapDimension> dimensions,
+      final OlapColumnMap olapColumns ) {
+    final String locale = getLocale();
+    final DimensionMetaData[] hydrated = new DimensionMetaData[dimensions.size()];
+    if ( hydrationExecutor == null || dimensions.size() < 2 ) {
+      for ( int i = 0; i < hydrated.length; i++ ) {
+        hydrated[i] = hydrateDimension( dimensions.get( i ), olapColumns, locale );
+      }
+    } else {
+      List<Runnable> tasks = new ArrayList<Runnable>( hydrated.length );
+      for ( int i = 0; i < hydrated.length; i++ ) {
+        final int index = i;
+        tasks.add( new Runnable() {
+          public void run() {
+            hydrated[index] = hydrateDimension( dimensions.get( index ), olapColumns, locale );
+          }
+        } );
+      }
+      hydrationExecutor.runAll( tasks );
+    }
+    return Arrays.asList( hydrated );
   }
 
   private void upConvertMeasuresAndDimensions() {
@@ -936,6 +1128,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     for ( LogicalTable table : model.getLogicalTables() ) {
       table.getLogicalColumns().clear();
     }
+    domainChanged();
 
     // set the dimension logical column references to the new olap columns
     for ( DimensionMetaData dim : getModel().getDimensions() ) {
@@ -997,6 +1190,10 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   public void setModelIsChanging( boolean changing, boolean fireChanged ) {
     this.modelIsChanging = changing;
     if ( !changing && fireChanged ) {
+      if ( isBatching() ) {
+        batchTablesChanged = true;
+        return;
+      }
       fireTablesChanged();
       model.validateTree();
       isValid();
@@ -1011,6 +1208,11 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   public void setRelationalModelIsChanging( boolean changing, boolean fireChanged ) {
     this.modelIsChanging = changing;
     if ( !changing && fireChanged ) {
+      if ( isBatching() ) {
+        batchTablesChanged = true;
+        batchRelationalChanged = true;
+        return;
+      }
       fireTablesChanged();
       relationalModel.validateTree();
       isValid();
@@ -1018,6 +1220,145 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     }
   }
 
+  /**
+   * Flags a part of the model as changed since the domain was last populated, so the next
+   * {@link BaseModelerWorkspaceHelper#syncDomain(ModelerWorkspace)} rewrites it. Structural changes to the dimension,
+   * measure and category collections and property changes fired by their nodes are tracked automatically; this is
+   * for edits made behind the nodes, such as on their logical columns.
+   */
+  public void markSubtreeDirty( ModelSubtree subtree ) {
+    dirtySubtrees.add( subtree );
+  }
+
+  /**
+   * @return a counter that moves whenever a node is added to or removed from the model trees, a column backed node is
+   *         given another logical column or the model is replaced; lookups over the trees can cache by it
+   */
+  public int getModelRevision() {
+    return modelRevision;
+  }
+
+  /**
+   * Called by a node of this workspace's trees when their structure changes.
+   */
+  public void modelChanged() {
+    modelRevision++;
+  }
+
+  public void markAllSubtreesDirty() {
+    dirtySubtrees.addAll( EnumSet.allOf( ModelSubtree.class ) );
+  }
+
+  public boolean isSubtreeDirty( ModelSubtree subtree ) {
+    return dirtySubtrees.contains( subtree );
+  }
+
+  public Set<ModelSubtree> getDirtySubtrees() {
+    return Collections.unmodifiableSet( dirtySubtrees );
+  }
+
+  public void clearDirtySubtrees( Set<ModelSubtree> synced ) {
+    dirtySubtrees.removeAll( synced );
+  }
+
+  /**
+   * Opens a bulk edit session. Until the returned batch is committed, node validation, "children" notifications and
+   * the model change notifications of {@link #setModelIsChanging(boolean)} are deferred; the outermost commit
+   * validates the model trees once, fires each touched node's notification once and then fires a single model change.
+   */
+  public ModelerBatch beginBatch() {
+    if ( batchDepth++ == 0 ) {
+      batchTouched = new ArrayList<AbstractMetaDataModelNode>();
+      batchSeen = new IdentityHashMap<AbstractMetaDataModelNode, Boolean>();
+    }
+    return new ModelerBatch( this );
+  }
+
+  public boolean isBatching() {
+    return batchDepth > 0;
+  }
+
+  void endBatch() {
+    if ( batchDepth == 0 || --batchDepth > 0 ) {
+      return;
+    }
+    List<AbstractMetaDataModelNode> touched = batchTouched;
+    boolean tablesChanged = batchTablesChanged;
+    boolean relationalChanged = batchRelationalChanged;
+    batchTouched = null;
+    batchSeen = null;
+    batchTablesChanged = false;
+    batchRelationalChanged = false;
+
+    // property edits are not recorded, so the trees are validated whether or not a node was touched
+    if ( model != null ) {
+      model.validateTree();
+    }
+    if ( relationalModel != null ) {
+      relationalModel.validateTree();
+    }
+    if ( tablesChanged ) {
+      fireTablesChanged();
+    }
+    boolean changing = modelIsChanging;
+    // the root listeners would fire a model change per replayed notification
+    modelIsChanging = true;
+    batchDelivered = new IdentityHashMap<AbstractMetaDataModelNode, Boolean>();
+    try {
+      for ( AbstractMetaDataModelNode node : touched ) {
+        relationalChanged |= relationalModel != null && node.getRoot() == relationalModel;
+        node.fireDeferredCollectionChanged();
+      }
+    } finally {
+      batchDelivered = null;
+      modelIsChanging = changing;
+    }
+    if ( model != null && relationalModel != null ) {
+      isValid();
+    }
+    if ( relationalChanged ) {
+      fireRelationalModelChanged();
+    }
+    if ( model != null ) {
+      fireModelChanged();
+    }
+  }
+
+  /**
+   * Called by a node before it fires its "children" notification.
+   *
+   * @return true if the notification must not be fired now, either because a batch is open (it is recorded and
+   *         delivered on commit) or because the committing batch already delivered it for this node.
+   */
+  public boolean deferCollectionChanged( AbstractMetaDataModelNode node ) {
+    if ( batchDepth > 0 ) {
+      if ( batchSeen.put( node, Boolean.TRUE ) == null ) {
+        batchTouched.add( node );
+      }
+      markSubtreeDirtyFor( node );
+      return true;
+    }
+    return batchDelivered != null && batchDelivered.put( node, Boolean.TRUE ) != null;
+  }
+
+  /**
+   * Flags the subtree holding the given node, if it belongs to this workspace's trees.
+   */
+  public void markSubtreeDirtyFor( AbstractModelNode node ) {
+    for ( ; node != null; node = node.getParent() ) {
+      if ( model != null && node == model.getDimensions() ) {
+        markSubtreeDirty( ModelSubtree.DIMENSIONS );
+        return;
+      } else if ( model != null && node == model.getMeasures() ) {
+        markSubtreeDirty( ModelSubtree.MEASURES );
+        return;
+      } else if ( relationalModel != null && node == relationalModel.getCategories() ) {
+        markSubtreeDirty( ModelSubtree.CATEGORIES );
+        return;
+      }
+    }
+  }
+
   @Bindable
   public boolean isModelChanging() {
     return modelIsChanging;
@@ -1114,7 +1455,7 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   }
 
   public ColumnBackedNode createColumnBackedNode( AvailableField field, ModelerPerspective perspective ) {
-    String locale = workspaceHelper.getLocale();
+    String locale = getLocale();
     ColumnBackedNode node = new BaseColumnBackedMetaData( field.getName() );
     LogicalTable lTab = findLogicalTable( field.getPhysicalColumn().getPhysicalTable(), perspective );
     LogicalColumn lCol = null;
@@ -1141,10 +1482,13 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
         colId += BaseModelerWorkspaceHelper.OLAP_SUFFIX;
       }
 
-      colId = BaseModelerWorkspaceHelper.uniquify( colId, lTab.getLogicalColumns() );
+      LogicalModelIndex index = getLookupIndex( perspective );
+      colId = index.getColumnIds( lTab ).uniquify( colId );
       lCol.setId( colId );
 
       lTab.addLogicalColumn( lCol );
+      domainChanged();
+      index.addColumn( lCol, domainRevision );
     }
 
     node.setLogicalColumn( lCol );
@@ -1152,30 +1496,11 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
   }
 
   public LogicalColumn findLogicalColumn( IPhysicalColumn column, ModelerPerspective perspective ) {
-    LogicalColumn col = null;
-    IPhysicalTable physicalTable = column.getPhysicalTable();
-    LogicalModel logicalModel = this.getLogicalModel( perspective );
-    if ( logicalModel == null ) {
-      return col;
-    }
-    for ( LogicalTable table : logicalModel.getLogicalTables() ) {
-      if ( table.getPhysicalTable().getId().equals( physicalTable.getId() ) ) {
-        if ( ( perspective == ModelerPerspective.ANALYSIS && table.getId().endsWith(
-            BaseModelerWorkspaceHelper.OLAP_SUFFIX ) )
-            || ( perspective == ModelerPerspective.REPORTING && !table.getId().endsWith(
-                BaseModelerWorkspaceHelper.OLAP_SUFFIX ) ) ) {
-
-          for ( LogicalColumn lCol : table.getLogicalColumns() ) {
-            if ( lCol.getPhysicalColumn().getId().equals( column.getId() ) ) {
-              return lCol;
-            }
-          }
-
-        }
-      }
+    LogicalModelIndex index = getLookupIndex( perspective );
+    if ( index == null ) {
+      return null;
     }
-
-    return col;
+    return index.findColumn( column );
   }
 
   @Bindable
@@ -1206,22 +1531,91 @@ public class ModelerWorkspace extends XulEventSourceAdapter implements Serializa
     }
   }
 
+  /**
+   * Turns a physical name into an id fragment: separators and brackets become underscores, quotes are dropped and
+   * runs of underscores collapse to one. Done in a single scan; names that need no change are returned as is.
+   */
   public static final String toId( String name ) {
     if ( name == null ) {
       return name;
     }
-    name = name.replaceAll( "[ .,:(){}\\[\\]]", "_" ); //$NON-NLS-1$ //$NON-NLS-2$
-    name = name.replaceAll( "[\"`']", "" ); //$NON-NLS-1$ //$NON-NLS-2$
-    name = name.replaceAll( "_+", "_" ); //$NON-NLS-1$ //$NON-NLS-2$
-    return name;
+    int length = name.length();
+    int i = 0;
+    char prev = 0;
+    for ( ; i < length; i++ ) {
+      char c = name.charAt( i );
+      if ( isIdQuote( c ) || isIdSeparator( c ) && c != '_' || c == '_' && prev == '_' ) {
+        break;
+      }
+      prev = c;
+    }
+    if ( i == length ) {
+      return name;
+    }
+    char[] buffer = new char[ length ];
+    name.getChars( 0, i, buffer, 0 );
+    int pos = i;
+    for ( ; i < length; i++ ) {
+      char c = name.charAt( i );
+      if ( isIdQuote( c ) ) {
+        continue;
+      }
+      if ( isIdSeparator( c ) ) {
+        if ( pos > 0 && buffer[ pos - 1 ] == '_' ) {
+          continue;
+        }
+        c = '_';
+      }
+      buffer[ pos++ ] = c;
+    }
+    return new String( buffer, 0, pos );
   }
 
   public static final String removeQuotes( String name ) {
     if ( name == null ) {
       return name;
     }
-    name = name.replaceAll( "[\"`']", "" ); //$NON-NLS-1$ //$NON-NLS-2$
-    return name;
+    int length = name.length();
+    int i = 0;
+    while ( i < length && !isIdQuote( name.charAt( i ) ) ) {
+      i++;
+    }
+    if ( i == length ) {
+      return name;
+    }
+    char[] buffer = new char[ length ];
+    name.getChars( 0, i, buffer, 0 );
+    int pos = i;
+    for ( ; i < length; i++ ) {
+      char c = name.charAt( i );
+      if ( !isIdQuote( c ) ) {
+        buffer[ pos++ ] = c;
+      }
+    }
+    return new String( buffer, 0, pos );
+  }
+
+  private static boolean isIdQuote( char c ) {
+    return c == '"' || c == '`' || c == '\'';
+  }
+
+  private static boolean isIdSeparator( char c ) {
+    switch ( c ) {
+      case '_':
+      case ' ':
+      case '.':
+      case ',':
+      case ':':
+      case '(':
+      case ')':
+      case '{':
+      case '}':
+      case '[':
+      case ']':
+        return true;
+      default:
+        return false;
+    }
   }
 
 }
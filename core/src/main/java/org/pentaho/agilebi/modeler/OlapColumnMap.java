@@ -0,0 +1,71 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
+
+/**
+ * One-time map from relational logical tables and columns to their copies in the OLAP {@link LogicalModel}, keyed by
+ * physical table and physical column id. Answers the same as {@link ModelerConversionUtil#findCorrespondingOlapTable}
+ * and {@link ModelerConversionUtil#findCorrespondingOlapColumn} without scanning the model on every call, so it must be
+ * rebuilt if tables or columns are added to the OLAP model afterwards. Tables and columns without a physical one are
+ * left out.
+ */
+class OlapColumnMap {
+
+  private final Map<String, LogicalTable> tablesByPhysicalId = new HashMap<String, LogicalTable>();
+  private final Map<String, Map<String, LogicalColumn>> columnsByPhysicalId =
+      new HashMap<String, Map<String, LogicalColumn>>();
+
+  OlapColumnMap( LogicalModel olapModel ) {
+    for ( LogicalTable table : olapModel.getLogicalTables() ) {
+      if ( table.getPhysicalTable() == null ) {
+        continue;
+      }
+      String physicalTableId = table.getPhysicalTable().getId();
+      if ( tablesByPhysicalId.containsKey( physicalTableId ) ) {
+        // only the first table of a physical table is ever matched
+        continue;
+      }
+      tablesByPhysicalId.put( physicalTableId, table );
+      Map<String, LogicalColumn> columns = new HashMap<String, LogicalColumn>();
+      for ( LogicalColumn column : table.getLogicalColumns() ) {
+        if ( column.getPhysicalColumn() == null ) {
+          // cannot be matched, and only fails the lookups that reach it
+          continue;
+        }
+        String physicalColumnId = column.getPhysicalColumn().getId();
+        if ( !columns.containsKey( physicalColumnId ) ) {
+          columns.put( physicalColumnId, column );
+        }
+      }
+      columnsByPhysicalId.put( physicalTableId, columns );
+    }
+  }
+
+  LogicalTable findTable( LogicalTable relationalTable ) {
+    return tablesByPhysicalId.get( relationalTable.getPhysicalTable().getId() );
+  }
+
+  LogicalColumn findColumn( LogicalColumn relationalColumn ) {
+    Map<String, LogicalColumn> columns =
+        columnsByPhysicalId.get( relationalColumn.getLogicalTable().getPhysicalTable().getId() );
+    return columns == null ? null : columns.get( relationalColumn.getPhysicalColumn().getId() );
+  }
+}
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.pentaho.agilebi.modeler.ColumnBackedNode;
+import org.pentaho.agilebi.modeler.ModelerBatch;
 import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.nodes.AvailableField;
@@ -99,6 +100,12 @@ public class GeoContext extends AbstractModelList<GeoRole> {
   }
 
   public List<DimensionMetaData> buildDimensions( ModelerWorkspace workspace ) {
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      return buildGeoDimensions( workspace );
+    }
+  }
+
+  private List<DimensionMetaData> buildGeoDimensions( ModelerWorkspace workspace ) {
     List<DimensionMetaData> geoDims = new ArrayList<DimensionMetaData>();
     List<AvailableTable> tableList = workspace.getAvailableTables().getAsAvailableTablesList();
 
@@ -172,8 +179,7 @@ public class GeoContext extends AbstractModelList<GeoRole> {
 
       if ( locationFieldDetected ) {
         locationField =
-            determineLocationField( table, locationRole, latColIndex, lonColIndex, workspace.getWorkspaceHelper()
-                .getLocale() );
+            determineLocationField( table, locationRole, latColIndex, lonColIndex, workspace.getLocale() );
       }
 
       if ( levels.size() > 0 ) {
@@ -224,7 +230,7 @@ public class GeoContext extends AbstractModelList<GeoRole> {
 
                 ColumnBackedNode tmp = workspace.createColumnBackedNode( latField, ModelerPerspective.ANALYSIS );
                 tmp.getLogicalColumn().setName(
-                    new LocalizedString( workspace.getWorkspaceHelper().getLocale(), LATITUDE ) );
+                    new LocalizedString( workspace.getLocale(), LATITUDE ) );
                 MemberPropertyMetaData memberProp =
                     workspace.createMemberPropertyForParentWithNode( existingLevel, tmp );
                 memberProp.setName( LATITUDE );
@@ -232,7 +238,7 @@ public class GeoContext extends AbstractModelList<GeoRole> {
 
                 tmp = workspace.createColumnBackedNode( lonField, ModelerPerspective.ANALYSIS );
                 tmp.getLogicalColumn().setName(
-                    new LocalizedString( workspace.getWorkspaceHelper().getLocale(), LONGITUDE ) );
+                    new LocalizedString( workspace.getLocale(), LONGITUDE ) );
                 memberProp = workspace.createMemberPropertyForParentWithNode( existingLevel, tmp );
                 memberProp.setName( LONGITUDE );
                 existingLevel.add( memberProp );
@@ -409,13 +415,15 @@ public class GeoContext extends AbstractModelList<GeoRole> {
       table.findFieldByPhysicalColumn( table.getPhysicalTable().getPhysicalColumns().get( lonColIndex ) );
 
     ColumnBackedNode tmp = workspace.createColumnBackedNode( latField, ModelerPerspective.ANALYSIS );
-    tmp.getLogicalColumn().setName( new LocalizedString( workspace.getWorkspaceHelper().getLocale(), LATITUDE ) );
+    tmp.getLogicalColumn().setName( new LocalizedString( workspace.getLocale(), LATITUDE ) );
+    workspace.domainChanged();
     MemberPropertyMetaData memberProp = workspace.createMemberPropertyForParentWithNode( locationLevel, tmp );
     memberProp.setName( LATITUDE );
     locationLevel.add( memberProp );
 
     tmp = workspace.createColumnBackedNode( lonField, ModelerPerspective.ANALYSIS );
-    tmp.getLogicalColumn().setName( new LocalizedString( workspace.getWorkspaceHelper().getLocale(), LONGITUDE ) );
+    tmp.getLogicalColumn().setName( new LocalizedString( workspace.getLocale(), LONGITUDE ) );
+    workspace.domainChanged();
     memberProp = workspace.createMemberPropertyForParentWithNode( locationLevel, tmp );
     memberProp.setName( LONGITUDE );
     locationLevel.add( memberProp );
@@ -0,0 +1,336 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.i18n.BaseMessages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Orders the annotations of a group so that every annotation is applied after the annotations that create the model
+ * elements it needs. Dependencies come from {@link AnnotationType#getProvidedKeys()} and
+ * {@link AnnotationType#getRequiredKeys()}; a required key that no annotation in the group provides is expected to
+ * already exist in the model and adds no edge. Keys are matched ignoring case, as Mondrian matches names. Annotations
+ * caught in a dependency cycle are released in their original order.
+ */
+class AnnotationPlanner {
+
+  private static final Class<?> MSG_CLASS = AnnotationType.MSG_CLASS;
+
+  private static final String MEASURE_KEY = "measure:";
+  private static final String HIERARCHY_KEY = "hierarchy:";
+  private static final String ATTRIBUTE_KEY = "attribute:";
+  private static final String DIMENSION_KEY = "dimensionkey:";
+  private static final String MEASURE_REFERENCE = "[" + AnnotationType.MEASURES_DIMENSION + "].[";
+
+  private final List<ModelAnnotation> annotations;
+  private final int[][] dependencies;
+  private final List<List<String>> unresolved;
+  private final boolean[] cyclic;
+  private final int[] order;
+
+  AnnotationPlanner( final List<ModelAnnotation> annotations ) {
+    this.annotations = annotations;
+    int size = annotations.size();
+    dependencies = new int[size][];
+    unresolved = new ArrayList<List<String>>( size );
+    cyclic = new boolean[size];
+
+    Map<String, List<Integer>> providers = new HashMap<String, List<Integer>>();
+    for ( int i = 0; i < size; i++ ) {
+      for ( String key : getAnnotationType( i ).getProvidedKeys() ) {
+        List<Integer> keyProviders = providers.get( normalize( key ) );
+        if ( keyProviders == null ) {
+          keyProviders = new ArrayList<Integer>( 1 );
+          providers.put( normalize( key ), keyProviders );
+        }
+        keyProviders.add( i );
+      }
+    }
+
+    for ( int i = 0; i < size; i++ ) {
+      Set<Integer> edges = new LinkedHashSet<Integer>();
+      List<String> missing = new ArrayList<String>( 0 );
+      for ( String key : getAnnotationType( i ).getRequiredKeys() ) {
+        List<Integer> keyProviders = providers.get( normalize( key ) );
+        if ( keyProviders == null ) {
+          missing.add( key );
+          continue;
+        }
+        for ( Integer provider : keyProviders ) {
+          if ( provider != i ) {
+            edges.add( provider );
+          }
+        }
+      }
+      dependencies[i] = toArray( edges );
+      unresolved.add( missing );
+    }
+    order = sort();
+  }
+
+  /**
+   * @return the number of annotations in the plan
+   */
+  int size() {
+    return annotations.size();
+  }
+
+  ModelAnnotation get( final int index ) {
+    return annotations.get( index );
+  }
+
+  /**
+   * @return annotation indexes in application order
+   */
+  int[] getOrder() {
+    return order;
+  }
+
+  /**
+   * @return indexes of the annotations in the group that the annotation at {@code index} depends on
+   */
+  int[] getDependencies( final int index ) {
+    return dependencies[index];
+  }
+
+  boolean isCyclic( final int index ) {
+    return cyclic[index];
+  }
+
+  /**
+   * @return required keys of the annotation at {@code index} that no annotation in the group provides
+   */
+  List<String> getUnresolvedKeys( final int index ) {
+    return unresolved.get( index );
+  }
+
+  /**
+   * @return the first dependency of the annotation at {@code index} marked in {@code failed}, or -1
+   */
+  int findFailedDependency( final int index, final boolean[] failed ) {
+    for ( int dependency : dependencies[index] ) {
+      if ( failed[dependency] ) {
+        return dependency;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Explains why the annotation at {@code index} did not apply, naming the dependency that is most likely at fault.
+   */
+  String describeFailure( final int index, final boolean[] failed ) {
+    String label = label( index );
+    int failedDependency = findFailedDependency( index, failed );
+    if ( failedDependency >= 0 ) {
+      return BaseMessages.getString( MSG_CLASS, "ModelAnnotationGroup.apply.DEPENDENCY_FAILED", label,
+        label( failedDependency ) );
+    }
+    if ( cyclic[index] ) {
+      return BaseMessages.getString( MSG_CLASS, "ModelAnnotationGroup.apply.DEPENDENCY_CYCLE", label,
+        labels( dependencies[index] ) );
+    }
+    List<String> missing = unresolved.get( index );
+    if ( !missing.isEmpty() ) {
+      return BaseMessages.getString( MSG_CLASS, "ModelAnnotationGroup.apply.UNRESOLVED_DEPENDENCY", label,
+        StringUtils.join( missing, ", " ) );
+    }
+    return BaseMessages.getString( MSG_CLASS, "ModelAnnotationGroup.apply.FAILED", label );
+  }
+
+  private AnnotationType getAnnotationType( final int index ) {
+    return annotations.get( index ).getAnnotation();
+  }
+
+  private String label( final int index ) {
+    ModelAnnotation modelAnnotation = annotations.get( index );
+    AnnotationType annotationType = modelAnnotation.getAnnotation();
+    String name = annotationType == null ? null : annotationType.getName();
+    if ( StringUtils.isBlank( name ) ) {
+      name = modelAnnotation.getName();
+    }
+    return modelAnnotation.getType() == null ? name : modelAnnotation.getType().description() + " " + name;
+  }
+
+  private String labels( final int[] indexes ) {
+    List<String> names = new ArrayList<String>( indexes.length );
+    for ( int index : indexes ) {
+      names.add( label( index ) );
+    }
+    return StringUtils.join( names, ", " );
+  }
+
+  /**
+   * Kahn's algorithm, always picking the lowest original index that is ready so the original order is kept wherever
+   * the dependencies allow it.
+   */
+  private int[] sort() {
+    int size = annotations.size();
+    int[] pending = new int[size];
+    List<List<Integer>> dependents = new ArrayList<List<Integer>>( size );
+    for ( int i = 0; i < size; i++ ) {
+      dependents.add( new ArrayList<Integer>( 0 ) );
+    }
+    PriorityQueue<Integer> ready = new PriorityQueue<Integer>();
+    for ( int i = 0; i < size; i++ ) {
+      pending[i] = dependencies[i].length;
+      for ( int dependency : dependencies[i] ) {
+        dependents.get( dependency ).add( i );
+      }
+      if ( pending[i] == 0 ) {
+        ready.add( i );
+      }
+    }
+
+    int[] sorted = new int[size];
+    boolean[] placed = new boolean[size];
+    int count = 0;
+    while ( count < size ) {
+      if ( ready.isEmpty() ) {
+        // everything left waits on a cycle; release its first member and carry on
+        int release = releaseCycle( placed );
+        pending[release] = 0;
+        ready.add( release );
+      }
+      int next = ready.poll();
+      if ( placed[next] ) {
+        continue;
+      }
+      placed[next] = true;
+      sorted[count++] = next;
+      for ( int dependent : dependents.get( next ) ) {
+        if ( --pending[dependent] == 0 ) {
+          ready.add( dependent );
+        }
+      }
+    }
+    return sorted;
+  }
+
+  private int releaseCycle( final boolean[] placed ) {
+    int release = -1;
+    for ( int i = 0; i < placed.length; i++ ) {
+      if ( !placed[i] && reachesItself( i, placed ) ) {
+        cyclic[i] = true;
+        if ( release < 0 ) {
+          release = i;
+        }
+      }
+    }
+    return release;
+  }
+
+  private boolean reachesItself( final int start, final boolean[] placed ) {
+    boolean[] visited = new boolean[placed.length];
+    List<Integer> stack = new ArrayList<Integer>();
+    stack.add( start );
+    while ( !stack.isEmpty() ) {
+      int current = stack.remove( stack.size() - 1 );
+      for ( int dependency : dependencies[current] ) {
+        if ( dependency == start ) {
+          return true;
+        }
+        if ( !placed[dependency] && !visited[dependency] ) {
+          visited[dependency] = true;
+          stack.add( dependency );
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String normalize( final String key ) {
+    return key.toLowerCase( Locale.ROOT );
+  }
+
+  private static int[] toArray( final Set<Integer> values ) {
+    int[] array = new int[values.size()];
+    int i = 0;
+    for ( Integer value : values ) {
+      array[i++] = value;
+    }
+    return array;
+  }
+
+  static String measureKey( final String name ) {
+    return MEASURE_KEY + name;
+  }
+
+  static String hierarchyKey( final String dimension, final String hierarchy ) {
+    return HIERARCHY_KEY + dimension + "/" + ( StringUtils.isBlank( hierarchy ) ? dimension : hierarchy );
+  }
+
+  static String attributeKey( final String dimension, final String hierarchy, final String attribute ) {
+    return ATTRIBUTE_KEY + dimension + "/" + ( StringUtils.isBlank( hierarchy ) ? dimension : hierarchy ) + "/"
+      + attribute;
+  }
+
+  static String dimensionKey( final String dimension ) {
+    return DIMENSION_KEY + dimension;
+  }
+
+  /**
+   * @return measure keys for every {@code [Measures].[name]} reference in an MDX expression
+   */
+  static List<String> measureReferences( final String formula ) {
+    if ( StringUtils.isBlank( formula ) ) {
+      return Collections.emptyList();
+    }
+    List<String> keys = new ArrayList<String>( 1 );
+    int length = formula.length();
+    int start = 0;
+    while ( ( start = indexOfIgnoreCase( formula, MEASURE_REFERENCE, start ) ) >= 0 ) {
+      StringBuilder name = new StringBuilder();
+      int i = start + MEASURE_REFERENCE.length();
+      for ( ; i < length; i++ ) {
+        char c = formula.charAt( i );
+        if ( c == ']' ) {
+          if ( i + 1 < length && formula.charAt( i + 1 ) == ']' ) {
+            // escaped bracket inside the member name
+            name.append( c );
+            i++;
+            continue;
+          }
+          break;
+        }
+        name.append( c );
+      }
+      String key = measureKey( name.toString() );
+      if ( i < length && !keys.contains( key ) ) {
+        keys.add( key );
+      }
+      start = i;
+    }
+    return keys;
+  }
+
+  private static int indexOfIgnoreCase( final String value, final String search, final int from ) {
+    for ( int i = from; i + search.length() <= value.length(); i++ ) {
+      if ( value.regionMatches( true, i, search, 0, search.length() ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
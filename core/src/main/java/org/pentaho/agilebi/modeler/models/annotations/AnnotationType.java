@@ -13,13 +13,9 @@
 
 package org.pentaho.agilebi.modeler.models.annotations;
 
-import org.apache.commons.beanutils.PropertyUtils;
-import org.apache.commons.lang.BooleanUtils;
-import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.apache.commons.lang.math.NumberUtils;
 import org.pentaho.agilebi.modeler.BaseModelerWorkspaceHelper;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerPerspective;
@@ -27,6 +23,8 @@ import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.geo.LocationRole;
 import org.pentaho.agilebi.modeler.models.annotations.data.GeneratedbyMemberAnnotation;
 import org.pentaho.agilebi.modeler.models.annotations.util.KeyValueClosure;
+import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
 import org.pentaho.agilebi.modeler.nodes.DimensionMetaDataCollection;
 import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
@@ -56,7 +54,6 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -97,123 +94,49 @@ public abstract class AnnotationType implements Serializable {
     return fields;
   }
 
-  public List<String> getModelPropertyIds() {
-
-    List<String> ids = new ArrayList<String>();
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        ids.add( mp.id() );
-      }
-    }
+  protected ModelPropertyDescriptor getModelPropertyDescriptor() {
+    return ModelPropertyDescriptor.forClass( getClass() );
+  }
 
-    return ids;
+  public List<String> getModelPropertyIds() {
+    return new ArrayList<String>( getModelPropertyDescriptor().getIds() );
   }
 
   public void setModelPropertyValueById( String id, Object value ) throws Exception {
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        if ( StringUtils.equals( mp.id(), id ) ) {
-          attemptAutoConvertAndAssign( f, value );
-        }
-      }
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getById( id );
+    if ( accessor != null ) {
+      attemptAutoConvertAndAssign( accessor.getField(), value );
     }
   }
 
   public Object getModelPropertyValueById( String id ) throws Exception {
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        if ( StringUtils.equals( mp.id(), id ) ) {
-          return PropertyUtils.getProperty( this, f.getName() );
-        }
-      }
-    }
-
-    return null;
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getById( id );
+    return accessor == null ? null : accessor.get( this );
   }
 
   public Object getModelPropertyValueByName( String name ) throws Exception {
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        if ( StringUtils.equals( mp.name(), name ) ) {
-          return PropertyUtils.getProperty( this, f.getName() );
-        }
-      }
-    }
-
-    return null;
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getByName( name );
+    return accessor == null ? null : accessor.get( this );
   }
 
   public Class getModelPropertyNameClassType( String name ) {
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        if ( StringUtils.equals( mp.name(), name ) ) {
-          return f.getType();
-        }
-      }
-    }
-
-    return null;
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getByName( name );
+    return accessor == null ? null : accessor.getType();
   }
 
   public List<String> getModelPropertyNames() {
-
-    final List<String> propertyNames = new ArrayList<String>();
-
-    for ( ModelProperty p : getModelProperties() ) {
-      propertyNames.add( p.name() );
-    }
-
-    return propertyNames;
+    return new ArrayList<String>( getModelPropertyDescriptor().getNames() );
   }
 
   public List<ModelProperty> getModelProperties() {
-    final List<ModelProperty> properties = new ArrayList<ModelProperty>();
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        properties.add( mp );
-      }
-    }
-
-    // Sort ModelProperty based on order
-    Collections.sort( properties, new Comparator<ModelProperty>() {
-      @Override
-      public int compare( ModelProperty m1, ModelProperty m2 ) {
-        if ( m1.order() <= m2.order() ) {
-          return -1;
-        }
-        return 1;
-      }
-    } );
-    return properties;
+    // sorted by order when the descriptor is built
+    return new ArrayList<ModelProperty>( getModelPropertyDescriptor().getModelProperties() );
   }
 
   public void setModelPropertyByName( String modelPropertyName, Object value ) throws Exception {
-
-    List<Field> fields = findAllFields( new ArrayList<Field>(), this.getClass() );
-    for ( Field f : fields ) {
-      if ( f.isAnnotationPresent( ModelProperty.class ) ) {
-        ModelProperty mp = f.getAnnotation( ModelProperty.class );
-        if ( StringUtils.equals( mp.name(), modelPropertyName ) ) {
-          attemptAutoConvertAndAssign( f, value );
-        }
-      }
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getByName( modelPropertyName );
+    if ( accessor != null ) {
+      attemptAutoConvertAndAssign( accessor.getField(), value );
     }
   }
 
@@ -223,59 +146,39 @@ public abstract class AnnotationType implements Serializable {
       return; // exit early
     }
 
+    ModelPropertyDescriptor.Accessor accessor = getModelPropertyDescriptor().getByField( field );
+    if ( accessor != null ) {
+      attemptAutoConvertAndAssign( accessor, value );
+    }
+  }
+
+  private void attemptAutoConvertAndAssign( final ModelPropertyDescriptor.Accessor accessor, final Object value )
+    throws Exception {
+
     if ( value == null ) {
       try {
-        PropertyUtils.setProperty( this, field.getName(), value );
+        accessor.set( this, value );
       } catch ( Exception e ) {
         // ignore
       }
       return; // exit early
     }
 
-    if ( value != null && ClassUtils.isAssignable( value.getClass(), field.getType(), true ) ) {
-      PropertyUtils.setProperty( this, field.getName(), value );
+    if ( accessor.isAssignable( value ) ) {
+      accessor.set( this, value );
     } else {
 
       try {
-        if ( ClassUtils.isAssignable( field.getType(), Boolean.class, true ) ) {
-          PropertyUtils.setProperty( this, field.getName(), BooleanUtils.toBoolean( value.toString() ) );
-          return;
-        }
-
-        if ( ClassUtils.isAssignable( field.getType(), AggregationType.class, true ) ) {
-          AggregationType type = AggregationType.valueOf( value.toString() );
-          if ( type != null ) {
-            PropertyUtils.setProperty( this, field.getName(), type );
-          }
-          return;
-        }
-
-        if ( ClassUtils.isAssignable( field.getType(), ModelAnnotation.TimeType.class, true ) ) {
-          ModelAnnotation.TimeType type = ModelAnnotation.TimeType.valueOf( value.toString() );
-          if ( type != null ) {
-            PropertyUtils.setProperty( this, field.getName(), type );
-          }
-          return;
-        }
-
-        if ( ClassUtils.isAssignable( field.getType(), ModelAnnotation.GeoType.class, true ) ) {
-          ModelAnnotation.GeoType type = ModelAnnotation.GeoType.valueOf( value.toString() );
-          if ( type != null ) {
-            PropertyUtils.setProperty( this, field.getName(), type );
-          }
-          return;
-        }
-
-        if ( NumberUtils.isNumber( value.toString() ) ) {
-          Number number = NumberUtils.createNumber( value.toString() );
-          PropertyUtils.setProperty( this, field.getName(), number );
+        Object converted = accessor.convert( value );
+        if ( converted != null ) {
+          accessor.set( this, converted );
         }
       } catch ( Exception e ) {
-        if ( value == null || StringUtils.isBlank( value.toString() ) ) {
+        if ( StringUtils.isBlank( value.toString() ) ) {
           return; // do not log
         }
         // ignore error but log
-        getLogger().warning( "Unable to convert " + value.toString() + " in to " + field.getType() );
+        getLogger().warning( "Unable to convert " + value.toString() + " in to " + accessor.getType() );
       }
     }
   }
@@ -283,8 +186,7 @@ public abstract class AnnotationType implements Serializable {
   public Map<String, Serializable> describe() {
     Map<String, Serializable> map = new HashMap<String, Serializable>();
 
-    List<String> ids = getModelPropertyIds();
-    for ( String id : ids ) {
+    for ( String id : getModelPropertyDescriptor().getIds() ) {
       try {
         Object value = getModelPropertyValueById( id );
         if ( value != null && isSerializable( value.getClass() ) ) {
@@ -327,7 +229,11 @@ public abstract class AnnotationType implements Serializable {
   }
 
   protected LevelMetaData locateLevel( final ModelerWorkspace workspace, final String column ) throws ModelerException {
-    String locale = workspace.getWorkspaceHelper().getLocale();
+    WorkspaceLookupIndex index = WorkspaceLookupIndex.get( workspace );
+    if ( index != null ) {
+      return index.findLevel( column );
+    }
+    String locale = workspace.getLocale();
     workspace.getModel().getDimensions();
     for ( DimensionMetaData dimensionMetaData : workspace.getModel().getDimensions() ) {
       for ( HierarchyMetaData hierarchyMetaData : dimensionMetaData ) {
@@ -343,12 +249,21 @@ public abstract class AnnotationType implements Serializable {
   }
 
   protected LevelMetaData locateLocationLevel( final ModelerWorkspace workspace ) throws ModelerException {
+    WorkspaceLookupIndex index = WorkspaceLookupIndex.get( workspace );
+    if ( index != null ) {
+      // roles are kept in the member annotations, which can change without moving the model revision
+      for ( LevelMetaData levelMetaData : index.getLevels() ) {
+        if ( isLocation( levelMetaData ) ) {
+          return levelMetaData;
+        }
+      }
+      return null;
+    }
     workspace.getModel().getDimensions();
     for ( DimensionMetaData dimensionMetaData : workspace.getModel().getDimensions() ) {
       for ( HierarchyMetaData hierarchyMetaData : dimensionMetaData ) {
         for ( LevelMetaData levelMetaData : hierarchyMetaData ) {
-          IMemberAnnotation geoAnnotation = levelMetaData.getMemberAnnotations().get( ANNOTATION_GEO_ROLE );
-          if ( null != geoAnnotation && LocationRole.LOCATION.equalsIgnoreCase( geoAnnotation.getName() ) ) {
+          if ( isLocation( levelMetaData ) ) {
             return levelMetaData;
           }
         }
@@ -357,8 +272,17 @@ public abstract class AnnotationType implements Serializable {
     return null;
   }
 
+  private boolean isLocation( final LevelMetaData levelMetaData ) {
+    IMemberAnnotation geoAnnotation = levelMetaData.getMemberAnnotations().get( ANNOTATION_GEO_ROLE );
+    return null != geoAnnotation && LocationRole.LOCATION.equalsIgnoreCase( geoAnnotation.getName() );
+  }
+
   protected LogicalColumn locateLogicalColumn( final ModelerWorkspace workspace, final String columnName ) {
-    String locale = workspace.getWorkspaceHelper().getLocale();
+    WorkspaceLookupIndex index = WorkspaceLookupIndex.get( workspace );
+    if ( index != null ) {
+      return index.findLogicalColumn( columnName );
+    }
+    String locale = workspace.getLocale();
     LogicalModel logicalModel = workspace.getLogicalModel( ModelerPerspective.ANALYSIS );
     logicalModel.getLogicalTables();
     for ( LogicalTable logicalTable : logicalModel.getLogicalTables() ) {
@@ -381,10 +305,14 @@ public abstract class AnnotationType implements Serializable {
   }
 
   private MeasureMetaData locateMeasure( final ModelerWorkspace workspace, final String column ) {
+    WorkspaceLookupIndex index = WorkspaceLookupIndex.get( workspace );
+    if ( index != null ) {
+      return index.findMeasure( column );
+    }
     MeasuresCollection measures = workspace.getModel().getMeasures();
     for ( MeasureMetaData measure : measures ) {
-      if ( measure.getLogicalColumn().getName( workspace.getWorkspaceHelper().getLocale() ).equals( column )
-          || measure.getLogicalColumn().getName( workspace.getWorkspaceHelper().getLocale() ).equals(
+      if ( measure.getLogicalColumn().getName( workspace.getLocale() ).equals( column )
+          || measure.getLogicalColumn().getName( workspace.getLocale() ).equals(
           beautify( column ) ) ) {
         return measure;
       }
@@ -631,6 +559,35 @@ public abstract class AnnotationType implements Serializable {
    */
   public abstract boolean apply( final Document schema ) throws ModelerException;
 
+  /**
+   * Applies modeling change on the Mondrian schema of <code>handler</code>, so annotations applied to the same schema
+   * share its index. The default applies to the schema itself and drops the index, which that may have left stale.
+   *
+   * @param handler
+   * @throws ModelerException
+   */
+  public boolean apply( final MondrianSchemaHandler handler ) throws ModelerException {
+    Document schema = handler.getSchema();
+    try {
+      return apply( schema );
+    } finally {
+      handler.setSchema( schema );
+    }
+  }
+
+  /**
+   * Queues the changes {@link #apply(Document)} makes on a Mondrian schema into <code>batch</code>
+   *
+   * @param batch
+   * @return false if this annotation can only be applied with {@link #apply(Document)}
+   * @throws ModelerException if the changes cannot be worked out, or a
+   *         {@link org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditConflictException} if they conflict
+   *         with edits already queued
+   */
+  public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    return false;
+  }
+
   public abstract void validate() throws ModelerException;
 
   public abstract ModelAnnotation.Type getType();
@@ -641,6 +598,35 @@ public abstract class AnnotationType implements Serializable {
 
   public abstract String getField();
 
+  /**
+   * Keys of the model elements this annotation creates or renames. Used to order the annotations of a group so that
+   * each one is applied after the annotations it depends on.
+   *
+   * @return provided keys, empty by default
+   */
+  public List<String> getProvidedKeys() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Keys of the model elements this annotation expects to exist when it is applied.
+   *
+   * @return required keys, empty by default
+   */
+  public List<String> getRequiredKeys() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Hashable form of {@link #equalsLogically(AnnotationType)}: annotations that are logically equal have equal keys.
+   * Subclasses that override equalsLogically override this as well.
+   *
+   * @return by default the class and the lower cased name
+   */
+  public Object getLogicalKey() {
+    return Arrays.asList( getClass(), StringUtils.lowerCase( getName() ) );
+  }
+
   public boolean equalsLogically( AnnotationType obj ) {
 
     if ( obj == null || obj.getClass() != getClass() ) {
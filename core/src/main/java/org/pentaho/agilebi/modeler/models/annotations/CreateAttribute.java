@@ -37,6 +37,9 @@ import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.w3c.dom.Document;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -460,7 +463,7 @@ public class CreateAttribute extends AnnotationType {
     removeAutoMeasure( workspace, column );
     removeAutoLevel( workspace, ordinalAutoLevel );
     removeAutoMeasure( workspace, getOrdinalField() );
-    workspace.getWorkspaceHelper().populateDomain( workspace );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
     return true;
   }
 
@@ -592,7 +595,7 @@ public class CreateAttribute extends AnnotationType {
       removeAutoMeasure( workspace, column );
       removeAutoLevel( workspace, ordinalAutoLevel );
       removeAutoMeasure( workspace, getOrdinalField() );
-      workspace.getWorkspaceHelper().populateDomain( workspace );
+      workspace.getWorkspaceHelper().syncDomain( workspace );
       return true;
     }
   }
@@ -640,6 +643,28 @@ public class CreateAttribute extends AnnotationType {
     return ModelAnnotation.Type.CREATE_ATTRIBUTE;
   }
 
+  @Override public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getDimension() ) ) {
+      return Collections.emptyList();
+    }
+    List<String> keys = new ArrayList<String>( 2 );
+    if ( StringUtils.isBlank( getParentAttribute() ) ) {
+      keys.add( AnnotationPlanner.hierarchyKey( getDimension(), getHierarchy() ) );
+    }
+    if ( StringUtils.isNotBlank( getName() ) ) {
+      keys.add( AnnotationPlanner.attributeKey( getDimension(), getHierarchy(), getName() ) );
+    }
+    return keys;
+  }
+
+  @Override public List<String> getRequiredKeys() {
+    if ( StringUtils.isBlank( getDimension() ) || StringUtils.isBlank( getParentAttribute() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(
+      AnnotationPlanner.attributeKey( getDimension(), getHierarchy(), getParentAttribute() ) );
+  }
+
   @Override public String getSummary() {
     return BaseMessages
         .getString( MSG_CLASS, summaryMsgKey(), getName(), Const.isEmpty( getHierarchy() ) ? "" : " " + getHierarchy(),
@@ -695,6 +720,14 @@ public class CreateAttribute extends AnnotationType {
     }
   }
 
+  @Override
+  public Object getLogicalKey() {
+    String dimension = StringUtils.lowerCase( getDimension() );
+    String hierarchy = StringUtils.lowerCase( getHierarchy() );
+    return Arrays.asList( getClass(), StringUtils.lowerCase( getName() ), dimension,
+        hierarchy == null ? dimension : hierarchy );
+  }
+
   /**
    * CreateAttribute objects are considered logically equal if the name, dimension, and hierarchy are equal to
    * the equivalent fields in the object under comparison
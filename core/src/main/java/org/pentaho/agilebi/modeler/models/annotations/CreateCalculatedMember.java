@@ -20,6 +20,7 @@ import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.AnnotationConstants;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.core.injection.Injection;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metadata.model.olap.OlapCalculatedMember;
@@ -29,6 +30,7 @@ import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.pentaho.metastore.persist.MetaStoreElementType;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -188,7 +190,7 @@ public class CreateCalculatedMember extends AnnotationType {
    */
   @SuppressWarnings( "unchecked" ) @Override
   public boolean apply( ModelerWorkspace workspace, IMetaStore metaStore ) throws ModelerException {
-    workspace.getWorkspaceHelper().populateDomain( workspace );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
     List<OlapCube> cubes = (List<OlapCube>) workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getProperty(
         "olap_cubes" );
     OlapCube olapCube = cubes.get( 0 );
@@ -205,12 +207,25 @@ public class CreateCalculatedMember extends AnnotationType {
    * @throws org.pentaho.agilebi.modeler.ModelerException
    */
   @Override public boolean apply( Document schema ) throws ModelerException {
-    if ( schema == null ) {
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override public boolean apply( final MondrianSchemaHandler mondrianSchemaHandler ) throws ModelerException {
+    if ( mondrianSchemaHandler.getSchema() == null ) {
       return false;
     }
 
-    MondrianSchemaHandler mondrianSchemaHandler = new MondrianSchemaHandler( schema );
+    mondrianSchemaHandler.addCalculatedMember( cube, toCalculatedMember() );
+
+    return true;
+  }
 
+  @Override public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    batch.add( SchemaEditBatch.addCalculatedMember( cube, toCalculatedMember() ) );
+    return true;
+  }
+
+  private MondrianDef.CalculatedMember toCalculatedMember() {
     MondrianDef.CalculatedMember calculatedMember = new MondrianDef.CalculatedMember();
     calculatedMember.name = this.getName();
     calculatedMember.caption = this.getCaption();
@@ -261,10 +276,7 @@ public class CreateCalculatedMember extends AnnotationType {
     calculatedMember.annotations = annot;
 
     calculatedMember.formatString = this.getFormatString();
-
-    mondrianSchemaHandler.addCalculatedMember( cube, calculatedMember );
-
-    return true;
+    return calculatedMember;
   }
 
   @Override
@@ -300,6 +312,17 @@ public class CreateCalculatedMember extends AnnotationType {
     return ModelAnnotation.Type.CREATE_CALCULATED_MEMBER;
   }
 
+  @Override public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.measureKey( getName() ) );
+  }
+
+  @Override public List<String> getRequiredKeys() {
+    return AnnotationPlanner.measureReferences( getFormula() );
+  }
+
   @Override public String getSummary() {
     return BaseMessages.getString( MSG_CLASS, "Modeler.CreateCalculatedMember.Summary", getName(), getFormula() );
   }
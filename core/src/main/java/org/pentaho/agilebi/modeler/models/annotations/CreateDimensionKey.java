@@ -22,6 +22,9 @@ import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
+import java.util.List;
+
 public class CreateDimensionKey extends AnnotationType {
 
   private static final long serialVersionUID = 1L;
@@ -102,6 +105,14 @@ public class CreateDimensionKey extends AnnotationType {
     return ModelAnnotation.Type.CREATE_DIMENSION_KEY;
   }
 
+  @Override
+  public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getDimension() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.dimensionKey( getDimension() ) );
+  }
+
   @Override
   public String getSummary() {
     return BaseMessages.getString( MSG_CLASS, "Modeler.CreateDimensionKey.Summary", getField(), getDimension() );
@@ -13,6 +13,7 @@
 package org.pentaho.agilebi.modeler.models.annotations;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,7 @@ import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.data.GeneratedbyMemberAnnotation;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
 import org.pentaho.di.core.injection.Injection;
 import org.pentaho.di.i18n.BaseMessages;
@@ -233,7 +235,7 @@ public class CreateMeasure extends AnnotationType {
               new MeasureMetaData( targetColumn,
                 getFormatString(),
                 getName(),
-                workspace.getWorkspaceHelper().getLocale() );
+                workspace.getLocale() );
 
           LogicalColumn columnClone = (LogicalColumn) logicalColumn.clone();
           columnClone.setId( BaseModelerWorkspaceHelper.uniquify( columnClone.getId(), logicalColumns ) );
@@ -250,7 +252,7 @@ public class CreateMeasure extends AnnotationType {
           removeMeasure( workspace, getName() );
           workspace.getModel().getMeasures().add( measureMetaData );
           removeAutoLevel( workspace, locateLevel( workspace, resolveField( workspace ) ) );
-          workspace.getWorkspaceHelper().populateDomain( workspace );
+          workspace.getWorkspaceHelper().syncDomain( workspace );
           return true;
         }
       }
@@ -310,13 +312,13 @@ public class CreateMeasure extends AnnotationType {
   private boolean columnMatches( final ModelerWorkspace workspace, final String column,
                                  final LogicalColumn logicalColumn ) {
     return column.equalsIgnoreCase(
-        logicalColumn.getName( workspace.getWorkspaceHelper().getLocale() ) );
+        logicalColumn.getName( workspace.getLocale() ) );
   }
 
   @Override
   protected void removeAutoMeasure( final ModelerWorkspace workspace, final String column ) {
     LogicalColumn logicalColumn = locateLogicalColumn( workspace, column );
-    String locale = workspace.getWorkspaceHelper().getLocale();
+    String locale = workspace.getLocale();
     for ( MeasureMetaData measure : workspace.getModel().getMeasures() ) {
       if ( measureNameEquals( column, measure )
           && measure.getLogicalColumn().getPhysicalColumn().getName( locale ).equals(
@@ -345,9 +347,28 @@ public class CreateMeasure extends AnnotationType {
 
   @Override
   public boolean apply( Document doc ) throws ModelerException {
+    return apply( new MondrianSchemaHandler( doc ) );
+  }
+
+  @Override
+  public boolean apply( final MondrianSchemaHandler mondrianSchemaHandler ) throws ModelerException {
     // Surgically add the measure into the cube...
-    MondrianSchemaHandler mondrianSchemaHandler = new MondrianSchemaHandler( doc );
+    mondrianSchemaHandler.addMeasure( null, toMeasure( mondrianSchemaHandler.getSchema() ) );
+
+    return true;
+  }
 
+  @Override
+  public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    if ( StringUtils.isBlank( getField() ) && batch.getHandler().getSchema() == null ) {
+      // the field is looked up in the schema
+      return false;
+    }
+    batch.add( SchemaEditBatch.addMeasure( null, toMeasure( batch.getHandler().getSchema() ) ) );
+    return true;
+  }
+
+  private MondrianDef.Measure toMeasure( final Document doc ) throws ModelerException {
     MondrianDef.Measure measure = new MondrianDef.Measure();
     measure.aggregator = MondrianModelExporter.convertToMondrian( getAggregateType() );
     measure.name = this.getName();
@@ -355,10 +376,7 @@ public class CreateMeasure extends AnnotationType {
     measure.column = resolveField( doc );
 
     measure.formatString = this.formatString;
-
-    mondrianSchemaHandler.addMeasure( null, measure );
-
-    return true;
+    return measure;
   }
 
   @Override
@@ -380,6 +398,13 @@ public class CreateMeasure extends AnnotationType {
     return ModelAnnotation.Type.CREATE_MEASURE;
   }
 
+  @Override public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.measureKey( getName() ) );
+  }
+
   @Override public String getSummary() {
     if ( getAggregateType() != null ) {
       return BaseMessages.getString( MSG_CLASS, "Modeler.CreateMeasure.Summary", getName(), getAggregateType().name() );
@@ -40,6 +40,7 @@ import org.pentaho.metastore.api.exceptions.MetaStoreException;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -89,11 +90,9 @@ public class LinkDimension extends AnnotationType {
       if ( dataProvider == null ) {
         return false;
       }
-      ModelerWorkspace dimensionWorkspace = autoModelSharedDimension( factWorkspace, dataProvider );
-
-      sharedApplyStatus = sharedAnnotations.applyAnnotations( dimensionWorkspace, metaStore );
-      if ( sharedApplyStatus.get( ApplyStatus.FAILED ) != null
-        && sharedApplyStatus.get( ApplyStatus.FAILED ).size() > 0 ) {
+      ModelerWorkspace dimensionWorkspace =
+          loadSharedDimension( factWorkspace, sharedAnnotations, dataProvider, metaStore );
+      if ( dimensionWorkspace == null ) {
         return false;
       }
       String dimKey = locateDimensionKey( sharedAnnotations );
@@ -103,7 +102,7 @@ public class LinkDimension extends AnnotationType {
       removeAutoLevel( factWorkspace, locateLevel( factWorkspace, field ) );
       removeAutoMeasure( factWorkspace, field );
       moveDimensionToModel( dimensionWorkspace, factWorkspace, field, dimKey );
-      factWorkspace.getWorkspaceHelper().populateDomain( factWorkspace );
+      factWorkspace.getWorkspaceHelper().syncDomain( factWorkspace );
       return true;
     } catch ( KettlePluginException e ) {
       throw new ModelerException( e );
@@ -172,6 +171,7 @@ public class LinkDimension extends AnnotationType {
         factWorkspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables().get( 0 );
     LogicalModel logicalModel = factWorkspace.getLogicalModel( ModelerPerspective.ANALYSIS );
     logicalModel.addLogicalTable( dimTable );
+    factWorkspace.domainChanged();
     @SuppressWarnings( "unchecked" ) List<SqlPhysicalTable> physicalTables =
         (List<SqlPhysicalTable>) factWorkspace.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables();
     physicalTables.add( (SqlPhysicalTable) dimTable.getPhysicalTable() );
@@ -197,6 +197,32 @@ public class LinkDimension extends AnnotationType {
     return dimensions.get( dimensions.size() - 1 );
   }
 
+  /**
+   * The annotated shared dimension workspace, copied from {@link SharedDimensionCache} when this dimension was linked
+   * before, or null when its annotations fail.
+   */
+  private ModelerWorkspace loadSharedDimension(
+      final ModelerWorkspace factWorkspace, final ModelAnnotationGroup sharedAnnotations,
+      final DataProvider dataProvider, final IMetaStore metaStore )
+      throws MetaStoreException, KettlePluginException, ModelerException {
+    SharedDimensionCache cache = SharedDimensionCache.get( metaStore );
+    String key = SharedDimensionCache.key( getSharedDimension(), sharedAnnotations, dataProvider,
+        ( (ISpoonModelerSource) factWorkspace.getModelSource() ).getDatabaseMeta(), factWorkspace.getLocale() );
+    SharedDimensionCache.Entry cached = cache.get( key );
+    if ( cached == null ) {
+      ModelerWorkspace dimensionWorkspace = autoModelSharedDimension( factWorkspace, dataProvider );
+      sharedApplyStatus = sharedAnnotations.applyAnnotations( dimensionWorkspace, metaStore );
+      if ( sharedApplyStatus.get( ApplyStatus.FAILED ) != null
+        && sharedApplyStatus.get( ApplyStatus.FAILED ).size() > 0 ) {
+        return null;
+      }
+      cached = new SharedDimensionCache.Entry( dimensionWorkspace, sharedApplyStatus );
+      cache.put( key, cached );
+    }
+    sharedApplyStatus = cached.getApplyStatus();
+    return cached.instantiate();
+  }
+
   private ModelerWorkspace autoModelSharedDimension( final ModelerWorkspace workspace, final DataProvider dataProvider )
       throws MetaStoreException, KettlePluginException, ModelerException {
 
@@ -206,7 +232,7 @@ public class LinkDimension extends AnnotationType {
     Domain domain = source.generateDomain( new SharedDimensionImportStrategy( dataProvider ) );
     ModelerWorkspace model =
         new ModelerWorkspace(
-            new ModelerWorkspaceHelper( workspace.getWorkspaceHelper().getLocale() ), workspace.getGeoContext() );
+            new ModelerWorkspaceHelper( workspace.getLocale() ), workspace.getGeoContext() );
     model.setModelSource( source );
     model.setDomain( domain );
     model.getWorkspaceHelper().autoModelFlat( model );
@@ -233,6 +259,13 @@ public class LinkDimension extends AnnotationType {
     return ModelAnnotation.Type.LINK_DIMENSION;
   }
 
+  @Override public List<String> getRequiredKeys() {
+    if ( StringUtils.isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.dimensionKey( getName() ) );
+  }
+
   @Override public String getSummary() {
     StringBuilder summary = new StringBuilder(
       BaseMessages.getString( MSG_CLASS, "Modeler.LinkDimension.Summary", getName(), getSharedDimension() ) );
@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index of the annotations of a group by {@link AnnotationType#getLogicalKey() logical key}, replacing the scans
+ * of {@link ModelAnnotationGroup#findExistingAnnotation(AnnotationType)} when many annotations are matched at once.
+ * Matches are the first logically equal annotation in group order, as with the scan. Annotation types that override
+ * {@link AnnotationType#equalsLogically(AnnotationType)} without overriding the key are compared one by one.
+ */
+class LogicalKeyIndex {
+
+  private static final ClassValue<Boolean> KEYED = new ClassValue<Boolean>() {
+    @Override protected Boolean computeValue( final Class<?> type ) {
+      try {
+        Class<?> keyOwner = type.getMethod( "getLogicalKey" ).getDeclaringClass();
+        Class<?> equalsOwner = type.getMethod( "equalsLogically", AnnotationType.class ).getDeclaringClass();
+        return equalsOwner.isAssignableFrom( keyOwner );
+      } catch ( NoSuchMethodException e ) {
+        return false;
+      }
+    }
+  };
+
+  private final List<ModelAnnotation> annotations = new ArrayList<ModelAnnotation>();
+  private final Map<ModelAnnotation, Object> keys = new IdentityHashMap<ModelAnnotation, Object>();
+  private final Map<Object, Integer> positions = new HashMap<Object, Integer>();
+  private final List<Integer> unkeyed = new ArrayList<Integer>();
+
+  LogicalKeyIndex( final List<ModelAnnotation> group ) {
+    for ( ModelAnnotation modelAnnotation : group ) {
+      add( modelAnnotation );
+    }
+  }
+
+  /**
+   * Registers an annotation appended to the group.
+   */
+  void add( final ModelAnnotation modelAnnotation ) {
+    int position = annotations.size();
+    annotations.add( modelAnnotation );
+    AnnotationType annotation = modelAnnotation.getAnnotation();
+    if ( annotation == null ) {
+      return;
+    }
+    if ( isKeyed( annotation ) ) {
+      Object key = annotation.getLogicalKey();
+      keys.put( modelAnnotation, key );
+      positions.putIfAbsent( key, position );
+    } else {
+      unkeyed.add( position );
+    }
+  }
+
+  /**
+   * Re-keys an indexed annotation whose properties were changed.
+   */
+  void update( final ModelAnnotation modelAnnotation ) {
+    if ( !keys.containsKey( modelAnnotation ) ) {
+      return;
+    }
+    Object key = modelAnnotation.getAnnotation().getLogicalKey();
+    if ( !key.equals( keys.get( modelAnnotation ) ) ) {
+      List<ModelAnnotation> group = new ArrayList<ModelAnnotation>( annotations );
+      clear();
+      for ( ModelAnnotation indexed : group ) {
+        add( indexed );
+      }
+    }
+  }
+
+  /**
+   * @return the first annotation of the group that is logically equal to <code>annotation</code>, or null
+   */
+  ModelAnnotation find( final AnnotationType annotation ) {
+    int found = -1;
+    if ( isKeyed( annotation ) ) {
+      Integer position = positions.get( annotation.getLogicalKey() );
+      if ( position != null ) {
+        if ( !matches( position, annotation ) ) {
+          return scan( annotation );
+        }
+        found = position;
+      }
+    }
+    for ( int position : unkeyed ) {
+      if ( found >= 0 && position > found ) {
+        break;
+      }
+      if ( matches( position, annotation ) ) {
+        found = position;
+        break;
+      }
+    }
+    return found < 0 ? null : annotations.get( found );
+  }
+
+  private boolean matches( final int position, final AnnotationType annotation ) {
+    return annotations.get( position ).getAnnotation().equalsLogically( annotation );
+  }
+
+  private ModelAnnotation scan( final AnnotationType annotation ) {
+    for ( ModelAnnotation modelAnnotation : annotations ) {
+      if ( modelAnnotation.getAnnotation() != null && modelAnnotation.getAnnotation().equalsLogically( annotation ) ) {
+        return modelAnnotation;
+      }
+    }
+    return null;
+  }
+
+  private void clear() {
+    annotations.clear();
+    keys.clear();
+    positions.clear();
+    unkeyed.clear();
+  }
+
+  static boolean isKeyed( final AnnotationType annotation ) {
+    return KEYED.get( annotation.getClass() );
+  }
+}
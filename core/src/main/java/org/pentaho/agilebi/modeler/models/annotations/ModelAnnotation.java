@@ -19,6 +19,8 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.KeyValueClosure;
+import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
@@ -66,6 +68,8 @@ public class ModelAnnotation<T extends AnnotationType> implements Serializable {
   @MetaStoreAttribute
   private T annotation;
 
+  private transient String failureReason;
+
   public ModelAnnotation() {
   }
 
@@ -162,6 +166,17 @@ public class ModelAnnotation<T extends AnnotationType> implements Serializable {
     this.annotation = annotation;
   }
 
+  /**
+   * @return why this annotation failed the last time its group was applied, or null if it did not fail
+   */
+  public String getFailureReason() {
+    return failureReason;
+  }
+
+  public void setFailureReason( final String failureReason ) {
+    this.failureReason = failureReason;
+  }
+
   public boolean apply( final ModelerWorkspace modelerWorkspace, final IMetaStore metaStore ) throws ModelerException {
 
     // Backwards Compatibility
@@ -181,6 +196,14 @@ public class ModelAnnotation<T extends AnnotationType> implements Serializable {
     return annotation.apply( schema );
   }
 
+  public boolean apply( final MondrianSchemaHandler handler ) throws ModelerException {
+    return annotation.apply( handler );
+  }
+
+  public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    return annotation.addEdits( batch );
+  }
+
   public org.pentaho.agilebi.modeler.models.annotations.ModelAnnotation.Type getType() {
     if ( annotation != null ) {
       return annotation.getType();
@@ -0,0 +1,223 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.metastore.api.IMetaStore;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * What {@link ModelAnnotationManager} has read from one metastore: group names, groups and database connections, and
+ * the {@link SharedDimensionCache} of the shared dimensions linked from it.
+ * Caches are shared by every manager working on the same metastore instance and are dropped by the manager's own
+ * writes; an optional time to live bounds how long writes made through other processes can go unseen.
+ * <p/>
+ * Groups and connections are mutable, so copies go in and out of the cache.
+ */
+final class ModelAnnotationCache {
+
+  static final String TTL_PROPERTY = "pentaho.modeler.annotationCache.ttl"; //$NON-NLS-1$
+
+  /**
+   * Caches by identity hash of their metastore; a bucket only holds more than one cache on a hash collision.
+   */
+  private static final Map<Integer, List<ModelAnnotationCache>> CACHES =
+      new HashMap<Integer, List<ModelAnnotationCache>>();
+  private static final ReferenceQueue<IMetaStore> COLLECTED = new ReferenceQueue<IMetaStore>();
+
+  private static volatile long timeToLive = Long.getLong( TTL_PROPERTY, 0L );
+
+  private final MetaStoreReference metaStore;
+  private final LongSupplier clock;
+  private final Section groups = new Section();
+  private final Section sharedDimensions = new Section();
+  private final Map<String, Entry<DatabaseMeta>> databaseMetas = new HashMap<String, Entry<DatabaseMeta>>();
+  private final SharedDimensionCache sharedDimensionCache;
+
+  private ModelAnnotationCache( IMetaStore metaStore, LongSupplier clock ) {
+    this.metaStore = new MetaStoreReference( metaStore, this );
+    this.clock = clock;
+    this.sharedDimensionCache = new SharedDimensionCache( SharedDimensionCache.DEFAULT_MAX_ENTRIES, clock );
+  }
+
+  /**
+   * The cache of this metastore instance. Instances are compared by identity, so two stores over the same folder do
+   * not share entries.
+   */
+  static ModelAnnotationCache get( IMetaStore metaStore ) {
+    return get( metaStore, System::currentTimeMillis );
+  }
+
+  /**
+   * @param clock
+   *          time source of the cache if it has to be created; an existing cache keeps its own
+   */
+  static ModelAnnotationCache get( IMetaStore metaStore, LongSupplier clock ) {
+    synchronized ( CACHES ) {
+      for ( MetaStoreReference collected; ( collected = (MetaStoreReference) COLLECTED.poll() ) != null; ) {
+        List<ModelAnnotationCache> bucket = CACHES.get( collected.hash );
+        if ( bucket != null && bucket.remove( collected.cache ) && bucket.isEmpty() ) {
+          CACHES.remove( collected.hash );
+        }
+      }
+      Integer hash = System.identityHashCode( metaStore );
+      List<ModelAnnotationCache> bucket = CACHES.get( hash );
+      if ( bucket == null ) {
+        bucket = new ArrayList<ModelAnnotationCache>( 1 );
+        CACHES.put( hash, bucket );
+      }
+      for ( ModelAnnotationCache cache : bucket ) {
+        if ( cache.metaStore.get() == metaStore ) {
+          return cache;
+        }
+      }
+      ModelAnnotationCache cache = new ModelAnnotationCache( metaStore, clock );
+      bucket.add( cache );
+      return cache;
+    }
+  }
+
+  static void invalidateAll( IMetaStore metaStore ) {
+    ModelAnnotationCache cache = get( metaStore );
+    synchronized ( cache ) {
+      cache.groups.clear();
+      cache.sharedDimensions.clear();
+      cache.databaseMetas.clear();
+    }
+    cache.sharedDimensionCache.invalidateAll();
+  }
+
+  static long getTimeToLive() {
+    return timeToLive;
+  }
+
+  static void setTimeToLive( long millis ) {
+    timeToLive = millis;
+  }
+
+  SharedDimensionCache getSharedDimensionCache() {
+    return sharedDimensionCache;
+  }
+
+  synchronized Set<String> getGroupNames( boolean sharedDimension ) {
+    Entry<Set<String>> names = section( sharedDimension ).names;
+    return isFresh( names ) ? names.value : null;
+  }
+
+  synchronized void putGroupNames( boolean sharedDimension, List<String> names ) {
+    section( sharedDimension ).names =
+        new Entry<Set<String>>( new LinkedHashSet<String>( names ), clock.getAsLong() );
+  }
+
+  /**
+   * @return a copy of the cached group, or null when it is not cached
+   */
+  synchronized ModelAnnotationGroup getGroup( boolean sharedDimension, String name ) {
+    Entry<ModelAnnotationGroup> group = section( sharedDimension ).groups.get( name );
+    return isFresh( group ) ? copy( group.value ) : null;
+  }
+
+  synchronized void putGroup( boolean sharedDimension, String name, ModelAnnotationGroup group ) {
+    ModelAnnotationGroup copy = copy( group );
+    if ( copy != null ) {
+      section( sharedDimension ).groups.put( name, new Entry<ModelAnnotationGroup>( copy, clock.getAsLong() ) );
+    }
+  }
+
+  synchronized void invalidateGroups( boolean sharedDimension ) {
+    section( sharedDimension ).clear();
+  }
+
+  synchronized DatabaseMeta getDatabaseMeta( String name ) {
+    Entry<DatabaseMeta> databaseMeta = databaseMetas.get( name );
+    return isFresh( databaseMeta ) ? (DatabaseMeta) databaseMeta.value.clone() : null;
+  }
+
+  synchronized void putDatabaseMeta( String name, DatabaseMeta databaseMeta ) {
+    databaseMetas.put( name, new Entry<DatabaseMeta>( (DatabaseMeta) databaseMeta.clone(), clock.getAsLong() ) );
+  }
+
+  synchronized void invalidateDatabaseMeta( String name ) {
+    databaseMetas.remove( name );
+  }
+
+  private Section section( boolean sharedDimension ) {
+    return sharedDimension ? sharedDimensions : groups;
+  }
+
+  private boolean isFresh( Entry<?> entry ) {
+    return entry != null && isFresh( entry.loaded, clock.getAsLong() );
+  }
+
+  static boolean isFresh( long loaded, long now ) {
+    return timeToLive <= 0 || now - loaded < timeToLive;
+  }
+
+  /**
+   * A deep copy through serialization, or null for a group holding something that cannot be serialized, which is
+   * then simply not cached.
+   */
+  private static ModelAnnotationGroup copy( ModelAnnotationGroup group ) {
+    try {
+      return (ModelAnnotationGroup) SerializationUtils.clone( group );
+    } catch ( SerializationException e ) {
+      return null;
+    }
+  }
+
+  private static final class Section {
+    private Entry<Set<String>> names;
+    private final Map<String, Entry<ModelAnnotationGroup>> groups = new HashMap<String, Entry<ModelAnnotationGroup>>();
+
+    private void clear() {
+      names = null;
+      groups.clear();
+    }
+  }
+
+  private static final class Entry<T> {
+    private final T value;
+    private final long loaded;
+
+    private Entry( T value, long loaded ) {
+      this.value = value;
+      this.loaded = loaded;
+    }
+  }
+
+  /**
+   * Remembers the bucket of the cache, so it can be dropped once its metastore is collected.
+   */
+  private static final class MetaStoreReference extends WeakReference<IMetaStore> {
+    private final Integer hash;
+    private final ModelAnnotationCache cache;
+
+    private MetaStoreReference( IMetaStore metaStore, ModelAnnotationCache cache ) {
+      super( metaStore, COLLECTED );
+      this.hash = System.identityHashCode( metaStore );
+      this.cache = cache;
+    }
+  }
+}
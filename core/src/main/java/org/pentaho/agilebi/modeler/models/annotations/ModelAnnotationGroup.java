@@ -13,11 +13,14 @@
 
 package org.pentaho.agilebi.modeler.models.annotations;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
+import org.pentaho.agilebi.modeler.ModelerBatch;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.data.DataProvider;
+import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditConflictException;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.pentaho.metastore.persist.MetaStoreElementType;
@@ -26,10 +29,11 @@ import org.w3c.dom.Document;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 //import static org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyStatus.*;
 
@@ -54,6 +58,8 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
   @MetaStoreAttribute
   private List<ModelAnnotation> modelAnnotations; // indicate to metastore to persist items (calls the getter/setter)
 
+  private transient ApplyMode applyMode = ApplyMode.FIXPOINT;
+
   public ModelAnnotationGroup() {
     super();
   }
@@ -113,8 +119,26 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
     this.dataProviders = dataProviders;
   }
 
+  public ApplyMode getApplyMode() {
+    return applyMode == null ? ApplyMode.FIXPOINT : applyMode;
+  }
+
+  /**
+   * @param applyMode how {@link #applyAnnotations} orders and retries the annotations of this group
+   */
+  public void setApplyMode( final ApplyMode applyMode ) {
+    this.applyMode = applyMode;
+  }
+
   @Override
   public boolean equals( Object obj ) {
+    if ( obj == this ) {
+      return true;
+    }
+    // cheap checks first, the reflective comparisons below are costly on large groups
+    if ( !( obj instanceof ModelAnnotationGroup ) || ( (ModelAnnotationGroup) obj ).size() != size() ) {
+      return false;
+    }
 
     try {
       if ( !EqualsBuilder.reflectionEquals( this, obj ) ) {
@@ -145,6 +169,19 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
     NULL_ANNOTATION
   }
 
+  public enum ApplyMode {
+    /**
+     * Apply in group order and re-apply every failure until a pass makes no progress. The default.
+     */
+    FIXPOINT,
+    /**
+     * Apply each annotation in dependency order, skipping annotations whose dependencies failed. A failure is tried
+     * once more at the end if other annotations succeeded after it, in case it needed something they created without
+     * declaring it; unlike {@link #FIXPOINT} there is no further pass.
+     */
+    PLANNED
+  }
+
   private interface AnnotateStrategy {
     boolean apply( ModelAnnotation modelAnnotation ) throws ModelerException;
 
@@ -155,33 +192,146 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
 
   public Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations( final Document mondrianSchema )
     throws ModelerException {
-    return applyAnnotations( mondrianSchema, this );
+    return applyAnnotations( new MondrianSchemaHandler( mondrianSchema ), this );
   }
 
+  /**
+   * @param handler shared by every annotation applied to its schema, so the schema is indexed once
+   */
   private Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations(
-      final Document mondrianSchema, final ModelAnnotationGroup toApply ) throws ModelerException {
+      final MondrianSchemaHandler handler, final ModelAnnotationGroup toApply ) throws ModelerException {
     AnnotateStrategy strategy = new AnnotateStrategy() {
 
       @Override public boolean apply( final ModelAnnotation modelAnnotation ) throws ModelerException {
-        return modelAnnotation.apply( mondrianSchema );
+        return modelAnnotation.apply( handler );
       }
 
       @Override public Map<ApplyStatus, List<ModelAnnotation>> applyAll(
         final ModelAnnotationGroup modelAnnotations ) throws ModelerException {
-        return applyAnnotations( mondrianSchema, modelAnnotations );
+        return applyAnnotations( handler, modelAnnotations );
       }
 
       @Override public boolean isEmptyModel() {
-        return !mondrianSchema.hasChildNodes();
+        return !handler.getSchema().hasChildNodes();
       }
     };
     return applyAnnotations( strategy, toApply );
   }
 
+  /**
+   * Applies the annotations to the schema of <code>batch</code>. Annotations that can queue their changes do so, in
+   * dependency order, and the queue is applied at once; an annotation whose changes conflict with those queued before
+   * it fails. The remaining annotations, and those whose edits were not all applied, are then applied one by one as
+   * {@link #applyAnnotations(Document)} does.
+   */
+  public Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations( final SchemaEditBatch batch )
+    throws ModelerException {
+    Document mondrianSchema = batch.getHandler().getSchema();
+    if ( !mondrianSchema.hasChildNodes() ) {
+      return Collections.emptyMap();
+    }
+    final Map<ModelAnnotation, Integer> positions = new IdentityHashMap<ModelAnnotation, Integer>();
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap = initStatusMap();
+    List<ModelAnnotation> pending = new ArrayList<ModelAnnotation>( size() );
+    for ( ModelAnnotation modelAnnotation : this ) {
+      positions.put( modelAnnotation, positions.size() );
+      if ( modelAnnotation.getAnnotation() == null ) {
+        statusMap.get( ApplyStatus.NULL_ANNOTATION ).add( modelAnnotation );
+      } else {
+        modelAnnotation.setFailureReason( null );
+        pending.add( modelAnnotation );
+      }
+    }
+
+    AnnotationPlanner plan = new AnnotationPlanner( pending );
+    Map<ModelAnnotation, List<SchemaEditBatch.Edit>> queued =
+        new IdentityHashMap<ModelAnnotation, List<SchemaEditBatch.Edit>>();
+    ModelAnnotationGroup remaining = new ModelAnnotationGroup();
+    for ( int index : plan.getOrder() ) {
+      ModelAnnotation modelAnnotation = plan.get( index );
+      int from = batch.size();
+      try {
+        if ( modelAnnotation.addEdits( batch ) ) {
+          queued.put( modelAnnotation,
+              new ArrayList<SchemaEditBatch.Edit>( batch.getEdits().subList( from, batch.size() ) ) );
+          continue;
+        }
+      } catch ( SchemaEditConflictException e ) {
+        modelAnnotation.setFailureReason( e.getMessage() );
+        statusMap.get( ApplyStatus.FAILED ).add( modelAnnotation );
+        continue;
+      } catch ( ModelerException e ) {
+        // worked out again when applied on its own
+      }
+      remaining.add( modelAnnotation );
+    }
+    batch.apply();
+
+    for ( int index : plan.getOrder() ) {
+      ModelAnnotation modelAnnotation = plan.get( index );
+      List<SchemaEditBatch.Edit> edits = queued.get( modelAnnotation );
+      if ( edits == null ) {
+        continue;
+      }
+      boolean applied = true;
+      for ( SchemaEditBatch.Edit edit : edits ) {
+        applied &= edit.isApplied();
+      }
+      if ( applied ) {
+        statusMap.get( ApplyStatus.SUCCESS ).add( modelAnnotation );
+      } else {
+        remaining.add( modelAnnotation );
+      }
+    }
+    if ( !remaining.isEmpty() ) {
+      Map<ApplyStatus, List<ModelAnnotation>> remainingStatusMap = applyAnnotations( batch.getHandler(), remaining );
+      for ( Map.Entry<ApplyStatus, List<ModelAnnotation>> entry : remainingStatusMap.entrySet() ) {
+        statusMap.get( entry.getKey() ).addAll( entry.getValue() );
+      }
+    }
+
+    Comparator<ModelAnnotation> groupOrder = Comparator.comparing( positions::get );
+    for ( List<ModelAnnotation> annotations : statusMap.values() ) {
+      annotations.sort( groupOrder );
+    }
+    return statusMap;
+  }
+
+  /**
+   * Queues the schema changes of every annotation into <code>batch</code>, in dependency order.
+   *
+   * @return false, with nothing queued, if an annotation can only be applied to a Document
+   */
+  public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    List<ModelAnnotation> annotations = new ArrayList<ModelAnnotation>( size() );
+    for ( ModelAnnotation modelAnnotation : this ) {
+      if ( modelAnnotation.getAnnotation() != null ) {
+        annotations.add( modelAnnotation );
+      }
+    }
+    AnnotationPlanner plan = new AnnotationPlanner( annotations );
+    int queued = batch.size();
+    try {
+      for ( int index : plan.getOrder() ) {
+        if ( !plan.get( index ).addEdits( batch ) ) {
+          batch.truncate( queued );
+          return false;
+        }
+      }
+    } catch ( ModelerException e ) {
+      batch.truncate( queued );
+      throw e;
+    }
+    return true;
+  }
+
   public Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations(
       final ModelerWorkspace model, final IMetaStore metaStore )
       throws ModelerException {
-    return applyAnnotations( model, metaStore, this );
+    // node validation and change events are deferred until every annotation has been applied
+    try ( ModelerBatch batch = model.beginBatch(); WorkspaceLookupIndex index = WorkspaceLookupIndex.open( model ) ) {
+      return applyAnnotations( model, metaStore, this );
+    }
   }
 
   private Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations(
@@ -208,6 +358,9 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
   private Map<ApplyStatus, List<ModelAnnotation>> applyAnnotations( AnnotateStrategy strategy,
                                                                     final ModelAnnotationGroup toApply )
     throws ModelerException {
+    if ( getApplyMode() == ApplyMode.PLANNED ) {
+      return applyPlanned( strategy, toApply );
+    }
     if ( strategy.isEmptyModel() ) {
       //the model is empty so there is no use trying to apply annotations.
       //this usually happens when there is no data.
@@ -233,13 +386,71 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
         statusMap.get( applyStatus ).addAll( recurStatusMap.get( applyStatus ) );
       }
     } else if ( failedAnnotations.size() > 0 ) {
-      for ( ModelAnnotation failedAnnotation : failedAnnotations ) {
+      AnnotationPlanner plan = new AnnotationPlanner( failedAnnotations );
+      boolean[] failed = new boolean[plan.size()];
+      for ( int i = 0; i < plan.size(); i++ ) {
+        ModelAnnotation failedAnnotation = plan.get( i );
+        failedAnnotation.setFailureReason( plan.describeFailure( i, failed ) );
         statusMap.get( ApplyStatus.FAILED ).add( failedAnnotation );
       }
     }
     return statusMap;
   }
 
+  private Map<ApplyStatus, List<ModelAnnotation>> applyPlanned( final AnnotateStrategy strategy,
+                                                                final ModelAnnotationGroup toApply )
+    throws ModelerException {
+    if ( strategy.isEmptyModel() ) {
+      return Collections.emptyMap();
+    }
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap = initStatusMap();
+    List<ModelAnnotation> pending = new ArrayList<ModelAnnotation>( toApply.size() );
+    for ( ModelAnnotation modelAnnotation : toApply ) {
+      if ( modelAnnotation.getAnnotation() == null ) {
+        statusMap.get( ApplyStatus.NULL_ANNOTATION ).add( modelAnnotation );
+        continue;
+      }
+      modelAnnotation.setFailureReason( null );
+      pending.add( modelAnnotation );
+    }
+    AnnotationPlanner plan = new AnnotationPlanner( pending );
+    int[] order = plan.getOrder();
+    boolean[] failed = new boolean[plan.size()];
+    // successes counted when each failure was tried, -1 if it was skipped for a failed dependency
+    int[] triedAt = new int[plan.size()];
+    int successes = 0;
+    for ( int index : order ) {
+      triedAt[index] = -1;
+      if ( plan.findFailedDependency( index, failed ) >= 0 ) {
+        failed[index] = true;
+      } else if ( strategy.apply( plan.get( index ) ) ) {
+        successes++;
+      } else {
+        failed[index] = true;
+        triedAt[index] = successes;
+      }
+    }
+    // one more try for each failure if anything succeeded since, and for skipped annotations whose dependencies
+    // succeeded on their retry
+    for ( int index : order ) {
+      if ( failed[index] && triedAt[index] < successes && plan.findFailedDependency( index, failed ) < 0
+          && strategy.apply( plan.get( index ) ) ) {
+        failed[index] = false;
+        successes++;
+      }
+    }
+    for ( int index : order ) {
+      ModelAnnotation modelAnnotation = plan.get( index );
+      if ( failed[index] ) {
+        modelAnnotation.setFailureReason( plan.describeFailure( index, failed ) );
+        statusMap.get( ApplyStatus.FAILED ).add( modelAnnotation );
+      } else {
+        statusMap.get( ApplyStatus.SUCCESS ).add( modelAnnotation );
+      }
+    }
+    return statusMap;
+  }
+
   private Map<ApplyStatus, List<ModelAnnotation>> initStatusMap() {
     HashMap<ApplyStatus, List<ModelAnnotation>> statusMap = new HashMap<ApplyStatus, List<ModelAnnotation>>();
     for ( ApplyStatus applyStatus : ApplyStatus.values() ) {
@@ -249,9 +460,10 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
   }
 
   public void addInjectedAnnotations( List<? extends AnnotationType> annotations ) {
-
+    // matched by logical key so that injecting many annotations stays linear in the size of the group
+    LogicalKeyIndex index = new LogicalKeyIndex( this );
     for ( AnnotationType annotationType : annotations ) {
-      ModelAnnotation existingAnnotation = findExistingAnnotation( annotationType );
+      ModelAnnotation existingAnnotation = index.find( annotationType );
       ModelAnnotation ma = existingAnnotation == null ? new ModelAnnotation() : existingAnnotation;
 
       ma.setName( annotationType.getName() );
@@ -260,6 +472,7 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
         ma.setAnnotation( annotationType );
 
         add( ma );
+        index.add( ma );
       } else {
         // set each of the specific values that are injected onto the existing annotation
         List<ModelProperty> modelProperties = annotationType.getModelProperties();
@@ -273,16 +486,17 @@ public class ModelAnnotationGroup extends ArrayList<ModelAnnotation> {
             // this shouldn't happen since we are iterating over the properties
           }
         } );
-
+        index.update( ma );
       }
     }
   }
 
   protected ModelAnnotation findExistingAnnotation( AnnotationType annotation ) {
-    List<ModelAnnotation> matches = stream()
-      .filter( ma -> ma.getAnnotation().equalsLogically( annotation ) )
-      .collect( Collectors.toList() );
-
-    return CollectionUtils.isNotEmpty( matches ) ? matches.get( 0 ) : null;
+    for ( ModelAnnotation ma : this ) {
+      if ( ma.getAnnotation().equalsLogically( annotation ) ) {
+        return ma;
+      }
+    }
+    return null;
   }
 }
@@ -23,6 +23,12 @@ import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.metadata.model.concept.types.DataType;
 import org.w3c.dom.Node;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +37,8 @@ import java.util.Map;
 
 public class ModelAnnotationGroupXmlReader {
 
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
   public ModelAnnotationGroup readModelAnnotationGroup( Node step ) throws KettleXMLException {
 
     ModelAnnotationGroup modelAnnotationGroup = new ModelAnnotationGroup();
@@ -77,6 +85,245 @@ public class ModelAnnotationGroupXmlReader {
     return modelAnnotationGroup;
   }
 
+  /**
+   * Reads a group from the stream written by {@link ModelAnnotationGroupXmlWriter} without building a DOM. The first
+   * <code>annotations</code> element is read, whether it is the root or wrapped in a step.
+   */
+  public ModelAnnotationGroup readModelAnnotationGroup( InputStream in ) throws KettleXMLException {
+    try {
+      return readModelAnnotationGroup( INPUT_FACTORY.createXMLStreamReader( in ) );
+    } catch ( XMLStreamException e ) {
+      throw new KettleXMLException( e );
+    }
+  }
+
+  public ModelAnnotationGroup readModelAnnotationGroup( Reader in ) throws KettleXMLException {
+    try {
+      return readModelAnnotationGroup( INPUT_FACTORY.createXMLStreamReader( in ) );
+    } catch ( XMLStreamException e ) {
+      throw new KettleXMLException( e );
+    }
+  }
+
+  private ModelAnnotationGroup readModelAnnotationGroup( XMLStreamReader xml ) throws XMLStreamException {
+    ModelAnnotationGroup modelAnnotationGroup = new ModelAnnotationGroup();
+    try {
+      if ( !findElement( xml, "annotations" ) ) {
+        return modelAnnotationGroup;
+      }
+      String sharedDimension = null;
+      String description = null;
+      List<DataProvider> dataProviders = null;
+      while ( nextChild( xml ) ) {
+        String tag = xml.getLocalName();
+        if ( "annotation".equalsIgnoreCase( tag ) ) {
+          readAnnotation( xml, modelAnnotationGroup );
+        } else if ( sharedDimension == null && "sharedDimension".equalsIgnoreCase( tag ) ) {
+          sharedDimension = readText( xml );
+        } else if ( description == null && "description".equalsIgnoreCase( tag ) ) {
+          description = readText( xml );
+        } else if ( dataProviders == null && "data-providers".equalsIgnoreCase( tag ) ) {
+          dataProviders = readDataProviders( xml );
+        } else {
+          skipElement( xml );
+        }
+      }
+      modelAnnotationGroup.setSharedDimension( BooleanUtils.toBoolean( sharedDimension ) );
+      modelAnnotationGroup.setDescription( description );
+      modelAnnotationGroup
+          .setDataProviders( dataProviders != null ? dataProviders : new ArrayList<DataProvider>() );
+      return modelAnnotationGroup;
+    } finally {
+      xml.close();
+    }
+  }
+
+  private void readAnnotation( XMLStreamReader xml, ModelAnnotationGroup modelAnnotationGroup )
+      throws XMLStreamException {
+    String name = null;
+    String field = null;
+    String type = null;
+    Map<String, Serializable> map = null;
+    while ( nextChild( xml ) ) {
+      String tag = xml.getLocalName();
+      if ( name == null && "name".equalsIgnoreCase( tag ) ) {
+        name = readText( xml );
+      } else if ( field == null && "field".equalsIgnoreCase( tag ) ) {
+        field = readText( xml );
+      } else if ( type == null && "type".equalsIgnoreCase( tag ) ) {
+        type = readText( xml );
+      } else if ( map == null && "properties".equalsIgnoreCase( tag ) ) {
+        map = readProperties( xml );
+      } else {
+        skipElement( xml );
+      }
+    }
+    try {
+      ModelAnnotation<?> modelAnnotation = create( type, field );
+      if ( StringUtils.isNotBlank( name ) ) {
+        modelAnnotation.setName( name );
+      }
+      modelAnnotation.populateAnnotation( map != null ? map : new HashMap<String, Serializable>() );
+      modelAnnotationGroup.add( modelAnnotation );
+    } catch ( KettleException ke ) {
+      //logError( ke.getMessage() );
+    }
+  }
+
+  private Map<String, Serializable> readProperties( XMLStreamReader xml ) throws XMLStreamException {
+    Map<String, Serializable> map = new HashMap<String, Serializable>();
+    while ( nextChild( xml ) ) {
+      if ( !"property".equalsIgnoreCase( xml.getLocalName() ) ) {
+        skipElement( xml );
+        continue;
+      }
+      String n = null;
+      String v = null;
+      while ( nextChild( xml ) ) {
+        String tag = xml.getLocalName();
+        if ( n == null && "name".equalsIgnoreCase( tag ) ) {
+          n = readText( xml );
+        } else if ( v == null && "value".equalsIgnoreCase( tag ) ) {
+          v = readText( xml );
+        } else {
+          skipElement( xml );
+        }
+      }
+      map.put( n, v );
+    }
+    return map;
+  }
+
+  private List<DataProvider> readDataProviders( XMLStreamReader xml ) throws XMLStreamException {
+    List<DataProvider> dataProviders = new ArrayList<DataProvider>();
+    while ( nextChild( xml ) ) {
+      if ( !"data-provider".equalsIgnoreCase( xml.getLocalName() ) ) {
+        skipElement( xml );
+        continue;
+      }
+      Map<String, String> values = new HashMap<String, String>();
+      List<ColumnMapping> columnMappings = null;
+      while ( nextChild( xml ) ) {
+        if ( columnMappings == null && "column-mappings".equalsIgnoreCase( xml.getLocalName() ) ) {
+          columnMappings = readColumnMappings( xml );
+        } else {
+          readValue( xml, values );
+        }
+      }
+      DataProvider dataProvider = new DataProvider();
+      dataProvider.setName( values.get( "name" ) );
+      dataProvider.setSchemaName( values.get( "schemaname" ) );
+      dataProvider.setTableName( values.get( "tablename" ) );
+      dataProvider.setDatabaseMetaNameRef( values.get( "databasemetaref" ) );
+      dataProvider.setColumnMappings( columnMappings != null ? columnMappings : new ArrayList<ColumnMapping>() );
+      dataProviders.add( dataProvider );
+    }
+    return dataProviders;
+  }
+
+  private List<ColumnMapping> readColumnMappings( XMLStreamReader xml ) throws XMLStreamException {
+    List<ColumnMapping> columnMappings = new ArrayList<ColumnMapping>();
+    while ( nextChild( xml ) ) {
+      if ( !"column-mapping".equalsIgnoreCase( xml.getLocalName() ) ) {
+        skipElement( xml );
+        continue;
+      }
+      Map<String, String> values = new HashMap<String, String>();
+      while ( nextChild( xml ) ) {
+        readValue( xml, values );
+      }
+      try {
+        ColumnMapping columnMapping = new ColumnMapping();
+        columnMapping.setName( values.get( "name" ) );
+        columnMapping.setColumnName( values.get( "columnname" ) );
+        String dataType = values.get( "datatype" );
+        if ( StringUtils.isNotBlank( dataType ) ) {
+          columnMapping.setColumnDataType( DataType.valueOf( dataType ) );
+        }
+        columnMappings.add( columnMapping );
+      } catch ( Exception ke ) {
+        //logError( ke.getMessage() );
+      }
+    }
+    return columnMappings;
+  }
+
+  /**
+   * Keeps the first non-empty value per tag, keyed by lower case tag name like the case-insensitive DOM lookups.
+   */
+  private static void readValue( XMLStreamReader xml, Map<String, String> values ) throws XMLStreamException {
+    String tag = xml.getLocalName().toLowerCase();
+    String value = readText( xml );
+    if ( value != null && !values.containsKey( tag ) ) {
+      values.put( tag, value );
+    }
+  }
+
+  private static boolean findElement( XMLStreamReader xml, String tag ) throws XMLStreamException {
+    while ( xml.hasNext() ) {
+      if ( xml.next() == XMLStreamConstants.START_ELEMENT && tag.equalsIgnoreCase( xml.getLocalName() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Advances to the next child element of the current element, or to its end tag when there are no more.
+   */
+  private static boolean nextChild( XMLStreamReader xml ) throws XMLStreamException {
+    while ( xml.hasNext() ) {
+      int event = xml.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        return true;
+      }
+      if ( event == XMLStreamConstants.END_ELEMENT ) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the text and CDATA content of the current element, or null when it is empty, as the DOM lookups do.
+   */
+  private static String readText( XMLStreamReader xml ) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    int depth = 1;
+    while ( depth > 0 && xml.hasNext() ) {
+      int event = xml.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        depth++;
+      } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+        depth--;
+      } else if ( depth == 1 && ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE ) ) {
+        text.append( xml.getText() );
+      }
+    }
+    return text.length() > 0 ? text.toString() : null;
+  }
+
+  private static void skipElement( XMLStreamReader xml ) throws XMLStreamException {
+    int depth = 1;
+    while ( depth > 0 && xml.hasNext() ) {
+      int event = xml.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        depth++;
+      } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+        depth--;
+      }
+    }
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    factory.setProperty( XMLInputFactory.IS_COALESCING, true );
+    return factory;
+  }
+
   public void readDataProviders( final Node node, final ModelAnnotationGroup group ) {
 
     if ( node == null || group == null ) {
@@ -21,8 +21,19 @@ import org.pentaho.agilebi.modeler.models.annotations.util.XMLUtil;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.metadata.model.concept.types.DataType;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
 import java.util.UUID;
 
 /**
@@ -46,6 +57,39 @@ public class ModelAnnotationGroupXmlWriter {
   }
 
   public String getXML() {
+    StringWriter xml = new StringWriter();
+    try {
+      write( xml );
+    } catch ( IOException e ) {
+      return getLegacyXml(); // not expected from a StringWriter
+    }
+    return xml.toString();
+  }
+
+  /**
+   * Writes the same document as {@link #getXML()} to a UTF-8 stream. The stream is flushed but not closed.
+   */
+  public void write( OutputStream out ) throws IOException {
+    Writer writer = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ) );
+    write( writer );
+    writer.flush();
+  }
+
+  /**
+   * Writes the same document as {@link #getXML()}, indenting as it goes instead of building the whole string and
+   * re-parsing it to pretty print it. Content the pretty printer could not parse (e.g. a value containing "]]&gt;")
+   * goes through the legacy path so the output stays identical.
+   */
+  public void write( Writer writer ) throws IOException {
+    List<List<Map.Entry<String, String>>> properties = describeStreamable( getModelAnnotations() );
+    if ( properties == null ) {
+      writer.write( getLegacyXml() );
+      return;
+    }
+    new PrettyWriter( writer ).writeGroup( getModelAnnotations(), properties );
+  }
+
+  String getLegacyXml() {
     try {
       return XMLUtil.prettyPrint( getModelAnnotationsXml() );
     } catch ( Exception e ) {
@@ -146,4 +190,278 @@ public class ModelAnnotationGroupXmlWriter {
 
     return xml.toString();
   }
+
+  /**
+   * Describes the properties of every annotation, other than the field, in the order they are written.
+   *
+   * @return null if some content is not plain enough for {@link PrettyWriter}
+   */
+  private static List<List<Map.Entry<String, String>>> describeStreamable( ModelAnnotationGroup group ) {
+    if ( group == null ) {
+      return new ArrayList<List<Map.Entry<String, String>>>( 0 );
+    }
+    final boolean[] streamable = { isPlain( group.getDescription() ) };
+    List<List<Map.Entry<String, String>>> described = new ArrayList<List<Map.Entry<String, String>>>( group.size() );
+    for ( ModelAnnotation<?> modelAnnotation : group ) {
+      if ( !isPlain( modelAnnotation.getName() ) || !isPlain( modelAnnotation.getAnnotation().getField() ) ) {
+        return null;
+      }
+      final List<Map.Entry<String, String>> properties = new ArrayList<Map.Entry<String, String>>();
+      modelAnnotation.iterateProperties( new KeyValueClosure() {
+        @Override
+        public void execute( String key, Serializable serializable ) {
+          String value = serializable.toString();
+          streamable[0] &= isPlain( key ) && isPlain( value );
+          if ( !"field".equals( key ) ) {
+            properties.add( new AbstractMap.SimpleImmutableEntry<String, String>( key, value ) );
+          }
+        }
+      } );
+      described.add( properties );
+    }
+    if ( group.getDataProviders() != null ) {
+      for ( DataProvider provider : group.getDataProviders() ) {
+        streamable[0] &= isPlain( provider.getName() ) && isPlain( provider.getSchemaName() )
+            && isPlain( provider.getTableName() ) && isPlain( provider.getDatabaseMetaNameRef() );
+        if ( provider.getColumnMappings() != null ) {
+          for ( ColumnMapping columnMapping : provider.getColumnMappings() ) {
+            streamable[0] &= isPlain( columnMapping.getName() ) && isPlain( columnMapping.getColumnName() );
+          }
+        }
+      }
+    }
+    return streamable[0] ? described : null;
+  }
+
+  /**
+   * True when the value survives the legacy string/parse round trip unchanged, i.e. it has no control characters
+   * and cannot terminate a CDATA section.
+   */
+  private static boolean isPlain( String value ) {
+    if ( value == null ) {
+      return true;
+    }
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      if ( ( c < 0x20 && c != '\t' && c != '\n' && c != '\r' ) || c == '\uFFFE' || c == '\uFFFF' ) {
+        return false;
+      }
+    }
+    return !value.contains( "]]>" );
+  }
+
+  /**
+   * Emits the layout of the dom4j pretty printer used by {@link XMLUtil#prettyPrint(String)} directly: a line break
+   * before the document and after it, two space indentation, each element on its own line, text collapsed to single
+   * spaces and escaped, CDATA kept verbatim apart from line endings. The whitespace-only text between elements of the
+   * legacy string is padded with spaces as dom4j does. ModelAnnotationGroupXmlWriterTest pins the bytes.
+   */
+  private static final class PrettyWriter {
+    private static final String INDENT = "  ";
+
+    private final Writer out;
+    private final boolean[] hasChild = new boolean[8];
+    private int level;
+
+    PrettyWriter( Writer out ) {
+      this.out = out;
+    }
+
+    void writeGroup( ModelAnnotationGroup group, List<List<Map.Entry<String, String>>> properties )
+      throws IOException {
+      if ( group == null ) {
+        empty( "annotations" );
+        end();
+        return;
+      }
+      open( "annotations" );
+      int index = 0;
+      for ( ModelAnnotation<?> modelAnnotation : group ) {
+        List<Map.Entry<String, String>> annotationProperties = properties.get( index++ );
+        if ( StringUtils.isBlank( modelAnnotation.getName() ) ) {
+          modelAnnotation.setName( UUID.randomUUID().toString() ); // backwards compatibility
+        }
+        open( "annotation" );
+        text( "name", modelAnnotation.getName() );
+        text( "field", modelAnnotation.getAnnotation().getField() );
+        if ( modelAnnotation.getType() != null ) {
+          text( "type", modelAnnotation.getType().toString() );
+          writeProperties( annotationProperties );
+        }
+        close( "annotation" );
+      }
+      text( "sharedDimension", group.isSharedDimension() ? "Y" : "N" );
+      text( "description", group.getDescription() );
+      writeDataProviders( group.getDataProviders() );
+      close( "annotations" );
+      end();
+    }
+
+    private void writeProperties( List<Map.Entry<String, String>> properties ) throws IOException {
+      if ( properties.isEmpty() ) {
+        empty( "properties" );
+        return;
+      }
+      open( "properties" );
+      for ( Map.Entry<String, String> property : properties ) {
+        open( "property" );
+        text( "name", property.getKey() );
+        cdata( "value", property.getValue() );
+        close( "property" );
+      }
+      close( "properties" );
+    }
+
+    private void writeDataProviders( List<DataProvider> dataProviders ) throws IOException {
+      if ( dataProviders == null || dataProviders.isEmpty() ) {
+        return;
+      }
+      open( "data-providers" );
+      for ( DataProvider provider : dataProviders ) {
+        open( "data-provider" );
+        text( "name", provider.getName() );
+        text( "schemaName", provider.getSchemaName() );
+        text( "tableName", provider.getTableName() );
+        text( "databaseMetaRef", provider.getDatabaseMetaNameRef() );
+        List<ColumnMapping> columnMappings = provider.getColumnMappings();
+        if ( columnMappings != null && !columnMappings.isEmpty() ) {
+          open( "column-mappings" );
+          for ( ColumnMapping columnMapping : columnMappings ) {
+            open( "column-mapping" );
+            text( "name", columnMapping.getName() );
+            text( "columnName", columnMapping.getColumnName() );
+            if ( columnMapping.getColumnDataType() != null ) {
+              text( "dataType", columnMapping.getColumnDataType().name() );
+            }
+            close( "column-mapping" );
+          }
+          close( "column-mappings" );
+        }
+        close( "data-provider" );
+      }
+      close( "data-providers" );
+    }
+
+    private void open( String tag ) throws IOException {
+      startLine();
+      out.write( '<' );
+      out.write( tag );
+      out.write( '>' );
+      level++;
+      hasChild[level] = false;
+    }
+
+    private void close( String tag ) throws IOException {
+      if ( hasChild[level] ) {
+        out.write( ' ' );
+      }
+      level--;
+      newLine();
+      out.write( "</" );
+      out.write( tag );
+      out.write( '>' );
+    }
+
+    /**
+     * An element whose content is only indentation, as the legacy string produces for an empty group or an
+     * annotation without properties.
+     */
+    private void empty( String tag ) throws IOException {
+      startLine();
+      out.write( '<' );
+      out.write( tag );
+      out.write( "></" );
+      out.write( tag );
+      out.write( '>' );
+    }
+
+    private void text( String tag, String value ) throws IOException {
+      startLine();
+      out.write( '<' );
+      out.write( tag );
+      if ( value == null || value.length() == 0 ) {
+        out.write( "/>" );
+        return;
+      }
+      out.write( '>' );
+      StringTokenizer tokens = new StringTokenizer( value );
+      boolean first = true;
+      while ( tokens.hasMoreTokens() ) {
+        if ( !first ) {
+          out.write( ' ' );
+        }
+        first = false;
+        escape( tokens.nextToken() );
+      }
+      out.write( "</" );
+      out.write( tag );
+      out.write( '>' );
+    }
+
+    private void cdata( String tag, String value ) throws IOException {
+      startLine();
+      out.write( '<' );
+      out.write( tag );
+      out.write( "><![CDATA[" );
+      for ( int i = 0; i < value.length(); i++ ) {
+        char c = value.charAt( i );
+        if ( c == '\r' ) {
+          out.write( '\n' );
+          if ( i + 1 < value.length() && value.charAt( i + 1 ) == '\n' ) {
+            i++;
+          }
+        } else {
+          out.write( c );
+        }
+      }
+      out.write( "]]></" );
+      out.write( tag );
+      out.write( '>' );
+    }
+
+    private void escape( String token ) throws IOException {
+      for ( int i = 0; i < token.length(); i++ ) {
+        char c = token.charAt( i );
+        switch ( c ) {
+          case '<':
+            out.write( "&lt;" );
+            break;
+          case '>':
+            out.write( "&gt;" );
+            break;
+          case '&':
+            out.write( "&amp;" );
+            break;
+          default:
+            out.write( c );
+        }
+      }
+    }
+
+    /**
+     * Whitespace-only text precedes every child in the legacy string; the pretty printer pads it with a space after,
+     * and with one before as well once a sibling element has been written.
+     */
+    private void startLine() throws IOException {
+      if ( level > 0 ) {
+        if ( hasChild[level] ) {
+          out.write( ' ' );
+        }
+        out.write( ' ' );
+        hasChild[level] = true;
+      }
+      newLine();
+    }
+
+    private void newLine() throws IOException {
+      out.write( '\n' );
+      for ( int i = 0; i < level; i++ ) {
+        out.write( INDENT );
+      }
+    }
+
+    private void end() throws IOException {
+      out.write( '\n' );
+    }
+  }
 }
@@ -14,17 +14,26 @@
 package org.pentaho.agilebi.modeler.models.annotations;
 
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.agilebi.modeler.models.annotations.data.DataProvider;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettlePluginException;
 import org.pentaho.di.metastore.DatabaseMetaStoreUtil;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.api.IMetaStoreElement;
 import org.pentaho.metastore.api.IMetaStoreElementType;
+import org.pentaho.metastore.api.exceptions.MetaStoreElementExistException;
 import org.pentaho.metastore.api.exceptions.MetaStoreException;
 import org.pentaho.metastore.persist.MetaStoreFactory;
 import org.pentaho.metastore.util.PentahoDefaults;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Rowell Belen
@@ -88,55 +97,276 @@ public class ModelAnnotationManager {
       return;
     }
 
-    MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
-    factory.saveElement( augmentGroup( modelAnnotationGroup ) );
+    try {
+      MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
+      factory.saveElement( augmentGroup( modelAnnotationGroup ) );
+    } finally {
+      invalidate( metastore, Collections.singletonList( modelAnnotationGroup.getName() ) );
+    }
   }
 
   public ModelAnnotationGroup readGroup( String groupName, IMetaStore metastore ) throws MetaStoreException {
-    MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
-    return (ModelAnnotationGroup) factory.loadElement( groupName );
+    ModelAnnotationCache cache = ModelAnnotationCache.get( metastore );
+    ModelAnnotationGroup group = cache.getGroup( sharedDimension, groupName );
+    if ( group == null ) {
+      MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
+      group = (ModelAnnotationGroup) factory.loadElement( groupName );
+      if ( group != null ) {
+        cache.putGroup( sharedDimension, groupName, group );
+      }
+    }
+    return group;
   }
 
   public void updateGroup( ModelAnnotationGroup modelAnnotationGroup, IMetaStore metastore ) throws MetaStoreException {
-    MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
-    factory.deleteElement( modelAnnotationGroup.getName() );
-    factory.saveElement( augmentGroup( modelAnnotationGroup ) );
+    replaceGroup( modelAnnotationGroup, metastore );
+  }
+
+  /**
+   * Overwrites the stored group of the same name, or creates it. The element is updated in place where the
+   * metastore supports it; otherwise it is deleted and saved again, and the previous version is restored if the save
+   * fails.
+   */
+  public void replaceGroup( final ModelAnnotationGroup modelAnnotationGroup, final IMetaStore metastore )
+      throws MetaStoreException {
+    saveGroups( Collections.singletonList( modelAnnotationGroup ), metastore );
+  }
+
+  /**
+   * Creates or replaces each group, resolving the metastore element type once for the whole batch. The metastore has
+   * no transactions, so when the batch writes more than one group the previous version of each is read just before
+   * it is overwritten, and if a later write fails the groups already written are put back before the exception is
+   * rethrown. A single group is written without reading it first.
+   */
+  public void saveGroups( final Collection<? extends ModelAnnotationGroup> modelAnnotationGroups,
+                          final IMetaStore metastore ) throws MetaStoreException {
+    if ( metastore == null || modelAnnotationGroups == null || modelAnnotationGroups.isEmpty() ) {
+      return;
+    }
+    MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
+    Set<String> names = new LinkedHashSet<String>();
+    for ( ModelAnnotationGroup group : modelAnnotationGroups ) {
+      names.add( group.getName() );
+    }
+    boolean undoable = names.size() > 1;
+    Map<String, ModelAnnotationGroup> previous = new LinkedHashMap<String, ModelAnnotationGroup>();
+    try {
+      for ( ModelAnnotationGroup group : modelAnnotationGroups ) {
+        String name = group.getName();
+        if ( undoable && !previous.containsKey( name ) ) {
+          previous.put( name, (ModelAnnotationGroup) factory.loadElement( name ) );
+        }
+        saveOrReplace( factory, augmentGroup( group ) );
+      }
+    } catch ( MetaStoreException e ) {
+      restore( factory, previous, e );
+      throw e;
+    } catch ( RuntimeException e ) {
+      restore( factory, previous, e );
+      throw e;
+    } finally {
+      invalidate( metastore, names );
+    }
+  }
+
+  /**
+   * Deletes the named groups that exist, reading each one once to find out. When the batch names more than one group
+   * the groups read are kept, and if a delete fails those already deleted are saved again before the exception is
+   * rethrown.
+   */
+  public void deleteGroups( final Collection<String> groupNames, final IMetaStore metastore )
+      throws MetaStoreException {
+    if ( metastore == null || groupNames == null || groupNames.isEmpty() ) {
+      return;
+    }
+    MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
+    Set<String> names = new LinkedHashSet<String>( groupNames );
+    boolean undoable = names.size() > 1;
+    Map<String, ModelAnnotationGroup> previous = new LinkedHashMap<String, ModelAnnotationGroup>();
+    try {
+      for ( String name : names ) {
+        ModelAnnotationGroup group = (ModelAnnotationGroup) factory.loadElement( name );
+        if ( group != null ) {
+          if ( undoable ) {
+            previous.put( name, group );
+          }
+          factory.deleteElement( name );
+        }
+      }
+    } catch ( MetaStoreException e ) {
+      restore( factory, previous, e );
+      throw e;
+    } catch ( RuntimeException e ) {
+      restore( factory, previous, e );
+      throw e;
+    } finally {
+      invalidate( metastore, names );
+    }
+  }
+
+  /**
+   * Drops cached reads after a write, and for shared dimensions the workspaces linked from the written groups.
+   */
+  private void invalidate( IMetaStore metastore, Collection<String> groupNames ) {
+    ModelAnnotationCache.get( metastore ).invalidateGroups( sharedDimension );
+    if ( sharedDimension ) {
+      SharedDimensionCache sharedDimensionCache = SharedDimensionCache.get( metastore );
+      for ( String groupName : groupNames ) {
+        sharedDimensionCache.invalidate( groupName );
+      }
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static void saveOrReplace( MetaStoreFactory factory, ModelAnnotationGroup group )
+      throws MetaStoreException {
+    try {
+      factory.saveElement( group );
+    } catch ( MetaStoreElementExistException e ) {
+      // stores that only create elements
+      ModelAnnotationGroup previous = (ModelAnnotationGroup) factory.loadElement( group.getName() );
+      factory.deleteElement( group.getName() );
+      try {
+        factory.saveElement( group );
+      } catch ( MetaStoreException saveFailure ) {
+        restore( factory, Collections.singletonMap( group.getName(), previous ), saveFailure );
+        throw saveFailure;
+      }
+    }
+  }
+
+  /**
+   * Best effort undo of a failed batch, newest change first: groups that did not exist are deleted, the others are
+   * saved back. Failures while undoing are attached to the original exception.
+   */
+  private static void restore( MetaStoreFactory factory, Map<String, ModelAnnotationGroup> previous,
+                               Exception cause ) {
+    List<Map.Entry<String, ModelAnnotationGroup>> changes =
+        new ArrayList<Map.Entry<String, ModelAnnotationGroup>>( previous.entrySet() );
+    Collections.reverse( changes );
+    for ( Map.Entry<String, ModelAnnotationGroup> change : changes ) {
+      try {
+        if ( change.getValue() == null ) {
+          if ( factory.loadElement( change.getKey() ) != null ) {
+            factory.deleteElement( change.getKey() );
+          }
+        } else {
+          saveOrReplace( factory, change.getValue() );
+        }
+      } catch ( Exception e ) {
+        cause.addSuppressed( e );
+      }
+    }
   }
 
   public void deleteGroup( String groupName, IMetaStore metastore ) throws MetaStoreException {
-    MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
-    factory.deleteElement( groupName );
+    try {
+      MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
+      factory.deleteElement( groupName );
+    } finally {
+      invalidate( metastore, Collections.singletonList( groupName ) );
+    }
   }
 
   public List<ModelAnnotationGroup> listGroups( final IMetaStore metastore ) throws MetaStoreException {
     MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
-    return factory.getElements();
+    List<ModelAnnotationGroup> groups = factory.getElements();
+    ModelAnnotationCache cache = ModelAnnotationCache.get( metastore );
+    List<String> names = new ArrayList<String>( groups.size() );
+    for ( ModelAnnotationGroup group : groups ) {
+      if ( group.getName() != null ) {
+        names.add( group.getName() );
+      }
+    }
+    cache.putGroupNames( sharedDimension, names );
+    return groups;
   }
 
   public List<String> listGroupNames( IMetaStore metastore ) throws MetaStoreException {
-    MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
-    return factory.getElementNames();
+    return new ArrayList<String>( getGroupNames( metastore ) );
   }
 
   public boolean containsGroup( String groupName, IMetaStore metastore ) throws MetaStoreException {
     if ( metastore == null ) {
       return false;
     }
-    for ( String name : listGroupNames( metastore ) ) {
-      if ( name.equals( groupName ) ) {
-        return true;
+    return getGroupNames( metastore ).contains( groupName );
+  }
+
+  private Set<String> getGroupNames( IMetaStore metastore ) throws MetaStoreException {
+    ModelAnnotationCache cache = ModelAnnotationCache.get( metastore );
+    Set<String> names = cache.getGroupNames( sharedDimension );
+    if ( names == null ) {
+      MetaStoreFactory factory = this.getGroupMetaStoreFactory( metastore );
+      cache.putGroupNames( sharedDimension, factory.getElementNames() );
+      names = cache.getGroupNames( sharedDimension );
+    }
+    return names;
+  }
+
+  /**
+   * Reads all groups of this manager's kind, and the database connections their data providers refer to, so later
+   * reads are served from the cache. Meant for warming up at startup.
+   */
+  public void preload( IMetaStore metastore ) throws MetaStoreException, KettlePluginException {
+    if ( metastore == null ) {
+      return;
+    }
+    ModelAnnotationCache cache = ModelAnnotationCache.get( metastore );
+    for ( ModelAnnotationGroup group : listGroups( metastore ) ) {
+      if ( group.getName() != null ) {
+        cache.putGroup( sharedDimension, group.getName(), group );
+      }
+      if ( group.getDataProviders() == null ) {
+        continue;
       }
+      for ( DataProvider dataProvider : group.getDataProviders() ) {
+        if ( StringUtils.isNotBlank( dataProvider.getDatabaseMetaNameRef() ) ) {
+          loadDatabaseMeta( dataProvider.getDatabaseMetaNameRef(), metastore );
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops everything cached for this metastore, e.g. after it was written to without going through a manager.
+   */
+  public static void invalidateCache( IMetaStore metastore ) {
+    if ( metastore != null ) {
+      ModelAnnotationCache.invalidateAll( metastore );
     }
-    return false;
   }
 
+  /**
+   * @param millis how long cached reads stay valid; zero or less (the default unless the
+   *               <code>pentaho.modeler.annotationCache.ttl</code> system property is set) keeps them until this
+   *               process writes to the metastore
+   */
+  public static void setCacheTimeToLive( long millis ) {
+    ModelAnnotationCache.setTimeToLive( millis );
+  }
+
+  public static long getCacheTimeToLive() {
+    return ModelAnnotationCache.getTimeToLive();
+  }
+
+  /**
+   * Deletes every group of this manager's kind. Nothing is read first: a failure leaves the remaining groups in place
+   * and the call can simply be repeated.
+   */
   public void deleteAllGroups( IMetaStore metastore ) throws MetaStoreException {
     if ( metastore == null ) {
       return;
     }
 
-    for ( String name : listGroupNames( metastore ) ) {
-      this.deleteGroup( name, metastore );
+    MetaStoreFactory factory = getGroupMetaStoreFactory( metastore );
+    List<String> names = factory.getElementNames();
+    try {
+      for ( String name : names ) {
+        factory.deleteElement( name );
+      }
+    } finally {
+      invalidate( metastore, names );
     }
   }
 
@@ -154,23 +384,36 @@ public class ModelAnnotationManager {
     IMetaStoreElement dbMetaExisting =
         mstore.getElementByName( properType.getNamespace(), properType, dbMeta.getName() );
     // update if exists, create if doesn't
-    if ( dbMetaExisting != null ) {
-      mstore.updateElement( properType.getNamespace(), properType, dbMetaExisting.getId(), dbMetaElement );
-    } else {
-      mstore.createElement( properType.getNamespace(), properType, dbMetaElement );
+    try {
+      if ( dbMetaExisting != null ) {
+        mstore.updateElement( properType.getNamespace(), properType, dbMetaExisting.getId(), dbMetaElement );
+      } else {
+        mstore.createElement( properType.getNamespace(), properType, dbMetaElement );
+      }
+    } finally {
+      ModelAnnotationCache.get( mstore ).invalidateDatabaseMeta( dbMeta.getName() );
     }
     return dbMeta.getName();
   }
 
   public DatabaseMeta loadDatabaseMeta( String databaseMetaRefName, IMetaStore mstore ) throws MetaStoreException,
       KettlePluginException {
+    ModelAnnotationCache cache = ModelAnnotationCache.get( mstore );
+    DatabaseMeta cached = cache.getDatabaseMeta( databaseMetaRefName );
+    if ( cached != null ) {
+      return cached;
+    }
     IMetaStoreElementType dbMetaType =
         mstore.getElementTypeByName( PentahoDefaults.NAMESPACE, PentahoDefaults.DATABASE_CONNECTION_ELEMENT_TYPE_NAME );
     IMetaStoreElement element = mstore.getElementByName( dbMetaType.getNamespace(), dbMetaType, databaseMetaRefName );
     if ( element == null ) {
       return null;
     }
-    return DatabaseMetaStoreUtil.loadDatabaseMetaFromDatabaseElement( mstore, element );
+    DatabaseMeta databaseMeta = DatabaseMetaStoreUtil.loadDatabaseMetaFromDatabaseElement( mstore, element );
+    if ( databaseMeta != null ) {
+      cache.putDatabaseMeta( databaseMetaRefName, databaseMeta );
+    }
+    return databaseMeta;
   }
 
   private static IMetaStoreElementType getDatabaseMetaType( IMetaStore metaStore ) throws MetaStoreException {
@@ -0,0 +1,305 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.apache.commons.lang.BooleanUtils;
+import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.pentaho.metadata.model.concept.types.AggregationType;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of the {@link ModelProperty} fields of an annotation type, built once per class. Replaces walking
+ * the class hierarchy and going through commons-beanutils on every property access.
+ */
+public final class ModelPropertyDescriptor {
+
+  private static final ClassValue<ModelPropertyDescriptor> DESCRIPTORS = new ClassValue<ModelPropertyDescriptor>() {
+    @Override protected ModelPropertyDescriptor computeValue( final Class<?> type ) {
+      return new ModelPropertyDescriptor( type );
+    }
+  };
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType( Object.class, Object.class );
+  private static final MethodType SETTER_TYPE = MethodType.methodType( void.class, Object.class, Object.class );
+
+  private final List<Accessor> accessors;
+  private final List<ModelProperty> modelProperties;
+  private final List<String> ids;
+  private final List<String> names;
+  private final Map<String, Accessor> byId;
+  private final Map<String, Accessor> byName;
+  private final Map<Field, Accessor> byField;
+
+  /**
+   * @return the shared descriptor for {@code type}
+   */
+  public static ModelPropertyDescriptor forClass( final Class<?> type ) {
+    return DESCRIPTORS.get( type );
+  }
+
+  private ModelPropertyDescriptor( final Class<?> type ) {
+    Map<String, PropertyDescriptor> beanProperties = beanProperties( type );
+    List<Accessor> found = new ArrayList<Accessor>();
+    for ( Class<?> current = type; current != null; current = current.getSuperclass() ) {
+      for ( Field field : current.getDeclaredFields() ) {
+        ModelProperty modelProperty = field.getAnnotation( ModelProperty.class );
+        if ( modelProperty != null ) {
+          found.add( new Accessor( field, modelProperty, beanProperties.get( field.getName() ) ) );
+        }
+      }
+    }
+
+    List<String> idList = new ArrayList<String>( found.size() );
+    Map<String, Accessor> idMap = new HashMap<String, Accessor>();
+    Map<String, Accessor> nameMap = new HashMap<String, Accessor>();
+    Map<Field, Accessor> fieldMap = new HashMap<Field, Accessor>();
+    for ( Accessor accessor : found ) {
+      idList.add( accessor.getId() );
+      // the most derived declaration wins, as the field-by-field lookups always did
+      if ( !idMap.containsKey( accessor.getId() ) ) {
+        idMap.put( accessor.getId(), accessor );
+      }
+      if ( !nameMap.containsKey( accessor.getName() ) ) {
+        nameMap.put( accessor.getName(), accessor );
+      }
+      fieldMap.put( accessor.field, accessor );
+    }
+
+    List<Accessor> sorted = new ArrayList<Accessor>( found );
+    Collections.sort( sorted, new Comparator<Accessor>() {
+      @Override public int compare( final Accessor a1, final Accessor a2 ) {
+        return Integer.compare( a1.modelProperty.order(), a2.modelProperty.order() );
+      }
+    } );
+    List<ModelProperty> propertyList = new ArrayList<ModelProperty>( sorted.size() );
+    List<String> nameList = new ArrayList<String>( sorted.size() );
+    for ( Accessor accessor : sorted ) {
+      propertyList.add( accessor.modelProperty );
+      nameList.add( accessor.getName() );
+    }
+
+    accessors = Collections.unmodifiableList( sorted );
+    modelProperties = Collections.unmodifiableList( propertyList );
+    ids = Collections.unmodifiableList( idList );
+    names = Collections.unmodifiableList( nameList );
+    byId = idMap;
+    byName = nameMap;
+    byField = fieldMap;
+  }
+
+  /**
+   * @return accessors sorted by {@link ModelProperty#order()}
+   */
+  public List<Accessor> getAccessors() {
+    return accessors;
+  }
+
+  /**
+   * @return model properties sorted by {@link ModelProperty#order()}
+   */
+  public List<ModelProperty> getModelProperties() {
+    return modelProperties;
+  }
+
+  /**
+   * @return property ids in field declaration order, most derived class first
+   */
+  public List<String> getIds() {
+    return ids;
+  }
+
+  /**
+   * @return property names sorted by {@link ModelProperty#order()}
+   */
+  public List<String> getNames() {
+    return names;
+  }
+
+  public Accessor getById( final String id ) {
+    return id == null ? null : byId.get( id );
+  }
+
+  public Accessor getByName( final String name ) {
+    return name == null ? null : byName.get( name );
+  }
+
+  public Accessor getByField( final Field field ) {
+    return byField.get( field );
+  }
+
+  private static Map<String, PropertyDescriptor> beanProperties( final Class<?> type ) {
+    Map<String, PropertyDescriptor> properties = new HashMap<String, PropertyDescriptor>();
+    try {
+      for ( PropertyDescriptor descriptor : Introspector.getBeanInfo( type ).getPropertyDescriptors() ) {
+        properties.put( descriptor.getName(), descriptor );
+      }
+    } catch ( IntrospectionException e ) {
+      // no bean accessors; every property access will fail the way PropertyUtils would
+    }
+    return properties;
+  }
+
+  private static MethodHandle unreflect( final Method method, final MethodType type ) {
+    if ( method == null ) {
+      return null;
+    }
+    try {
+      method.setAccessible( true );
+      return MethodHandles.lookup().unreflect( method ).asType( type );
+    } catch ( Exception e ) {
+      return null;
+    }
+  }
+
+  private enum Conversion {
+    BOOLEAN,
+    AGGREGATION_TYPE,
+    TIME_TYPE,
+    GEO_TYPE,
+    NUMBER;
+
+    static Conversion forType( final Class<?> type ) {
+      if ( ClassUtils.isAssignable( type, Boolean.class, true ) ) {
+        return BOOLEAN;
+      }
+      if ( ClassUtils.isAssignable( type, AggregationType.class, true ) ) {
+        return AGGREGATION_TYPE;
+      }
+      if ( ClassUtils.isAssignable( type, ModelAnnotation.TimeType.class, true ) ) {
+        return TIME_TYPE;
+      }
+      if ( ClassUtils.isAssignable( type, ModelAnnotation.GeoType.class, true ) ) {
+        return GEO_TYPE;
+      }
+      return NUMBER;
+    }
+
+    /**
+     * @return the converted value, or null when {@code value} cannot be converted
+     */
+    Object convert( final Object value ) {
+      switch ( this ) {
+        case BOOLEAN:
+          return BooleanUtils.toBoolean( value.toString() );
+        case AGGREGATION_TYPE:
+          return AggregationType.valueOf( value.toString() );
+        case TIME_TYPE:
+          return ModelAnnotation.TimeType.valueOf( value.toString() );
+        case GEO_TYPE:
+          return ModelAnnotation.GeoType.valueOf( value.toString() );
+        default:
+          return NumberUtils.isNumber( value.toString() ) ? NumberUtils.createNumber( value.toString() ) : null;
+      }
+    }
+  }
+
+  /**
+   * Getter, setter and value conversion for one {@link ModelProperty} field.
+   */
+  public static final class Accessor {
+    private final Field field;
+    private final ModelProperty modelProperty;
+    private final String propertyName;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final Conversion conversion;
+
+    private Accessor( final Field field, final ModelProperty modelProperty, final PropertyDescriptor descriptor ) {
+      this.field = field;
+      this.modelProperty = modelProperty;
+      this.propertyName = field.getName();
+      this.getter = descriptor == null ? null : unreflect( descriptor.getReadMethod(), GETTER_TYPE );
+      this.setter = descriptor == null ? null : unreflect( descriptor.getWriteMethod(), SETTER_TYPE );
+      this.conversion = Conversion.forType( field.getType() );
+    }
+
+    public String getId() {
+      return modelProperty.id();
+    }
+
+    public String getName() {
+      return modelProperty.name();
+    }
+
+    public Field getField() {
+      return field;
+    }
+
+    public ModelProperty getModelProperty() {
+      return modelProperty;
+    }
+
+    public Class<?> getType() {
+      return field.getType();
+    }
+
+    public Object get( final Object bean ) throws Exception {
+      if ( getter == null ) {
+        throw new NoSuchMethodException( "Property '" + propertyName + "' has no getter method" );
+      }
+      try {
+        return getter.invokeExact( bean );
+      } catch ( Exception e ) {
+        throw e;
+      } catch ( Throwable t ) {
+        throw new IllegalStateException( t );
+      }
+    }
+
+    public void set( final Object bean, final Object value ) throws Exception {
+      if ( setter == null ) {
+        throw new NoSuchMethodException( "Property '" + propertyName + "' has no setter method" );
+      }
+      try {
+        setter.invokeExact( bean, value );
+      } catch ( Exception e ) {
+        throw e;
+      } catch ( Throwable t ) {
+        throw new IllegalStateException( t );
+      }
+    }
+
+    /**
+     * Whether {@code value} can be assigned without conversion, allowing for boxing and primitive widening.
+     */
+    public boolean isAssignable( final Object value ) {
+      return ClassUtils.isAssignable( value.getClass(), field.getType(), true );
+    }
+
+    /**
+     * Converts {@code value} with the conversion chosen for the field type: booleans and the model enums are parsed
+     * from the value's string form, anything else as a number.
+     *
+     * @return the converted value, or null if it is not a number where one is required
+     */
+    public Object convert( final Object value ) {
+      return conversion.convert( value );
+    }
+  }
+}
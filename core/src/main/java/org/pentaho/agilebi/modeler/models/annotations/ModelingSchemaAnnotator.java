@@ -13,25 +13,120 @@
 package org.pentaho.agilebi.modeler.models.annotations;
 
 import org.apache.commons.io.IOUtils;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaStreamPatcher;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.platform.api.repository.RepositoryException;
 import org.pentaho.platform.api.repository2.unified.MondrianSchemaAnnotator;
 import org.w3c.dom.Document;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
+/**
+ * Applies stored annotations to a Mondrian schema. Results are cached by the content of both inputs, see
+ * {@link SchemaAnnotationCache}.
+ * <p>
+ * With streaming on, a schema whose annotations can all be applied to their cube alone is patched while it is
+ * copied, see {@link SchemaStreamPatcher}, instead of being loaded into a DOM. The patched schema keeps the layout of
+ * the input rather than being reformatted.
+ */
 public class ModelingSchemaAnnotator implements MondrianSchemaAnnotator {
+
+  public static final String STREAMING_PROPERTY = "pentaho.modeler.schemaAnnotator.streaming"; //$NON-NLS-1$
+
+  private static final SchemaAnnotationCache SHARED_CACHE = SchemaAnnotationCache.fromSystemProperties();
+
+  private final SchemaAnnotationCache cache;
+
+  private volatile boolean streaming = Boolean.getBoolean( STREAMING_PROPERTY );
+
+  public ModelingSchemaAnnotator() {
+    this( SHARED_CACHE );
+  }
+
+  public ModelingSchemaAnnotator( SchemaAnnotationCache cache ) {
+    this.cache = cache;
+  }
+
+  public static SchemaAnnotationCache getSharedCache() {
+    return SHARED_CACHE;
+  }
+
+  public SchemaAnnotationCache getCache() {
+    return cache;
+  }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public void setStreaming( final boolean streaming ) {
+    this.streaming = streaming;
+  }
+
   @Override public InputStream getInputStream(
       final InputStream schemaInputStream, final InputStream annotationsInputStream ) {
-    ModelAnnotationGroupXmlReader reader = new ModelAnnotationGroupXmlReader();
     try {
-      Document annotationsDoc = XMLHandler.loadXMLFile( annotationsInputStream );
-      Document schemaDoc = XMLHandler.loadXMLFile( schemaInputStream );
-      ModelAnnotationGroup modelAnnotations = reader.readModelAnnotationGroup( annotationsDoc );
-      modelAnnotations.applyAnnotations( schemaDoc );
-      return IOUtils.toInputStream( XMLHandler.formatNode( schemaDoc ) );
+      byte[] annotations = IOUtils.toByteArray( annotationsInputStream );
+      byte[] schema = IOUtils.toByteArray( schemaInputStream );
+      // streamed and DOM output differ in layout, so the mode is part of the key
+      boolean streamed = streaming;
+      String key = cache.isEnabled() ? ( streamed ? "stream:" : "dom:" ) + hash( schema ) + ':' + hash( annotations )
+        : null;
+      byte[] annotated = key != null ? cache.get( key ) : null;
+      if ( annotated == null ) {
+        annotated = annotate( schema, annotations, streamed );
+        if ( key != null ) {
+          cache.put( key, annotated );
+        }
+      }
+      return new ByteArrayInputStream( annotated );
     } catch ( Exception e ) {
       throw new RepositoryException( e );
     }
   }
+
+  private byte[] annotate( final byte[] schema, final byte[] annotations, final boolean streamed ) throws Exception {
+    ModelAnnotationGroup modelAnnotations =
+      new ModelAnnotationGroupXmlReader().readModelAnnotationGroup( new ByteArrayInputStream( annotations ) );
+    byte[] patched = streamed ? patch( schema, modelAnnotations ) : null;
+    if ( patched != null ) {
+      return patched;
+    }
+    Document schemaDoc = XMLHandler.loadXMLFile( new ByteArrayInputStream( schema ) );
+    modelAnnotations.applyAnnotations( schemaDoc );
+    return XMLHandler.formatNode( schemaDoc ).getBytes( Charset.defaultCharset() );
+  }
+
+  /**
+   * @return the streamed schema with the changes of the annotations, or null if they need a DOM of the schema
+   */
+  private static byte[] patch( final byte[] schema, final ModelAnnotationGroup modelAnnotations ) {
+    SchemaEditBatch batch = new SchemaEditBatch();
+    try {
+      if ( !modelAnnotations.addEdits( batch ) ) {
+        return null;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream( schema.length + 1024 );
+      return new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out )
+        ? out.toByteArray() : null;
+    } catch ( ModelerException e ) {
+      return null;
+    }
+  }
+
+  private static String hash( final byte[] content ) throws NoSuchAlgorithmException {
+    byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( content ); //$NON-NLS-1$
+    StringBuilder hex = new StringBuilder( digest.length * 2 );
+    for ( byte b : digest ) {
+      hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+    }
+    return hex.toString();
+  }
 }
@@ -60,7 +60,7 @@ public class RemoveAttribute extends AnnotationType {
 
     if ( existingLevel != null && workspace != null ) {
       removeLevel( workspace, existingLevel );
-      workspace.getWorkspaceHelper().populateDomain( workspace );
+      workspace.getWorkspaceHelper().syncDomain( workspace );
       isApplied = true;
     }
 
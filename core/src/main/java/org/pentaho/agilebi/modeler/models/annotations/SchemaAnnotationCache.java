@@ -0,0 +1,159 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of annotated Mondrian schemas, keyed by the content hashes of the schema and the annotations it
+ * was built from and by how it was built. The cache is limited both by entry count and by the total size of the
+ * cached documents; the least recently used entries are evicted first.
+ */
+public class SchemaAnnotationCache {
+
+  public static final String ENABLED_PROPERTY = "pentaho.modeler.schemaAnnotationCache.enabled"; //$NON-NLS-1$
+  public static final String MAX_ENTRIES_PROPERTY = "pentaho.modeler.schemaAnnotationCache.maxEntries"; //$NON-NLS-1$
+  public static final String MAX_BYTES_PROPERTY = "pentaho.modeler.schemaAnnotationCache.maxBytes"; //$NON-NLS-1$
+
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>( 16, 0.75f, true );
+  private volatile boolean enabled;
+  private int maxEntries;
+  private long maxBytes;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public SchemaAnnotationCache( int maxEntries, long maxBytes ) {
+    this( true, maxEntries, maxBytes );
+  }
+
+  public SchemaAnnotationCache( boolean enabled, int maxEntries, long maxBytes ) {
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * A cache configured from the <code>pentaho.modeler.schemaAnnotationCache.*</code> system properties.
+   */
+  public static SchemaAnnotationCache fromSystemProperties() {
+    return new SchemaAnnotationCache(
+        Boolean.parseBoolean( System.getProperty( ENABLED_PROPERTY, "true" ) ), //$NON-NLS-1$
+        Integer.getInteger( MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES ),
+        Long.getLong( MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES ) );
+  }
+
+  /**
+   * @return the cached document, or null when it is not cached or the cache is disabled
+   */
+  public synchronized byte[] get( String key ) {
+    if ( !enabled ) {
+      return null;
+    }
+    byte[] value = entries.get( key );
+    if ( value == null ) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return value;
+  }
+
+  /**
+   * Caches the document unless the cache is disabled or the document alone exceeds the size limit.
+   */
+  public synchronized void put( String key, byte[] value ) {
+    if ( !enabled || value.length > maxBytes || maxEntries <= 0 ) {
+      return;
+    }
+    byte[] previous = entries.put( key, value );
+    if ( previous != null ) {
+      bytes -= previous.length;
+    }
+    bytes += value.length;
+    trim();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Disabling the cache also drops its contents.
+   */
+  public synchronized void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+    if ( !enabled ) {
+      clear();
+    }
+  }
+
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized void setMaxEntries( int maxEntries ) {
+    this.maxEntries = maxEntries;
+    trim();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized void setMaxBytes( long maxBytes ) {
+    this.maxBytes = maxBytes;
+    trim();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getWeight() {
+    return bytes;
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+    while ( eldest.hasNext() && ( entries.size() > maxEntries || bytes > maxBytes ) ) {
+      bytes -= eldest.next().getValue().length;
+      eldest.remove();
+      evictions++;
+    }
+  }
+}
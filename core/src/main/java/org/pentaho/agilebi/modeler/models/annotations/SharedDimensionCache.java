@@ -0,0 +1,247 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyStatus;
+import org.pentaho.agilebi.modeler.models.annotations.data.ColumnMapping;
+import org.pentaho.agilebi.modeler.models.annotations.data.DataProvider;
+import org.pentaho.agilebi.modeler.util.WorkspaceTemplate;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.metastore.api.IMetaStore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Shared dimensions that {@link LinkDimension} has already introspected, auto-modeled and annotated, so linking the
+ * same dimension again only costs a deep copy of the workspace.
+ * <p/>
+ * There is one cache per metastore the shared dimension groups were read from, held and dropped together with the
+ * metastore's {@link ModelAnnotationCache}. Entries are keyed by the shared dimension name, a hash of the group's
+ * content (annotations and data providers), the data provider used and the identity of the fact table's database,
+ * and are evicted least recently used first. They expire after the time to live of
+ * {@link ModelAnnotationManager#setCacheTimeToLive(long)}, writes through a shared dimension
+ * {@link ModelAnnotationManager} invalidate the group and {@link ModelAnnotationManager#invalidateCache(IMetaStore)}
+ * clears the cache; changes to the database tables themselves need {@link #invalidate(String)} or
+ * {@link #invalidateAll()}.
+ */
+public class SharedDimensionCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 32;
+
+  private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<String, Slot>( 16, 0.75f, true );
+  private final LongSupplier clock;
+  private int maxEntries;
+  private boolean enabled = true;
+
+  public SharedDimensionCache( int maxEntries ) {
+    this( maxEntries, System::currentTimeMillis );
+  }
+
+  SharedDimensionCache( int maxEntries, LongSupplier clock ) {
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  /**
+   * @return the cache of shared dimensions read from this metastore instance
+   */
+  public static SharedDimensionCache get( IMetaStore metaStore ) {
+    return ModelAnnotationCache.get( metaStore ).getSharedDimensionCache();
+  }
+
+  /**
+   * @return the cache key for linking <code>dataProvider</code> of the shared dimension <code>group</code> into a
+   * model on <code>databaseMeta</code>
+   */
+  static String key( String sharedDimension, ModelAnnotationGroup group, DataProvider dataProvider,
+                     DatabaseMeta databaseMeta, String locale ) {
+    StringBuilder key = new StringBuilder( sharedDimension ).append( '\0' );
+    key.append( hash( describe( group ) ) ).append( '\0' );
+    key.append( group.getDataProviders().indexOf( dataProvider ) ).append( '\0' );
+    key.append( dataProvider.getSchemaName() ).append( '.' ).append( dataProvider.getTableName() ).append( '\0' );
+    if ( databaseMeta != null ) {
+      key.append( databaseMeta.getPluginId() ).append( '|' ).append( databaseMeta.getHostname() ).append( '|' )
+          .append( databaseMeta.getDatabasePortNumberString() ).append( '|' ).append( databaseMeta.getDatabaseName() )
+          .append( '|' ).append( databaseMeta.getUsername() );
+    }
+    return key.append( '\0' ).append( locale ).toString();
+  }
+
+  /**
+   * @return the cached dimension, or null when it is not cached, has expired or the cache is disabled
+   */
+  public synchronized Entry get( String key ) {
+    Slot slot = enabled ? entries.get( key ) : null;
+    if ( slot == null ) {
+      return null;
+    }
+    if ( !ModelAnnotationCache.isFresh( slot.loaded, clock.getAsLong() ) ) {
+      entries.remove( key );
+      return null;
+    }
+    return slot.entry;
+  }
+
+  public synchronized void put( String key, Entry entry ) {
+    if ( !enabled || maxEntries <= 0 ) {
+      return;
+    }
+    entries.put( key, new Slot( entry, clock.getAsLong() ) );
+    trim();
+  }
+
+  /**
+   * Drops every entry of the named shared dimension.
+   */
+  public synchronized void invalidate( String sharedDimension ) {
+    String prefix = sharedDimension + '\0';
+    for ( Iterator<String> keys = entries.keySet().iterator(); keys.hasNext(); ) {
+      if ( keys.next().startsWith( prefix ) ) {
+        keys.remove();
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  public synchronized void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+    if ( !enabled ) {
+      entries.clear();
+    }
+  }
+
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized void setMaxEntries( int maxEntries ) {
+    this.maxEntries = maxEntries;
+    trim();
+  }
+
+  private void trim() {
+    Iterator<String> eldest = entries.keySet().iterator();
+    while ( entries.size() > maxEntries && eldest.hasNext() ) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * The content of the group that makes up the shared dimension: the type and properties of each annotation and the
+   * data providers. Unlike the XML of the group, describing it leaves unnamed annotations unnamed.
+   */
+  private static String describe( ModelAnnotationGroup group ) {
+    final StringBuilder content = new StringBuilder();
+    for ( ModelAnnotation<?> modelAnnotation : group ) {
+      AnnotationType annotationType = modelAnnotation.getAnnotation();
+      content.append( annotationType == null ? null : annotationType.getClass().getName() ).append( '\0' );
+      modelAnnotation.iterateProperties( ( key, value ) -> content.append( key ).append( '=' ).append( value )
+          .append( '\0' ) );
+      content.append( '\n' );
+    }
+    if ( group.getDataProviders() != null ) {
+      for ( DataProvider provider : group.getDataProviders() ) {
+        content.append( provider.getName() ).append( '\0' ).append( provider.getSchemaName() ).append( '\0' )
+            .append( provider.getTableName() ).append( '\0' ).append( provider.getDatabaseMetaNameRef() );
+        if ( provider.getColumnMappings() != null ) {
+          for ( ColumnMapping columnMapping : provider.getColumnMappings() ) {
+            content.append( '\0' ).append( columnMapping.getName() ).append( '=' )
+                .append( columnMapping.getColumnName() ).append( ':' ).append( columnMapping.getColumnDataType() );
+          }
+        }
+        content.append( '\n' );
+      }
+    }
+    return content.toString();
+  }
+
+  private static String hash( String content ) {
+    try {
+      byte[] digest = MessageDigest.getInstance( "SHA-256" ) //$NON-NLS-1$
+          .digest( content.getBytes( StandardCharsets.UTF_8 ) );
+      StringBuilder hex = new StringBuilder( digest.length * 2 );
+      for ( byte b : digest ) {
+        hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+      }
+      return hex.toString();
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private static final class Slot {
+    private final Entry entry;
+    private final long loaded;
+
+    private Slot( Entry entry, long loaded ) {
+      this.entry = entry;
+      this.loaded = loaded;
+    }
+  }
+
+  /**
+   * An annotated shared dimension workspace and the outcome of its annotations. The workspace is copied when the
+   * entry is created and again for each {@link #instantiate()}, so neither the workspace passed in nor the instances
+   * handed out share any state with the entry.
+   */
+  public static class Entry {
+    private final WorkspaceTemplate template;
+    private final Map<ApplyStatus, List<ModelAnnotation>> applyStatus;
+
+    public Entry( ModelerWorkspace workspace, Map<ApplyStatus, List<ModelAnnotation>> applyStatus ) {
+      this.template = new WorkspaceTemplate( workspace );
+      Map<ApplyStatus, List<ModelAnnotation>> status =
+          new EnumMap<ApplyStatus, List<ModelAnnotation>>( ApplyStatus.class );
+      for ( Map.Entry<ApplyStatus, List<ModelAnnotation>> entry : applyStatus.entrySet() ) {
+        status.put( entry.getKey(), Collections.unmodifiableList( new ArrayList<ModelAnnotation>( entry.getValue() ) ) );
+      }
+      this.applyStatus = Collections.unmodifiableMap( status );
+    }
+
+    /**
+     * @return a deep copy of the annotated workspace, which the caller may modify freely
+     */
+    public ModelerWorkspace instantiate() throws ModelerException {
+      return template.instantiate();
+    }
+
+    public Map<ApplyStatus, List<ModelAnnotation>> getApplyStatus() {
+      return applyStatus;
+    }
+  }
+}
@@ -18,6 +18,7 @@ import org.pentaho.agilebi.modeler.BaseModelerWorkspaceHelper;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
@@ -76,10 +77,18 @@ public class ShowHideAttribute extends AnnotationType {
   }
 
   @Override public boolean apply( final Document schema ) throws ModelerException {
-    MondrianSchemaHandler schemaHandler = new MondrianSchemaHandler( schema );
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override public boolean apply( final MondrianSchemaHandler schemaHandler ) throws ModelerException {
     return schemaHandler.showHideAttribute( getCube(), getDimension(), getHierarchy(), getName(), isVisible() );
   }
 
+  @Override public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    batch.add( SchemaEditBatch.showHideAttribute( getCube(), getDimension(), getHierarchy(), getName(), isVisible() ) );
+    return true;
+  }
+
   @Override public void validate() throws ModelerException {
     if ( isBlank( getCube() ) ) {
       throw new ModelerException(
@@ -17,11 +17,15 @@ import org.pentaho.agilebi.modeler.BaseModelerWorkspaceHelper;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.apache.commons.lang.StringUtils.isBlank;
 
 public class ShowHideMeasure extends AnnotationType {
@@ -57,10 +61,18 @@ public class ShowHideMeasure extends AnnotationType {
   }
 
   @Override public boolean apply( final Document schema ) throws ModelerException {
-    MondrianSchemaHandler mondrianSchemaHandler = new MondrianSchemaHandler( schema );
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override public boolean apply( final MondrianSchemaHandler mondrianSchemaHandler ) throws ModelerException {
     return mondrianSchemaHandler.showHideMeasure( getCube(), getName(), isVisible() );
   }
 
+  @Override public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    batch.add( SchemaEditBatch.showHideMeasure( getCube(), getName(), isVisible() ) );
+    return true;
+  }
+
   @Override public void validate() throws ModelerException {
     if ( isBlank( getCube() ) ) {
       throw new ModelerException(
@@ -76,6 +88,13 @@ public class ShowHideMeasure extends AnnotationType {
     return ModelAnnotation.Type.SHOW_HIDE_MEASURE;
   }
 
+  @Override public List<String> getRequiredKeys() {
+    if ( isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.measureKey( getName() ) );
+  }
+
   @Override public String getSummary() {
     return BaseMessages.getString(
       MSG_CLASS, isVisible() ? "Modeler.ShowMeasure.Summary" : "Modeler.HideMeasure.Summary", getName(), getCube() );
@@ -16,6 +16,7 @@ import org.apache.commons.lang.StringUtils;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
@@ -77,7 +78,10 @@ public class UpdateAttribute extends AnnotationType {
   }
 
   @Override public boolean apply( final Document schema ) throws ModelerException {
-    MondrianSchemaHandler schemaHandler = new MondrianSchemaHandler( schema );
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override public boolean apply( final MondrianSchemaHandler schemaHandler ) throws ModelerException {
     boolean captioned = schemaHandler.captionLevel( getCube(), getDimension(), getHierarchy(), getLevel(), getName() );
     if ( captioned ) {
       if ( !StringUtils.isBlank( getFormatString() ) ) {
@@ -89,6 +93,15 @@ public class UpdateAttribute extends AnnotationType {
     return false;
   }
 
+  @Override public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    SchemaEditBatch.Edit format = !StringUtils.isBlank( getFormatString() )
+      ? SchemaEditBatch.formatLevel( getCube(), getDimension(), getHierarchy(), getLevel(), getFormatString() )
+      : SchemaEditBatch.removeFormatting( getCube(), getDimension(), getHierarchy(), getLevel() );
+    batch.add( SchemaEditBatch.captionLevel( getCube(), getDimension(), getHierarchy(), getLevel(), getName() ),
+      format );
+    return true;
+  }
+
   @Override public void validate() throws ModelerException {
     if ( StringUtils.isBlank( getCube() ) ) {
       throw new ModelerException(
@@ -19,12 +19,16 @@ import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.AnnotationConstants;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.pentaho.metastore.persist.MetaStoreElementType;
 import org.w3c.dom.Document;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -178,12 +182,25 @@ public class UpdateCalculatedMember extends AnnotationType {
    * @throws ModelerException
    */
   @Override public boolean apply( Document schema ) throws ModelerException {
-    if ( schema == null ) {
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override public boolean apply( final MondrianSchemaHandler mondrianSchemaHandler ) throws ModelerException {
+    if ( mondrianSchemaHandler.getSchema() == null ) {
       return false;
     }
 
-    MondrianSchemaHandler mondrianSchemaHandler = new MondrianSchemaHandler( schema );
+    mondrianSchemaHandler.updateCalculatedMember( cube, sourceCalculatedMeasure, toCalculatedMember() );
+
+    return true;
+  }
+
+  @Override public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    batch.add( SchemaEditBatch.updateCalculatedMember( cube, sourceCalculatedMeasure, toCalculatedMember() ) );
+    return true;
+  }
 
+  private MondrianDef.CalculatedMember toCalculatedMember() {
     MondrianDef.CalculatedMember calculatedMember = new MondrianDef.CalculatedMember();
     calculatedMember.name = this.getName();
     calculatedMember.caption = this.getCaption();
@@ -234,10 +251,7 @@ public class UpdateCalculatedMember extends AnnotationType {
     calculatedMember.annotations = annot;
 
     calculatedMember.formatString = this.getFormatString();
-
-    mondrianSchemaHandler.updateCalculatedMember( cube, sourceCalculatedMeasure, calculatedMember );
-
-    return true;
+    return calculatedMember;
   }
 
   @Override
@@ -297,6 +311,24 @@ public class UpdateCalculatedMember extends AnnotationType {
     return ModelAnnotation.Type.UPDATE_CALCULATED_MEMBER;
   }
 
+  @Override public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.measureKey( getName() ) );
+  }
+
+  @Override public List<String> getRequiredKeys() {
+    List<String> keys = new ArrayList<String>( AnnotationPlanner.measureReferences( getFormula() ) );
+    if ( StringUtils.isNotBlank( getSourceCalculatedMeasure() ) ) {
+      String source = AnnotationPlanner.measureKey( getSourceCalculatedMeasure() );
+      if ( !keys.contains( source ) ) {
+        keys.add( 0, source );
+      }
+    }
+    return keys;
+  }
+
   @Override public String getSummary() {
     return BaseMessages.getString( MSG_CLASS, "Modeler.UpdateCalculatedMember.Summary", getName(), getFormula() );
   }
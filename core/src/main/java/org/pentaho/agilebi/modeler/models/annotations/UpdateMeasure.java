@@ -15,9 +15,11 @@ package org.pentaho.agilebi.modeler.models.annotations;
 
 import mondrian.olap.MondrianDef;
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.agilebi.modeler.ModelSubtree;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaEditBatch;
 import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metadata.model.concept.types.AggregationType;
@@ -27,6 +29,8 @@ import org.pentaho.metastore.persist.MetaStoreAttribute;
 import org.pentaho.metastore.persist.MetaStoreElementType;
 import org.w3c.dom.Document;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -149,36 +153,51 @@ public class UpdateMeasure extends AnnotationType {
       existingMeasure.setName( name );
     }
 
-    workspace.getWorkspaceHelper().populateDomain( workspace );
+    workspace.markSubtreeDirty( ModelSubtree.MEASURES );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
 
     return true;
   }
 
   @Override
   public boolean apply( final Document schema ) throws ModelerException {
-    if ( schema == null ) {
+    return apply( new MondrianSchemaHandler( schema ) );
+  }
+
+  @Override
+  public boolean apply( final MondrianSchemaHandler mondrianSchemaHandler ) throws ModelerException {
+    if ( mondrianSchemaHandler.getSchema() == null ) {
       throw new ModelerException(
         BaseMessages.getString( MSG_CLASS, "MondrianSchemaHelper.updateMeasure.UNABLE_TO_FIND_MEASURE" )
       );
     }
 
-    String mondrianAggregationType = null;
-    if ( aggregationType != null ) {
-      mondrianAggregationType = MondrianModelExporter.convertToMondrian( aggregationType );
-    }
-    MondrianSchemaHandler mondrianSchemaHandler = new MondrianSchemaHandler( schema );
     if ( mondrianSchemaHandler.isCalculatedMeasure( cube, measure ) ) {
       return mondrianSchemaHandler.updateCalculatedMeasure( cube, measure, caption, format );
     } else {
-      MondrianDef.Measure updatedMeasure = new MondrianDef.Measure();
-      updatedMeasure.name = name;
-      updatedMeasure.aggregator = mondrianAggregationType;
-      updatedMeasure.formatString = format;
-      updatedMeasure.caption = caption;
-      return mondrianSchemaHandler.updateMeasure( cube, measure, updatedMeasure );
+      return mondrianSchemaHandler.updateMeasure( cube, measure, toMeasure() );
     }
   }
 
+  @Override
+  public boolean addEdits( final SchemaEditBatch batch ) throws ModelerException {
+    batch.add( SchemaEditBatch.updateAnyMeasure( cube, measure, toMeasure() ) );
+    return true;
+  }
+
+  private MondrianDef.Measure toMeasure() {
+    String mondrianAggregationType = null;
+    if ( aggregationType != null ) {
+      mondrianAggregationType = MondrianModelExporter.convertToMondrian( aggregationType );
+    }
+    MondrianDef.Measure updatedMeasure = new MondrianDef.Measure();
+    updatedMeasure.name = name;
+    updatedMeasure.aggregator = mondrianAggregationType;
+    updatedMeasure.formatString = format;
+    updatedMeasure.caption = caption;
+    return updatedMeasure;
+  }
+
   @Override
   public void validate() throws ModelerException {
     if ( StringUtils.isBlank( measure ) ) {
@@ -196,6 +215,23 @@ public class UpdateMeasure extends AnnotationType {
     return "Modeler.UpdateMeasure.Summary";
   }
 
+  @Override
+  public List<String> getProvidedKeys() {
+    if ( StringUtils.isBlank( getName() ) ) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList( AnnotationPlanner.measureKey( getName() ) );
+  }
+
+  @Override
+  public List<String> getRequiredKeys() {
+    List<String> keys = AnnotationPlanner.measureReferences( getMeasure() );
+    if ( keys.isEmpty() && StringUtils.isNotBlank( getMeasure() ) ) {
+      return Collections.singletonList( AnnotationPlanner.measureKey( getMeasure() ) );
+    }
+    return keys;
+  }
+
   @Override
   public String getSummary() {
     return BaseMessages
@@ -0,0 +1,282 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MainModelNode;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.metadata.automodel.PhysicalTableImporter;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Name lookups over the levels, measures and analysis logical columns of a workspace, backing the locate* helpers of
+ * {@link AnnotationType} while a group is applied. Lookups keep the first-match semantics of the tree walks they
+ * replace: levels match a column case-insensitively or its beautified name exactly, measures match either exactly and
+ * logical columns match either case-insensitively.
+ * <p>
+ * One index is {@link #open opened} per workspace for an apply run. It is rebuilt on the next lookup after the
+ * {@link ModelerWorkspace#getModelRevision() model revision} moves, so nodes that annotations add or remove are seen
+ * straight away, and after the {@link ModelerWorkspace#getDomainRevision() domain revision} moves, so are logical
+ * tables and columns.
+ */
+class WorkspaceLookupIndex implements AutoCloseable {
+
+  private static final Map<ModelerWorkspace, WorkspaceLookupIndex> OPEN =
+    new IdentityHashMap<ModelerWorkspace, WorkspaceLookupIndex>();
+
+  private final ModelerWorkspace workspace;
+  private int openCount;
+
+  private final Map<String, String> beautified = new HashMap<String, String>();
+  private boolean built;
+  private int revision;
+  private int domainRevision;
+  private MainModelNode model;
+  private String locale;
+
+  private final List<LevelMetaData> levels = new ArrayList<LevelMetaData>();
+  private final Map<String, Integer> levelsByFoldedName = new HashMap<String, Integer>();
+  private final Map<String, Integer> levelsByName = new HashMap<String, Integer>();
+  private final List<MeasureMetaData> measures = new ArrayList<MeasureMetaData>();
+  private final Map<String, Integer> measuresByName = new HashMap<String, Integer>();
+  private final List<LogicalColumn> columns = new ArrayList<LogicalColumn>();
+  private final Map<String, Integer> columnsByFoldedName = new HashMap<String, Integer>();
+
+  private WorkspaceLookupIndex( final ModelerWorkspace workspace ) {
+    this.workspace = workspace;
+  }
+
+  /**
+   * Opens the index of a workspace, sharing it with any run already open on the same workspace. Close it when the run
+   * is over.
+   */
+  static WorkspaceLookupIndex open( final ModelerWorkspace workspace ) {
+    synchronized ( OPEN ) {
+      WorkspaceLookupIndex index = OPEN.get( workspace );
+      if ( index == null ) {
+        index = new WorkspaceLookupIndex( workspace );
+        OPEN.put( workspace, index );
+      }
+      index.openCount++;
+      return index;
+    }
+  }
+
+  /**
+   * @return the index open on the workspace, or null when no apply run is in progress
+   */
+  static WorkspaceLookupIndex get( final ModelerWorkspace workspace ) {
+    synchronized ( OPEN ) {
+      return OPEN.get( workspace );
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized ( OPEN ) {
+      if ( --openCount == 0 ) {
+        OPEN.remove( workspace );
+      }
+    }
+  }
+
+  synchronized LevelMetaData findLevel( final String column ) {
+    if ( column == null ) {
+      return null;
+    }
+    LevelMetaData level = lookupLevel( column );
+    if ( level != null && !levelMatches( level, column ) ) {
+      // a node changed without moving the revision
+      built = false;
+      level = lookupLevel( column );
+    }
+    return level;
+  }
+
+  synchronized MeasureMetaData findMeasure( final String column ) {
+    if ( column == null ) {
+      return null;
+    }
+    MeasureMetaData measure = lookupMeasure( column );
+    if ( measure != null && !measureMatches( measure, column ) ) {
+      built = false;
+      measure = lookupMeasure( column );
+    }
+    return measure;
+  }
+
+  synchronized LogicalColumn findLogicalColumn( final String column ) {
+    if ( column == null ) {
+      return null;
+    }
+    LogicalColumn logicalColumn = lookupLogicalColumn( column );
+    if ( logicalColumn != null && !columnMatches( logicalColumn, column ) ) {
+      built = false;
+      logicalColumn = lookupLogicalColumn( column );
+    }
+    return logicalColumn;
+  }
+
+  /**
+   * @return the levels of every dimension and hierarchy, in tree order
+   */
+  synchronized List<LevelMetaData> getLevels() {
+    refresh();
+    return new ArrayList<LevelMetaData>( levels );
+  }
+
+  private LevelMetaData lookupLevel( final String column ) {
+    refresh();
+    int index = first( levelsByFoldedName.get( fold( column ) ), levelsByName.get( beautify( column ) ) );
+    return index < 0 ? null : levels.get( index );
+  }
+
+  private MeasureMetaData lookupMeasure( final String column ) {
+    refresh();
+    int index = first( measuresByName.get( column ), measuresByName.get( beautify( column ) ) );
+    return index < 0 ? null : measures.get( index );
+  }
+
+  private LogicalColumn lookupLogicalColumn( final String column ) {
+    refresh();
+    int index =
+      first( columnsByFoldedName.get( fold( column ) ), columnsByFoldedName.get( fold( beautify( column ) ) ) );
+    return index < 0 ? null : columns.get( index );
+  }
+
+  private boolean levelMatches( final LevelMetaData level, final String column ) {
+    String name = nameOf( level.getLogicalColumn() );
+    return name != null && ( name.equalsIgnoreCase( column ) || name.equals( beautify( column ) ) );
+  }
+
+  private boolean measureMatches( final MeasureMetaData measure, final String column ) {
+    String name = nameOf( measure.getLogicalColumn() );
+    return name != null && ( name.equals( column ) || name.equals( beautify( column ) ) );
+  }
+
+  private boolean columnMatches( final LogicalColumn logicalColumn, final String column ) {
+    String name = nameOf( logicalColumn );
+    return name != null && ( name.equalsIgnoreCase( column ) || name.equalsIgnoreCase( beautify( column ) ) );
+  }
+
+  private void refresh() {
+    if ( built && isCurrent() ) {
+      return;
+    }
+    revision = workspace.getModelRevision();
+    domainRevision = workspace.getDomainRevision();
+    model = workspace.getModel();
+    locale = workspace.getLocale();
+    levels.clear();
+    levelsByFoldedName.clear();
+    levelsByName.clear();
+    measures.clear();
+    measuresByName.clear();
+    columns.clear();
+    columnsByFoldedName.clear();
+
+    for ( DimensionMetaData dimensionMetaData : model.getDimensions() ) {
+      for ( HierarchyMetaData hierarchyMetaData : dimensionMetaData ) {
+        for ( LevelMetaData levelMetaData : hierarchyMetaData ) {
+          int index = levels.size();
+          levels.add( levelMetaData );
+          String name = nameOf( levelMetaData.getLogicalColumn() );
+          if ( name != null ) {
+            levelsByFoldedName.putIfAbsent( fold( name ), index );
+            levelsByName.putIfAbsent( name, index );
+          }
+        }
+      }
+    }
+    for ( MeasureMetaData measureMetaData : model.getMeasures() ) {
+      int index = measures.size();
+      measures.add( measureMetaData );
+      String name = nameOf( measureMetaData.getLogicalColumn() );
+      if ( name != null ) {
+        measuresByName.putIfAbsent( name, index );
+      }
+    }
+    LogicalModel logicalModel = workspace.getLogicalModel( ModelerPerspective.ANALYSIS );
+    List<LogicalTable> tables =
+      logicalModel == null ? Collections.<LogicalTable>emptyList() : logicalModel.getLogicalTables();
+    for ( LogicalTable logicalTable : tables ) {
+      for ( LogicalColumn logicalColumn : logicalTable.getLogicalColumns() ) {
+        int index = columns.size();
+        columns.add( logicalColumn );
+        String name = nameOf( logicalColumn );
+        if ( name != null ) {
+          columnsByFoldedName.putIfAbsent( fold( name ), index );
+        }
+      }
+    }
+    built = true;
+  }
+
+  private boolean isCurrent() {
+    return revision == workspace.getModelRevision() && domainRevision == workspace.getDomainRevision()
+      && model == workspace.getModel() && equal( locale, workspace.getLocale() );
+  }
+
+  private String nameOf( final LogicalColumn logicalColumn ) {
+    return logicalColumn == null ? null : logicalColumn.getName( locale );
+  }
+
+  private String beautify( final String column ) {
+    String name = beautified.get( column );
+    if ( name == null ) {
+      name = PhysicalTableImporter.beautifyName( column );
+      beautified.put( column, name );
+    }
+    return name;
+  }
+
+  /**
+   * Folds case the way {@link String#equalsIgnoreCase(String)} compares characters, so equal folded strings are equal
+   * ignoring case.
+   */
+  static String fold( final String value ) {
+    if ( value == null ) {
+      return null;
+    }
+    char[] chars = value.toCharArray();
+    for ( int i = 0; i < chars.length; i++ ) {
+      chars[i] = Character.toLowerCase( Character.toUpperCase( chars[i] ) );
+    }
+    return new String( chars );
+  }
+
+  private static int first( final Integer a, final Integer b ) {
+    if ( a == null ) {
+      return b == null ? -1 : b;
+    }
+    return b == null ? a : Math.min( a, b );
+  }
+
+  private static boolean equal( final String a, final String b ) {
+    return a == null ? b == null : a.equals( b );
+  }
+}
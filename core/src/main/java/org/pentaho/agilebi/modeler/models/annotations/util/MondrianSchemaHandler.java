@@ -23,13 +23,9 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -56,6 +52,8 @@ public class MondrianSchemaHandler {
   public static final String CALCULATED_MEMBER_FORMAT_STRING_ATTRIBUTE = "formatString";
 
   private Document schema;
+  private SchemaIndex index;
+  private Map<String, List<Element>> cubeScope;
 
   public MondrianSchemaHandler() {
 
@@ -72,46 +70,30 @@ public class MondrianSchemaHandler {
    * @throws ModelerException
    */
   public void addMeasure( String cubeName, MondrianDef.Measure measure ) throws ModelerException {
-    try {
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      StringBuffer xPathExpr = new StringBuffer();
-
-      String cubeXPathPart = CUBE_XPATH_EXPR;
-
-      if ( cubeName != null ) {
-        cubeXPathPart += "[@name=\"" + cubeName + "\"]";
-      }
-
-      xPathExpr.append( cubeXPathPart );
-      XPathExpression xPathExpression = xPath.compile( xPathExpr.toString() );
-      Node cube = (Node) xPathExpression.evaluate( this.schema, XPathConstants.NODE );
-      Element measureElement;
-      measureElement = this.schema.createElement( MEASURE_ELEMENT_NAME );
-
-      // check if cube contains calculated members
-      NodeList calculatedMemberNodeList = this.schema.getElementsByTagName( AnnotationConstants.CALCULATED_MEMBER_NODE_NAME );
-      if ( ( calculatedMemberNodeList != null ) && ( calculatedMemberNodeList.getLength() > 0 ) ) {
-        // get the first calculated member
-        Node firstCalculatedMemberNode = calculatedMemberNodeList.item( 0 );
-        // insert measure before the first calculated member
-        cube.insertBefore( measureElement, firstCalculatedMemberNode );
-      } else {
-        cube.appendChild( measureElement );
-      }
-
-      measureElement.setAttribute( MEASURE_NAME_ATTRIBUTE, measure.name );
-      measureElement.setAttribute( MEASURE_COLUMN_ATTRIBUTE, measure.column );
-      measureElement.setAttribute( MEASURE_AGGREGATOR_ATTRIBUTE,  measure.aggregator );
+    checkNames( cubeName );
+    SchemaIndex index = getIndex();
+    Node cube = first( getCubes( cubeName ) );
+    Element measureElement;
+    measureElement = this.schema.createElement( MEASURE_ELEMENT_NAME );
+
+    // check if cube contains calculated members
+    List<Element> calculatedMembers =
+      index.getDescendants( this.schema.getDocumentElement(), AnnotationConstants.CALCULATED_MEMBER_NODE_NAME );
+    if ( !calculatedMembers.isEmpty() ) {
+      // insert measure before the first calculated member
+      cube.insertBefore( measureElement, calculatedMembers.get( 0 ) );
+    } else {
+      cube.appendChild( measureElement );
+    }
 
-      if ( measure.formatString != null ) {
-        measureElement.setAttribute( MEASURE_FORMAT_STRING_ATTRIBUTE, measure.formatString );
-      }
+    measureElement.setAttribute( MEASURE_NAME_ATTRIBUTE, measure.name );
+    measureElement.setAttribute( MEASURE_COLUMN_ATTRIBUTE, measure.column );
+    measureElement.setAttribute( MEASURE_AGGREGATOR_ATTRIBUTE,  measure.aggregator );
 
-    } catch ( XPathExpressionException e ) {
-      throw new ModelerException( e );
+    if ( measure.formatString != null ) {
+      measureElement.setAttribute( MEASURE_FORMAT_STRING_ATTRIBUTE, measure.formatString );
     }
-
+    index.added( measureElement );
   }
 
   /**
@@ -121,49 +103,35 @@ public class MondrianSchemaHandler {
    * @throws ModelerException
    */
   public void addCalculatedMember( String cubeName, MondrianDef.CalculatedMember calculatedMember ) throws ModelerException {
-    try {
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      StringBuilder xPathExpr = new StringBuilder();
-
-      String cubeXPathPart = CUBE_XPATH_EXPR;
-
-      if ( cubeName != null ) {
-        cubeXPathPart += "[@name=\"" + cubeName + "\"]";
-      }
-
-      xPathExpr.append( cubeXPathPart );
-      XPathExpression xPathExpression = xPath.compile( xPathExpr.toString() );
-      Node cube = (Node) xPathExpression.evaluate( this.schema, XPathConstants.NODE );
-      Element measureElement;
-      measureElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_NODE_NAME );
-      cube.appendChild( measureElement );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_NAME_ATTRIBUTE, calculatedMember.name );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_CAPTION_ATTRIBUTE, calculatedMember.caption );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_DESCRIPTION_ATTRIBUTE, calculatedMember.description );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_DIMENSION_ATTRIBUTE, calculatedMember.dimension );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_FORMULA_ATTRIBUTE, calculatedMember.formula );
-      measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_VISIBLE_ATTRIBUTE, calculatedMember.visible.toString() );
-      measureElement.setAttribute( CALCULATED_MEMBER_FORMAT_STRING_ATTRIBUTE, calculatedMember.formatString );
-
-      if ( calculatedMember.annotations != null ) {
-        Element annotationsElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_ANNOTATIONS_ELEMENT_NAME );
-        for ( MondrianDef.Annotation annot : calculatedMember.annotations.array ) {
-          Element annotationElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_ANNOTATION_ELEMENT_NAME );
-          annotationElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_PROPERTY_NAME_ATTRIBUTE, annot.name );
-          annotationElement.setTextContent( annot.cdata );
-          annotationsElement.appendChild( annotationElement );
-        }
-        measureElement.appendChild( annotationsElement );
-      }
-
-      if ( calculatedMember.memberProperties != null ) {
-        addCalculatedMemberProperties( calculatedMember, measureElement );
+    checkNames( cubeName );
+    SchemaIndex index = getIndex();
+    Node cube = first( getCubes( cubeName ) );
+    Element measureElement;
+    measureElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_NODE_NAME );
+    cube.appendChild( measureElement );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_NAME_ATTRIBUTE, calculatedMember.name );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_CAPTION_ATTRIBUTE, calculatedMember.caption );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_DESCRIPTION_ATTRIBUTE, calculatedMember.description );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_DIMENSION_ATTRIBUTE, calculatedMember.dimension );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_FORMULA_ATTRIBUTE, calculatedMember.formula );
+    measureElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_VISIBLE_ATTRIBUTE, calculatedMember.visible.toString() );
+    measureElement.setAttribute( CALCULATED_MEMBER_FORMAT_STRING_ATTRIBUTE, calculatedMember.formatString );
+
+    if ( calculatedMember.annotations != null ) {
+      Element annotationsElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_ANNOTATIONS_ELEMENT_NAME );
+      for ( MondrianDef.Annotation annot : calculatedMember.annotations.array ) {
+        Element annotationElement = this.schema.createElement( AnnotationConstants.CALCULATED_MEMBER_ANNOTATION_ELEMENT_NAME );
+        annotationElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_PROPERTY_NAME_ATTRIBUTE, annot.name );
+        annotationElement.setTextContent( annot.cdata );
+        annotationsElement.appendChild( annotationElement );
       }
+      measureElement.appendChild( annotationsElement );
+    }
 
-    } catch ( XPathExpressionException e ) {
-      throw new ModelerException( e );
+    if ( calculatedMember.memberProperties != null ) {
+      addCalculatedMemberProperties( calculatedMember, measureElement );
     }
+    index.added( measureElement );
   }
 
   /**
@@ -178,28 +146,21 @@ public class MondrianSchemaHandler {
       return null;
     }
 
-    String cubeXPathPart = CUBE_XPATH_EXPR;
-
-    if ( !StringUtils.isBlank( cubeName ) ) {
-      cubeXPathPart += "[@name=\"" + cubeName + "\"]";
-    }
-
     measureName = getMeasureName( measureName );
-
-    // use XPath to get measure node and remove it from it's parent
-    try {
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      StringBuffer xPathExpr = new StringBuffer();
-      xPathExpr.append( cubeXPathPart + "//" + MEASURE_DIMENSION + "[@name=\"" + measureName + "\"]" );
-      XPathExpression xPathExpression = xPath.compile( xPathExpr.toString() );
-      return (Node) xPathExpression.evaluate( this.schema, XPathConstants.NODE );
-    } catch ( Exception e ) {
-      throw new ModelerException( e );
+    checkNames( cubeName, measureName );
+
+    // the first measure of that name anywhere below the cube, or below any cube when none is given
+    SchemaIndex index = getIndex();
+    for ( Element cube : getCubes( StringUtils.isBlank( cubeName ) ? null : cubeName ) ) {
+      List<Element> measures = index.getDescendants( cube, MEASURE_DIMENSION, measureName );
+      if ( !measures.isEmpty() ) {
+        return measures.get( 0 );
+      }
     }
+    return null;
   }
 
-  private String getMeasureName( String measureFormula ) {
+  static String getMeasureName( String measureFormula ) {
     if ( measureFormula.contains( "[" ) ) {
       measureFormula = measureFormula.substring(
         measureFormula.lastIndexOf( "[" ) + 1,
@@ -214,17 +175,27 @@ public class MondrianSchemaHandler {
   }
 
   private Element getCalculatedMeasureElement( String cubeName, String measureName ) throws ModelerException {
-    measureName = getMeasureName( measureName );
-    try {
-      String xPathExpr =
-        String.format( "/Schema/Cube[@name=\"%s\"]/CalculatedMember[@name=\"%s\"]", cubeName, measureName );
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      XPathExpression xPathExpression = xPath.compile( xPathExpr );
-      return (Element) xPathExpression.evaluate( this.schema, XPathConstants.NODE );
-    } catch ( Exception e ) {
-      throw new ModelerException( e );
+    return getCalculatedMember( cubeName, getMeasureName( measureName ), false );
+  }
+
+  /**
+   * @param measuresOnly only match calculated members of the Measures dimension
+   * @return the first calculated member of that name in the cubes of that name
+   */
+  private Element getCalculatedMember( final String cubeName, final String name, final boolean measuresOnly )
+    throws ModelerException {
+    checkNames( cubeName, name );
+    SchemaIndex index = getIndex();
+    for ( Element cube : getCubes( String.valueOf( cubeName ) ) ) {
+      for ( Element calculatedMember
+        : index.getChildren( cube, AnnotationConstants.CALCULATED_MEMBER_NODE_NAME, String.valueOf( name ) ) ) {
+        if ( !measuresOnly || "Measures".equals( calculatedMember.getAttribute(
+          AnnotationConstants.CALCULATED_MEMBER_DIMENSION_ATTRIBUTE ) ) ) {
+          return calculatedMember;
+        }
+      }
     }
+    return null;
   }
 
   public boolean updateCalculatedMeasure(
@@ -256,6 +227,7 @@ public class MondrianSchemaHandler {
 
     measureName = getMeasureName( measureName );
 
+    SchemaIndex index = getIndex();
     try {
       // Check to make sure there isn't a measure that already exists with the new name
       Node duplicateMeasure = getMeasureNode( cubeName, measure.name );
@@ -282,7 +254,9 @@ public class MondrianSchemaHandler {
       // Name Change
       if ( !StringUtils.isBlank( measure.name ) ) {
         Node nameNode = measureAttrs.getNamedItem( "name" );
+        String oldName = nameNode.getNodeValue();
         nameNode.setNodeValue( measure.name );
+        index.renamed( measureNode, oldName );
       }
 
       if ( !StringUtils.isBlank( measure.caption ) ) {
@@ -310,6 +284,7 @@ public class MondrianSchemaHandler {
       );
     }
 
+    SchemaIndex index = getIndex();
     try {
       Element existingCalculatedMemberNode = getCalculatedMeasureNode( cubeName, calculatedMemberName );
       if ( existingCalculatedMemberNode == null ) {
@@ -327,11 +302,14 @@ public class MondrianSchemaHandler {
 
       // Name Change
       if ( !StringUtils.isBlank( updatedCalculatedMember.name ) ) {
+        String oldName =
+          existingCalculatedMemberNode.getAttribute( AnnotationConstants.CALCULATED_MEMBER_NAME_ATTRIBUTE );
         XMLUtil.addOrUpdateAttribute(
           existingCalculatedMemberNode,
           AnnotationConstants.CALCULATED_MEMBER_NAME_ATTRIBUTE,
           updatedCalculatedMember.name
         );
+        index.renamed( existingCalculatedMemberNode, oldName );
       }
 
       // Caption
@@ -406,6 +384,7 @@ public class MondrianSchemaHandler {
       if ( ( annotationsNodes == null ) || ( annotationsNodes.getLength() <= 0 ) ) {
         annotationsNode = schema.createElement( AnnotationConstants.ANNOTATIONS_NODE_NAME );
         existingCalculatedMemberNode.appendChild( annotationsNode );
+        index.added( annotationsNode );
       } else {
         // Assume the first is the only Annotations node, as per the spec
         annotationsNode = (Element) annotationsNodes.item( 0 );
@@ -444,6 +423,7 @@ public class MondrianSchemaHandler {
             );
             newAnnotation.setTextContent( updatedCalculatedMember.annotations.array[ x ].cdata );
             annotationsNode.appendChild( newAnnotation );
+            index.added( newAnnotation );
           }
         }
       }
@@ -475,6 +455,7 @@ public class MondrianSchemaHandler {
     if ( ( calculatedMemberProperties != null ) && ( calculatedMemberProperties.getLength() > 0 ) ) {
       for ( int x = 0; x <= calculatedMemberProperties.getLength() - 1; x++ ) {
         Element calculatedMemberProperty = (Element) calculatedMemberProperties.item( x );
+        getIndex().removing( calculatedMemberProperty );
         calculatedMemberProperty.getParentNode().removeChild( calculatedMemberProperty );
       }
     }
@@ -493,61 +474,79 @@ public class MondrianSchemaHandler {
       propertyElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_PROPERTY_NAME_ATTRIBUTE, property.name );
       propertyElement.setAttribute( AnnotationConstants.CALCULATED_MEMBER_PROPERTY_VALUE_ATTRIBUTE, property.value );
       node.appendChild( propertyElement );
+      getIndex().added( propertyElement );
     }
   }
 
   private Element getLevelNode( String cubeName, String dimensionName, String hierarchyName, String levelName )
     throws ModelerException {
-    try {
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      String inlineWithHierarchy =
-        String.format( "Schema/Cube[@name=\"%s\"]/Dimension[@name=\"%s\"]/Hierarchy[@name=\"%s\"]/Level[@name=\"%s\"]",
-          cubeName, dimensionName, hierarchyName, levelName );
-      Element levelElement = (Element) xPath.compile( inlineWithHierarchy ).evaluate( this.schema, XPathConstants.NODE );
+    checkNames( cubeName, dimensionName, hierarchyName, levelName );
+    SchemaIndex index = getIndex();
+    List<Element> cubes = getCubes( String.valueOf( cubeName ) );
+    List<Element> dimensions = new ArrayList<Element>();
+    for ( Element cube : cubes ) {
+      dimensions.addAll(
+        index.getChildren( cube, SchemaIndex.DIMENSION_ELEMENT_NAME, String.valueOf( dimensionName ) ) );
+    }
+    Element levelElement = getLevel( dimensions, String.valueOf( hierarchyName ), levelName, false );
+    if ( levelElement == null ) {
+      if ( dimensionName.equals( hierarchyName ) ) {
+        // the default hierarchy of an inline dimension has no name or an empty one
+        levelElement = getLevel( dimensions, null, levelName, false );
+      }
       if ( levelElement == null ) {
-        if ( dimensionName.equals( hierarchyName ) ) {
-          String inlineDefaultHierarchy =
-            String.format( "Schema/Cube[@name=\"%s\"]/Dimension[@name=\"%s\"]/Hierarchy[not(@name) or @name=\"\"]/Level[@name=\"%s\"]",
-              cubeName, dimensionName, levelName );
-          levelElement = (Element) xPath.compile( inlineDefaultHierarchy ).evaluate( this.schema, XPathConstants.NODE );
+        Element usageElement = null;
+        for ( Element cube : cubes ) {
+          List<Element> usages =
+            index.getChildren( cube, SchemaIndex.DIMENSION_USAGE_ELEMENT_NAME, String.valueOf( dimensionName ) );
+          if ( !usages.isEmpty() ) {
+            usageElement = usages.get( 0 );
+            break;
+          }
         }
-        if ( levelElement == null ) {
-          String dimensionUageXPath =
-            String.format( "Schema/Cube[@name=\"%s\"]/DimensionUsage[@name=\"%s\"]", cubeName, dimensionName );
-          Element usageElement = (Element) xPath.compile( dimensionUageXPath ).evaluate( this.schema, XPathConstants.NODE );
-          if ( usageElement != null ) {
-            String sharedCompleteXPath =
-              String.format( "Schema/Dimension[@name=\"%s\"]/Hierarchy[@name=\"%s\"]/Level[@name=\"%s\"]",
-                usageElement.getAttribute( "source" ), hierarchyName, levelName );
-            levelElement = (Element) xPath.compile( sharedCompleteXPath ).evaluate( this.schema, XPathConstants.NODE );
-            if ( levelElement == null && dimensionName.equals( hierarchyName ) ) {
-              String sharedDefaultHierarchyXPath =
-                String.format( "Schema/Dimension[@name=\"%s\"]/Hierarchy[not(@name)]/Level[@name=\"%s\"]",
-                  usageElement.getAttribute( "source" ), levelName );
-              levelElement = (Element) xPath.compile( sharedDefaultHierarchyXPath ).evaluate( this.schema, XPathConstants.NODE );
-            }
+        if ( usageElement != null ) {
+          List<Element> sharedDimensions = index.getChildren(
+            index.getRoot(), SchemaIndex.DIMENSION_ELEMENT_NAME, usageElement.getAttribute( "source" ) );
+          levelElement = getLevel( sharedDimensions, String.valueOf( hierarchyName ), levelName, false );
+          if ( levelElement == null && dimensionName.equals( hierarchyName ) ) {
+            // the default hierarchy of a shared dimension has no name
+            levelElement = getLevel( sharedDimensions, null, levelName, true );
           }
         }
       }
-      return levelElement;
-    } catch ( Exception e ) {
-      throw new ModelerException( e );
     }
+    return levelElement;
   }
 
-  private Element getCalculatedMeasureNode( final String cubeName, final String measureName ) throws ModelerException {
-    try {
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xPath = xPathFactory.newXPath();
-      String inlineWithHierarchy =
-        String.format( "Schema/Cube[@name=\"%s\"]/CalculatedMember[@name=\"%s\" and @dimension=\"Measures\"]",
-          cubeName, measureName );
-      return (Element) xPath.compile( inlineWithHierarchy ).evaluate( this.schema, XPathConstants.NODE );
-    } catch ( Exception e ) {
-      throw new ModelerException( e );
+  /**
+   * @param hierarchyName name of the hierarchy, or null for the default hierarchy
+   * @param unnamedOnly when looking for the default hierarchy, skip hierarchies with an empty name
+   * @return the first level of that name in the matching hierarchies of the dimensions
+   */
+  private Element getLevel( final List<Element> dimensions, final String hierarchyName, final String levelName,
+                            final boolean unnamedOnly ) {
+    SchemaIndex index = getIndex();
+    for ( Element dimension : dimensions ) {
+      List<Element> hierarchies = hierarchyName == null
+        ? index.getChildren( dimension, SchemaIndex.HIERARCHY_ELEMENT_NAME )
+        : index.getChildren( dimension, SchemaIndex.HIERARCHY_ELEMENT_NAME, hierarchyName );
+      for ( Element hierarchy : hierarchies ) {
+        if ( hierarchyName == null && ( unnamedOnly ? hierarchy.hasAttribute( "name" )
+          : !hierarchy.getAttribute( "name" ).isEmpty() ) ) {
+          continue;
+        }
+        List<Element> levels =
+          index.getChildren( hierarchy, SchemaIndex.LEVEL_ELEMENT_NAME, String.valueOf( levelName ) );
+        if ( !levels.isEmpty() ) {
+          return levels.get( 0 );
+        }
+      }
     }
+    return null;
+  }
 
+  private Element getCalculatedMeasureNode( final String cubeName, final String measureName ) throws ModelerException {
+    return getCalculatedMember( cubeName, measureName, true );
   }
 
   /**
@@ -607,12 +606,64 @@ public class MondrianSchemaHandler {
     return false;
   }
 
+  /**
+   * Lookups have always rejected names containing a double quote.
+   */
+  private static void checkNames( final String... names ) throws ModelerException {
+    for ( String name : names ) {
+      if ( name != null && name.indexOf( '"' ) >= 0 ) {
+        throw new ModelerException(
+          BaseMessages.getString( MSG_CLASS, "MondrianSchemaHelper.INVALID_NAME", name ) );
+      }
+    }
+  }
+
   public Document getSchema() {
     return schema;
   }
 
+  /**
+   * @return the name index of the schema, kept up to date by this handler's changes; changes made to the schema in
+   * any other way need {@link SchemaIndex#invalidate()}
+   */
+  public SchemaIndex getIndex() {
+    if ( index == null ) {
+      index = new SchemaIndex( schema );
+    }
+    return index;
+  }
+
   public void setSchema( Document schema ) {
     this.schema = schema;
+    this.index = null;
+    this.cubeScope = null;
+  }
+
+  /**
+   * Makes this handler locate each cube once until {@link #endCubeScope()}. The changes made meanwhile must not add,
+   * rename or remove cubes.
+   */
+  void beginCubeScope() {
+    cubeScope = new HashMap<String, List<Element>>();
+  }
+
+  void endCubeScope() {
+    cubeScope = null;
+  }
+
+  /**
+   * @return the cubes named <code>name</code>, or every cube when it is null
+   */
+  private List<Element> getCubes( final String name ) {
+    if ( cubeScope == null ) {
+      return getIndex().getCubes( name );
+    }
+    List<Element> cubes = cubeScope.get( name );
+    if ( cubes == null ) {
+      cubes = getIndex().getCubes( name );
+      cubeScope.put( name, cubes );
+    }
+    return cubes;
   }
 
   public boolean formatLevel( final String cube, final String dimension, final String hierarchy, final String level,
@@ -622,50 +673,208 @@ public class MondrianSchemaHandler {
     removeFormatting( cube, dimension, hierarchy, level );
 
     Element levelNode = getLevelNode( cube, dimension, hierarchy, level );
-    if ( levelNode != null ) {
-      levelNode.setAttribute(
-        AnnotationConstants.LEVEL_FORMATTER_ATTRIBUTE, AnnotationConstants.INLINE_MEMBER_FORMATTER_CLASS );
-
-      Element formatterAnnotation = getSchema().createElement( "Annotation" );
-      formatterAnnotation.setAttribute(
-        AnnotationConstants.ANNOTATION_NAME_ATTRIUBUTE, AnnotationConstants.INLINE_MEMBER_FORMAT_STRING );
-      formatterAnnotation.setTextContent( formatString );
-
-      NodeList annotations = levelNode.getElementsByTagName( AnnotationConstants.ANNOTATIONS_NODE_NAME );
-      if ( annotations == null || annotations.getLength() == 0 ) {
-        Element annotationsElement = getSchema().createElement( "Annotations" );
-        levelNode.appendChild( annotationsElement );
-        annotationsElement.appendChild( formatterAnnotation );
-      } else {
-        annotations.item( 0 ).appendChild( formatterAnnotation );
-      }
-      return true;
+    if ( levelNode == null ) {
+      return false;
     }
-    return false;
+    SchemaIndex index = getIndex();
+    levelNode.setAttribute(
+      AnnotationConstants.LEVEL_FORMATTER_ATTRIBUTE, AnnotationConstants.INLINE_MEMBER_FORMATTER_CLASS );
+
+    Element formatterAnnotation = getSchema().createElement( "Annotation" );
+    formatterAnnotation.setAttribute(
+      AnnotationConstants.ANNOTATION_NAME_ATTRIUBUTE, AnnotationConstants.INLINE_MEMBER_FORMAT_STRING );
+    formatterAnnotation.setTextContent( formatString );
+
+    NodeList annotations = levelNode.getElementsByTagName( AnnotationConstants.ANNOTATIONS_NODE_NAME );
+    if ( annotations == null || annotations.getLength() == 0 ) {
+      Element annotationsElement = getSchema().createElement( "Annotations" );
+      levelNode.appendChild( annotationsElement );
+      annotationsElement.appendChild( formatterAnnotation );
+      index.added( annotationsElement );
+    } else {
+      annotations.item( 0 ).appendChild( formatterAnnotation );
+      index.added( formatterAnnotation );
+    }
+    return true;
   }
 
   public boolean removeFormatting( final String cube, final String dimension, final String hierarchy,
                                    final String level ) throws ModelerException {
     Element levelNode = getLevelNode( cube, dimension, hierarchy, level );
-    if ( levelNode != null ) {
-      levelNode.removeAttribute( AnnotationConstants.LEVEL_FORMATTER_ATTRIBUTE );
-      NodeList annotations = levelNode.getElementsByTagName( AnnotationConstants.ANNOTATIONS_NODE_NAME );
-      if ( annotations != null && annotations.getLength() > 0 ) {
-        Node item = annotations.item( 0 );
-        NodeList childNodes = item.getChildNodes();
-        for ( int i = 0; i < childNodes.getLength(); i++ ) {
-          if ( childNodes.item( i ) instanceof Element ) {
-            Element singleAnnotation = (Element) childNodes.item( i );
-            if ( AnnotationConstants.INLINE_MEMBER_FORMAT_STRING.equals(
-                singleAnnotation.getAttribute( AnnotationConstants.ANNOTATION_NAME_ATTRIUBUTE ) ) ) {
-              item.removeChild( singleAnnotation );
-              break;
-            }
+    if ( levelNode == null ) {
+      return false;
+    }
+    SchemaIndex index = getIndex();
+    levelNode.removeAttribute( AnnotationConstants.LEVEL_FORMATTER_ATTRIBUTE );
+    NodeList annotations = levelNode.getElementsByTagName( AnnotationConstants.ANNOTATIONS_NODE_NAME );
+    if ( annotations != null && annotations.getLength() > 0 ) {
+      Node item = annotations.item( 0 );
+      NodeList childNodes = item.getChildNodes();
+      for ( int i = 0; i < childNodes.getLength(); i++ ) {
+        if ( childNodes.item( i ) instanceof Element ) {
+          Element singleAnnotation = (Element) childNodes.item( i );
+          if ( AnnotationConstants.INLINE_MEMBER_FORMAT_STRING.equals(
+              singleAnnotation.getAttribute( AnnotationConstants.ANNOTATION_NAME_ATTRIUBUTE ) ) ) {
+            index.removing( singleAnnotation );
+            item.removeChild( singleAnnotation );
+            break;
           }
         }
       }
-      return true;
     }
-    return false;
+    return true;
+  }
+
+  /**
+   * Makes the changes of <code>diff</code> in order, or none of them. A change that does not fit the schema stops the
+   * patch with a ModelerException, and the changes made before it are undone in reverse order, putting the original
+   * elements back in place.
+   */
+  public void apply( final SchemaDiff diff ) throws ModelerException {
+    List<Undo> undos = new ArrayList<Undo>( diff.getChanges().size() );
+    boolean applied = false;
+    try {
+      for ( SchemaDiff.Change change : diff.getChanges() ) {
+        undos.add( apply( change ) );
+      }
+      applied = true;
+    } finally {
+      if ( !applied ) {
+        for ( int i = undos.size() - 1; i >= 0; i-- ) {
+          undos.get( i ).undo( getIndex() );
+        }
+      }
+    }
+  }
+
+  private Undo apply( final SchemaDiff.Change change ) throws ModelerException {
+    if ( change.getTarget() == SchemaDiff.Target.SCHEMA ) {
+      Element existing = schema.getDocumentElement();
+      Element element = (Element) schema.importNode( parse( change.getXml() ), true );
+      schema.replaceChild( element, existing );
+      getIndex().invalidate();
+      return new Undo( schema, existing, element, null );
+    }
+    SchemaIndex index = getIndex();
+    Element parent = getParent( index, change );
+    Element existing = parent == null ? null : first( index.getChildren( parent, change.getTag(), change.getName() ) );
+    Node next = null;
+    if ( change.getAction() == SchemaDiff.Action.ADD && parent != null && existing == null ) {
+      next = parent.getFirstChild();
+      if ( change.getPreviousTag() != null ) {
+        Element previous = getChild( index, parent, change.getPreviousTag(), change.getPreviousName() );
+        if ( previous == null ) {
+          parent = null;
+        } else {
+          next = previous.getNextSibling();
+        }
+      }
+    }
+    if ( parent == null || ( existing == null ) != ( change.getAction() == SchemaDiff.Action.ADD ) ) {
+      throw new ModelerException( BaseMessages.getString( MSG_CLASS, "SchemaDiff.CANNOT_APPLY", change.toString() ) );
+    }
+    Element element =
+      change.getAction() == SchemaDiff.Action.REMOVE ? null : (Element) schema.importNode( parse( change.getXml() ),
+        true );
+    if ( existing != null ) {
+      next = existing.getNextSibling();
+      index.removing( existing );
+    }
+    if ( element == null ) {
+      parent.removeChild( existing );
+    } else if ( existing != null ) {
+      parent.replaceChild( element, existing );
+    } else {
+      parent.insertBefore( element, next );
+    }
+    if ( element != null ) {
+      index.added( element );
+    }
+    return new Undo( parent, existing, element, next );
+  }
+
+  /**
+   * Puts back what one change did: <code>removed</code> was taken out of <code>parent</code> before <code>next</code>,
+   * and <code>inserted</code> took its place. Undos must run in reverse order, so <code>next</code> is back in place.
+   */
+  private static class Undo {
+    private final Node parent;
+    private final Element removed;
+    private final Element inserted;
+    private final Node next;
+
+    Undo( final Node parent, final Element removed, final Element inserted, final Node next ) {
+      this.parent = parent;
+      this.removed = removed;
+      this.inserted = inserted;
+      this.next = next;
+    }
+
+    void undo( final SchemaIndex index ) {
+      if ( !( parent instanceof Element ) ) {
+        // the whole schema was replaced
+        parent.replaceChild( removed, inserted );
+        index.invalidate();
+        return;
+      }
+      if ( inserted != null ) {
+        index.removing( inserted );
+      }
+      if ( inserted == null ) {
+        parent.insertBefore( removed, next );
+      } else if ( removed != null ) {
+        parent.replaceChild( removed, inserted );
+      } else {
+        parent.removeChild( inserted );
+      }
+      if ( removed != null ) {
+        index.added( removed );
+      }
+    }
+  }
+
+  /**
+   * @return the element holding the target of <code>change</code>, or null if there is none
+   */
+  private static Element getParent( final SchemaIndex index, final SchemaDiff.Change change ) {
+    if ( change.getTarget() == SchemaDiff.Target.CUBE || change.getCube() == null
+      && change.getTarget() != SchemaDiff.Target.LEVEL ) {
+      return index.getRoot();
+    }
+    Element scope = change.getCube() == null ? index.getRoot() : first( index.getCubes( change.getCube() ) );
+    if ( change.getTarget() != SchemaDiff.Target.LEVEL ) {
+      return scope;
+    }
+    Element dimension =
+      first( index.getChildren( scope, SchemaIndex.DIMENSION_ELEMENT_NAME, String.valueOf( change.getDimension() ) ) );
+    return getChild( index, dimension, SchemaIndex.HIERARCHY_ELEMENT_NAME, change.getHierarchy() );
+  }
+
+  /**
+   * @param name the name of the child, or null for the first child without one
+   */
+  private static Element getChild( final SchemaIndex index, final Element parent, final String tag,
+                                   final String name ) {
+    if ( name != null ) {
+      return first( index.getChildren( parent, tag, name ) );
+    }
+    for ( Element child : index.getChildren( parent, tag ) ) {
+      if ( !child.hasAttribute( "name" ) ) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  private static Element first( final List<Element> elements ) {
+    return elements.isEmpty() ? null : elements.get( 0 );
+  }
+
+  private static Node parse( final String xml ) throws ModelerException {
+    try {
+      return XMLUtil.asDOMNode( xml );
+    } catch ( Exception e ) {
+      throw new ModelerException( e );
+    }
   }
 }
@@ -0,0 +1,511 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.util.MondrianSchemaWriter;
+import org.pentaho.di.i18n.BaseMessages;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes that turn one Mondrian schema into another, in the order {@link MondrianSchemaHandler#apply(SchemaDiff)}
+ * makes them.
+ * <p>
+ * Measures, calculated members, dimensions, dimension usages and cubes are added, removed or replaced one by one.
+ * A changed dimension whose hierarchies still line up is patched level by level. Anything else that changed, such as
+ * the table of a cube or elements that were reordered, replaces the enclosing cube, or the whole schema. Whitespace and
+ * comments are ignored. {@link #getAffectedCubes()} names the cubes whose definition changed, including the cubes
+ * using a changed shared dimension.
+ */
+public class SchemaDiff implements Serializable {
+
+  private static final long serialVersionUID = 2178925410374530915L;
+
+  private static final String NAME_ATTRIBUTE = "name";
+  private static final String SOURCE_ATTRIBUTE = "source";
+
+  public enum Action {
+    ADD, REMOVE, REPLACE
+  }
+
+  public enum Target {
+    SCHEMA, CUBE, DIMENSION, MEASURE, CALCULATED_MEMBER, LEVEL
+  }
+
+  /**
+   * One change. An element is identified by its tag and name within its parent: the schema, the cube named
+   * {@link #getCube()}, or the hierarchy {@link #getHierarchy()} of the dimension {@link #getDimension()} for levels.
+   * Added elements go right after the element identified by {@link #getPreviousTag()} and
+   * {@link #getPreviousName()}, or first when there is none.
+   */
+  public static final class Change implements Serializable {
+
+    private static final long serialVersionUID = -6470713947460329822L;
+
+    private final Action action;
+    private final Target target;
+    private final String cube;
+    private final String dimension;
+    private final String hierarchy;
+    private final String tag;
+    private final String name;
+    private final String previousTag;
+    private final String previousName;
+    private final String xml;
+
+    Change( final Action action, final Target target, final String cube, final String dimension,
+            final String hierarchy, final String tag, final String name, final String previousTag,
+            final String previousName, final String xml ) {
+      this.action = action;
+      this.target = target;
+      this.cube = cube;
+      this.dimension = dimension;
+      this.hierarchy = hierarchy;
+      this.tag = tag;
+      this.name = name;
+      this.previousTag = previousTag;
+      this.previousName = previousName;
+      this.xml = xml;
+    }
+
+    public Action getAction() {
+      return action;
+    }
+
+    public Target getTarget() {
+      return target;
+    }
+
+    /**
+     * @return the cube holding the element, or null for an element of the schema or of a shared dimension
+     */
+    public String getCube() {
+      return cube;
+    }
+
+    /**
+     * @return the dimension holding a level, null for other targets
+     */
+    public String getDimension() {
+      return dimension;
+    }
+
+    /**
+     * @return the name of the hierarchy holding a level, or null for a hierarchy without one
+     */
+    public String getHierarchy() {
+      return hierarchy;
+    }
+
+    public String getTag() {
+      return tag;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getPreviousTag() {
+      return previousTag;
+    }
+
+    public String getPreviousName() {
+      return previousName;
+    }
+
+    /**
+     * @return the new element for {@link Action#ADD} and {@link Action#REPLACE}, null for {@link Action#REMOVE}
+     */
+    public String getXml() {
+      return xml;
+    }
+
+    @Override
+    public String toString() {
+      return action + " " + target + " " + ( cube == null ? "" : cube + "/" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + ( dimension == null ? "" : dimension + "/" ) + name; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  private final List<Change> changes;
+  private final Set<String> affectedCubes;
+
+  private SchemaDiff( final List<Change> changes, final Set<String> affectedCubes ) {
+    this.changes = Collections.unmodifiableList( changes );
+    this.affectedCubes = Collections.unmodifiableSet( affectedCubes );
+  }
+
+  public List<Change> getChanges() {
+    return changes;
+  }
+
+  /**
+   * @return the names of the cubes that have to be flushed once the changes are applied
+   */
+  public Set<String> getAffectedCubes() {
+    return affectedCubes;
+  }
+
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  /**
+   * Compares the schemas the two workspaces generate, see {@link MondrianSchemaWriter}.
+   *
+   * @throws ModelerException if a workspace has no analysis model
+   */
+  public static SchemaDiff compare( final ModelerWorkspace from, final ModelerWorkspace to, final String locale )
+    throws ModelerException {
+    return compare( toDocument( from, locale ), toDocument( to, locale ) );
+  }
+
+  public static SchemaDiff compare( final Document from, final Document to ) throws ModelerException {
+    List<Change> changes = new ArrayList<Change>();
+    SchemaIndex fromIndex = new SchemaIndex( from );
+    SchemaIndex toIndex = new SchemaIndex( to );
+    Element fromRoot = fromIndex.getRoot();
+    Element toRoot = toIndex.getRoot();
+    if ( fromRoot == null || toRoot == null || !sameAttributes( fromRoot, toRoot )
+      || !new Differ( changes ).compareSchema( fromRoot, toRoot ) ) {
+      changes.clear();
+      changes.add( new Change( Action.REPLACE, Target.SCHEMA, null, null, null, SchemaIndex.SCHEMA_ELEMENT_NAME, null,
+        null, null, toXml( to.getDocumentElement() ) ) );
+    }
+    return new SchemaDiff( changes, affectedCubes( changes, fromIndex, toIndex ) );
+  }
+
+  private static Set<String> affectedCubes( final List<Change> changes, final SchemaIndex from, final SchemaIndex to ) {
+    Set<String> cubes = new LinkedHashSet<String>();
+    for ( Change change : changes ) {
+      if ( change.getTarget() == Target.SCHEMA ) {
+        addCubes( cubes, from, null );
+        addCubes( cubes, to, null );
+      } else if ( change.getCube() != null ) {
+        cubes.add( change.getCube() );
+      } else if ( change.getTarget() == Target.CUBE ) {
+        cubes.add( change.getName() );
+      } else {
+        String dimension = change.getTarget() == Target.LEVEL ? change.getDimension() : change.getName();
+        addCubes( cubes, from, dimension );
+        addCubes( cubes, to, dimension );
+      }
+    }
+    return cubes;
+  }
+
+  /**
+   * Adds the cubes of the indexed schema, or only those using the shared dimension when one is given.
+   */
+  private static void addCubes( final Set<String> cubes, final SchemaIndex index, final String sharedDimension ) {
+    for ( Element cube : index.getCubes( null ) ) {
+      if ( sharedDimension == null ) {
+        cubes.add( cube.getAttribute( NAME_ATTRIBUTE ) );
+        continue;
+      }
+      for ( Element usage : index.getChildren( cube, SchemaIndex.DIMENSION_USAGE_ELEMENT_NAME ) ) {
+        if ( sharedDimension.equals( usage.getAttribute( SOURCE_ATTRIBUTE ) ) ) {
+          cubes.add( cube.getAttribute( NAME_ATTRIBUTE ) );
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Walks both schemas, collecting changes. A compare method returning false has left changes it could not complete;
+   * its caller replaces the whole element instead.
+   */
+  private static final class Differ {
+
+    private static final Map<String, Target> SCHEMA_TARGETS = new HashMap<String, Target>();
+    private static final Map<String, Target> CUBE_TARGETS = new HashMap<String, Target>();
+    private static final Map<String, Target> HIERARCHY_TARGETS =
+      Collections.singletonMap( SchemaIndex.LEVEL_ELEMENT_NAME, Target.LEVEL );
+
+    static {
+      SCHEMA_TARGETS.put( SchemaIndex.DIMENSION_ELEMENT_NAME, Target.DIMENSION );
+      SCHEMA_TARGETS.put( SchemaIndex.CUBE_ELEMENT_NAME, Target.CUBE );
+      CUBE_TARGETS.put( SchemaIndex.DIMENSION_ELEMENT_NAME, Target.DIMENSION );
+      CUBE_TARGETS.put( SchemaIndex.DIMENSION_USAGE_ELEMENT_NAME, Target.DIMENSION );
+      CUBE_TARGETS.put( MondrianSchemaHandler.MEASURE_ELEMENT_NAME, Target.MEASURE );
+      CUBE_TARGETS.put( AnnotationConstants.CALCULATED_MEMBER_NODE_NAME, Target.CALCULATED_MEMBER );
+    }
+
+    private final List<Change> changes;
+
+    private Differ( final List<Change> changes ) {
+      this.changes = changes;
+    }
+
+    boolean compareSchema( final Element from, final Element to ) throws ModelerException {
+      return compareChildren( from, to, SCHEMA_TARGETS, null, null, null );
+    }
+
+    /**
+     * Compares the children of two elements of the same scope, the targets naming which child tags can change one by
+     * one; all other children have to be the same, in the same order.
+     */
+    private boolean compareChildren( final Element from, final Element to, final Map<String, Target> targets,
+                                     final String cube, final String dimension, final String hierarchy )
+      throws ModelerException {
+      List<Element> fromChildren = elements( from );
+      List<Element> toChildren = elements( to );
+      Map<String, Element> fromKeys = keys( fromChildren, targets );
+      Map<String, Element> toKeys = keys( toChildren, targets );
+      if ( fromKeys == null || toKeys == null ) {
+        return false;
+      }
+      List<String> fromOrder = new ArrayList<String>();
+      for ( Element child : fromChildren ) {
+        String key = key( child, targets );
+        if ( key == null || toKeys.containsKey( key ) ) {
+          fromOrder.add( key );
+        }
+      }
+      List<String> toOrder = new ArrayList<String>();
+      for ( Element child : toChildren ) {
+        String key = key( child, targets );
+        if ( key == null || fromKeys.containsKey( key ) ) {
+          toOrder.add( key );
+        }
+      }
+      if ( !fromOrder.equals( toOrder ) ) {
+        return false;
+      }
+      for ( int i = 0, j = 0; i < fromChildren.size(); i++ ) {
+        Element child = fromChildren.get( i );
+        String key = key( child, targets );
+        if ( key == null ) {
+          while ( key( toChildren.get( j ), targets ) != null ) {
+            j++;
+          }
+          if ( !same( child, toChildren.get( j++ ) ) ) {
+            return false;
+          }
+        } else if ( !toKeys.containsKey( key ) ) {
+          add( Action.REMOVE, child, targets, cube, dimension, hierarchy, null );
+        }
+      }
+      Element previous = null;
+      for ( Element child : toChildren ) {
+        String key = key( child, targets );
+        if ( key != null ) {
+          Element old = fromKeys.get( key );
+          if ( old == null ) {
+            add( Action.ADD, child, targets, cube, dimension, hierarchy, previous );
+          } else if ( !same( old, child ) ) {
+            compareChanged( old, child, targets, cube, dimension, hierarchy );
+          }
+        }
+        previous = child;
+      }
+      return true;
+    }
+
+    private void compareChanged( final Element from, final Element to, final Map<String, Target> targets,
+                                 final String cube, final String dimension, final String hierarchy )
+      throws ModelerException {
+      int mark = changes.size();
+      String name = to.getAttribute( NAME_ATTRIBUTE );
+      boolean patched;
+      if ( SchemaIndex.CUBE_ELEMENT_NAME.equals( to.getNodeName() ) ) {
+        patched = sameAttributes( from, to ) && compareChildren( from, to, CUBE_TARGETS, name, null, null );
+      } else if ( SchemaIndex.DIMENSION_ELEMENT_NAME.equals( to.getNodeName() ) ) {
+        patched = sameAttributes( from, to ) && compareHierarchies( from, to, cube, name );
+      } else {
+        patched = false;
+      }
+      if ( !patched ) {
+        changes.subList( mark, changes.size() ).clear();
+        add( Action.REPLACE, to, targets, cube, dimension, hierarchy, null );
+      }
+    }
+
+    /**
+     * Compares the levels of two dimensions whose hierarchies pair up in order and by name.
+     */
+    private boolean compareHierarchies( final Element from, final Element to, final String cube,
+                                        final String dimension ) throws ModelerException {
+      List<Element> fromChildren = elements( from );
+      List<Element> toChildren = elements( to );
+      if ( fromChildren.size() != toChildren.size() ) {
+        return false;
+      }
+      Set<String> hierarchies = new LinkedHashSet<String>();
+      for ( int i = 0; i < fromChildren.size(); i++ ) {
+        Element fromChild = fromChildren.get( i );
+        Element toChild = toChildren.get( i );
+        if ( !SchemaIndex.HIERARCHY_ELEMENT_NAME.equals( toChild.getNodeName() ) ) {
+          if ( !same( fromChild, toChild ) ) {
+            return false;
+          }
+          continue;
+        }
+        String hierarchy = toChild.hasAttribute( NAME_ATTRIBUTE ) ? toChild.getAttribute( NAME_ATTRIBUTE ) : null;
+        if ( !SchemaIndex.HIERARCHY_ELEMENT_NAME.equals( fromChild.getNodeName() ) || !hierarchies.add(
+          String.valueOf( hierarchy ) ) || !sameAttributes( fromChild, toChild )
+          || !compareChildren( fromChild, toChild, HIERARCHY_TARGETS, cube, dimension, hierarchy ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void add( final Action action, final Element element, final Map<String, Target> targets,
+                      final String cube, final String dimension, final String hierarchy, final Element previous )
+      throws ModelerException {
+      String previousTag = previous == null ? null : previous.getNodeName();
+      String previousName =
+        previous == null || !previous.hasAttribute( NAME_ATTRIBUTE ) ? null : previous.getAttribute( NAME_ATTRIBUTE );
+      changes.add( new Change( action, targets.get( element.getNodeName() ), cube, dimension, hierarchy,
+        element.getNodeName(), element.getAttribute( NAME_ATTRIBUTE ), previousTag, previousName,
+        action == Action.REMOVE ? null : toXml( element ) ) );
+    }
+
+    /**
+     * @return the key of the children with a target, or null if two share one or one has no name
+     */
+    private static Map<String, Element> keys( final List<Element> children, final Map<String, Target> targets ) {
+      Map<String, Element> keys = new HashMap<String, Element>();
+      for ( Element child : children ) {
+        if ( targets.containsKey( child.getNodeName() ) ) {
+          if ( !child.hasAttribute( NAME_ATTRIBUTE ) || keys.put( key( child, targets ), child ) != null ) {
+            return null;
+          }
+        }
+      }
+      return keys;
+    }
+
+    private static String key( final Element element, final Map<String, Target> targets ) {
+      return targets.containsKey( element.getNodeName() )
+        ? element.getNodeName() + "/" + element.getAttribute( NAME_ATTRIBUTE ) : null; //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Whether two elements are the same apart from whitespace, comments and attribute order.
+   */
+  static boolean same( final Element from, final Element to ) {
+    if ( !from.getNodeName().equals( to.getNodeName() ) || !sameAttributes( from, to ) ) {
+      return false;
+    }
+    List<Node> fromChildren = content( from );
+    List<Node> toChildren = content( to );
+    if ( fromChildren.size() != toChildren.size() ) {
+      return false;
+    }
+    for ( int i = 0; i < fromChildren.size(); i++ ) {
+      Node fromChild = fromChildren.get( i );
+      Node toChild = toChildren.get( i );
+      if ( fromChild instanceof Element && toChild instanceof Element ) {
+        if ( !same( (Element) fromChild, (Element) toChild ) ) {
+          return false;
+        }
+      } else if ( fromChild instanceof Element || toChild instanceof Element
+        || !fromChild.getNodeValue().trim().equals( toChild.getNodeValue().trim() ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean sameAttributes( final Element from, final Element to ) {
+    NamedNodeMap fromAttributes = from.getAttributes();
+    NamedNodeMap toAttributes = to.getAttributes();
+    if ( fromAttributes.getLength() != toAttributes.getLength() ) {
+      return false;
+    }
+    for ( int i = 0; i < fromAttributes.getLength(); i++ ) {
+      Node attribute = fromAttributes.item( i );
+      if ( !to.hasAttribute( attribute.getNodeName() )
+        || !to.getAttribute( attribute.getNodeName() ).equals( attribute.getNodeValue() ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the child elements and non-blank text of <code>element</code>
+   */
+  private static List<Node> content( final Element element ) {
+    List<Node> content = new ArrayList<Node>();
+    for ( Node child = element.getFirstChild(); child != null; child = child.getNextSibling() ) {
+      if ( child.getNodeType() == Node.ELEMENT_NODE
+        || ( ( child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE )
+        && child.getNodeValue().trim().length() > 0 ) ) {
+        content.add( child );
+      }
+    }
+    return content;
+  }
+
+  private static List<Element> elements( final Element element ) {
+    List<Element> elements = new ArrayList<Element>();
+    for ( Node child = element.getFirstChild(); child != null; child = child.getNextSibling() ) {
+      if ( child.getNodeType() == Node.ELEMENT_NODE ) {
+        elements.add( (Element) child );
+      }
+    }
+    return elements;
+  }
+
+  private static String toXml( final Element element ) throws ModelerException {
+    try {
+      Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" ); //$NON-NLS-1$
+      StringWriter xml = new StringWriter();
+      transformer.transform( new DOMSource( element ), new StreamResult( xml ) );
+      return xml.toString();
+    } catch ( TransformerException e ) {
+      throw new ModelerException( e );
+    }
+  }
+
+  private static Document toDocument( final ModelerWorkspace workspace, final String locale )
+    throws ModelerException {
+    String xml = new MondrianSchemaWriter( workspace, locale ).getSchemaXml();
+    if ( xml == null ) {
+      throw new ModelerException( BaseMessages.getString( MondrianSchemaHandler.MSG_CLASS,
+        "SchemaDiff.NO_ANALYSIS_MODEL", workspace.getModelName() ) ); //$NON-NLS-1$
+    }
+    try {
+      return XMLUtil.asDOMNode( xml ).getOwnerDocument();
+    } catch ( Exception e ) {
+      throw new ModelerException( e );
+    }
+  }
+}
@@ -0,0 +1,325 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import mondrian.olap.MondrianDef;
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.di.i18n.BaseMessages;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes to a Mondrian schema queued by annotations and made together through one {@link MondrianSchemaHandler}.
+ * <p>
+ * Queued edits are applied cube by cube: each cube is located once for the whole batch, its edits are made in the
+ * order they were added, and every other lookup they make goes through the {@link SchemaIndex} of the schema. Edits
+ * of different cubes do not depend on each other. Edits setting the same attribute of an element are made in order,
+ * so the last one wins. An edit creating an element that a queued edit creates in the same cube is refused when it is
+ * added with a {@link SchemaEditConflictException}.
+ */
+public class SchemaEditBatch {
+
+  private final MondrianSchemaHandler handler;
+  private final List<Edit> edits = new ArrayList<Edit>();
+  private final Map<List<Object>, Edit> creators = new HashMap<List<Object>, Edit>();
+
+  /**
+   * A batch for edits applied elsewhere than the schema of a handler, see {@link SchemaStreamPatcher}.
+   */
+  public SchemaEditBatch() {
+    this( new MondrianSchemaHandler() );
+  }
+
+  public SchemaEditBatch( final Document schema ) {
+    this( new MondrianSchemaHandler( schema ) );
+  }
+
+  public SchemaEditBatch( final MondrianSchemaHandler handler ) {
+    this.handler = handler;
+  }
+
+  public MondrianSchemaHandler getHandler() {
+    return handler;
+  }
+
+  /**
+   * @return the queued edits, in the order they were added
+   */
+  public List<Edit> getEdits() {
+    return Collections.unmodifiableList( edits );
+  }
+
+  public int size() {
+    return edits.size();
+  }
+
+  /**
+   * Queues all of the edits, or none of them if one conflicts with a queued edit or with another of them.
+   *
+   * @throws SchemaEditConflictException on a conflict
+   */
+  public void add( final Edit... added ) throws SchemaEditConflictException {
+    List<Edit> accepted = new ArrayList<Edit>( added.length );
+    try {
+      for ( Edit edit : added ) {
+        if ( edit.isCreate() ) {
+          List<Object> created = createdElement( edit );
+          if ( creators.containsKey( created ) ) {
+            throw conflict( edit );
+          }
+          creators.put( created, edit );
+        }
+        accepted.add( edit );
+      }
+    } catch ( SchemaEditConflictException e ) {
+      for ( Edit edit : accepted ) {
+        forget( edit );
+      }
+      throw e;
+    }
+    edits.addAll( accepted );
+  }
+
+  /**
+   * Makes the queued edits and empties the batch. An edit that fails or throws does not stop the others; its outcome
+   * is kept on the edit.
+   *
+   * @return true if every edit was applied
+   */
+  public boolean apply() {
+    SchemaIndex index = handler.getIndex();
+    Map<Element, List<Edit>> byCube = new LinkedHashMap<Element, List<Edit>>();
+    for ( Edit edit : edits ) {
+      Element cube = index.getCube( StringUtils.isBlank( edit.getCube() ) ? null : edit.getCube() );
+      List<Edit> cubeEdits = byCube.get( cube );
+      if ( cubeEdits == null ) {
+        cubeEdits = new ArrayList<Edit>();
+        byCube.put( cube, cubeEdits );
+      }
+      cubeEdits.add( edit );
+    }
+    boolean applied = true;
+    handler.beginCubeScope();
+    try {
+      for ( List<Edit> cubeEdits : byCube.values() ) {
+        for ( Edit edit : cubeEdits ) {
+          applied &= edit.applyTo( handler );
+        }
+      }
+    } finally {
+      handler.endCubeScope();
+    }
+    clear();
+    return applied;
+  }
+
+  /**
+   * Drops the queued edits without applying them.
+   */
+  public void clear() {
+    edits.clear();
+    creators.clear();
+  }
+
+  /**
+   * Drops the edits queued after the first <code>size</code> ones.
+   */
+  public void truncate( final int size ) {
+    while ( edits.size() > size ) {
+      forget( edits.remove( edits.size() - 1 ) );
+    }
+  }
+
+  public static Edit addMeasure( final String cubeName, final MondrianDef.Measure measure ) {
+    return new Edit( cubeName, measureTarget( cubeName, measure.name ), measure.name, handler -> {
+      handler.addMeasure( cubeName, measure );
+      return true;
+    } );
+  }
+
+  public static Edit updateMeasure( final String cubeName, final String measureName,
+                                    final MondrianDef.Measure measure ) {
+    return new Edit( cubeName, measureTarget( cubeName, measureName ), null,
+      handler -> handler.updateMeasure( cubeName, measureName, measure ) );
+  }
+
+  /**
+   * Updates a calculated measure as {@link #updateCalculatedMeasure} does if there is one of that name when the edit
+   * is applied, and a measure as {@link #updateMeasure} does otherwise.
+   */
+  public static Edit updateAnyMeasure( final String cubeName, final String measureName,
+                                       final MondrianDef.Measure measure ) {
+    return new Edit( cubeName, measureTarget( cubeName, measureName ), null, handler ->
+      handler.isCalculatedMeasure( cubeName, measureName )
+        ? handler.updateCalculatedMeasure( cubeName, measureName, measure.caption, measure.formatString )
+        : handler.updateMeasure( cubeName, measureName, measure ) );
+  }
+
+  public static Edit updateCalculatedMeasure( final String cubeName, final String measureName, final String caption,
+                                              final String formatString ) {
+    return new Edit( cubeName, measureTarget( cubeName, measureName ), null,
+      handler -> handler.updateCalculatedMeasure( cubeName, measureName, caption, formatString ) );
+  }
+
+  public static Edit addCalculatedMember( final String cubeName, final MondrianDef.CalculatedMember member ) {
+    return new Edit( cubeName, measureTarget( cubeName, member.name ), member.name, handler -> {
+      handler.addCalculatedMember( cubeName, member );
+      return true;
+    } );
+  }
+
+  public static Edit updateCalculatedMember( final String cubeName, final String memberName,
+                                             final MondrianDef.CalculatedMember member ) {
+    return new Edit( cubeName, measureTarget( cubeName, memberName ), null,
+      handler -> handler.updateCalculatedMember( cubeName, memberName, member ) );
+  }
+
+  public static Edit showHideMeasure( final String cubeName, final String measureName, final boolean visible ) {
+    return new Edit( cubeName, measureTarget( cubeName, measureName ), null,
+      handler -> handler.showHideMeasure( cubeName, measureName, visible ) );
+  }
+
+  public static Edit showHideAttribute( final String cubeName, final String dimensionName, final String hierarchyName,
+                                        final String levelName, final boolean visible ) {
+    return new Edit( cubeName, levelTarget( cubeName, dimensionName, hierarchyName, levelName ), null,
+      handler -> handler.showHideAttribute( cubeName, dimensionName, hierarchyName, levelName, visible ) );
+  }
+
+  public static Edit captionLevel( final String cubeName, final String dimensionName, final String hierarchyName,
+                                   final String levelName, final String caption ) {
+    return new Edit( cubeName, levelTarget( cubeName, dimensionName, hierarchyName, levelName ), null,
+      handler -> handler.captionLevel( cubeName, dimensionName, hierarchyName, levelName, caption ) );
+  }
+
+  public static Edit formatLevel( final String cubeName, final String dimensionName, final String hierarchyName,
+                                  final String levelName, final String formatString ) {
+    return new Edit( cubeName, levelTarget( cubeName, dimensionName, hierarchyName, levelName ), null,
+      handler -> handler.formatLevel( cubeName, dimensionName, hierarchyName, levelName, formatString ) );
+  }
+
+  public static Edit removeFormatting( final String cubeName, final String dimensionName, final String hierarchyName,
+                                       final String levelName ) {
+    return new Edit( cubeName, levelTarget( cubeName, dimensionName, hierarchyName, levelName ), null,
+      handler -> handler.removeFormatting( cubeName, dimensionName, hierarchyName, levelName ) );
+  }
+
+  /**
+   * @return the element <code>edit</code> creates: the cube element it goes into when the batch has a schema with
+   *         that cube, its cube name otherwise, and its name
+   */
+  private List<Object> createdElement( final Edit edit ) {
+    Object cube = handler.getSchema() == null ? null : handler.getIndex().getCube( edit.cube );
+    return Arrays.asList( cube == null ? StringUtils.defaultString( edit.cube ) : cube,
+      MondrianSchemaHandler.getMeasureName( edit.created ) );
+  }
+
+  private void forget( final Edit edit ) {
+    creators.values().removeIf( creator -> creator == edit );
+  }
+
+  private static SchemaEditConflictException conflict( final Edit edit ) {
+    return new SchemaEditConflictException( BaseMessages.getString( MondrianSchemaHandler.MSG_CLASS,
+      "SchemaEditBatch.CONFLICTING_EDIT", edit.target ) );
+  }
+
+  private static String measureTarget( final String cubeName, final String measureName ) {
+    return "[" + StringUtils.defaultString( cubeName ) + "].[Measures].["
+      + ( measureName == null ? "" : MondrianSchemaHandler.getMeasureName( measureName ) ) + "]";
+  }
+
+  private static String levelTarget( final String cubeName, final String dimensionName, final String hierarchyName,
+                                     final String levelName ) {
+    return "[" + StringUtils.defaultString( cubeName ) + "].[" + dimensionName + "].[" + hierarchyName + "].["
+      + levelName + "]";
+  }
+
+  private interface Action {
+    boolean apply( MondrianSchemaHandler handler ) throws ModelerException;
+  }
+
+  /**
+   * One change to one element of the schema, made by one {@link MondrianSchemaHandler} call.
+   */
+  public static final class Edit {
+    private final String cube;
+    private final String target;
+    private final String created;
+    private final Action action;
+    private boolean applied;
+    private ModelerException error;
+
+    private Edit( final String cube, final String target, final String created, final Action action ) {
+      this.cube = cube;
+      this.target = target;
+      this.created = created;
+      this.action = action;
+    }
+
+    public String getCube() {
+      return cube;
+    }
+
+    /**
+     * @return the element this edit changes, as a bracketed member path
+     */
+    public String getTarget() {
+      return target;
+    }
+
+    boolean isCreate() {
+      return created != null;
+    }
+
+    /**
+     * Makes the change through <code>handler</code> and keeps the outcome.
+     */
+    boolean applyTo( final MondrianSchemaHandler handler ) {
+      try {
+        error = null;
+        applied = action.apply( handler );
+      } catch ( ModelerException e ) {
+        error = e;
+        applied = false;
+      }
+      return applied;
+    }
+
+    /**
+     * @return whether the change was made the last time this edit was applied
+     */
+    public boolean isApplied() {
+      return applied;
+    }
+
+    /**
+     * @return the exception the last attempt to make this change ended with, if any
+     */
+    public ModelerException getError() {
+      return error;
+    }
+
+    @Override public String toString() {
+      return target;
+    }
+  }
+}
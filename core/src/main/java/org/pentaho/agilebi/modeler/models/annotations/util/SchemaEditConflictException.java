@@ -0,0 +1,29 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import org.pentaho.agilebi.modeler.ModelerException;
+
+/**
+ * Thrown by {@link SchemaEditBatch#add} for an edit that conflicts with one already queued.
+ */
+public class SchemaEditConflictException extends ModelerException {
+
+  private static final long serialVersionUID = -4310528861203487129L;
+
+  public SchemaEditConflictException( final String msg ) {
+    super( msg );
+  }
+
+}
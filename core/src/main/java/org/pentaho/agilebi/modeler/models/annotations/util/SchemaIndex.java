@@ -0,0 +1,332 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Name index over the elements of a Mondrian schema {@link Document}, replacing the XPath queries of
+ * {@link MondrianSchemaHandler}. Elements are looked up by tag and <code>name</code> attribute among the children or
+ * the descendants of a scope element; each table is built on first use and returned in document order, so the first
+ * element of a lookup is the one an XPath query would select.
+ * <p>
+ * Each {@link MondrianSchemaHandler} keeps the index of its document and reports the elements it adds, renames and
+ * removes, or calls {@link #invalidate()} when it changes the document more broadly. The index does not see changes
+ * made to the document in any other way; whoever makes them drops the tables with {@link #invalidate()}, and they
+ * are then rebuilt as they are needed.
+ */
+public class SchemaIndex {
+
+  public static final String SCHEMA_ELEMENT_NAME = "Schema";
+  public static final String CUBE_ELEMENT_NAME = "Cube";
+  public static final String DIMENSION_ELEMENT_NAME = "Dimension";
+  public static final String DIMENSION_USAGE_ELEMENT_NAME = "DimensionUsage";
+  public static final String HIERARCHY_ELEMENT_NAME = "Hierarchy";
+  public static final String LEVEL_ELEMENT_NAME = "Level";
+
+  private static final String NAME_ATTRIBUTE = "name";
+
+  private final Document schema;
+  private final Map<Element, Map<String, Table>> children = new IdentityHashMap<Element, Map<String, Table>>();
+  private final Map<Element, Map<String, Table>> descendants = new IdentityHashMap<Element, Map<String, Table>>();
+  private int rebuilds;
+
+  public SchemaIndex( final Document schema ) {
+    this.schema = schema;
+  }
+
+  public Document getSchema() {
+    return schema;
+  }
+
+  /**
+   * @return the Schema document element, or null if the document has another root
+   */
+  public Element getRoot() {
+    Element root = schema.getDocumentElement();
+    return root != null && SCHEMA_ELEMENT_NAME.equals( root.getNodeName() ) ? root : null;
+  }
+
+  /**
+   * @return the cubes named <code>name</code>, or every cube when it is null
+   */
+  public List<Element> getCubes( final String name ) {
+    return name == null
+      ? getChildren( getRoot(), CUBE_ELEMENT_NAME ) : getChildren( getRoot(), CUBE_ELEMENT_NAME, name );
+  }
+
+  /**
+   * @return the first cube named <code>name</code>, or the first cube when it is null
+   */
+  public Element getCube( final String name ) {
+    return first( getCubes( name ) );
+  }
+
+  public Element getSharedDimension( final String name ) {
+    return first( getChildren( getRoot(), DIMENSION_ELEMENT_NAME, name ) );
+  }
+
+  /**
+   * @return the child elements of <code>scope</code> with the given tag, in document order
+   */
+  public List<Element> getChildren( final Element scope, final String tag ) {
+    return scope == null ? Collections.<Element>emptyList() : table( children, scope, tag, false ).all();
+  }
+
+  /**
+   * @return the child elements of <code>scope</code> with the given tag and name attribute, in document order
+   */
+  public List<Element> getChildren( final Element scope, final String tag, final String name ) {
+    return scope == null ? Collections.<Element>emptyList() : table( children, scope, tag, false ).named( name );
+  }
+
+  /**
+   * @return the descendant elements of <code>scope</code> with the given tag, in document order
+   */
+  public List<Element> getDescendants( final Element scope, final String tag ) {
+    return scope == null ? Collections.<Element>emptyList() : table( descendants, scope, tag, true ).all();
+  }
+
+  /**
+   * @return the descendant elements of <code>scope</code> with the given tag and name attribute, in document order
+   */
+  public List<Element> getDescendants( final Element scope, final String tag, final String name ) {
+    return scope == null ? Collections.<Element>emptyList() : table( descendants, scope, tag, true ).named( name );
+  }
+
+  /**
+   * Registers an element that was just inserted, with its subtree.
+   */
+  void added( final Element element ) {
+    for ( Node node = element.getParentNode(); node instanceof Element; node = node.getParentNode() ) {
+      Element ancestor = (Element) node;
+      if ( node == element.getParentNode() ) {
+        Table table = lookup( children, ancestor, element.getNodeName() );
+        if ( table != null ) {
+          table.add( element );
+        }
+      }
+      Map<String, Table> tables = descendants.get( ancestor );
+      if ( tables == null ) {
+        continue;
+      }
+      for ( Map.Entry<String, Table> entry : tables.entrySet() ) {
+        if ( entry.getKey().equals( element.getNodeName() ) ) {
+          entry.getValue().add( element );
+        }
+        NodeList nested = element.getElementsByTagName( entry.getKey() );
+        for ( int i = 0; i < nested.getLength(); i++ ) {
+          entry.getValue().add( (Element) nested.item( i ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Unregisters an element, with its subtree, that is about to be removed from its parent.
+   */
+  void removing( final Element element ) {
+    for ( Node node = element.getParentNode(); node instanceof Element; node = node.getParentNode() ) {
+      Element ancestor = (Element) node;
+      if ( node == element.getParentNode() ) {
+        Table table = lookup( children, ancestor, element.getNodeName() );
+        if ( table != null ) {
+          table.remove( element );
+        }
+      }
+      Map<String, Table> tables = descendants.get( ancestor );
+      if ( tables == null ) {
+        continue;
+      }
+      for ( Map.Entry<String, Table> entry : tables.entrySet() ) {
+        if ( entry.getKey().equals( element.getNodeName() ) ) {
+          entry.getValue().remove( element );
+        }
+        NodeList nested = element.getElementsByTagName( entry.getKey() );
+        for ( int i = 0; i < nested.getLength(); i++ ) {
+          entry.getValue().remove( (Element) nested.item( i ) );
+        }
+      }
+    }
+    dropScopesWithin( children, element );
+    dropScopesWithin( descendants, element );
+  }
+
+  /**
+   * Moves an element whose name attribute was changed from <code>oldName</code>.
+   */
+  void renamed( final Element element, final String oldName ) {
+    for ( Node node = element.getParentNode(); node instanceof Element; node = node.getParentNode() ) {
+      if ( node == element.getParentNode() ) {
+        Table table = lookup( children, (Element) node, element.getNodeName() );
+        if ( table != null ) {
+          table.rename( element, oldName );
+        }
+      }
+      Table table = lookup( descendants, (Element) node, element.getNodeName() );
+      if ( table != null ) {
+        table.rename( element, oldName );
+      }
+    }
+  }
+
+  /**
+   * Drops the tables after a change to the document that was not reported element by element.
+   */
+  public void invalidate() {
+    if ( !children.isEmpty() || !descendants.isEmpty() ) {
+      children.clear();
+      descendants.clear();
+      rebuilds++;
+    }
+  }
+
+  /**
+   * @return how many times the tables were dropped by {@link #invalidate()}
+   */
+  int getRebuilds() {
+    return rebuilds;
+  }
+
+  private Table table( final Map<Element, Map<String, Table>> tables, final Element scope, final String tag,
+                       final boolean deep ) {
+    Map<String, Table> byTag = tables.get( scope );
+    if ( byTag == null ) {
+      byTag = new HashMap<String, Table>();
+      tables.put( scope, byTag );
+    }
+    Table table = byTag.get( tag );
+    if ( table == null ) {
+      table = new Table();
+      if ( deep ) {
+        NodeList nodes = scope.getElementsByTagName( tag );
+        for ( int i = 0; i < nodes.getLength(); i++ ) {
+          table.append( (Element) nodes.item( i ) );
+        }
+      } else {
+        for ( Node child = scope.getFirstChild(); child != null; child = child.getNextSibling() ) {
+          if ( child instanceof Element && tag.equals( child.getNodeName() ) ) {
+            table.append( (Element) child );
+          }
+        }
+      }
+      byTag.put( tag, table );
+    }
+    return table;
+  }
+
+  private static Table lookup( final Map<Element, Map<String, Table>> tables, final Element scope, final String tag ) {
+    Map<String, Table> byTag = tables.get( scope );
+    return byTag == null ? null : byTag.get( tag );
+  }
+
+  private static void dropScopesWithin( final Map<Element, Map<String, Table>> tables, final Element element ) {
+    for ( Iterator<Element> scopes = tables.keySet().iterator(); scopes.hasNext(); ) {
+      Element scope = scopes.next();
+      if ( scope == element
+        || ( element.compareDocumentPosition( scope ) & Node.DOCUMENT_POSITION_CONTAINED_BY ) != 0 ) {
+        scopes.remove();
+      }
+    }
+  }
+
+  private static Element first( final List<Element> elements ) {
+    return elements.isEmpty() ? null : elements.get( 0 );
+  }
+
+  /**
+   * Elements of one tag under one scope, all of them and by name, each list in document order.
+   */
+  private static class Table {
+    private final List<Element> all = new ArrayList<Element>();
+    private final Set<Element> members = Collections.newSetFromMap( new IdentityHashMap<Element, Boolean>() );
+    private final Map<String, List<Element>> byName = new HashMap<String, List<Element>>();
+
+    List<Element> all() {
+      return Collections.unmodifiableList( all );
+    }
+
+    List<Element> named( final String name ) {
+      List<Element> elements = byName.get( name );
+      return elements == null ? Collections.<Element>emptyList() : Collections.unmodifiableList( elements );
+    }
+
+    void append( final Element element ) {
+      all.add( element );
+      members.add( element );
+      if ( element.hasAttribute( NAME_ATTRIBUTE ) ) {
+        byName.computeIfAbsent( element.getAttribute( NAME_ATTRIBUTE ), k -> new ArrayList<Element>( 1 ) )
+          .add( element );
+      }
+    }
+
+    void add( final Element element ) {
+      if ( !members.add( element ) ) {
+        return;
+      }
+      insert( all, element );
+      if ( element.hasAttribute( NAME_ATTRIBUTE ) ) {
+        insert( byName.computeIfAbsent( element.getAttribute( NAME_ATTRIBUTE ), k -> new ArrayList<Element>( 1 ) ),
+          element );
+      }
+    }
+
+    void remove( final Element element ) {
+      if ( !members.remove( element ) ) {
+        return;
+      }
+      all.remove( element );
+      String name = element.getAttribute( NAME_ATTRIBUTE );
+      List<Element> elements = byName.get( name );
+      if ( elements != null && elements.remove( element ) && elements.isEmpty() ) {
+        byName.remove( name );
+      }
+    }
+
+    void rename( final Element element, final String oldName ) {
+      List<Element> elements = oldName == null ? null : byName.get( oldName );
+      if ( elements != null && elements.remove( element ) && elements.isEmpty() ) {
+        byName.remove( oldName );
+      }
+      if ( members.contains( element ) && element.hasAttribute( NAME_ATTRIBUTE ) ) {
+        insert( byName.computeIfAbsent( element.getAttribute( NAME_ATTRIBUTE ), k -> new ArrayList<Element>( 1 ) ),
+          element );
+      }
+    }
+
+    /**
+     * Inserts in document order, scanning from the end since most insertions are appends.
+     */
+    private static void insert( final List<Element> elements, final Element element ) {
+      int index = elements.size();
+      while ( index > 0
+        && ( element.compareDocumentPosition( elements.get( index - 1 ) ) & Node.DOCUMENT_POSITION_FOLLOWING ) != 0 ) {
+        index--;
+      }
+      elements.add( index, element );
+    }
+  }
+}
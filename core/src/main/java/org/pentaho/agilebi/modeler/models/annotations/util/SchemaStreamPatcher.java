@@ -0,0 +1,261 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the edits of a {@link SchemaEditBatch} to a Mondrian schema while copying it from a stream to another,
+ * without loading the schema into a DOM. Each edited cube, and nothing else, is read into a small document of its
+ * own, edited there by a {@link MondrianSchemaHandler} and written back; the rest of the schema is copied event by
+ * event.
+ * <p>
+ * Some edits need more of the schema than their cube: levels of shared dimensions, lookups without a cube name, and
+ * new measures when a calculated member precedes the cube. For those, and for edits that fail on their cube alone,
+ * {@link #patch} returns false and the caller applies the edits to a DOM of the whole schema instead.
+ */
+public class SchemaStreamPatcher {
+
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+  private static final String DEFAULT_ENCODING = "UTF-8"; //$NON-NLS-1$
+
+  private final List<SchemaEditBatch.Edit> edits;
+
+  public SchemaStreamPatcher( final SchemaEditBatch batch ) {
+    this.edits = new ArrayList<SchemaEditBatch.Edit>( batch.getEdits() );
+  }
+
+  /**
+   * Copies the schema from <code>in</code> to <code>out</code>, applying the edits to their cubes on the way.
+   *
+   * @return true if every edit was applied; false if one was not, in which case the output is incomplete and the edits
+   *         have to be applied to the whole schema
+   * @throws ModelerException if the schema cannot be read or written
+   */
+  public boolean patch( final InputStream in, final OutputStream out ) throws ModelerException {
+    List<SchemaEditBatch.Edit> pending = new ArrayList<SchemaEditBatch.Edit>( edits );
+    for ( SchemaEditBatch.Edit edit : pending ) {
+      if ( StringUtils.isBlank( edit.getCube() ) && !edit.isCreate() ) {
+        return false;
+      }
+    }
+    try {
+      XMLEventReader reader = INPUT_FACTORY.createXMLEventReader( in );
+      XMLEventWriter writer = null;
+      Set<String> cubeNames = new HashSet<String>();
+      boolean schemaRoot = false;
+      boolean firstCube = true;
+      boolean calculatedMemberSeen = false;
+      int depth = 0;
+      while ( reader.hasNext() ) {
+        XMLEvent event = reader.nextEvent();
+        if ( writer == null ) {
+          writer = OUTPUT_FACTORY.createXMLEventWriter( out, encoding( event ) );
+        }
+        if ( event.isStartElement() ) {
+          StartElement start = event.asStartElement();
+          String name = start.getName().getLocalPart();
+          if ( depth == 0 ) {
+            schemaRoot = SchemaIndex.SCHEMA_ELEMENT_NAME.equals( name );
+          } else if ( depth == 1 && schemaRoot && SchemaIndex.CUBE_ELEMENT_NAME.equals( name ) ) {
+            List<SchemaEditBatch.Edit> cubeEdits = takeEdits( pending, start, firstCube, cubeNames );
+            firstCube = false;
+            if ( !cubeEdits.isEmpty() ) {
+              if ( calculatedMemberSeen && hasCreate( cubeEdits ) ) {
+                return false;
+              }
+              Document cube = readCube( start, reader );
+              MondrianSchemaHandler handler = new MondrianSchemaHandler( cube );
+              for ( SchemaEditBatch.Edit edit : cubeEdits ) {
+                if ( !edit.applyTo( handler ) ) {
+                  return false;
+                }
+              }
+              write( cube.getDocumentElement().getFirstChild(), writer );
+              continue;
+            }
+          }
+          if ( AnnotationConstants.CALCULATED_MEMBER_NODE_NAME.equals( name ) ) {
+            calculatedMemberSeen = true;
+          }
+          depth++;
+        } else if ( event.isEndElement() ) {
+          depth--;
+        }
+        writer.add( event );
+      }
+      if ( writer != null ) {
+        writer.flush();
+      }
+      return pending.isEmpty();
+    } catch ( XMLStreamException e ) {
+      throw new ModelerException( e );
+    }
+  }
+
+  /**
+   * Removes from <code>pending</code> the edits of the cube that starts with <code>start</code>: those naming it, if
+   * it is the first cube of that name, and those without a cube name if it is the first cube.
+   */
+  private static List<SchemaEditBatch.Edit> takeEdits( final List<SchemaEditBatch.Edit> pending,
+                                                       final StartElement start, final boolean firstCube,
+                                                       final Set<String> cubeNames ) {
+    Attribute nameAttribute = start.getAttributeByName( new QName( "name" ) ); //$NON-NLS-1$
+    String cubeName = nameAttribute == null ? null : nameAttribute.getValue();
+    boolean firstOfName = cubeName != null && cubeNames.add( cubeName );
+    List<SchemaEditBatch.Edit> cubeEdits = new ArrayList<SchemaEditBatch.Edit>();
+    for ( Iterator<SchemaEditBatch.Edit> iterator = pending.iterator(); iterator.hasNext(); ) {
+      SchemaEditBatch.Edit edit = iterator.next();
+      if ( StringUtils.isBlank( edit.getCube() ) ? firstCube : firstOfName && edit.getCube().equals( cubeName ) ) {
+        cubeEdits.add( edit );
+        iterator.remove();
+      }
+    }
+    return cubeEdits;
+  }
+
+  private static boolean hasCreate( final List<SchemaEditBatch.Edit> edits ) {
+    for ( SchemaEditBatch.Edit edit : edits ) {
+      if ( edit.isCreate() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the cube that starts with <code>start</code>, up to its end element, into a document of its own with a
+   * Schema root.
+   */
+  private static Document readCube( final StartElement start, final XMLEventReader reader )
+    throws XMLStreamException, ModelerException {
+    Document document;
+    try {
+      document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    } catch ( ParserConfigurationException e ) {
+      throw new ModelerException( e );
+    }
+    Element root = document.createElement( SchemaIndex.SCHEMA_ELEMENT_NAME );
+    document.appendChild( root );
+    Deque<Node> parents = new ArrayDeque<Node>();
+    parents.push( root );
+    XMLEvent event = start;
+    while ( true ) {
+      if ( event.isStartElement() ) {
+        Element element = document.createElement( event.asStartElement().getName().getLocalPart() );
+        for ( Iterator<?> attributes = event.asStartElement().getAttributes(); attributes.hasNext(); ) {
+          Attribute attribute = (Attribute) attributes.next();
+          element.setAttribute( attribute.getName().getLocalPart(), attribute.getValue() );
+        }
+        parents.peek().appendChild( element );
+        parents.push( element );
+      } else if ( event.isEndElement() ) {
+        parents.pop();
+        if ( parents.size() == 1 ) {
+          return document;
+        }
+      } else if ( event.isCharacters() ) {
+        Characters characters = event.asCharacters();
+        parents.peek().appendChild( characters.isCData()
+          ? document.createCDATASection( characters.getData() ) : document.createTextNode( characters.getData() ) );
+      } else if ( event.getEventType() == XMLEvent.COMMENT ) {
+        parents.peek().appendChild( document.createComment( ( (Comment) event ).getText() ) );
+      } else if ( event.isProcessingInstruction() ) {
+        ProcessingInstruction instruction = (ProcessingInstruction) event;
+        parents.peek().appendChild( document.createProcessingInstruction(
+          instruction.getTarget(), instruction.getData() ) );
+      }
+      event = reader.nextEvent();
+    }
+  }
+
+  private static void write( final Node node, final XMLEventWriter writer ) throws XMLStreamException {
+    switch ( node.getNodeType() ) {
+      case Node.ELEMENT_NODE:
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        NamedNodeMap attributeNodes = node.getAttributes();
+        for ( int i = 0; i < attributeNodes.getLength(); i++ ) {
+          Node attribute = attributeNodes.item( i );
+          attributes.add( EVENT_FACTORY.createAttribute( attribute.getNodeName(), attribute.getNodeValue() ) );
+        }
+        writer.add( EVENT_FACTORY.createStartElement( "", "", node.getNodeName(), attributes.iterator(), null ) );
+        for ( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+          write( child, writer );
+        }
+        writer.add( EVENT_FACTORY.createEndElement( "", "", node.getNodeName() ) );
+        break;
+      case Node.TEXT_NODE:
+        writer.add( EVENT_FACTORY.createCharacters( node.getNodeValue() ) );
+        break;
+      case Node.CDATA_SECTION_NODE:
+        writer.add( EVENT_FACTORY.createCData( node.getNodeValue() ) );
+        break;
+      case Node.COMMENT_NODE:
+        writer.add( EVENT_FACTORY.createComment( node.getNodeValue() ) );
+        break;
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        writer.add( EVENT_FACTORY.createProcessingInstruction( node.getNodeName(), node.getNodeValue() ) );
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static String encoding( final XMLEvent first ) {
+    if ( first.isStartDocument() && ( (StartDocument) first ).encodingSet() ) {
+      return ( (StartDocument) first ).getCharacterEncodingScheme();
+    }
+    return DEFAULT_ENCODING;
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    return factory;
+  }
+}
@@ -15,6 +15,10 @@ package org.pentaho.agilebi.modeler.nodes;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -35,36 +39,51 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
   private static final long serialVersionUID = 1547202580713108254L;
 
   protected boolean valid = true;
-  protected transient Set<String> validationMessages = new HashSet<String>();
+
+  /**
+   * Allocated on the first message and released again when cleared; valid nodes carry none, so subclasses reading the
+   * field must expect null.
+   */
+  protected transient Set<String> validationMessages;
 
   protected String image;
   protected boolean suppressEvents;
   protected boolean expanded;
   protected DataRole dataRole;
-  protected Map<String, IMemberAnnotation> annotations = new AnnotationMap();
+
+  /**
+   * Allocated on the first call to {@link #getMemberAnnotations()}; null while the node has no annotations.
+   */
+  protected Map<String, IMemberAnnotation> annotations;
+
+  /**
+   * Counts the edits of this node and of every node below it, so {@link NodeSnapshot#capture} can skip the subtrees
+   * that were not edited since they were last captured.
+   */
+  private transient int edits;
 
   protected String classname;
   protected String validClassname;
   protected String invalidClassname = "pentaho-warningbutton";
   protected String altText;
 
-  protected transient PropertyChangeListener validListener = new PropertyChangeListener() {
-    public void propertyChange( PropertyChangeEvent arg0 ) {
-      validateNode();
-    }
-  };
+  /**
+   * The child listeners are stateless and shared by every node: each one dispatches to the parent of the node that
+   * fired the event, so registering them on a child costs no allocation per parent.
+   */
+  protected static final PropertyChangeListener validListener = new ParentDispatchListener( false );
 
-  protected transient PropertyChangeListener nameListener = new PropertyChangeListener() {
-    public void propertyChange( PropertyChangeEvent arg0 ) {
-      validateNode();
-    }
-  };
+  protected static final PropertyChangeListener nameListener = new ParentDispatchListener( false );
 
-  protected transient PropertyChangeListener childrenListener = new PropertyChangeListener() {
-    public void propertyChange( PropertyChangeEvent evt ) {
-      fireCollectionChanged();
-    }
-  };
+  protected static final PropertyChangeListener childrenListener = new ParentDispatchListener( true );
+
+  /**
+   * Properties that only drive the tree view or validation state; changing them leaves the domain as it is.
+   */
+  private static final Set<String> VIEW_PROPERTIES = new HashSet<String>( Arrays.asList( "valid", //$NON-NLS-1$
+      "validationMessagesString", //$NON-NLS-1$
+      "image", "classname", "altText", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      "children" ) ); //$NON-NLS-1$
 
   public AbstractMetaDataModelNode( String classname ) {
     this.image = getInvalidImage();
@@ -81,9 +100,12 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
 
   @Override
   public void onAdd( T child ) {
+    child.setParent( this );
     child.addPropertyChangeListener( "name", nameListener );
     child.addPropertyChangeListener( "valid", validListener );
     child.addPropertyChangeListener( "children", childrenListener );
+    nodeEdited();
+    modelChanged();
     validateTree();
   }
 
@@ -92,11 +114,16 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
     child.removePropertyChangeListener( validListener );
     child.removePropertyChangeListener( nameListener );
     child.removePropertyChangeListener( childrenListener );
+    nodeEdited();
+    modelChanged();
     validateNode();
   }
 
   @Bindable
   public String getValidationMessagesString() {
+    if ( validationMessages == null ) {
+      return ""; //$NON-NLS-1$
+    }
     StringBuilder str = new StringBuilder(); //$NON-NLS-1$
     int i = 0;
     for ( String msg : validationMessages ) {
@@ -131,18 +158,137 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
     return dataRole;
   }
 
+  /**
+   * @return the current validation messages; an immutable empty set when there are none
+   */
   @Bindable
   public Set<String> getValidationMessages() {
+    if ( validationMessages == null ) {
+      return Collections.emptySet();
+    }
     return validationMessages;
   }
 
+  public void addValidationMessage( String message ) {
+    if ( validationMessages == null ) {
+      validationMessages = new HashSet<String>();
+    }
+    validationMessages.add( message );
+  }
+
+  public void addValidationMessages( Collection<String> messages ) {
+    if ( messages.isEmpty() ) {
+      return;
+    }
+    if ( validationMessages == null ) {
+      validationMessages = new HashSet<String>();
+    }
+    validationMessages.addAll( messages );
+  }
+
+  protected void clearValidationMessages() {
+    validationMessages = null;
+  }
+
   @Override
   protected void fireCollectionChanged() {
-    if ( this.suppressEvents == false ) {
+    if ( this.suppressEvents == false && !deferCollectionChanged() ) {
       super.fireCollectionChanged();
     }
   }
 
+  /**
+   * Hands a pending "children" notification to the workspace batch, if one is open.
+   *
+   * @return true if the notification must not be fired now
+   * @see ModelerWorkspace#beginBatch()
+   */
+  protected boolean deferCollectionChanged() {
+    ModelerWorkspace ws = findWorkspace();
+    return ws != null && ws.deferCollectionChanged( this );
+  }
+
+  /**
+   * Delivers a "children" notification that was held back while a workspace batch was open.
+   */
+  public void fireDeferredCollectionChanged() {
+    fireCollectionChanged();
+  }
+
+  /**
+   * Moves the revision of the workspace this node belongs to, if any.
+   *
+   * @see ModelerWorkspace#getModelRevision()
+   */
+  protected void modelChanged() {
+    ModelerWorkspace ws = findWorkspace();
+    if ( ws != null ) {
+      ws.modelChanged();
+    }
+  }
+
+  /**
+   * Flags the part of the workspace holding this node for the next domain sync. Structural changes are picked up by
+   * the collection listeners of the workspace; this covers in-place edits of a node's own properties.
+   */
+  protected void markDomainChanged() {
+    nodeEdited();
+    ModelerWorkspace ws = findWorkspace();
+    if ( ws != null ) {
+      ws.markSubtreeDirtyFor( this );
+    }
+  }
+
+  @Override
+  protected void firePropertyChange( String attr, Object previousVal, Object newVal ) {
+    super.firePropertyChange( attr, previousVal, newVal );
+    if ( !VIEW_PROPERTIES.contains( attr ) ) {
+      markDomainChanged();
+    }
+  }
+
+  /**
+   * Counts an edit of this node and its ancestors. Property changes and child changes are counted already; setters
+   * that change state recorded by {@link #captureState(List)} without firing a property change call this themselves.
+   */
+  protected void nodeEdited() {
+    AbstractModelNode node = this;
+    while ( node instanceof AbstractMetaDataModelNode ) {
+      ( (AbstractMetaDataModelNode) node ).edits++;
+      node = node.getParent();
+    }
+  }
+
+  /**
+   * @return a count that changes whenever this node or a node below it is edited
+   */
+  int getEdits() {
+    return edits;
+  }
+
+  /**
+   * Tells the workspace holding this node that a logical column of its domain was changed in place.
+   */
+  protected void domainChanged() {
+    ModelerWorkspace ws = findWorkspace();
+    if ( ws != null ) {
+      ws.domainChanged();
+    }
+  }
+
+  private boolean isValidationDeferred() {
+    ModelerWorkspace ws = findWorkspace();
+    return ws != null && ws.isBatching();
+  }
+
+  private ModelerWorkspace findWorkspace() {
+    if ( this instanceof IRootModelNode ) {
+      return ( (IRootModelNode) this ).getWorkspace();
+    }
+    AbstractModelNode root = getRoot();
+    return root instanceof IRootModelNode ? ( (IRootModelNode) root ).getWorkspace() : null;
+  }
+
   @Bindable
   public void setImage( String image ) {
     if ( this.image == null || !this.image.equals( image ) ) {
@@ -228,19 +374,24 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
   public abstract void validate();
 
   public void validateNode() {
+    if ( isValidationDeferred() ) {
+      return;
+    }
     boolean prevValid = valid;
     String prevMessages = getValidationMessagesString();
 
     validate();
 
-    for ( IMemberAnnotation anno : annotations.values() ) {
-      if ( anno == null ) {
-        continue;
-      }
-      valid &= anno.isValid( this );
-      List<String> messages = anno.getValidationMessages( this );
-      if ( messages != null ) {
-        validationMessages.addAll( messages );
+    if ( annotations != null ) {
+      for ( IMemberAnnotation anno : annotations.values() ) {
+        if ( anno == null ) {
+          continue;
+        }
+        valid &= anno.isValid( this );
+        List<String> messages = anno.getValidationMessages( this );
+        if ( messages != null ) {
+          addValidationMessages( messages );
+        }
       }
     }
 
@@ -268,6 +419,9 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
   }
 
   public void validateTree() {
+    if ( isValidationDeferred() ) {
+      return;
+    }
     for ( T t : this ) {
       ( (AbstractMetaDataModelNode) t ).validateTree();
     }
@@ -343,9 +497,84 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
   }
 
   public Map<String, IMemberAnnotation> getMemberAnnotations() {
+    if ( annotations == null ) {
+      annotations = new AnnotationMap();
+    }
     return annotations;
   }
 
+  /**
+   * Lets read-only callers skip {@link #getMemberAnnotations()}, which allocates the map on first use.
+   */
+  public boolean hasMemberAnnotations() {
+    return annotations != null && !annotations.isEmpty();
+  }
+
+  /**
+   * Appends the editable properties of this node to <code>state</code> for a {@link NodeSnapshot}. Subclasses with
+   * properties of their own call super first and then append theirs.
+   */
+  void captureState( List<Object> state ) {
+    state.add( dataRole );
+    state.add( annotations == null || annotations.isEmpty()
+        ? null : new HashMap<String, IMemberAnnotation>( annotations ) );
+  }
+
+  /**
+   * Puts back the values appended by {@link #captureState(List)}, reading <code>state</code> from <code>index</code>.
+   *
+   * @return the index following the last value read
+   */
+  @SuppressWarnings( "unchecked" )
+  int restoreState( Object[] state, int index ) {
+    dataRole = (DataRole) state[ index++ ];
+    Map<String, IMemberAnnotation> saved = (Map<String, IMemberAnnotation>) state[ index++ ];
+    if ( annotations != null ) {
+      for ( String key : new ArrayList<String>( annotations.keySet() ) ) {
+        if ( saved == null || !saved.containsKey( key ) ) {
+          IMemberAnnotation removed = annotations.remove( key );
+          if ( removed != null ) {
+            removed.onDetach( this );
+          }
+        }
+      }
+    }
+    if ( saved != null ) {
+      for ( Map.Entry<String, IMemberAnnotation> entry : saved.entrySet() ) {
+        getMemberAnnotations().put( entry.getKey(), entry.getValue() );
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Creates an empty node of the same kind for {@link NodeSnapshot#copyInto}.
+   */
+  abstract AbstractMetaDataModelNode newNode();
+
+  private static class ParentDispatchListener implements PropertyChangeListener {
+    private final boolean children;
+
+    ParentDispatchListener( boolean children ) {
+      this.children = children;
+    }
+
+    public void propertyChange( PropertyChangeEvent evt ) {
+      if ( !( evt.getSource() instanceof AbstractModelNode ) ) {
+        return;
+      }
+      AbstractModelNode parent = ( (AbstractModelNode) evt.getSource() ).getParent();
+      if ( !( parent instanceof AbstractMetaDataModelNode ) ) {
+        return;
+      }
+      if ( children ) {
+        ( (AbstractMetaDataModelNode) parent ).fireCollectionChanged();
+      } else {
+        ( (AbstractMetaDataModelNode) parent ).validateNode();
+      }
+    }
+  }
+
   private class AnnotationMap extends HashMap<String, IMemberAnnotation> {
     private static final long serialVersionUID = -578588442907941576L;
 
@@ -358,6 +587,7 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
       if ( ( prevVal == null || prevVal != iMemberAnnotation ) && iMemberAnnotation != null ) {
         iMemberAnnotation.onAttach( AbstractMetaDataModelNode.this );
       }
+      markDomainChanged();
       return super.put( s, iMemberAnnotation );
     }
 
@@ -372,6 +602,7 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
           map.get( s ).onAttach( AbstractMetaDataModelNode.this );
         }
       }
+      markDomainChanged();
       super.putAll( map );
     }
 
@@ -380,6 +611,7 @@ public abstract class AbstractMetaDataModelNode<T extends AbstractMetaDataModelN
       if ( o instanceof IMemberAnnotation ) {
         ( (IMemberAnnotation) o ).onDetach( AbstractMetaDataModelNode.this );
       }
+      markDomainChanged();
       return super.remove( o );
     }
   }
@@ -73,7 +73,11 @@ public abstract class BaseAggregationMetaDataNode extends BaseColumnBackedMetaDa
     if ( !( name == null ) ) {
       super.setName( name );
       if ( logicalColumn != null ) {
+        boolean renamed = !name.equals( logicalColumn.getName( locale ) );
         logicalColumn.setName( new LocalizedString( locale, name ) );
+        if ( renamed ) {
+          domainChanged();
+        }
       }
     }
   }
@@ -101,6 +105,7 @@ public abstract class BaseAggregationMetaDataNode extends BaseColumnBackedMetaDa
   @Bindable
   public void setFieldTypeDesc( String fieldTypeDesc ) {
     this.fieldTypeDesc = fieldTypeDesc;
+    nodeEdited();
   }
 
   @Bindable
@@ -111,6 +116,7 @@ public abstract class BaseAggregationMetaDataNode extends BaseColumnBackedMetaDa
   @Bindable
   public void setLevelTypeDesc( String levelTypeDesc ) {
     this.levelTypeDesc = levelTypeDesc;
+    nodeEdited();
   }
 
   @Bindable
@@ -205,6 +211,37 @@ public abstract class BaseAggregationMetaDataNode extends BaseColumnBackedMetaDa
     this.firePropertyChange( "formatstring", prevXulMenuList, formatstring );
   }
 
+  @Override
+  void captureState( List<Object> state ) {
+    super.captureState( state );
+    state.add( format );
+    state.add( defaultAggregation );
+    state.add( selectedAggregations == null ? null : new ArrayList<AggregationType>( selectedAggregations ) );
+    state.add( new ArrayList<AggregationType>( possibleAggregations ) );
+    state.add( formatstring == null ? null : new ArrayList<String>( formatstring ) );
+    state.add( fieldTypeDesc );
+    state.add( levelTypeDesc );
+    state.add( displayName );
+  }
+
+  @Override
+  @SuppressWarnings( "unchecked" )
+  int restoreState( Object[] state, int index ) {
+    index = super.restoreState( state, index );
+    format = (String) state[ index++ ];
+    defaultAggregation = (AggregationType) state[ index++ ];
+    List<AggregationType> selected = (List<AggregationType>) state[ index++ ];
+    selectedAggregations = selected == null ? null : new Vector<AggregationType>( selected );
+    possibleAggregations.clear();
+    possibleAggregations.addAll( (List<AggregationType>) state[ index++ ] );
+    List<String> formats = (List<String>) state[ index++ ];
+    formatstring = formats == null ? null : new ArrayList<String>( formats );
+    fieldTypeDesc = (String) state[ index++ ];
+    levelTypeDesc = (String) state[ index++ ];
+    displayName = (String) state[ index++ ];
+    return index;
+  }
+
   public boolean equals( Object o ) {
     if ( o == null || o instanceof BaseAggregationMetaDataNode == false ) {
       return false;
@@ -50,6 +50,11 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
     getMessageStringAndSetAltText( "modeler.alternative_text.baseColumnBacked" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new BaseColumnBackedMetaData();
+  }
+
   public BaseColumnBackedMetaData( String name ) {
     this();
     this.name = name;
@@ -114,6 +119,7 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
   @Bindable
   public void setColumnName( String columnName ) {
     this.columnName = columnName;
+    nodeEdited();
   }
 
   public boolean isHidden() {
@@ -121,7 +127,11 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
   }
 
   public void setHidden( boolean hidden ) {
+    boolean prevVal = this.hidden;
     this.hidden = hidden;
+    if ( prevVal != hidden ) {
+      firePropertyChange( "hidden", prevVal, hidden ); //$NON-NLS-1$
+    }
   }
 
   @Bindable
@@ -132,6 +142,7 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
   public void setLogicalColumn( LogicalColumn col ) {
     LogicalColumn prevVal = this.logicalColumn;
     this.logicalColumn = col;
+    modelChanged();
     validateNode();
     firePropertyChange( "logicalColumn", prevVal, col );
   }
@@ -217,7 +228,7 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
         continue;
       }
       annotations = descendant.annotations;
-      if ( !annotations.containsKey( key ) ) {
+      if ( annotations == null || !annotations.containsKey( key ) ) {
         continue;
       }
       annotation = (AnalyzerDateFormatAnnotation) annotations.get( key );
@@ -252,7 +263,8 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
     }
     this.timeLevelFormat = timeLevelFormat;
     String key = IAnalyzerDateFormatAnnotation.NAME;
-    AnalyzerDateFormatAnnotation annotation = (AnalyzerDateFormatAnnotation) annotations.get( key );
+    AnalyzerDateFormatAnnotation annotation =
+        annotations == null ? null : (AnalyzerDateFormatAnnotation) annotations.get( key );
     if ( annotation == null && timeLevelFormat == null ) {
       return;
     }
@@ -260,7 +272,7 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
       annotation =
           (AnalyzerDateFormatAnnotation) AnalyzerDateFormatAnnotationFactory.instance.create( (LevelMetaData) this );
       annotation.setValue( timeLevelFormat );
-      annotations.put( key, annotation );
+      getMemberAnnotations().put( key, annotation );
     } else if ( annotation != null && timeLevelFormat == null ) {
       annotations.remove( key );
       annotation = null;
@@ -285,29 +297,63 @@ public class BaseColumnBackedMetaData<T extends AbstractMetaDataModelNode> exten
     timeLevelFormat = annotation.getTimeLevelFormat();
   }
 
+  @Override
+  void captureState( List<Object> state ) {
+    super.captureState( state );
+    state.add( name );
+    state.add( columnName );
+    state.add( description );
+    state.add( hidden );
+    state.add( logicalColumn );
+    state.add( logicalOrdinalColumn );
+    state.add( logicalCaptionColumn );
+    state.add( uniqueMembers );
+    state.add( timeLevelFormat );
+  }
+
+  @Override
+  int restoreState( Object[] state, int index ) {
+    index = super.restoreState( state, index );
+    String oldName = name;
+    name = (String) state[ index++ ];
+    columnName = (String) state[ index++ ];
+    description = (String) state[ index++ ];
+    hidden = (Boolean) state[ index++ ];
+    logicalColumn = (LogicalColumn) state[ index++ ];
+    logicalOrdinalColumn = (LogicalColumn) state[ index++ ];
+    logicalCaptionColumn = (LogicalColumn) state[ index++ ];
+    uniqueMembers = (Boolean) state[ index++ ];
+    timeLevelFormat = (String) state[ index++ ];
+    if ( !suppressEvents ) {
+      firePropertyChange( "name", oldName, name ); //$NON-NLS-1$
+      firePropertyChange( "displayName", oldName, name ); //$NON-NLS-1$
+    }
+    return index;
+  }
+
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     // check name
     if ( name == null || "".equals( name ) ) {
-      validationMessages
-          .add( ModelerMessagesHolder.getMessages().getString( getValidationMessageKey( "MISSING_NAME" ) ) );
+      addValidationMessage(
+          ModelerMessagesHolder.getMessages().getString( getValidationMessageKey( "MISSING_NAME" ) ) );
       valid = false;
     }
 
     if ( logicalColumn == null ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           getValidationMessageKey( "MISSING_BACKING_COLUMN" ), getName() ) );
       valid = false;
     } else {
       LogicalTable logicalTable = logicalColumn.getLogicalTable();
       if ( logicalOrdinalColumn != null && !logicalOrdinalColumn.getLogicalTable().equals( logicalTable ) ) {
-        validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+        addValidationMessage( ModelerMessagesHolder.getMessages().getString(
             getValidationMessageKey( "INVALID_TABLE_FOR_ORDINAL_COLUMN" ), getName() ) );
       }
       if ( logicalCaptionColumn != null && !logicalCaptionColumn.getLogicalTable().equals( logicalTable ) ) {
-        validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+        addValidationMessage( ModelerMessagesHolder.getMessages().getString(
             getValidationMessageKey( "INVALID_TABLE_FOR_CAPTION_COLUMN" ), getName() ) );
       }
     }
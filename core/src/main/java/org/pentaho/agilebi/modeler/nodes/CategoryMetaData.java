@@ -14,6 +14,7 @@
 package org.pentaho.agilebi.modeler.nodes;
 
 import java.util.HashMap;
+import java.util.List;
 
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
@@ -32,6 +33,11 @@ public class CategoryMetaData extends AbstractMetaDataModelNode<FieldMetaData> {
     getMessageStringAndSetAltText( "modeler.alternative_text.category" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new CategoryMetaData();
+  }
+
   public CategoryMetaData( String name ) {
     this();
     this.name = name;
@@ -63,39 +69,57 @@ public class CategoryMetaData extends AbstractMetaDataModelNode<FieldMetaData> {
     return IMAGE;
   }
 
+  @Override
+  void captureState( List<Object> state ) {
+    super.captureState( state );
+    state.add( name );
+  }
+
+  @Override
+  int restoreState( Object[] state, int index ) {
+    index = super.restoreState( state, index );
+    String oldName = name;
+    name = (String) state[ index++ ];
+    if ( !suppressEvents ) {
+      firePropertyChange( "name", oldName, name ); //$NON-NLS-1$
+      firePropertyChange( "displayName", oldName, name ); //$NON-NLS-1$
+    }
+    return index;
+  }
+
   @Override
   public void validate() {
     // make sure there is at least one field
     valid = true;
-    this.validationMessages.clear();
+    clearValidationMessages();
 
     if ( this.children.size() == 0 ) {
       valid = false;
-      this.validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.category.REQUIRES_AT_LEAST_ONE_FIELD" ) );
     }
 
     HashMap<String, FieldMetaData> usedNames = new HashMap<String, FieldMetaData>();
     for ( FieldMetaData child : children ) {
       valid &= child.isValid();
-      this.validationMessages.addAll( child.getValidationMessages() );
+      addValidationMessages( child.getValidationMessages() );
       if ( usedNames.containsKey( child.getName() ) ) {
         valid = false;
         String dupeString =
             ModelerMessagesHolder.getMessages()
                 .getString( "validation.category.DUPLICATE_FIELD_NAMES", child.getName() );
-        validationMessages.add( dupeString );
+        addValidationMessage( dupeString );
 
         child.invalidate();
         if ( !child.getValidationMessages().contains( dupeString ) ) {
-          child.getValidationMessages().add( dupeString );
+          child.addValidationMessage( dupeString );
         }
 
         FieldMetaData dupe = usedNames.get( child.getName() );
         if ( dupe.isValid() ) {
           dupe.invalidate();
           if ( !dupe.getValidationMessages().contains( dupeString ) ) {
-            dupe.getValidationMessages().add( dupeString );
+            dupe.addValidationMessage( dupeString );
           }
         }
       } else {
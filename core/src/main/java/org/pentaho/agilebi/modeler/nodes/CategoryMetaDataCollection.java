@@ -31,6 +31,11 @@ public class CategoryMetaDataCollection extends AbstractMetaDataModelNode<Catego
     getMessageStringAndSetAltText( "modeler.alternative_text.category_collection" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new CategoryMetaDataCollection();
+  }
+
   @Bindable
   public String getName() {
     return name;
@@ -53,6 +58,9 @@ public class CategoryMetaDataCollection extends AbstractMetaDataModelNode<Catego
 
   // TODO: investigate using "this" form of notification in super-class
   protected void fireCollectionChanged() {
+    if ( deferCollectionChanged() ) {
+      return;
+    }
     this.changeSupport.firePropertyChange( "children", null, this ); //$NON-NLS-1$
   }
 
@@ -82,9 +90,9 @@ public class CategoryMetaDataCollection extends AbstractMetaDataModelNode<Catego
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     if ( size() == 0 ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.categorycollecion.REQUIRES_AT_LEAST_ONE_CATEGORY" ) );
       valid = false;
     }
@@ -92,23 +100,23 @@ public class CategoryMetaDataCollection extends AbstractMetaDataModelNode<Catego
     HashMap<String, CategoryMetaData> usedNames = new HashMap<String, CategoryMetaData>();
     for ( CategoryMetaData cat : children ) {
       valid &= cat.isValid();
-      validationMessages.addAll( cat.getValidationMessages() );
+      addValidationMessages( cat.getValidationMessages() );
       if ( usedNames.containsKey( cat.getName() ) ) {
         valid = false;
         String msg =
             ModelerMessagesHolder.getMessages().getString( "validation.categorycollecion.DUPLICATE_CATEGORY_NAMES",
                 cat.getName() );
-        validationMessages.add( msg );
+        addValidationMessage( msg );
 
         cat.invalidate();
         if ( !cat.getValidationMessages().contains( msg ) ) {
-          cat.getValidationMessages().add( msg );
+          cat.addValidationMessage( msg );
         }
         CategoryMetaData c = usedNames.get( cat.getName() );
         if ( c.isValid() ) {
           c.invalidate();
           if ( !c.getValidationMessages().contains( msg ) ) {
-            c.getValidationMessages().add( msg );
+            c.addValidationMessage( msg );
           }
         }
 
@@ -14,6 +14,7 @@
 package org.pentaho.agilebi.modeler.nodes;
 
 import java.util.HashMap;
+import java.util.List;
 
 import org.pentaho.agilebi.modeler.ColumnBackedNode;
 import org.pentaho.agilebi.modeler.ModelerException;
@@ -39,6 +40,11 @@ public class DimensionMetaData extends AbstractMetaDataModelNode<HierarchyMetaDa
     getMessageStringAndSetAltText( "modeler.alternative_text.dimension" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new DimensionMetaData();
+  }
+
   public DimensionMetaData( String name ) {
     this( name, "StandardDimension" );
   }
@@ -115,16 +121,36 @@ public class DimensionMetaData extends AbstractMetaDataModelNode<HierarchyMetaDa
     return "images/sm_dim_icon.png"; //$NON-NLS-1$
   }
 
+  @Override
+  void captureState( List<Object> state ) {
+    super.captureState( state );
+    state.add( name );
+    state.add( dimensionType );
+  }
+
+  @Override
+  int restoreState( Object[] state, int index ) {
+    index = super.restoreState( state, index );
+    String oldName = name;
+    name = (String) state[ index++ ];
+    dimensionType = (String) state[ index++ ];
+    if ( !suppressEvents ) {
+      firePropertyChange( "name", oldName, name ); //$NON-NLS-1$
+      firePropertyChange( "displayName", oldName, name ); //$NON-NLS-1$
+    }
+    return index;
+  }
+
   @Bindable
   public void validate() {
-    validationMessages.clear();
+    clearValidationMessages();
     valid = true;
     if ( name == null || "".equals( name ) ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString( "validation.dimension.MISSING_NAME" ) );
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString( "validation.dimension.MISSING_NAME" ) );
       valid = false;
     }
     if ( size() == 0 ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.dimension.REQUIRES_AT_LEAST_ONE_HIERARCHY" ) );
       valid = false;
     }
@@ -132,22 +158,22 @@ public class DimensionMetaData extends AbstractMetaDataModelNode<HierarchyMetaDa
     for ( HierarchyMetaData hier : children ) {
       hier.validate();
       valid &= hier.isValid();
-      validationMessages.addAll( hier.getValidationMessages() );
+      addValidationMessages( hier.getValidationMessages() );
       if ( usedNames.containsKey( hier.getName() ) ) {
         valid = false;
         String msg =
             ModelerMessagesHolder.getMessages().getString( "validation.dimension.DUPLICATE_HIERARCHY_NAMES",
                 hier.getName() );
-        validationMessages.add( msg );
+        addValidationMessage( msg );
         hier.invalidate();
         if ( !hier.getValidationMessages().contains( msg ) ) {
-          hier.getValidationMessages().add( msg );
+          hier.addValidationMessage( msg );
         }
         HierarchyMetaData h = usedNames.get( hier.getName() );
         if ( h.isValid() ) {
           h.invalidate();
           if ( !h.getValidationMessages().contains( msg ) ) {
-            h.getValidationMessages().add( msg );
+            h.addValidationMessage( msg );
           }
         }
 
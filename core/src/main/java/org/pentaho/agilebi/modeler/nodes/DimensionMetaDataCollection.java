@@ -35,6 +35,11 @@ public class DimensionMetaDataCollection extends AbstractMetaDataModelNode<Dimen
     getMessageStringAndSetAltText( "modeler.alternative_text.dimension_collection" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new DimensionMetaDataCollection();
+  }
+
   @Bindable
   public String getName() {
     return name;
@@ -57,6 +62,9 @@ public class DimensionMetaDataCollection extends AbstractMetaDataModelNode<Dimen
 
   // TODO: investigate using "this" form of notification in super-class
   protected void fireCollectionChanged() {
+    if ( deferCollectionChanged() ) {
+      return;
+    }
     this.changeSupport.firePropertyChange( "children", null, this ); //$NON-NLS-1$
   }
 
@@ -86,9 +94,9 @@ public class DimensionMetaDataCollection extends AbstractMetaDataModelNode<Dimen
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     if ( size() == 0 ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.dimcollecion.REQUIRES_AT_LEAST_ONE_MEASURE" ) );
       valid = false;
     }
@@ -96,23 +104,23 @@ public class DimensionMetaDataCollection extends AbstractMetaDataModelNode<Dimen
     HashMap<String, DimensionMetaData> usedNames = new HashMap<String, DimensionMetaData>();
     for ( DimensionMetaData dim : children ) {
       valid &= dim.isValid();
-      validationMessages.addAll( dim.getValidationMessages() );
+      addValidationMessages( dim.getValidationMessages() );
       if ( usedNames.containsKey( dim.getName() ) ) {
         valid = false;
         String msg =
             ModelerMessagesHolder.getMessages().getString( "validation.dimcollection.DUPLICATE_DIMENSION_NAMES",
                 dim.getName() );
-        validationMessages.add( msg );
+        addValidationMessage( msg );
 
         dim.invalidate();
         if ( !dim.getValidationMessages().contains( msg ) ) {
-          dim.getValidationMessages().add( msg );
+          dim.addValidationMessage( msg );
         }
         DimensionMetaData d = usedNames.get( dim.getName() );
         if ( d.isValid() ) {
           d.invalidate();
           if ( !d.getValidationMessages().contains( msg ) ) {
-            d.getValidationMessages().add( msg );
+            d.addValidationMessage( msg );
           }
         }
       } else {
@@ -36,6 +36,11 @@ public class FieldMetaData extends BaseAggregationMetaDataNode {
     super( locale );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new FieldMetaData( locale );
+  }
+
   public FieldMetaData( CategoryMetaData parent, String fieldName, String format, String displayName, String locale ) {
     super( fieldName, format, displayName, locale );
     setParent( parent );
@@ -65,14 +70,14 @@ public class FieldMetaData extends BaseAggregationMetaDataNode {
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     // check name
     if ( name == null || "".equals( name ) ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString( "validation.field.MISSING_NAME" ) );
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString( "validation.field.MISSING_NAME" ) );
       valid = false;
     }
     if ( logicalColumn == null ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString( "validation.field.MISSING_BACKING_COLUMN",
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString( "validation.field.MISSING_BACKING_COLUMN",
           getName() ) );
       valid = false;
     }
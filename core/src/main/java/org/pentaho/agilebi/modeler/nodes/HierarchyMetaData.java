@@ -41,6 +41,11 @@ public class HierarchyMetaData extends AbstractMetaDataModelNode<LevelMetaData>
     getMessageStringAndSetAltText( "modeler.alternative_text.hierarchy" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new HierarchyMetaData();
+  }
+
   public HierarchyMetaData( String name ) {
     this();
     this.name = name;
@@ -87,17 +92,35 @@ public class HierarchyMetaData extends AbstractMetaDataModelNode<LevelMetaData>
     return this.children;
   }
 
+  @Override
+  void captureState( List<Object> state ) {
+    super.captureState( state );
+    state.add( name );
+  }
+
+  @Override
+  int restoreState( Object[] state, int index ) {
+    index = super.restoreState( state, index );
+    String oldName = name;
+    name = (String) state[ index++ ];
+    if ( !suppressEvents ) {
+      firePropertyChange( "name", oldName, name ); //$NON-NLS-1$
+      firePropertyChange( "displayName", oldName, name ); //$NON-NLS-1$
+    }
+    return index;
+  }
+
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     // check name
     if ( name == null || "".equals( name ) ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString( "validation.hierarchy.MISSING_NAME" ) );
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString( "validation.hierarchy.MISSING_NAME" ) );
       valid = false;
     }
     if ( size() == 0 ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.hierarchy.REQUIRES_AT_LEAST_ONE_LEVEL" ) );
       valid = false;
     }
@@ -105,26 +128,26 @@ public class HierarchyMetaData extends AbstractMetaDataModelNode<LevelMetaData>
     HashMap<String, LevelMetaData> usedNames = new HashMap<String, LevelMetaData>();
     if ( children.size() == 0 ) {
       valid = false;
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.hierarchy.REQUIRES_AT_LEAST_ONE_LEVEL" ) );
     }
     for ( LevelMetaData level : children ) {
       // level's validate doesn't trigger events, only validateNode, so this is ok
       level.validate();
       valid &= level.isValid();
-      validationMessages.addAll( level.getValidationMessages() );
+      addValidationMessages( level.getValidationMessages() );
       if ( usedNames.containsKey( level.getName() ) ) {
         valid = false;
         String dupeString =
             ModelerMessagesHolder.getMessages().getString( "validation.hierarchy.DUPLICATE_LEVEL_NAMES",
                 level.getName() );
-        validationMessages.add( dupeString );
+        addValidationMessage( dupeString );
 
         if ( level.isValid() ) {
           invalidateQuietly( level );
         }
         if ( !level.getValidationMessages().contains( dupeString ) ) {
-          level.getValidationMessages().add( dupeString );
+          level.addValidationMessage( dupeString );
         }
 
         LevelMetaData l = usedNames.get( level.getName() );
@@ -132,7 +155,7 @@ public class HierarchyMetaData extends AbstractMetaDataModelNode<LevelMetaData>
           // avoid infinite loop here
           invalidateQuietly( l );
           if ( !l.getValidationMessages().contains( dupeString ) ) {
-            l.getValidationMessages().add( dupeString );
+            l.addValidationMessage( dupeString );
           }
         }
       } else {
@@ -37,6 +37,11 @@ public class LevelMetaData extends BaseColumnBackedMetaData<MemberPropertyMetaDa
     super.setUniqueList( true );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new LevelMetaData();
+  }
+
   public LevelMetaData( HierarchyMetaData parent, String name ) {
     super( name );
     super.setUniqueList( true );
@@ -168,7 +173,7 @@ public class LevelMetaData extends BaseColumnBackedMetaData<MemberPropertyMetaDa
       DataRole dataRole = this.getDataRole();
       if ( !( dataRole instanceof TimeRole ) || dataRole == TimeRole.DUMMY ) {
         valid = false;
-        validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+        addValidationMessage( ModelerMessagesHolder.getMessages().getString(
             getValidationMessageKey( "TIME_LEVEL_TYPE_NOT_SET" ), getName() ) );
       }
     }
@@ -176,24 +181,24 @@ public class LevelMetaData extends BaseColumnBackedMetaData<MemberPropertyMetaDa
     if ( children.size() > 0 ) {
       for ( MemberPropertyMetaData memberProp : children ) {
         valid &= memberProp.isValid();
-        validationMessages.addAll( memberProp.getValidationMessages() );
+        addValidationMessages( memberProp.getValidationMessages() );
         if ( usedNames.containsKey( memberProp.getName() ) ) {
           valid = false;
           String dupeString =
               ModelerMessagesHolder.getMessages().getString(
                   getValidationMessageKey( "DUPLICATE_MEMBER_PROPERTY_NAMES" ), memberProp.getName() );
-          validationMessages.add( dupeString );
+          addValidationMessage( dupeString );
 
           memberProp.invalidate();
           if ( !memberProp.getValidationMessages().contains( dupeString ) ) {
-            memberProp.getValidationMessages().add( dupeString );
+            memberProp.addValidationMessage( dupeString );
           }
 
           MemberPropertyMetaData m = usedNames.get( memberProp.getName() );
           if ( m.isValid() ) {
             m.invalidate();
             if ( !m.getValidationMessages().contains( dupeString ) ) {
-              m.getValidationMessages().add( dupeString );
+              m.addValidationMessage( dupeString );
             }
           }
         } else {
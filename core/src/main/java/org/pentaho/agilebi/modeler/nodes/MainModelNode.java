@@ -44,6 +44,11 @@ public class MainModelNode extends AbstractMetaDataModelNode<AbstractMetaDataMod
     getMessageStringAndSetAltText( "modeler.alternative_text.model" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new MainModelNode();
+  }
+
   public MainModelNode( ModelerWorkspace workspace ) {
     this();
     this.workspace = workspace;
@@ -83,11 +88,15 @@ public class MainModelNode extends AbstractMetaDataModelNode<AbstractMetaDataMod
   }
 
   protected void fireCollectionChanged() {
+    if ( deferCollectionChanged() ) {
+      return;
+    }
     this.changeSupport.firePropertyChange( "children", null, this ); //$NON-NLS-1$
   }
 
   @Override
   public void onAdd( AbstractMetaDataModelNode child ) {
+    child.setParent( this );
     child.addPropertyChangeListener( "children", getListener() ); //$NON-NLS-1$
     child.addPropertyChangeListener( "valid", validListener ); //$NON-NLS-1$
   }
@@ -125,20 +134,20 @@ public class MainModelNode extends AbstractMetaDataModelNode<AbstractMetaDataMod
   @Override
   public void validate() {
     valid = true;
-    this.validationMessages.clear();
+    clearValidationMessages();
 
     if ( "".equals( this.getName() ) ) {
       valid = false;
-      this.validationMessages.add( "Node is emtpy" ); //BaseMessages.getString(ModelerWorkspace.class, "MainModelNode.ModelNameEmpty")); //$NON-NLS-1$
+      addValidationMessage( "Node is emtpy" ); //BaseMessages.getString(ModelerWorkspace.class, "MainModelNode.ModelNameEmpty")); //$NON-NLS-1$
     }
 
     if ( this.children.size() != 2 ) {
       valid = false;
-      this.validationMessages.add( "Invalid Structure" ); //BaseMessages.getString(ModelerWorkspace.class, "MainModelNode.ModelStructureInvalid")); //$NON-NLS-1$
+      addValidationMessage( "Invalid Structure" ); //BaseMessages.getString(ModelerWorkspace.class, "MainModelNode.ModelStructureInvalid")); //$NON-NLS-1$
     }
     for ( AbstractMetaDataModelNode child : children ) {
       valid &= child.isValid();
-      this.validationMessages.addAll( child.getValidationMessages() );
+      addValidationMessages( child.getValidationMessages() );
     }
   }
 
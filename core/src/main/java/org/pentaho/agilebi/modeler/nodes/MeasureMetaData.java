@@ -32,6 +32,11 @@ public class MeasureMetaData extends BaseAggregationMetaDataNode {
     super( locale );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new MeasureMetaData( locale );
+  }
+
   public MeasureMetaData( String fieldName, String format, String displayName, String locale ) {
     super( fieldName, format, displayName, locale );
   }
@@ -55,14 +60,14 @@ public class MeasureMetaData extends BaseAggregationMetaDataNode {
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
     // check name
     if ( name == null || "".equals( name ) ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString( "validation.columnnode.MISSING_NAME" ) );
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString( "validation.columnnode.MISSING_NAME" ) );
       valid = false;
     }
     if ( logicalColumn == null ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.columnnode.MISSING_BACKING_COLUMN", getName() ) );
       valid = false;
     }
@@ -41,6 +41,11 @@ public class MeasuresCollection extends AbstractMetaDataModelNode<MeasureMetaDat
     getMessageStringAndSetAltText( "modeler.alternative_text.measures_collection" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new MeasuresCollection();
+  }
+
   @Bindable
   public String getName() {
     return name;
@@ -70,10 +75,10 @@ public class MeasuresCollection extends AbstractMetaDataModelNode<MeasureMetaDat
   @Override
   public void validate() {
     valid = true;
-    validationMessages.clear();
+    clearValidationMessages();
 
     if ( size() == 0 ) {
-      validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.measurecollecion.REQUIRES_AT_LEAST_ONE_MEASURE" ) );
       valid = false;
     }
@@ -81,23 +86,23 @@ public class MeasuresCollection extends AbstractMetaDataModelNode<MeasureMetaDat
     HashMap<String, MeasureMetaData> usedNames = new HashMap<String, MeasureMetaData>();
     for ( MeasureMetaData measure : children ) {
       valid &= measure.isValid();
-      validationMessages.addAll( measure.getValidationMessages() );
+      addValidationMessages( measure.getValidationMessages() );
       if ( usedNames.containsKey( measure.getName() ) ) {
         valid = false;
         String msg =
             ModelerMessagesHolder.getMessages().getString( "validation.measurecollecion.DUPLICATE_MEASURE_NAMES",
                 measure.getName() );
-        validationMessages.add( msg );
+        addValidationMessage( msg );
 
         measure.invalidate();
         if ( !measure.getValidationMessages().contains( msg ) ) {
-          measure.getValidationMessages().add( msg );
+          measure.addValidationMessage( msg );
         }
         MeasureMetaData m = usedNames.get( measure.getName() );
         if ( m.isValid() ) {
           m.invalidate();
           if ( !m.getValidationMessages().contains( msg ) ) {
-            m.getValidationMessages().add( msg );
+            m.addValidationMessage( msg );
           }
         }
 
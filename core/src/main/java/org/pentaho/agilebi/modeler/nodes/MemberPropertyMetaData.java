@@ -29,6 +29,11 @@ public class MemberPropertyMetaData extends BaseColumnBackedMetaData<MemberPrope
     super();
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new MemberPropertyMetaData();
+  }
+
   public MemberPropertyMetaData( LevelMetaData parent, String name ) {
     super( name );
     setParent( parent );
@@ -0,0 +1,267 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.nodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.agilebi.modeler.nodes.annotations.IMemberAnnotation;
+
+/**
+ * Immutable record of a model node, its editable properties and its children at one point in time.
+ * <p>
+ * Snapshots are persistent: capturing a tree against its previous snapshot reuses every sub-snapshot whose node has
+ * neither changed properties nor changed children, so successive snapshots share all untouched subtrees and only the
+ * edited nodes and their ancestors are allocated again. Each node counts the edits of its subtree (see
+ * {@link AbstractMetaDataModelNode#nodeEdited()}), so capturing does not even visit a subtree whose count is the one
+ * recorded with its previous snapshot. Restoring walks two snapshots in step and only visits the parts that differ.
+ */
+public final class NodeSnapshot {
+
+  private static final Object[] NO_STATE = new Object[ 0 ];
+  private static final NodeSnapshot[] NO_CHILDREN = new NodeSnapshot[ 0 ];
+
+  private final AbstractMetaDataModelNode node;
+  private final Object[] state;
+  private final NodeSnapshot[] children;
+  /**
+   * Edit count of the node when its subtree was last found to match this snapshot.
+   */
+  private int edits;
+
+  private NodeSnapshot( AbstractMetaDataModelNode node, Object[] state, NodeSnapshot[] children, int edits ) {
+    this.node = node;
+    this.state = state;
+    this.children = children;
+    this.edits = edits;
+  }
+
+  public AbstractMetaDataModelNode getNode() {
+    return node;
+  }
+
+  public int getChildCount() {
+    return children.length;
+  }
+
+  public NodeSnapshot getChild( int index ) {
+    return children[ index ];
+  }
+
+  /**
+   * Captures <code>node</code> and its subtree.
+   *
+   * @param previous
+   *          an earlier snapshot of the same node whose unchanged parts are to be shared; may be null
+   * @return <code>previous</code> itself if nothing changed since it was taken
+   */
+  public static NodeSnapshot capture( AbstractMetaDataModelNode node, NodeSnapshot previous ) {
+    if ( node == null ) {
+      return null;
+    }
+    if ( previous != null && previous.node != node ) {
+      previous = null;
+    }
+    int edits = node.getEdits();
+    if ( previous != null && previous.edits == edits ) {
+      return previous;
+    }
+    List<Object> values = new ArrayList<Object>();
+    node.captureState( values );
+    Object[] state;
+    if ( previous != null && sameState( previous.state, values ) ) {
+      state = previous.state;
+    } else {
+      state = values.isEmpty() ? NO_STATE : values.toArray();
+    }
+
+    NodeSnapshot[] previousChildren = previous == null ? null : previous.children;
+    NodeSnapshot[] children = null;
+    int size = node.size();
+    int i = 0;
+    for ( Object child : node ) {
+      NodeSnapshot prior = previousChildren == null ? null : find( previousChildren, i, child );
+      NodeSnapshot snapshot = capture( (AbstractMetaDataModelNode) child, prior );
+      if ( children == null
+          && ( previousChildren == null || i >= previousChildren.length || previousChildren[ i ] != snapshot ) ) {
+        children = new NodeSnapshot[ size ];
+        if ( previousChildren != null ) {
+          System.arraycopy( previousChildren, 0, children, 0, i );
+        }
+      }
+      if ( children != null ) {
+        children[ i ] = snapshot;
+      }
+      i++;
+    }
+    if ( children == null ) {
+      if ( previousChildren == null || size == 0 ) {
+        children = size == 0 ? NO_CHILDREN : previousChildren;
+      } else if ( previousChildren.length == size ) {
+        children = previousChildren;
+      } else {
+        // trailing children were removed
+        children = new NodeSnapshot[ size ];
+        System.arraycopy( previousChildren, 0, children, 0, size );
+      }
+    }
+
+    if ( previous != null && state == previous.state && children == previous.children ) {
+      previous.edits = edits;
+      return previous;
+    }
+    return new NodeSnapshot( node, state, children, edits );
+  }
+
+  /**
+   * Puts the live tree back into the shape recorded by <code>target</code>.
+   *
+   * @param current
+   *          a snapshot matching the live tree, used to skip the parts that <code>target</code> shares with it; may be
+   *          null to restore everything
+   * @param changed
+   *          receives each node whose properties or children were reset
+   */
+  public static void restore( NodeSnapshot target, NodeSnapshot current, List<AbstractMetaDataModelNode> changed ) {
+    if ( target == null || target == current ) {
+      return;
+    }
+    AbstractMetaDataModelNode node = target.node;
+    if ( current != null && current.node != node ) {
+      current = null;
+    }
+    if ( current == null || current.state != target.state ) {
+      node.restoreState( target.state, 0 );
+      node.nodeEdited();
+      changed.add( node );
+    }
+    if ( current != null && current.children == target.children ) {
+      return;
+    }
+    if ( !hasChildren( node, target.children ) ) {
+      List<Object> live = new ArrayList<Object>( node.size() );
+      for ( Object child : node ) {
+        live.add( child );
+      }
+      for ( Object child : live ) {
+        node.remove( child );
+      }
+      for ( NodeSnapshot child : target.children ) {
+        node.add( child.node );
+      }
+      changed.add( node );
+    }
+    for ( int i = 0; i < target.children.length; i++ ) {
+      NodeSnapshot child = target.children[ i ];
+      restore( child, current == null ? null : find( current.children, i, child.node ), changed );
+    }
+  }
+
+  /**
+   * Rebuilds the recorded tree under <code>target</code> out of new nodes, leaving the recorded nodes alone. Children
+   * <code>target</code> already has, such as the fixed collections of a root node, are filled in by position instead of
+   * being created.
+   *
+   * Recorded lists, annotation maps and the annotations in them are copied too, so the copy shares no mutable state
+   * with the recorded nodes.
+   *
+   * @param replacements
+   *          recorded property values to substitute in the copy, such as the logical columns of a copied domain
+   */
+  public void copyInto( AbstractMetaDataModelNode target, Map<Object, Object> replacements ) {
+    Object[] copied = new Object[ state.length ];
+    for ( int i = 0; i < copied.length; i++ ) {
+      Object replacement = replacements.get( state[ i ] );
+      copied[ i ] = replacement != null ? replacement : copyValue( state[ i ] );
+    }
+    target.restoreState( copied, 0 );
+    int existing = target.size();
+    for ( int i = 0; i < children.length; i++ ) {
+      if ( i < existing ) {
+        children[ i ].copyInto( (AbstractMetaDataModelNode) target.get( i ), replacements );
+      } else {
+        AbstractMetaDataModelNode child = children[ i ].node.newNode();
+        children[ i ].copyInto( child, replacements );
+        target.add( child );
+      }
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static Object copyValue( Object value ) {
+    if ( value instanceof List ) {
+      return new ArrayList<Object>( (List<Object>) value );
+    }
+    if ( value instanceof Map ) {
+      Map<Object, Object> copy = new HashMap<Object, Object>();
+      for ( Map.Entry<Object, Object> entry : ( (Map<Object, Object>) value ).entrySet() ) {
+        Object entryValue = entry.getValue();
+        copy.put( entry.getKey(),
+            entryValue instanceof IMemberAnnotation ? ( (IMemberAnnotation) entryValue ).copy() : entryValue );
+      }
+      return copy;
+    }
+    return value;
+  }
+
+  private static boolean hasChildren( AbstractMetaDataModelNode node, NodeSnapshot[] children ) {
+    if ( node.size() != children.length ) {
+      return false;
+    }
+    int i = 0;
+    for ( Object child : node ) {
+      if ( children[ i++ ].node != child ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Looks up the snapshot of <code>node</code>, trying the positions a single insert or removal leaves it at before
+   * scanning.
+   */
+  private static NodeSnapshot find( NodeSnapshot[] snapshots, int index, Object node ) {
+    for ( int i = index; i >= index - 1 && i >= 0; i-- ) {
+      if ( i < snapshots.length && snapshots[ i ].node == node ) {
+        return snapshots[ i ];
+      }
+    }
+    if ( index + 1 < snapshots.length && snapshots[ index + 1 ].node == node ) {
+      return snapshots[ index + 1 ];
+    }
+    for ( NodeSnapshot snapshot : snapshots ) {
+      if ( snapshot.node == node ) {
+        return snapshot;
+      }
+    }
+    return null;
+  }
+
+  private static boolean sameState( Object[] state, List<Object> values ) {
+    if ( state.length != values.size() ) {
+      return false;
+    }
+    for ( int i = 0; i < state.length; i++ ) {
+      Object a = state[ i ];
+      Object b = values.get( i );
+      if ( a != b && ( a == null || !a.equals( b ) ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
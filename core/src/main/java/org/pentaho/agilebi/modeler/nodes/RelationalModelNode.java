@@ -46,6 +46,11 @@ public class RelationalModelNode extends AbstractMetaDataModelNode<CategoryMetaD
     getMessageStringAndSetAltText( "modeler.alternative_text.model" );
   }
 
+  @Override
+  AbstractMetaDataModelNode newNode() {
+    return new RelationalModelNode();
+  }
+
   public RelationalModelNode( ModelerWorkspace workspace ) {
     this();
     this.workspace = workspace;
@@ -84,11 +89,15 @@ public class RelationalModelNode extends AbstractMetaDataModelNode<CategoryMetaD
   }
 
   protected void fireCollectionChanged() {
+    if ( deferCollectionChanged() ) {
+      return;
+    }
     this.changeSupport.firePropertyChange( "children", null, this ); //$NON-NLS-1$
   }
 
   @Override
   public void onAdd( CategoryMetaDataCollection child ) {
+    child.setParent( this );
     child.addPropertyChangeListener( "children", getListener() ); //$NON-NLS-1$
     child.addPropertyChangeListener( "valid", validListener ); //$NON-NLS-1$
   }
@@ -111,16 +120,16 @@ public class RelationalModelNode extends AbstractMetaDataModelNode<CategoryMetaD
   @Override
   public void validate() {
     valid = true;
-    this.validationMessages.clear();
+    clearValidationMessages();
 
     if ( this.children.size() != 1 ) {
       valid = false;
-      this.validationMessages.add( ModelerMessagesHolder.getMessages().getString(
+      addValidationMessage( ModelerMessagesHolder.getMessages().getString(
           "validation.relationalmodel.INVALID_STRUCTURE" ) );
     }
     for ( AbstractMetaDataModelNode child : children ) {
       valid &= child.isValid();
-      this.validationMessages.addAll( child.getValidationMessages() );
+      addValidationMessages( child.getValidationMessages() );
     }
   }
 
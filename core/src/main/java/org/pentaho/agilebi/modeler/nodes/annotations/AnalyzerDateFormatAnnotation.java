@@ -72,6 +72,11 @@ public class AnalyzerDateFormatAnnotation implements IAnalyzerDateFormatAnnotati
     return part;
   }
 
+  @Override
+  public IMemberAnnotation copy() {
+    return new AnalyzerDateFormatAnnotation( value );
+  }
+
   public static String quoteTimeLevelFormat( String timeLevelFormat ) {
     return IAnalyzerDateFormatAnnotation.MEMBER_START_QUOTE + timeLevelFormat
         + IAnalyzerDateFormatAnnotation.MEMBER_END_QUOTE;
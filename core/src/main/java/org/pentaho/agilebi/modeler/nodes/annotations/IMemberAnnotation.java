@@ -37,4 +37,12 @@ public interface IMemberAnnotation {
 
   void onDetach( AbstractMetaDataModelNode node );
 
+  /**
+   * @return an annotation equal to this one for another node, used when a model tree is copied. Annotations without
+   *         state of their own, or that stand for shared definitions such as geo roles, return themselves.
+   */
+  default IMemberAnnotation copy() {
+    return this;
+  }
+
 }
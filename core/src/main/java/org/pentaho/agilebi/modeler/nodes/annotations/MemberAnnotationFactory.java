@@ -25,10 +25,16 @@ import java.util.Map;
  * User: nbaker Date: 10/20/11
  */
 public class MemberAnnotationFactory {
-  private static Map<String, IAnnotationFactory> factories = new HashMap<String, IAnnotationFactory>();
+  // copy-on-write: workspaces register factories on construction while others may be hydrating concurrently
+  private static volatile Map<String, IAnnotationFactory> factories = new HashMap<String, IAnnotationFactory>();
 
-  public static void registerFactory( String type, IAnnotationFactory factory ) {
-    factories.put( type, factory );
+  public static synchronized void registerFactory( String type, IAnnotationFactory factory ) {
+    if ( factories.get( type ) == factory ) {
+      return;
+    }
+    Map<String, IAnnotationFactory> updated = new HashMap<String, IAnnotationFactory>( factories );
+    updated.put( type, factory );
+    factories = updated;
   }
 
   public static IMemberAnnotation create( OlapAnnotation anno ) {
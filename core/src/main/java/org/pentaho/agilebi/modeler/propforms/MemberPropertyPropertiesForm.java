@@ -69,6 +69,7 @@ public class MemberPropertyPropertiesForm extends LevelsPropertiesForm {
       getNode().setName( name );
       if ( getNode().getLogicalColumn() != null ) {
         getNode().getLogicalColumn().setName( new LocalizedString( locale, name ) );
+        workspace.domainChanged();
       }
     }
     this.name.setValue( name );
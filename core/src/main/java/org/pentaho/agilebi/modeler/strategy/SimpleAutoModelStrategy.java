@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.pentaho.agilebi.modeler.BaseModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.ModelerBatch;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
@@ -91,6 +92,12 @@ public class SimpleAutoModelStrategy implements AutoModelStrategy {
   public void autoModelOlap( ModelerWorkspace workspace, MainModelNode mainModel ) throws ModelerException {
     mainModel.setName( workspace.getModelName() );
     workspace.setModel( mainModel );
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      buildOlapModel( workspace, mainModel );
+    }
+  }
+
+  private void buildOlapModel( ModelerWorkspace workspace, MainModelNode mainModel ) throws ModelerException {
     DimensionMetaDataCollection dims = workspace.getModel().getDimensions();
     dims.clear();
     dims.setExpanded( true );
@@ -107,6 +114,7 @@ public class SimpleAutoModelStrategy implements AutoModelStrategy {
         table.getLogicalColumns().clear();
       }
     }
+    workspace.domainChanged();
 
     HashSet<String> existingMeasures = new HashSet<String>();
     List<AvailableTable> tableList = workspace.getAvailableTables().getAsAvailableTablesList();
@@ -155,6 +163,13 @@ public class SimpleAutoModelStrategy implements AutoModelStrategy {
     relationalModelNode.setName( workspace.getRelationalModelName() );
 
     workspace.setRelationalModel( relationalModelNode );
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      buildRelationalModel( workspace, relationalModelNode );
+    }
+  }
+
+  private void buildRelationalModel( ModelerWorkspace workspace, RelationalModelNode relationalModelNode )
+    throws ModelerException {
     final boolean prevChangeState = workspace.isModelChanging();
 
     workspace.getRelationalModel().getCategories().clear();
@@ -167,6 +182,7 @@ public class SimpleAutoModelStrategy implements AutoModelStrategy {
         table.getLogicalColumns().clear();
       }
     }
+    workspace.domainChanged();
 
     List<? extends IPhysicalTable> tables = workspace.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables();
     Set<String> tableIds = new HashSet<String>();
@@ -16,6 +16,7 @@ package org.pentaho.agilebi.modeler.strategy;
 import java.util.HashSet;
 import java.util.List;
 
+import org.pentaho.agilebi.modeler.ModelerBatch;
 import org.pentaho.agilebi.modeler.ModelerException;
 import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
@@ -50,6 +51,12 @@ public class StarSchemaAutoModelStrategy extends SimpleAutoModelStrategy {
   public void autoModelOlap( ModelerWorkspace workspace, MainModelNode mainModel ) throws ModelerException {
     mainModel.setName( workspace.getModelName() );
     workspace.setModel( mainModel );
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      buildOlapModel( workspace, mainModel );
+    }
+  }
+
+  private void buildOlapModel( ModelerWorkspace workspace, MainModelNode mainModel ) throws ModelerException {
     DimensionMetaDataCollection dims = workspace.getModel().getDimensions();
     dims.clear();
     dims.setExpanded( true );
@@ -64,6 +71,7 @@ public class StarSchemaAutoModelStrategy extends SimpleAutoModelStrategy {
     for ( LogicalTable table : workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables() ) {
       table.getLogicalColumns().clear();
     }
+    workspace.domainChanged();
 
     HashSet<String> existingMeasures = new HashSet<String>();
     List<AvailableTable> tableList = workspace.getAvailableTables().getAsAvailableTablesList();
@@ -18,16 +18,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 
 import org.pentaho.agilebi.modeler.IModelerSource;
 import org.pentaho.agilebi.modeler.IncompatibleModelerException;
 import org.pentaho.agilebi.modeler.ModelerException;
-import org.pentaho.agilebi.modeler.ModelerPerspective;
 import org.pentaho.agilebi.modeler.ModelerWorkspace;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.metadata.model.Domain;
 import org.pentaho.metadata.model.LogicalModel;
-import org.pentaho.metadata.util.MondrianModelExporter;
 import org.pentaho.metadata.util.XmiParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,14 +113,24 @@ public class ModelerWorkspaceUtil {
     return parser.generateXmi( aModel.getDomain() );
   }
 
+  /**
+   * Generates the Mondrian schema straight from the model tree, after syncing the parts of the domain that changed.
+   * See {@link MondrianSchemaWriter}.
+   *
+   * @return the schema, or null if the workspace has no analysis model
+   */
   public static String getMondrianSchemaXml( ModelerWorkspace modelerWorkspace, String locale ) throws Exception {
-    modelerWorkspace.getWorkspaceHelper().populateDomain( modelerWorkspace );
-    LogicalModel logicalModel = modelerWorkspace.getLogicalModel( ModelerPerspective.ANALYSIS );
-    if ( logicalModel == null ) {
-      return null;
-    }
-    MondrianModelExporter exporter = new MondrianModelExporter( logicalModel, locale );
-    return exporter.createMondrianModelXML();
+    return new MondrianSchemaWriter( modelerWorkspace, locale ).getSchemaXml();
+  }
+
+  /**
+   * Writes the schema {@link #getMondrianSchemaXml(ModelerWorkspace, String)} returns to <code>out</code>.
+   *
+   * @return false if the workspace has no analysis model
+   */
+  public static boolean writeMondrianSchemaXml( ModelerWorkspace modelerWorkspace, String locale, Writer out )
+    throws ModelerException {
+    return new MondrianSchemaWriter( modelerWorkspace, locale ).write( out );
   }
 
   public static void loadWorkspace( String fileName, String aXml, ModelerWorkspace aModel ) throws ModelerException {
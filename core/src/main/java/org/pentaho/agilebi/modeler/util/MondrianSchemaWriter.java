@@ -0,0 +1,421 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import org.pentaho.agilebi.modeler.BaseModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.nodes.BaseAggregationMetaDataNode;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.nodes.MemberPropertyMetaData;
+import org.pentaho.agilebi.modeler.nodes.TimeRole;
+import org.pentaho.agilebi.modeler.nodes.annotations.IMemberAnnotation;
+import org.pentaho.metadata.model.IPhysicalTable;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalRelationship;
+import org.pentaho.metadata.model.LogicalTable;
+import org.pentaho.metadata.model.SqlPhysicalColumn;
+import org.pentaho.metadata.model.SqlPhysicalTable;
+import org.pentaho.metadata.model.concept.types.AggregationType;
+import org.pentaho.metadata.model.concept.types.TargetTableType;
+import org.pentaho.metadata.model.olap.OlapAnnotation;
+import org.pentaho.metadata.model.olap.OlapCalculatedMember;
+import org.pentaho.metadata.model.olap.OlapCube;
+import org.pentaho.metadata.model.olap.OlapDimension;
+import org.pentaho.metadata.model.olap.OlapHierarchy;
+import org.pentaho.metadata.model.olap.OlapHierarchyLevel;
+
+/**
+ * Writes the Mondrian schema of a workspace straight from its {@link org.pentaho.agilebi.modeler.nodes.MainModelNode}
+ * to a {@link Writer}. The output is equivalent to what {@link org.pentaho.metadata.util.MondrianModelExporter}
+ * produces after {@link org.pentaho.agilebi.modeler.IModelerWorkspaceHelper#populateDomain(ModelerWorkspace)}: the
+ * shared dimensions with their hierarchies, levels, member properties and annotations, then the cube with its
+ * dimension usages, measures and calculated members.
+ * <p>
+ * The domain is synced with {@link org.pentaho.agilebi.modeler.IModelerWorkspaceHelper#syncDomain(ModelerWorkspace)}
+ * before writing, which only rebuilds the dirty parts of the model. Calculated members are not in the node tree; they
+ * are read from the synced OLAP cube of the analysis model, where
+ * {@link org.pentaho.agilebi.modeler.models.annotations.CreateCalculatedMember} keeps them.
+ */
+public class MondrianSchemaWriter {
+
+  private static final String CR = "\n"; //$NON-NLS-1$
+
+  private final ModelerWorkspace workspace;
+  private final String locale;
+  private final OlapHierarchy scratchHierarchy = new OlapHierarchy( new OlapDimension() );
+
+  public MondrianSchemaWriter( final ModelerWorkspace workspace, final String locale ) {
+    this.workspace = workspace;
+    this.locale = locale;
+  }
+
+  /**
+   * @return the schema, or null if the workspace has no analysis model
+   */
+  public String getSchemaXml() throws ModelerException {
+    StringWriter out = new StringWriter();
+    return write( out ) ? out.toString() : null;
+  }
+
+  /**
+   * Writes the schema to <code>out</code>, which is not closed.
+   *
+   * @return false if the workspace has no analysis model, in which case nothing is written
+   * @throws ModelerException if the domain cannot be synced, the model has no fact table or <code>out</code> fails
+   */
+  public boolean write( final Writer out ) throws ModelerException {
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    LogicalModel logicalModel = workspace.getLogicalModel( ModelerPerspective.ANALYSIS );
+    if ( logicalModel == null || workspace.getModel() == null ) {
+      return false;
+    }
+    LogicalTable factTable = findFactTable( logicalModel );
+    try {
+      out.write( "<Schema name=\"" + escape( workspace.getModelName() ) + "\">" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+      for ( DimensionMetaData dimension : workspace.getModel().getDimensions() ) {
+        writeDimension( out, dimension, logicalModel, factTable );
+      }
+      writeCube( out, logicalModel, factTable );
+      out.write( "</Schema>" + CR ); //$NON-NLS-1$
+      out.flush();
+    } catch ( IOException e ) {
+      throw new ModelerException( e );
+    }
+    return true;
+  }
+
+  private void writeDimension( final Writer out, final DimensionMetaData dimension, final LogicalModel logicalModel,
+                               final LogicalTable factTable ) throws IOException {
+    out.write( "  <Dimension name=\"" + escape( dimension.getName() ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    if ( dimension.isTimeDimension() ) {
+      out.write( " type=\"TimeDimension\"" ); //$NON-NLS-1$
+    }
+    out.write( ">" + CR ); //$NON-NLS-1$
+    if ( dimension.isEmpty() ) {
+      out.write( "    <Hierarchy hasAll=\"true\">" + CR ); //$NON-NLS-1$
+      writeTable( out, factTable, "    " ); //$NON-NLS-1$
+      out.write( "    </Hierarchy>" + CR ); //$NON-NLS-1$
+    }
+    for ( HierarchyMetaData hierarchy : dimension ) {
+      LogicalTable table = getTable( hierarchy );
+      out.write( "    <Hierarchy" ); //$NON-NLS-1$
+      String name = hierarchy.getName();
+      if ( name != null && name.length() > 0 && !name.equals( dimension.getName() ) ) {
+        out.write( " name=\"" + escape( name ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      out.write( " hasAll=\"true\"" ); //$NON-NLS-1$
+      if ( table != null && logicalModel.getLogicalTables().size() > 1 ) {
+        out.write( " primaryKey=\"" + escape( getTargetColumn( findKey( logicalModel, factTable, table, false ) ) )
+            + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      out.write( ">" + CR ); //$NON-NLS-1$
+      if ( table != null ) {
+        writeTable( out, table, "    " ); //$NON-NLS-1$
+      }
+      for ( LevelMetaData level : hierarchy ) {
+        writeLevel( out, level, dimension.isTimeDimension() );
+      }
+      out.write( "    </Hierarchy>" + CR ); //$NON-NLS-1$
+    }
+    out.write( "  </Dimension>" + CR ); //$NON-NLS-1$
+  }
+
+  private void writeLevel( final Writer out, final LevelMetaData level, final boolean time ) throws IOException {
+    LogicalColumn column = level.getLogicalColumn();
+    OlapHierarchyLevel olapLevel = new OlapHierarchyLevel( scratchHierarchy );
+    if ( column != null && level.hasMemberAnnotations() ) {
+      for ( IMemberAnnotation annotation : level.getMemberAnnotations().values() ) {
+        if ( annotation != null ) {
+          annotation.saveAnnotations( olapLevel );
+        }
+      }
+    }
+    if ( level.getDescription() != null && !level.getDescription().equals( "" ) ) {
+      olapLevel.getAnnotations().add(
+          new OlapAnnotation( "description." + workspace.getLocale(), level.getDescription() ) ); //$NON-NLS-1$
+    }
+
+    out.write( "      <Level name=\"" + escape( level.getName() ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    out.write( " uniqueMembers=\"" + level.isUniqueMembers() + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    if ( column != null ) {
+      out.write( " column=\"" + escape( getTargetColumn( column ) ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      out.write( " type=\"" + getLevelType( column ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      if ( level.getLogicalOrdinalColumn() != null ) {
+        out.write( " ordinalColumn=\"" + escape( getTargetColumn( level.getLogicalOrdinalColumn() ) )
+            + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      if ( level.getLogicalCaptionColumn() != null ) {
+        out.write( " captionColumn=\"" + escape( getTargetColumn( level.getLogicalCaptionColumn() ) )
+            + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    if ( time && level.getDataRole() instanceof TimeRole ) {
+      out.write( " levelType=\"" + escape( ( (TimeRole) level.getDataRole() ).getMondrianAttributeValue() )
+          + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    if ( olapLevel.getFormatter() != null ) {
+      out.write( " formatter=\"" + escape( olapLevel.getFormatter() ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    if ( level.isHidden() ) {
+      out.write( " visible=\"false\"" ); //$NON-NLS-1$
+    }
+    out.write( ">" + CR ); //$NON-NLS-1$
+
+    List<OlapAnnotation> annotations = olapLevel.getAnnotations();
+    if ( !annotations.isEmpty() ) {
+      out.write( "        <Annotations>" + CR ); //$NON-NLS-1$
+      for ( OlapAnnotation annotation : annotations ) {
+        out.write( "          <Annotation name=\"" + escape( annotation.getName() ) + "\">" //$NON-NLS-1$ //$NON-NLS-2$
+            + escape( annotation.getValue() ) + "</Annotation>" + CR ); //$NON-NLS-1$
+      }
+      out.write( "        </Annotations>" + CR ); //$NON-NLS-1$
+    }
+    for ( MemberPropertyMetaData property : level ) {
+      LogicalColumn propertyColumn = property.getLogicalColumn();
+      if ( propertyColumn != null ) {
+        out.write( "        <Property name=\"" + escape( propertyColumn.getName( locale ) ) //$NON-NLS-1$
+            + "\" column=\"" + escape( getTargetColumn( propertyColumn ) ) //$NON-NLS-1$
+            + "\" type=\"" + getLevelType( propertyColumn ) + "\"/>" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    out.write( "      </Level>" + CR ); //$NON-NLS-1$
+  }
+
+  private void writeCube( final Writer out, final LogicalModel logicalModel, final LogicalTable factTable )
+    throws IOException {
+    out.write( "  <Cube name=\"" + escape( workspace.getModelName() ) + "\">" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+    writeTable( out, factTable, "    " ); //$NON-NLS-1$
+    for ( DimensionMetaData dimension : workspace.getModel().getDimensions() ) {
+      out.write( "    <DimensionUsage name=\"" + escape( dimension.getName() ) //$NON-NLS-1$
+          + "\" source=\"" + escape( dimension.getName() ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      LogicalTable table = dimension.isEmpty() ? null : getTable( dimension.get( 0 ) );
+      if ( table != null && logicalModel.getLogicalTables().size() > 1 ) {
+        out.write( " foreignKey=\"" + escape( getTargetColumn( findKey( logicalModel, factTable, table, true ) ) )
+            + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      out.write( "/>" + CR ); //$NON-NLS-1$
+    }
+    for ( MeasureMetaData measure : workspace.getModel().getMeasures() ) {
+      LogicalColumn column = measure.getLogicalColumn();
+      String name = column.getName( locale );
+      out.write( "    <Measure name=\"" + escape( name != null ? name : measure.getName() ) //$NON-NLS-1$
+          + "\" column=\"" + escape( getTargetColumn( column ) ) //$NON-NLS-1$
+          + "\" aggregator=\"" + getAggregator( measure, column ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      String format = measure.getFormat();
+      if ( format != null && !format.equals( "" ) && !BaseAggregationMetaDataNode.FORMAT_NONE.equals( format ) ) {
+        out.write( " formatString=\"" + escape( format ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      if ( measure.isHidden() ) {
+        out.write( " visible=\"false\"" ); //$NON-NLS-1$
+      }
+      out.write( "/>" + CR ); //$NON-NLS-1$
+    }
+    for ( OlapCalculatedMember member : getCalculatedMembers( logicalModel ) ) {
+      writeCalculatedMember( out, member );
+    }
+    out.write( "  </Cube>" + CR ); //$NON-NLS-1$
+  }
+
+  private static void writeCalculatedMember( final Writer out, final OlapCalculatedMember member )
+    throws IOException {
+    out.write( "    <CalculatedMember name=\"" + escape( member.getName() ) //$NON-NLS-1$
+        + "\" dimension=\"" + escape( member.getDimension() ) //$NON-NLS-1$
+        + "\" visible=\"" + !member.isHidden() + "\">" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+    out.write( "      <Formula><![CDATA[" + member.getFormula() + "]]></Formula>" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+    if ( member.getFormatString() != null ) {
+      out.write( "      <CalculatedMemberProperty name=\"FORMAT_STRING\" value=\"" //$NON-NLS-1$
+          + escape( member.getFormatString() ) + "\"/>" + CR ); //$NON-NLS-1$
+    }
+    if ( member.isCalculateSubtotals() ) {
+      out.write( "      <CalculatedMemberProperty name=\"SOLVE_ORDER\" value=\"200\"/>" + CR ); //$NON-NLS-1$
+    }
+    out.write( "    </CalculatedMember>" + CR ); //$NON-NLS-1$
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static List<OlapCalculatedMember> getCalculatedMembers( final LogicalModel logicalModel ) {
+    List<OlapCube> cubes = (List<OlapCube>) logicalModel.getProperty( LogicalModel.PROPERTY_OLAP_CUBES );
+    return cubes == null || cubes.isEmpty()
+        ? Collections.<OlapCalculatedMember>emptyList() : cubes.get( 0 ).getOlapCalculatedMembers();
+  }
+
+  private static void writeTable( final Writer out, final LogicalTable table, final String indent )
+    throws IOException {
+    IPhysicalTable physicalTable = table.getPhysicalTable();
+    if ( !( physicalTable instanceof SqlPhysicalTable ) ) {
+      return;
+    }
+    SqlPhysicalTable sqlTable = (SqlPhysicalTable) physicalTable;
+    if ( sqlTable.getTargetTableType() == TargetTableType.INLINE_SQL ) {
+      out.write( indent + "<View alias=\"FACT\">" + CR ); //$NON-NLS-1$
+      out.write( indent + "    <SQL dialect=\"generic\">" + CR ); //$NON-NLS-1$
+      out.write( indent + "     <![CDATA[" + sqlTable.getTargetTable() + "]]>" + CR ); //$NON-NLS-1$ //$NON-NLS-2$
+      out.write( indent + "    </SQL>" + CR ); //$NON-NLS-1$
+      out.write( indent + "</View>" + CR ); //$NON-NLS-1$
+    } else {
+      out.write( indent + "  <Table name=\"" + escape( sqlTable.getTargetTable() ) + "\"" ); //$NON-NLS-1$
+      String schema = sqlTable.getTargetSchema();
+      if ( schema != null && schema.length() > 0 ) {
+        out.write( " schema=\"" + escape( schema ) + "\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      out.write( "/>" + CR ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * The OLAP copy of the table of the last level with a column, which is the table populateDomain gives the hierarchy.
+   */
+  private LogicalTable getTable( final HierarchyMetaData hierarchy ) {
+    LogicalTable table = null;
+    for ( LevelMetaData level : hierarchy ) {
+      if ( level.getLogicalColumn() != null ) {
+        table = level.getLogicalColumn().getLogicalTable();
+      }
+    }
+    if ( table == null || table.getId().endsWith( BaseModelerWorkspaceHelper.OLAP_SUFFIX ) ) {
+      return table;
+    }
+    for ( LogicalTable olapTable : workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables() ) {
+      if ( olapTable.getId().equals( table.getId() + BaseModelerWorkspaceHelper.OLAP_SUFFIX ) ) {
+        return olapTable;
+      }
+    }
+    throw new IllegalStateException( "Unable to find a OLAP copy for table: " + table.getId() ); //$NON-NLS-1$
+  }
+
+  private static LogicalTable findFactTable( final LogicalModel logicalModel ) throws ModelerException {
+    List<LogicalTable> tables = logicalModel.getLogicalTables();
+    if ( tables.size() == 1 ) {
+      return tables.get( 0 );
+    }
+    for ( LogicalTable table : tables ) {
+      Object fact = table.getPhysicalTable().getProperty( "FACT_TABLE" ); //$NON-NLS-1$
+      if ( fact != null && ( (Boolean) fact ).booleanValue() ) {
+        return table;
+      }
+    }
+    throw new ModelerException( "Fact table is missing." ); //$NON-NLS-1$
+  }
+
+  /**
+   * The column joining <code>table</code> to the fact table: the fact table's if <code>fact</code>, the dimension
+   * table's otherwise.
+   */
+  private static LogicalColumn findKey( final LogicalModel logicalModel, final LogicalTable factTable,
+                                        final LogicalTable table, final boolean fact ) {
+    LogicalRelationship relationship = logicalModel.findRelationshipUsing( table, factTable );
+    if ( relationship == null ) {
+      throw new IllegalStateException( "Unable to find a primary key for table: " + table.getId() ); //$NON-NLS-1$
+    }
+    boolean fromDimension = relationship.getFromTable().equals( table );
+    return fromDimension != fact ? relationship.getFromColumn() : relationship.getToColumn();
+  }
+
+  private static String getTargetColumn( final LogicalColumn column ) {
+    return (String) column.getPhysicalColumn().getProperty( SqlPhysicalColumn.TARGET_COLUMN );
+  }
+
+  private static String getLevelType( final LogicalColumn column ) {
+    if ( column.getDataType() == null ) {
+      return "String"; //$NON-NLS-1$
+    }
+    switch ( column.getDataType() ) {
+      case NUMERIC:
+        return "Numeric"; //$NON-NLS-1$
+      case BOOLEAN:
+        return "Boolean"; //$NON-NLS-1$
+      case DATE:
+        return "Date"; //$NON-NLS-1$
+      default:
+        return "String"; //$NON-NLS-1$
+    }
+  }
+
+  private static String getAggregator( final MeasureMetaData measure, final LogicalColumn column ) {
+    AggregationType type = measure.getDefaultAggregation();
+    if ( type == null ) {
+      type = column.getAggregationType();
+    }
+    if ( type == null ) {
+      return "sum"; //$NON-NLS-1$
+    }
+    switch ( type ) {
+      case AVERAGE:
+        return "avg"; //$NON-NLS-1$
+      case COUNT:
+        return "count"; //$NON-NLS-1$
+      case COUNT_DISTINCT:
+        return "distinct-count"; //$NON-NLS-1$
+      case MINIMUM:
+        return "min"; //$NON-NLS-1$
+      case MAXIMUM:
+        return "max"; //$NON-NLS-1$
+      default:
+        return "sum"; //$NON-NLS-1$
+    }
+  }
+
+  private static String escape( final String value ) {
+    if ( value == null ) {
+      return "";
+    }
+    StringBuilder escaped = null;
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      String entity;
+      switch ( c ) {
+        case '&':
+          entity = "&amp;"; //$NON-NLS-1$
+          break;
+        case '<':
+          entity = "&lt;"; //$NON-NLS-1$
+          break;
+        case '>':
+          entity = "&gt;"; //$NON-NLS-1$
+          break;
+        case '"':
+          entity = "&quot;"; //$NON-NLS-1$
+          break;
+        case '\'':
+          entity = "&apos;"; //$NON-NLS-1$
+          break;
+        default:
+          entity = null;
+      }
+      if ( entity != null && escaped == null ) {
+        escaped = new StringBuilder( value.length() + 16 ).append( value, 0, i );
+      }
+      if ( escaped != null ) {
+        if ( entity != null ) {
+          escaped.append( entity );
+        } else {
+          escaped.append( c );
+        }
+      }
+    }
+    return escaped == null ? value : escaped.toString();
+  }
+}
@@ -0,0 +1,60 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.pentaho.agilebi.modeler.HydrationExecutor;
+
+/**
+ * {@link HydrationExecutor} that spreads the tasks over a caller-owned {@link ExecutorService}. The service is not
+ * shut down by this class.
+ */
+public class ParallelHydrationExecutor implements HydrationExecutor {
+
+  private final ExecutorService executorService;
+
+  public ParallelHydrationExecutor( ExecutorService executorService ) {
+    this.executorService = executorService;
+  }
+
+  @Override
+  public void runAll( List<Runnable> tasks ) {
+    List<Future<?>> futures = new ArrayList<Future<?>>( tasks.size() );
+    for ( Runnable task : tasks ) {
+      futures.add( executorService.submit( task ) );
+    }
+    RuntimeException failure = null;
+    for ( Future<?> future : futures ) {
+      try {
+        future.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException( e );
+      } catch ( ExecutionException e ) {
+        if ( failure == null ) {
+          failure = e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause() : new IllegalStateException( e.getCause() );
+        }
+      }
+    }
+    if ( failure != null ) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,347 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.agilebi.modeler.IModelerSource;
+import org.pentaho.agilebi.modeler.IModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.ModelerContext;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.geo.GeoContext;
+import org.pentaho.agilebi.modeler.nodes.AbstractMetaDataModelNode;
+import org.pentaho.agilebi.modeler.nodes.BaseColumnBackedMetaData;
+import org.pentaho.agilebi.modeler.nodes.NodeSnapshot;
+import org.pentaho.metadata.model.Category;
+import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.IPhysicalColumn;
+import org.pentaho.metadata.model.IPhysicalModel;
+import org.pentaho.metadata.model.IPhysicalTable;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalRelationship;
+import org.pentaho.metadata.model.LogicalTable;
+import org.pentaho.metadata.model.SqlPhysicalColumn;
+import org.pentaho.metadata.model.SqlPhysicalModel;
+import org.pentaho.metadata.model.SqlPhysicalTable;
+import org.pentaho.metadata.model.concept.Concept;
+import org.pentaho.metadata.model.concept.IConcept;
+import org.pentaho.metadata.model.concept.types.LocaleType;
+import org.pentaho.metadata.model.concept.types.LocalizedString;
+import org.pentaho.metadata.model.olap.OlapCalculatedMember;
+import org.pentaho.metadata.model.olap.OlapCube;
+
+/**
+ * Stamps out copies of a modeled workspace without running generateDomain and auto-modeling again for each of them.
+ * <p/>
+ * The template keeps its own copy of the source domain and a {@link NodeSnapshot} of the source trees, so the source
+ * is neither synced nor changed and later edits to it do not leak into new instances. Each instance copies the domain
+ * object by object, keeping every shared reference (logical columns used by tables, categories, levels and measures)
+ * inside the copy, optionally rebinds physical tables to other database tables, copies the model trees onto the copied
+ * columns and then writes the olap dimensions and measures of the copied trees back into the copied domain.
+ * <p/>
+ * SQL physical models are copied as well; any other physical model is shared with the source.
+ */
+public class WorkspaceTemplate {
+
+  private final Domain domain;
+  private final NodeSnapshot model;
+  private final NodeSnapshot relationalModel;
+  /**
+   * Logical columns referenced by the source trees, mapped to their counterparts in {@link #domain}.
+   */
+  private final Map<Object, Object> columns;
+  private final String modelName;
+  private final String relationalModelName;
+  private final IModelerSource modelSource;
+  private final ModelerContext context;
+  private final GeoContext geoContext;
+  private final IModelerWorkspaceHelper helper;
+
+  public WorkspaceTemplate( ModelerWorkspace source ) {
+    DomainCopy copy = new DomainCopy();
+    this.domain = copy.copy( source.getDomain() );
+    this.columns = new IdentityHashMap<Object, Object>();
+    mapColumns( source.getModel(), copy, columns );
+    mapColumns( source.getRelationalModel(), copy, columns );
+    this.model = NodeSnapshot.capture( source.getModel(), null );
+    this.relationalModel = NodeSnapshot.capture( source.getRelationalModel(), null );
+    this.modelName = source.getModelName();
+    this.relationalModelName = source.getRelationalModelName();
+    this.modelSource = source.getModelSource();
+    this.context = source.getContext();
+    this.geoContext = source.getGeoContext();
+    this.helper = source.getWorkspaceHelper();
+  }
+
+  /**
+   * Deep copy of a workspace, see {@link WorkspaceTemplate}.
+   */
+  public static ModelerWorkspace copy( ModelerWorkspace source ) throws ModelerException {
+    return new WorkspaceTemplate( source ).instantiate();
+  }
+
+  public ModelerWorkspace instantiate() throws ModelerException {
+    return instantiate( Collections.<String, String>emptyMap() );
+  }
+
+  /**
+   * @param targetTables
+   *          database table to read from, by physical table id, for every physical table the new workspace must not
+   *          share with the template
+   */
+  public ModelerWorkspace instantiate( Map<String, String> targetTables ) throws ModelerException {
+    DomainCopy copy = new DomainCopy();
+    Domain instanceDomain = copy.copy( domain );
+    rebind( instanceDomain, targetTables );
+    Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+    for ( Map.Entry<Object, Object> column : columns.entrySet() ) {
+      replacements.put( column.getKey(), copy.column( (LogicalColumn) column.getValue() ) );
+    }
+
+    ModelerWorkspace workspace =
+        new ModelerWorkspace( helper, geoContext, context );
+    workspace.setDomain( instanceDomain, model, relationalModel, replacements );
+    workspace.setModelName( modelName );
+    workspace.setRelationalModelName( relationalModelName );
+    workspace.setModelSource( modelSource );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    return workspace;
+  }
+
+  private static void mapColumns( AbstractMetaDataModelNode<?> node, DomainCopy copy, Map<Object, Object> columns ) {
+    if ( node instanceof BaseColumnBackedMetaData ) {
+      BaseColumnBackedMetaData<?> columnBacked = (BaseColumnBackedMetaData<?>) node;
+      mapColumn( columnBacked.getLogicalColumn(), copy, columns );
+      mapColumn( columnBacked.getLogicalOrdinalColumn(), copy, columns );
+      mapColumn( columnBacked.getLogicalCaptionColumn(), copy, columns );
+    }
+    for ( Object child : node ) {
+      mapColumns( (AbstractMetaDataModelNode<?>) child, copy, columns );
+    }
+  }
+
+  private static void mapColumn( LogicalColumn column, DomainCopy copy, Map<Object, Object> columns ) {
+    if ( column != null ) {
+      columns.put( column, copy.column( column ) );
+    }
+  }
+
+  private static void rebind( Domain domain, Map<String, String> targetTables ) throws ModelerException {
+    if ( targetTables.isEmpty() ) {
+      return;
+    }
+    Map<String, String> remaining = new HashMap<String, String>( targetTables );
+    for ( IPhysicalModel physicalModel : domain.getPhysicalModels() ) {
+      for ( IPhysicalTable table : physicalModel.getPhysicalTables() ) {
+        String targetTable = remaining.remove( table.getId() );
+        if ( targetTable == null ) {
+          continue;
+        }
+        if ( !( table instanceof SqlPhysicalTable ) ) {
+          throw new ModelerException( "Physical table " + table.getId() + " can not be rebound" ); //$NON-NLS-1$
+        }
+        ( (SqlPhysicalTable) table ).setTargetTable( targetTable );
+      }
+    }
+    if ( !remaining.isEmpty() ) {
+      throw new ModelerException( "Unknown physical tables: " + remaining.keySet() ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Copies a domain one object at a time, remembering the copy of every object so references between them can be
+   * pointed at the copies. Olap dimensions are left out, they are written again from the copied model trees.
+   */
+  private static class DomainCopy {
+
+    private final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+
+    Domain copy( Domain source ) {
+      Domain domain = new Domain();
+      copyConcept( source, domain );
+      domain.setLocales( new ArrayList<LocaleType>( source.getLocales() ) );
+      domain.setConcepts( new ArrayList<Concept>( source.getConcepts() ) );
+      for ( IPhysicalModel physicalModel : source.getPhysicalModels() ) {
+        domain.addPhysicalModel( copyPhysicalModel( physicalModel ) );
+      }
+      // tables first, columns may belong to a table of another logical model
+      List<LogicalModel> models = new ArrayList<LogicalModel>();
+      for ( LogicalModel sourceModel : source.getLogicalModels() ) {
+        LogicalModel model = new LogicalModel();
+        copyConcept( sourceModel, model );
+        model.setDomain( domain );
+        model.setPhysicalModel( (IPhysicalModel) copyOf( sourceModel.getPhysicalModel() ) );
+        model.setRowLevelSecurity( sourceModel.getRowLevelSecurity() );
+        for ( LogicalTable sourceTable : sourceModel.getLogicalTables() ) {
+          LogicalTable table = new LogicalTable();
+          copyConcept( sourceTable, table );
+          table.setLogicalModel( model );
+          table.setPhysicalTable( (IPhysicalTable) copyOf( sourceTable.getPhysicalTable() ) );
+          model.addLogicalTable( table );
+        }
+        models.add( model );
+        domain.addLogicalModel( model );
+      }
+      for ( int i = 0; i < models.size(); i++ ) {
+        copyLogicalModel( source.getLogicalModels().get( i ), models.get( i ) );
+      }
+      return domain;
+    }
+
+    private void copyLogicalModel( LogicalModel source, LogicalModel model ) {
+      for ( LogicalTable sourceTable : source.getLogicalTables() ) {
+        LogicalTable table = (LogicalTable) copies.get( sourceTable );
+        for ( LogicalColumn sourceColumn : sourceTable.getLogicalColumns() ) {
+          table.addLogicalColumn( column( sourceColumn ) );
+        }
+      }
+      for ( Category sourceCategory : source.getCategories() ) {
+        Category category = new Category();
+        copyConcept( sourceCategory, category );
+        for ( LogicalColumn sourceColumn : sourceCategory.getLogicalColumns() ) {
+          category.addLogicalColumn( column( sourceColumn ) );
+        }
+        model.addCategory( category );
+      }
+      if ( source.getLogicalRelationships() != null ) {
+        for ( LogicalRelationship rel : source.getLogicalRelationships() ) {
+          LogicalRelationship copy =
+              new LogicalRelationship( model, (LogicalTable) copyOf( rel.getFromTable() ),
+                  (LogicalTable) copyOf( rel.getToTable() ), column( rel.getFromColumn() ),
+                  column( rel.getToColumn() ) );
+          copy.setComplex( rel.isComplex() );
+          copy.setRelationshipType( rel.getRelationshipType() );
+          copy.setJoinOrderKey( rel.getJoinOrderKey() );
+          copy.setComplexJoin( rel.getComplexJoin() );
+          copy.setRelationshipDescription( rel.getRelationshipDescription() );
+          model.addLogicalRelationship( copy );
+        }
+      }
+      @SuppressWarnings( "unchecked" )
+      List<OlapCube> sourceCubes = (List<OlapCube>) source.getProperty( LogicalModel.PROPERTY_OLAP_CUBES );
+      if ( sourceCubes != null ) {
+        List<OlapCube> cubes = new ArrayList<OlapCube>();
+        for ( OlapCube sourceCube : sourceCubes ) {
+          OlapCube cube = new OlapCube();
+          cube.setName( sourceCube.getName() );
+          cube.setLogicalTable( (LogicalTable) copyOf( sourceCube.getLogicalTable() ) );
+          for ( OlapCalculatedMember member : sourceCube.getOlapCalculatedMembers() ) {
+            cube.getOlapCalculatedMembers().add(
+                new OlapCalculatedMember( member.getName(), member.getDimension(), member.getFormula(),
+                    member.getFormatString(), member.isCalculateSubtotals(), member.isHidden() ) );
+          }
+          cubes.add( cube );
+        }
+        model.setProperty( LogicalModel.PROPERTY_OLAP_CUBES, cubes );
+      }
+    }
+
+    private IPhysicalModel copyPhysicalModel( IPhysicalModel source ) {
+      if ( !( source instanceof SqlPhysicalModel ) ) {
+        return source;
+      }
+      SqlPhysicalModel sqlSource = (SqlPhysicalModel) source;
+      SqlPhysicalModel model = new SqlPhysicalModel();
+      copyConcept( sqlSource, model );
+      model.setDatasource( sqlSource.getDatasource() );
+      for ( SqlPhysicalTable sourceTable : sqlSource.getPhysicalTables() ) {
+        SqlPhysicalTable table = new SqlPhysicalTable( model );
+        copyConcept( sourceTable, table );
+        for ( IPhysicalColumn sourceColumn : sourceTable.getPhysicalColumns() ) {
+          SqlPhysicalColumn column = new SqlPhysicalColumn( table );
+          copyConcept( sourceColumn, column );
+          table.getPhysicalColumns().add( column );
+        }
+        model.addPhysicalTable( table );
+      }
+      return model;
+    }
+
+    /**
+     * @return the copy of <code>source</code>, made on first use so columns no table lists, such as the duplicated
+     *         columns of repeated measures, are copied too
+     */
+    LogicalColumn column( LogicalColumn source ) {
+      if ( source == null ) {
+        return null;
+      }
+      LogicalColumn column = (LogicalColumn) copies.get( source );
+      if ( column == null ) {
+        column = new LogicalColumn();
+        copyConcept( source, column );
+        column.setLogicalTable( (LogicalTable) copyOf( source.getLogicalTable() ) );
+        column.setPhysicalColumn( (IPhysicalColumn) copyOf( source.getPhysicalColumn() ) );
+      }
+      return column;
+    }
+
+    /**
+     * @return the copy of <code>source</code>, or <code>source</code> itself if it is shared with the copy
+     */
+    private Object copyOf( Object source ) {
+      Object copy = copies.get( source );
+      return copy == null ? source : copy;
+    }
+
+    private void copyConcept( IConcept source, IConcept concept ) {
+      copies.put( source, concept );
+      concept.setId( source.getId() );
+      concept.setParentConcept( source.getParentConcept() );
+      for ( Map.Entry<String, Object> property : source.getChildProperties().entrySet() ) {
+        String name = property.getKey();
+        if ( LogicalModel.PROPERTY_OLAP_CUBES.equals( name ) || LogicalModel.PROPERTY_OLAP_DIMS.equals( name ) ) {
+          continue;
+        }
+        concept.setProperty( name, copyValue( property.getValue() ) );
+      }
+    }
+
+    /**
+     * Copies the mutable property values, localized strings, lists and maps; the other property types are values that
+     * are replaced rather than changed and stay shared.
+     */
+    private static Object copyValue( Object value ) {
+      if ( value instanceof LocalizedString ) {
+        LocalizedString string = new LocalizedString();
+        for ( Map.Entry<String, String> localized : ( (LocalizedString) value ).getLocaleStringMap().entrySet() ) {
+          string.setString( localized.getKey(), localized.getValue() );
+        }
+        return string;
+      }
+      if ( value instanceof List ) {
+        List<Object> list = new ArrayList<Object>();
+        for ( Object element : (List<?>) value ) {
+          list.add( copyValue( element ) );
+        }
+        return list;
+      }
+      if ( value instanceof Map ) {
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for ( Map.Entry<?, ?> entry : ( (Map<?, ?>) value ).entrySet() ) {
+          map.put( entry.getKey(), copyValue( entry.getValue() ) );
+        }
+        return map;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.agilebi.modeler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+import org.pentaho.metadata.model.Category;
+import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.types.AggregationType;
+import org.pentaho.metadata.util.MondrianModelExporter;
+import org.pentaho.metadata.util.XmiParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BaseModelerWorkspaceHelperTest {
+
+  private static final String LOCALE = "en_US";
+  private static final String PRODUCTS_XMI = "src/test/resources/products.xmi";
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+  }
+
+  @Test
+  public void testSyncDomainMatchesFullRebuild() throws Exception {
+    ModelerWorkspace incremental = loadWorkspace();
+    ModelerWorkspace full = loadWorkspace();
+
+    editModel( incremental );
+    editModel( full );
+    assertTrue( incremental.isSubtreeDirty( ModelSubtree.DIMENSIONS ) );
+    assertTrue( incremental.isSubtreeDirty( ModelSubtree.MEASURES ) );
+    assertFalse( incremental.isSubtreeDirty( ModelSubtree.CATEGORIES ) );
+
+    incremental.getWorkspaceHelper().syncDomain( incremental );
+    full.getWorkspaceHelper().populateDomain( full );
+
+    assertTrue( incremental.getDirtySubtrees().isEmpty() );
+    assertEquals( toMondrian( full ), toMondrian( incremental ) );
+    assertEquals( full.getLogicalModel( ModelerPerspective.REPORTING ).getCategories().size(),
+        incremental.getLogicalModel( ModelerPerspective.REPORTING ).getCategories().size() );
+  }
+
+  @Test
+  public void testSyncDomainOnlyPatchesDirtySubtrees() throws Exception {
+    ModelerWorkspace workspace = loadWorkspace();
+    LogicalModel olapModel = workspace.getLogicalModel( ModelerPerspective.ANALYSIS );
+    Object dimensions = olapModel.getProperty( "olap_dimensions" );
+
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    measure.setName( "Buy Price" );
+    assertEquals( EnumSet.of( ModelSubtree.MEASURES ), workspace.getDirtySubtrees() );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+
+    assertSame( dimensions, olapModel.getProperty( "olap_dimensions" ) );
+    assertTrue( toMondrian( workspace ).contains( "Buy Price" ) );
+
+    workspace.markAllSubtreesDirty();
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    assertNotSame( dimensions, olapModel.getProperty( "olap_dimensions" ) );
+  }
+
+  @Test
+  public void testSyncDomainClearsFlagsWithoutAnOlapCube() throws Exception {
+    ModelerWorkspace workspace = loadWorkspace();
+    workspace.setModellingMode( ModelerMode.REPORTING_ONLY );
+    workspace.getModel().getDimensions().clear();
+    workspace.getModel().getMeasures().get( 0 ).setName( "Buy Price" );
+    assertTrue( workspace.isSubtreeDirty( ModelSubtree.DIMENSIONS ) );
+
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    assertTrue( workspace.getDirtySubtrees().isEmpty() );
+  }
+
+  @Test
+  public void testInPlaceEditsMarkTheirSubtree() throws Exception {
+    ModelerWorkspace workspace = loadWorkspace();
+    LevelMetaData level = workspace.getModel().getDimensions().get( 0 ).get( 0 ).get( 0 );
+    level.setDescription( "Product line" );
+    assertEquals( EnumSet.of( ModelSubtree.DIMENSIONS ), workspace.getDirtySubtrees() );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    assertTrue( toMondrian( workspace ).contains( "Product line" ) );
+
+    level.setHidden( true );
+    assertEquals( EnumSet.of( ModelSubtree.DIMENSIONS ), workspace.getDirtySubtrees() );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    measure.setFormat( "#,###.00" );
+    assertEquals( EnumSet.of( ModelSubtree.MEASURES ), workspace.getDirtySubtrees() );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    assertTrue( toMondrian( workspace ).contains( "#,###.00" ) );
+
+    workspace.getRelationalModel().getCategories().get( 0 ).setName( "Renamed" );
+    assertEquals( EnumSet.of( ModelSubtree.CATEGORIES ), workspace.getDirtySubtrees() );
+
+    // validation only touches the view state of the nodes
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    workspace.getModel().validateTree();
+    workspace.getRelationalModel().validateTree();
+    assertTrue( workspace.getDirtySubtrees().isEmpty() );
+  }
+
+  @Test
+  public void testConcurrentPopulateWithMixedLocales() throws Exception {
+    final byte[] xmi = Files.readAllBytes( Paths.get( PRODUCTS_XMI ) );
+    final String[] locales = { "en_US", "de_DE", "fr_FR", "ja_JP" };
+    final int threads = 32;
+    final CountDownLatch start = new CountDownLatch( 1 );
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+    try {
+      List<Future<ModelerWorkspace>> results = new ArrayList<Future<ModelerWorkspace>>();
+      for ( int i = 0; i < threads; i++ ) {
+        final String locale = locales[i % locales.length];
+        results.add( executor.submit( new Callable<ModelerWorkspace>() {
+          public ModelerWorkspace call() throws Exception {
+            ModelerWorkspace workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( locale ) );
+            Domain domain = new XmiParser().parseXmi( new ByteArrayInputStream( xmi ) );
+            start.await();
+            workspace.setDomain( domain );
+            workspace.getWorkspaceHelper().populateDomain( workspace );
+            return workspace;
+          }
+        } ) );
+      }
+      start.countDown();
+
+      for ( int i = 0; i < threads; i++ ) {
+        ModelerWorkspace workspace = results.get( i ).get( 60, TimeUnit.SECONDS );
+        String locale = locales[i % locales.length];
+        Set<String> expected = Collections.singleton( locale );
+        assertEquals( locale, workspace.getLocale() );
+
+        LogicalModel logicalModel = workspace.getLogicalModel( ModelerPerspective.REPORTING );
+        assertEquals( expected, logicalModel.getName().getLocales() );
+        for ( Category category : logicalModel.getCategories() ) {
+          assertEquals( expected, category.getName().getLocales() );
+          for ( LogicalColumn column : category.getLogicalColumns() ) {
+            assertEquals( expected, column.getName().getLocales() );
+          }
+        }
+        if ( workspace.supportsOlap( workspace.getDomain() ) ) {
+          assertEquals( expected, workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getName().getLocales() );
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private ModelerWorkspace loadWorkspace() throws Exception {
+    ModelerWorkspace workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( PRODUCTS_XMI ) ) );
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    assertTrue( workspace.getDirtySubtrees().isEmpty() );
+    return workspace;
+  }
+
+  private void editModel( ModelerWorkspace workspace ) {
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    measure.setName( "Buy Price" );
+    measure.setDefaultAggregation( AggregationType.AVERAGE );
+
+    DimensionMetaData dimension = workspace.getModel().getDimensions().get( 0 );
+    workspace.getModel().getDimensions().remove( dimension );
+  }
+
+  private String toMondrian( ModelerWorkspace workspace ) throws Exception {
+    return new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+        .createMondrianModelXML();
+  }
+}
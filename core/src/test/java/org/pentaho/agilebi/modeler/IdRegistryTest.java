@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+
+package org.pentaho.agilebi.modeler;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.concept.IConcept;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IdRegistryTest {
+
+  @Test
+  public void testKeepsUniquifyNaming() {
+    List<LogicalColumn> columns = new ArrayList<LogicalColumn>();
+    columns.add( column( "LC_PRODUCTS_CODE" ) );
+    columns.add( column( "LC_PRODUCTS_CODE_3" ) );
+    IdRegistry registry = new IdRegistry( columns );
+
+    assertEquals( "LC_PRODUCTS_NAME", registry.uniquify( "LC_PRODUCTS_NAME" ) );
+    assertEquals( "LC_PRODUCTS_CODE_2", registry.uniquify( "LC_PRODUCTS_CODE" ) );
+    assertEquals( "lc_products_code_4", registry.uniquify( "lc_products_code" ) );
+    assertEquals( "LC_PRODUCTS_CODE_5", registry.uniquify( "LC_PRODUCTS_CODE" ) );
+    assertTrue( registry.contains( "lc_products_name" ) );
+    assertFalse( registry.contains( "LC_PRODUCTS_LINE" ) );
+    assertNull( registry.uniquify( null ) );
+  }
+
+  @Test
+  public void testMatchesLegacyUniquify() {
+    List<LogicalColumn> legacy = new ArrayList<LogicalColumn>();
+    List<LogicalColumn> seed = new ArrayList<LogicalColumn>();
+    seed.add( column( "COL_7_2" ) );
+    seed.add( column( "col_3" ) );
+    legacy.addAll( seed );
+    IdRegistry registry = new IdRegistry( seed );
+
+    for ( int i = 0; i < 1000; i++ ) {
+      String base = ( i % 2 == 0 ? "COL_" : "col_" ) + ( i % 40 );
+      String expected = legacyUniquify( base, legacy );
+      legacy.add( column( expected ) );
+      assertEquals( expected, registry.uniquify( base ) );
+    }
+  }
+
+  @Test
+  public void testWideTable() {
+    IdRegistry registry = new IdRegistry();
+    Set<String> ids = new HashSet<String>();
+
+    for ( int i = 0; i < 10000; i++ ) {
+      String base = "LC_FACT_" + ( i % 10 ) + "_OLAP";
+      int round = i / 10 + 1;
+      String id = registry.uniquify( base );
+      assertEquals( round == 1 ? base : base + "_" + round, id );
+      assertTrue( ids.add( id.toLowerCase() ) );
+    }
+    assertTrue( registry.contains( "lc_fact_9_olap_1000" ) );
+    assertFalse( registry.contains( "LC_FACT_9_OLAP_1001" ) );
+    assertEquals( "LC_FACT_9_OLAP_1001", registry.uniquify( "LC_FACT_9_OLAP" ) );
+  }
+
+  /**
+   * The linear scan BaseModelerWorkspaceHelper.uniquify used before IdRegistry, kept as the reference behavior.
+   */
+  private static String legacyUniquify( String id, List<? extends IConcept> concepts ) {
+    int conceptNr = 1;
+    String newId = id;
+    while ( true ) {
+      boolean found = false;
+      for ( IConcept concept : concepts ) {
+        if ( concept.getId().equalsIgnoreCase( newId ) ) {
+          found = true;
+          break;
+        }
+      }
+      if ( !found ) {
+        return newId;
+      }
+      conceptNr++;
+      newId = id + "_" + conceptNr;
+    }
+  }
+
+  private static LogicalColumn column( String id ) {
+    LogicalColumn column = new LogicalColumn();
+    column.setId( id );
+    return column;
+  }
+}
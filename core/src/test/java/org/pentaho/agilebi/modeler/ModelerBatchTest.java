@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+import org.pentaho.metadata.util.XmiParser;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModelerBatchTest {
+
+  private static final String LOCALE = "en_US";
+
+  private ModelerWorkspace workspace;
+  private int dimensionEvents;
+  private int modelEvents;
+  private int workspaceModelEvents;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+
+    workspace.getModel().getDimensions().addPropertyChangeListener( "children", new PropertyChangeListener() {
+      public void propertyChange( PropertyChangeEvent evt ) {
+        dimensionEvents++;
+      }
+    } );
+    workspace.getModel().addPropertyChangeListener( "children", new PropertyChangeListener() {
+      public void propertyChange( PropertyChangeEvent evt ) {
+        modelEvents++;
+      }
+    } );
+    workspace.addPropertyChangeListener( "model", new PropertyChangeListener() {
+      public void propertyChange( PropertyChangeEvent evt ) {
+        workspaceModelEvents++;
+      }
+    } );
+  }
+
+  @Test
+  public void testCoalescesChildrenEvents() throws Exception {
+    int dimensionCount = workspace.getModel().getDimensions().size();
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      for ( int i = 0; i < 5; i++ ) {
+        workspace.getModel().getDimensions().add( new DimensionMetaData( "Batched " + i ) );
+      }
+      assertTrue( workspace.isBatching() );
+      assertEquals( 0, dimensionEvents );
+      assertEquals( 0, modelEvents );
+      assertTrue( workspace.isSubtreeDirty( ModelSubtree.DIMENSIONS ) );
+    }
+    assertFalse( workspace.isBatching() );
+    assertEquals( 1, dimensionEvents );
+    assertEquals( 1, modelEvents );
+    assertEquals( 1, workspaceModelEvents );
+    assertEquals( dimensionCount + 5, workspace.getModel().getDimensions().size() );
+  }
+
+  @Test
+  public void testValidationDeferredUntilCommit() throws Exception {
+    DimensionMetaData empty = new DimensionMetaData( "Empty" );
+    ModelerBatch batch = workspace.beginBatch();
+    workspace.getModel().getDimensions().add( empty );
+    assertTrue( empty.isValid() );
+    assertTrue( empty.getValidationMessages().isEmpty() );
+
+    batch.commit();
+    assertFalse( empty.isValid() );
+    assertFalse( workspace.getModel().isValid() );
+    assertTrue( batch.isCommitted() );
+  }
+
+  @Test
+  public void testNestedBatchesFlushOnOutermostCommit() throws Exception {
+    ModelerBatch outer = workspace.beginBatch();
+    try ( ModelerBatch inner = workspace.beginBatch() ) {
+      workspace.getModel().getDimensions().add( new DimensionMetaData( "Inner" ) );
+    }
+    assertTrue( workspace.isBatching() );
+    assertEquals( 0, dimensionEvents );
+
+    outer.commit();
+    outer.commit();
+    assertFalse( workspace.isBatching() );
+    assertEquals( 1, dimensionEvents );
+  }
+
+  @Test
+  public void testPropertyEditsValidatedOnCommit() throws Exception {
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    assertTrue( measure.isValid() );
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      measure.setName( "" );
+      assertTrue( measure.isValid() );
+    }
+    assertFalse( measure.isValid() );
+    assertFalse( workspace.getModel().isValid() );
+    assertEquals( 1, workspaceModelEvents );
+  }
+
+  @Test
+  public void testModelChangeFiredOnceAfterCommit() throws Exception {
+    final DimensionMetaData empty = new DimensionMetaData( "Empty" );
+    final boolean[] validWhenFired = new boolean[1];
+    workspace.addPropertyChangeListener( "model", new PropertyChangeListener() {
+      public void propertyChange( PropertyChangeEvent evt ) {
+        validWhenFired[0] = empty.isValid();
+      }
+    } );
+    try ( ModelerBatch batch = workspace.beginBatch() ) {
+      workspace.setModelIsChanging( true );
+      workspace.getModel().getDimensions().add( empty );
+      workspace.setModelIsChanging( false );
+      assertEquals( 0, workspaceModelEvents );
+    }
+    assertEquals( 1, workspaceModelEvents );
+    assertFalse( validWhenFired[0] );
+  }
+}
@@ -123,6 +123,45 @@ public class ModelerConversionUtilTest {
 
   }
 
+  @Test
+  public void testOlapColumnMapMatchesLinearLookup() throws Exception {
+    XmiParser parser = new XmiParser();
+    FileInputStream input = new FileInputStream( new File( "src/test/resources/multi-table-model-2.0.xmi" ) );
+    Domain domain = parser.parseXmi( input );
+    ModelerConversionUtil.upConvertDomain( domain );
+
+    LogicalModel relationalModel = domain.getLogicalModels().get( 0 );
+    LogicalModel olapModel = domain.getLogicalModels().get( 1 );
+    OlapColumnMap olapColumns = new OlapColumnMap( olapModel );
+
+    for ( LogicalTable table : relationalModel.getLogicalTables() ) {
+      assertSame( ModelerConversionUtil.findCorrespondingOlapTable( table, olapModel ),
+          olapColumns.findTable( table ) );
+      for ( LogicalColumn column : table.getLogicalColumns() ) {
+        assertSame( ModelerConversionUtil.findCorrespondingOlapColumn( column, olapModel ),
+            olapColumns.findColumn( column ) );
+      }
+    }
+  }
+
+  @Test
+  public void testOlapColumnMapSkipsColumnsWithoutPhysicalColumn() throws Exception {
+    XmiParser parser = new XmiParser();
+    FileInputStream input = new FileInputStream( new File( "src/test/resources/multi-table-model-2.0.xmi" ) );
+    Domain domain = parser.parseXmi( input );
+    ModelerConversionUtil.upConvertDomain( domain );
+    LogicalModel relationalModel = domain.getLogicalModels().get( 0 );
+    LogicalModel olapModel = domain.getLogicalModels().get( 1 );
+    LogicalColumn unbound = new LogicalColumn();
+    unbound.setId( "UNBOUND" );
+    olapModel.getLogicalTables().get( 0 ).addLogicalColumn( unbound );
+
+    OlapColumnMap olapColumns = new OlapColumnMap( olapModel );
+
+    LogicalColumn column = relationalModel.getLogicalTables().get( 0 ).getLogicalColumns().get( 0 );
+    assertNotNull( olapColumns.findColumn( column ) );
+  }
+
   @Test
   public void testDuplicateModelForOlap() throws Exception {
     // go get an xmi that needs upgraded
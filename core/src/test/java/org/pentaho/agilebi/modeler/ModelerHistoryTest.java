@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.nodes.NodeSnapshot;
+import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+import org.pentaho.metadata.util.MondrianModelExporter;
+import org.pentaho.metadata.util.XmiParser;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelerHistoryTest {
+
+  private static final String LOCALE = "en_US";
+
+  private ModelerWorkspace workspace;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+  }
+
+  @Test
+  public void testUndoRedoRestoresTreeAndDomain() throws Exception {
+    ModelerHistory history = workspace.getHistory();
+    assertTrue( history.checkpoint() );
+    assertFalse( history.canUndo() );
+    String original = toMondrian();
+
+    DimensionMetaData dimension = workspace.getModel().getDimensions().get( 0 );
+    String dimensionName = dimension.getName();
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    int measureCount = workspace.getModel().getMeasures().size();
+
+    dimension.setName( "Renamed Dimension" );
+    workspace.markSubtreeDirty( ModelSubtree.DIMENSIONS );
+    workspace.getModel().getMeasures().remove( measure );
+    workspace.getWorkspaceHelper().syncDomain( workspace );
+    String edited = toMondrian();
+    assertTrue( edited.contains( "Renamed Dimension" ) );
+
+    assertTrue( history.canUndo() );
+    assertTrue( history.undo() );
+    assertEquals( dimensionName, dimension.getName() );
+    assertEquals( measureCount, workspace.getModel().getMeasures().size() );
+    assertSame( measure, workspace.getModel().getMeasures().get( 0 ) );
+    assertSame( workspace.getModel().getMeasures(), measure.getParent() );
+    assertEquals( original, toMondrian() );
+
+    assertTrue( history.canRedo() );
+    assertTrue( history.redo() );
+    assertEquals( "Renamed Dimension", dimension.getName() );
+    assertEquals( measureCount - 1, workspace.getModel().getMeasures().size() );
+    assertEquals( edited, toMondrian() );
+    assertFalse( history.redo() );
+  }
+
+  @Test
+  public void testNewEditDiscardsRedo() throws Exception {
+    ModelerHistory history = workspace.getHistory();
+    history.checkpoint();
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    String name = measure.getName();
+
+    measure.setName( "First" );
+    history.checkpoint();
+    assertTrue( history.undo() );
+    assertEquals( name, measure.getName() );
+
+    measure.setName( "Second" );
+    assertFalse( history.canRedo() );
+    assertFalse( history.redo() );
+    assertEquals( "Second", measure.getName() );
+    assertTrue( history.undo() );
+    assertEquals( name, measure.getName() );
+  }
+
+  @Test
+  public void testSnapshotsShareUntouchedSubtrees() {
+    NodeSnapshot before = NodeSnapshot.capture( workspace.getModel(), null );
+    assertSame( before, NodeSnapshot.capture( workspace.getModel(), before ) );
+
+    workspace.getModel().getMeasures().get( 0 ).setName( "Buy Price" );
+    NodeSnapshot after = NodeSnapshot.capture( workspace.getModel(), before );
+    assertNotSame( before, after );
+    for ( int i = 0; i < after.getChildCount(); i++ ) {
+      if ( after.getChild( i ).getNode() == workspace.getModel().getDimensions() ) {
+        assertSame( before.getChild( i ), after.getChild( i ) );
+      } else {
+        NodeSnapshot measures = after.getChild( i );
+        assertNotSame( before.getChild( i ), measures );
+        for ( int j = 1; j < measures.getChildCount(); j++ ) {
+          assertSame( before.getChild( i ).getChild( j ), measures.getChild( j ) );
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRestoredStateIsCopiedAndEditsAfterRestoreAreSeen() throws Exception {
+    ModelerHistory history = workspace.getHistory();
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    List<String> formats = new ArrayList<String>( Arrays.asList( "#" ) );
+    measure.setFormatstring( formats );
+    history.checkpoint();
+    measure.setFormatstring( new ArrayList<String>( Arrays.asList( "0.00" ) ) );
+    history.checkpoint();
+
+    formats.add( "changed after the checkpoint" );
+    assertTrue( history.undo() );
+    assertNotSame( formats, measure.getFormatstring() );
+    assertEquals( Arrays.asList( "#" ), measure.getFormatstring() );
+    List<String> restored = measure.getFormatstring();
+    assertTrue( history.redo() );
+    assertTrue( history.undo() );
+    assertNotSame( restored, measure.getFormatstring() );
+
+    // the restored node is skipped only while it stays untouched
+    assertFalse( history.checkpoint() );
+    measure.setName( "After Undo" );
+    assertTrue( history.checkpoint() );
+    assertTrue( history.undo() );
+    assertFalse( "After Undo".equals( measure.getName() ) );
+    assertTrue( history.redo() );
+    assertEquals( "After Undo", measure.getName() );
+  }
+
+  @Test
+  public void testLoadingDomainStartsNewHistory() throws Exception {
+    ModelerHistory history = workspace.getHistory();
+    history.checkpoint();
+    workspace.getModel().getMeasures().get( 0 ).setName( "Buy Price" );
+    history.checkpoint();
+    assertTrue( history.canUndo() );
+
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+    assertFalse( history.canUndo() );
+    assertFalse( history.canRedo() );
+  }
+
+  private String toMondrian() throws Exception {
+    return new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+        .createMondrianModelXML();
+  }
+}
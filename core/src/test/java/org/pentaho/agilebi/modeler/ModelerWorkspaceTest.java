@@ -30,8 +30,11 @@ import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
 import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
 import org.pentaho.agilebi.modeler.format.DataFormatHolder;
 import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.util.ParallelHydrationExecutor;
 import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.IPhysicalColumn;
+import org.pentaho.metadata.model.IPhysicalTable;
 import org.pentaho.metadata.model.LogicalColumn;
 import org.pentaho.metadata.model.LogicalModel;
 import org.pentaho.metadata.model.LogicalTable;
@@ -41,16 +44,24 @@ import org.pentaho.metadata.util.XmiParser;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -175,6 +186,45 @@ public class ModelerWorkspaceTest {
     }
   }
 
+  @Test
+  public void testLookupIndexTracksDomainChanges() throws Exception {
+    XmiParser parser = new XmiParser();
+    workspace.setDomain( parser.parseXmi( Files.newInputStream( Paths.get( "src/test/resources/products.xmi" ) ) ) );
+
+    LogicalTable olapTable = workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables().get( 0 );
+    LogicalColumn first = olapTable.getLogicalColumns().get( 0 );
+    assertSame( olapTable, workspace.findLogicalTable( olapTable.getPhysicalTable(), ModelerPerspective.ANALYSIS ) );
+    assertSame( first, workspace.findLogicalColumn( first.getPhysicalColumn(), ModelerPerspective.ANALYSIS ) );
+    assertSame( first, workspace.findLogicalColumnById( first.getId(), ModelerPerspective.ANALYSIS ) );
+
+    // columns changed directly in the domain are picked up once the change is signalled
+    LogicalColumn extra = (LogicalColumn) first.clone();
+    extra.setId( "LC_EXTRA_OLAP" );
+    olapTable.addLogicalColumn( extra );
+    workspace.domainChanged();
+    assertSame( extra, workspace.findLogicalColumnById( "LC_EXTRA_OLAP", ModelerPerspective.ANALYSIS ) );
+
+    // replacing a column keeps the column count of the table
+    LogicalColumn replacement = (LogicalColumn) extra.clone();
+    replacement.setId( "LC_REPLACED_OLAP" );
+    olapTable.getLogicalColumns().set( olapTable.getLogicalColumns().indexOf( extra ), replacement );
+    workspace.domainChanged();
+    assertNull( workspace.findLogicalColumnById( "LC_EXTRA_OLAP", ModelerPerspective.ANALYSIS ) );
+    assertSame( replacement, workspace.findLogicalColumnById( "LC_REPLACED_OLAP", ModelerPerspective.ANALYSIS ) );
+
+    // renaming a measure renames its logical column and moves the revision itself
+    workspace.setCurrentModelerPerspective( ModelerPerspective.ANALYSIS );
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    assertNull( workspace.findLogicalColumn( "Buy Price" ) );
+    measure.setName( "Buy Price" );
+    assertSame( measure.getLogicalColumn(), workspace.findLogicalColumn( "Buy Price" ) );
+
+    workspace.setDomain( parser.parseXmi( Files.newInputStream( Paths.get( "src/test/resources/products.xmi" ) ) ) );
+    assertNull( workspace.findLogicalColumnById( "LC_EXTRA_OLAP", ModelerPerspective.ANALYSIS ) );
+    assertNotSame( olapTable,
+        workspace.findLogicalTable( olapTable.getPhysicalTable(), ModelerPerspective.ANALYSIS ) );
+  }
+
   private boolean isReferencedTableOlapVersion( LogicalColumn logicalColumn ) {
     for ( LogicalTable table : workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables() ) {
       if ( table.getId().equals( logicalColumn.getLogicalTable().getId() ) ) {
@@ -227,6 +277,41 @@ public class ModelerWorkspaceTest {
 
   }
 
+  @Test
+  public void testParallelHydrationMatchesSequential() throws Exception {
+    ModelerWorkspace sequential = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    sequential.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      ModelerWorkspace parallel = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+      parallel.setHydrationExecutor( new ParallelHydrationExecutor( executor ) );
+      parallel.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+
+      List<DimensionMetaData> expected = sequential.getModel().getDimensions();
+      List<DimensionMetaData> actual = parallel.getModel().getDimensions();
+      assertTrue( expected.size() > 1 );
+      assertEquals( expected.size(), actual.size() );
+      for ( int i = 0; i < expected.size(); i++ ) {
+        assertEquals( expected.get( i ).getName(), actual.get( i ).getName() );
+        assertEquals( expected.get( i ).size(), actual.get( i ).size() );
+        for ( int h = 0; h < expected.get( i ).size(); h++ ) {
+          HierarchyMetaData expectedHier = expected.get( i ).get( h );
+          HierarchyMetaData actualHier = actual.get( i ).get( h );
+          assertEquals( expectedHier.getName(), actualHier.getName() );
+          assertEquals( expectedHier.size(), actualHier.size() );
+          for ( int l = 0; l < expectedHier.size(); l++ ) {
+            assertEquals( expectedHier.get( l ).getName(), actualHier.get( l ).getName() );
+            assertEquals( expectedHier.get( l ).getLogicalColumn().getId(),
+                actualHier.get( l ).getLogicalColumn().getId() );
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private static String readFileAsString( String filePath ) throws java.io.IOException {
     byte[] buffer = new byte[ (int) new File( filePath ).length() ];
     try ( BufferedInputStream f = new BufferedInputStream( Files.newInputStream( Paths.get( filePath ) ) ) ) {
@@ -235,4 +320,40 @@ public class ModelerWorkspaceTest {
     // ignore
     return new String( buffer );
   }
+
+  @Test
+  public void testToIdMatchesRegexRulesOverColumnCorpus() throws Exception {
+    List<String> corpus = new ArrayList<String>( Arrays.asList( "", "plain", "_", "__", "a__b", "a _ b", "\"quoted\"",
+        "`schema`.`table`", "o'neil", "sum(x)", "{a}[b]", "a,b:c", " lead", "trail ", "a_\"_b", "_'_", "x . y",
+        "PRODUCTLINE_OLAP", "Line Total (USD)", "\u00e9t\u00e9 [\u00e9]" ) );
+    for ( String file : new String[] { "products.xmi", "multi-table-model-2.0.xmi", "sql-model-1.0.xmi" } ) {
+      Domain domain = new XmiParser().parseXmi( new FileInputStream( "src/test/resources/" + file ) );
+      for ( IPhysicalTable table : domain.getPhysicalModels().get( 0 ).getPhysicalTables() ) {
+        corpus.add( table.getId() );
+        corpus.add( table.getName( LOCALE ) );
+        for ( IPhysicalColumn column : table.getPhysicalColumns() ) {
+          corpus.add( column.getId() );
+          corpus.add( column.getName( LOCALE ) );
+        }
+      }
+    }
+    for ( String name : corpus ) {
+      if ( name == null ) {
+        continue;
+      }
+      assertEquals( name, regexToId( name ), ModelerWorkspace.toId( name ) );
+      assertEquals( name, name.replaceAll( "[\"`']", "" ), ModelerWorkspace.removeQuotes( name ) );
+    }
+    assertNull( ModelerWorkspace.toId( null ) );
+    assertNull( ModelerWorkspace.removeQuotes( null ) );
+    String clean = "LC_CUSTOMERS_CUSTOMERNAME";
+    assertSame( clean, ModelerWorkspace.toId( clean ) );
+    assertSame( clean, ModelerWorkspace.removeQuotes( clean ) );
+  }
+
+  private static String regexToId( String name ) {
+    name = name.replaceAll( "[ .,:(){}\\[\\]]", "_" );
+    name = name.replaceAll( "[\"`']", "" );
+    return name.replaceAll( "_+", "_" );
+  }
 }
@@ -0,0 +1,243 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyMode;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyStatus;
+import org.pentaho.agilebi.modeler.models.annotations.util.MondrianSchemaHandler;
+import org.w3c.dom.Document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.*;
+
+public class AnnotationPlannerTest {
+  private static final String MONDRIAN_TEST_FILE_PATH = "src/test/resources/hideshow.mondrian.xml";
+
+  @Test
+  public void testParentAttributesAreOrderedBeforeChildren() throws Exception {
+    ModelAnnotation<CreateAttribute> city = attribute( "City", "State" );
+    ModelAnnotation<CreateAttribute> state = attribute( "State", "Country" );
+    ModelAnnotation<CreateAttribute> country = attribute( "Country", null );
+    ModelAnnotation<CreateMeasure> sales = new ModelAnnotation<CreateMeasure>( new CreateMeasure() );
+
+    AnnotationPlanner plan = new AnnotationPlanner( Arrays.<ModelAnnotation>asList( city, sales, state, country ) );
+
+    assertArrayEquals( new int[] { 1, 3, 2, 0 }, plan.getOrder() );
+    assertArrayEquals( new int[] { 2 }, plan.getDependencies( 0 ) );
+    assertArrayEquals( new int[] { 3 }, plan.getDependencies( 2 ) );
+    assertEquals( 0, plan.getDependencies( 3 ).length );
+    assertTrue( plan.getUnresolvedKeys( 0 ).isEmpty() );
+  }
+
+  @Test
+  public void testMissingParentIsReportedAsUnresolved() throws Exception {
+    AnnotationPlanner plan = new AnnotationPlanner( Arrays.<ModelAnnotation>asList( attribute( "City", "State" ) ) );
+
+    assertEquals( Arrays.asList( "attribute:Geo/Geo/State" ), plan.getUnresolvedKeys( 0 ) );
+    assertTrue( plan.describeFailure( 0, new boolean[1] ).contains( "attribute:Geo/Geo/State" ) );
+  }
+
+  @Test
+  public void testCycleIsBrokenAtItsFirstMember() throws Exception {
+    ModelAnnotation<UpdateCalculatedMember> first = calculated( "A", "B" );
+    ModelAnnotation<UpdateCalculatedMember> second = calculated( "B", "A" );
+    ModelAnnotation<ShowHideMeasure> hide = hide( "A" );
+
+    AnnotationPlanner plan = new AnnotationPlanner( Arrays.<ModelAnnotation>asList( hide, first, second ) );
+
+    assertArrayEquals( new int[] { 1, 0, 2 }, plan.getOrder() );
+    assertTrue( plan.isCyclic( 1 ) );
+    assertTrue( plan.isCyclic( 2 ) );
+    assertFalse( plan.isCyclic( 0 ) );
+    assertTrue( plan.describeFailure( 1, new boolean[3] ).contains( "cycle" ) );
+  }
+
+  @Test
+  public void testLinkDimensionIsOrderedAfterItsDimensionKey() throws Exception {
+    LinkDimension linkDimension = new LinkDimension();
+    linkDimension.setName( "Customer" );
+    linkDimension.setSharedDimension( "Shared Customer" );
+    CreateDimensionKey dimensionKey = new CreateDimensionKey();
+    dimensionKey.setName( "customer_id" );
+    dimensionKey.setDimension( "Customer" );
+    dimensionKey.setField( "customer_id" );
+
+    AnnotationPlanner plan = new AnnotationPlanner( Arrays.<ModelAnnotation>asList(
+      new ModelAnnotation<LinkDimension>( linkDimension ), new ModelAnnotation<CreateDimensionKey>( dimensionKey ) ) );
+
+    assertArrayEquals( new int[] { 1 }, plan.getDependencies( 0 ) );
+    assertArrayEquals( new int[] { 1, 0 }, plan.getOrder() );
+  }
+
+  @Test
+  public void testMeasureReferences() throws Exception {
+    assertEquals( Arrays.asList( "measure:Sales", "measure:Cost [net]" ),
+      AnnotationPlanner.measureReferences( "[Measures].[Sales] - [measures].[Cost [net]]] + [Measures].[Sales]" ) );
+    assertTrue( AnnotationPlanner.measureReferences( "[Product].[Line]" ).isEmpty() );
+    assertTrue( AnnotationPlanner.measureReferences( "[Measures].[Unterminated" ).isEmpty() );
+    assertTrue( AnnotationPlanner.measureReferences( null ).isEmpty() );
+  }
+
+  @Test
+  public void testPlannedModeAppliesEachAnnotationOnce() throws Exception {
+    CountingAnnotation hide = new CountingAnnotation( hide( "Cost" ).getAnnotation() );
+    CountingAnnotation rename = new CountingAnnotation( rename( "[Measures].[Price]", "Cost" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename );
+    group.setApplyMode( ApplyMode.PLANNED );
+
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap =
+      group.applyAnnotations( getMondrianDoc( MONDRIAN_TEST_FILE_PATH ) );
+
+    assertEquals( Arrays.<ModelAnnotation>asList( rename, hide ), statusMap.get( ApplyStatus.SUCCESS ) );
+    assertEquals( 0, statusMap.get( ApplyStatus.FAILED ).size() );
+    assertEquals( 1, rename.applied );
+    assertEquals( 1, hide.applied );
+    assertNull( hide.getFailureReason() );
+  }
+
+  @Test
+  public void testFixpointModeRetriesUntilDone() throws Exception {
+    CountingAnnotation hide = new CountingAnnotation( hide( "Cost" ).getAnnotation() );
+    CountingAnnotation rename = new CountingAnnotation( rename( "[Measures].[Price]", "Cost" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename );
+    assertEquals( ApplyMode.FIXPOINT, group.getApplyMode() );
+    Document schema = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap = group.applyAnnotations( schema );
+
+    assertEquals( 2, statusMap.get( ApplyStatus.SUCCESS ).size() );
+    assertEquals( 2, hide.applied );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Cost", "visible", "false" ) );
+  }
+
+  @Test
+  public void testDependentsOfFailedAnnotationsAreNotApplied() throws Exception {
+    CountingAnnotation hide = new CountingAnnotation( hide( "Ghost" ).getAnnotation() );
+    CountingAnnotation rename = new CountingAnnotation( rename( "[Measures].[Missing]", "Ghost" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename );
+    group.setApplyMode( ApplyMode.PLANNED );
+
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap =
+      group.applyAnnotations( getMondrianDoc( MONDRIAN_TEST_FILE_PATH ) );
+
+    assertEquals( 2, statusMap.get( ApplyStatus.FAILED ).size() );
+    assertEquals( 1, rename.applied );
+    assertEquals( 0, hide.applied );
+    assertTrue( rename.getFailureReason().contains( "measure:Missing" ) );
+    assertTrue( hide.getFailureReason().contains( "Update Measure Ghost" ) );
+  }
+
+  @Test
+  public void testKeysMatchIgnoringCase() throws Exception {
+    ModelAnnotation<ShowHideMeasure> hide = hide( "cost" );
+    ModelAnnotation<UpdateMeasure> rename =
+      new ModelAnnotation<UpdateMeasure>( rename( "[Measures].[Price]", "Cost" ) );
+
+    AnnotationPlanner plan = new AnnotationPlanner( Arrays.<ModelAnnotation>asList( hide, rename ) );
+
+    assertArrayEquals( new int[] { 1 }, plan.getDependencies( 0 ) );
+    assertArrayEquals( new int[] { 1, 0 }, plan.getOrder() );
+    assertTrue( plan.getUnresolvedKeys( 0 ).isEmpty() );
+  }
+
+  @Test
+  public void testPlannedModeRetriesFailuresOnce() throws Exception {
+    // hides Cost without declaring that it needs the measure the rename creates
+    ShowHideMeasure undeclared = new ShowHideMeasure() {
+      @Override public List<String> getRequiredKeys() {
+        return Collections.emptyList();
+      }
+    };
+    undeclared.setName( "Cost" );
+    undeclared.setCube( "products" );
+    CountingAnnotation hide = new CountingAnnotation( undeclared );
+    CountingAnnotation rename = new CountingAnnotation( rename( "[Measures].[Price]", "Cost" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename );
+    group.setApplyMode( ApplyMode.PLANNED );
+    Document schema = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap = group.applyAnnotations( schema );
+
+    assertEquals( 2, statusMap.get( ApplyStatus.SUCCESS ).size() );
+    assertEquals( 0, statusMap.get( ApplyStatus.FAILED ).size() );
+    assertEquals( 2, hide.applied );
+    assertEquals( 1, rename.applied );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Cost", "visible", "false" ) );
+  }
+
+  @Test
+  public void testAnnotationsShareOneSchemaHandler() throws Exception {
+    CountingAnnotation hide = new CountingAnnotation( hide( "Cost" ).getAnnotation() );
+    CountingAnnotation rename = new CountingAnnotation( rename( "[Measures].[Price]", "Cost" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename );
+    Document schema = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+
+    group.applyAnnotations( schema );
+
+    assertSame( schema, hide.handler.getSchema() );
+    assertSame( hide.handler, rename.handler );
+  }
+
+  private ModelAnnotation<CreateAttribute> attribute( final String name, final String parent ) {
+    CreateAttribute createAttribute = new CreateAttribute();
+    createAttribute.setName( name );
+    createAttribute.setDimension( "Geo" );
+    createAttribute.setParentAttribute( parent );
+    return new ModelAnnotation<CreateAttribute>( createAttribute );
+  }
+
+  private ModelAnnotation<UpdateCalculatedMember> calculated( final String name, final String source ) {
+    UpdateCalculatedMember updateCalculatedMember = new UpdateCalculatedMember();
+    updateCalculatedMember.setName( name );
+    updateCalculatedMember.setSourceCalculatedMeasure( source );
+    return new ModelAnnotation<UpdateCalculatedMember>( updateCalculatedMember );
+  }
+
+  private ModelAnnotation<ShowHideMeasure> hide( final String name ) {
+    ShowHideMeasure showHideMeasure = new ShowHideMeasure();
+    showHideMeasure.setName( name );
+    showHideMeasure.setCube( "products" );
+    return new ModelAnnotation<ShowHideMeasure>( showHideMeasure );
+  }
+
+  private UpdateMeasure rename( final String measure, final String name ) {
+    UpdateMeasure updateMeasure = new UpdateMeasure();
+    updateMeasure.setMeasure( measure );
+    updateMeasure.setName( name );
+    updateMeasure.setCube( "products" );
+    return updateMeasure;
+  }
+
+  private static class CountingAnnotation extends ModelAnnotation<AnnotationType> {
+    private int applied;
+    private MondrianSchemaHandler handler;
+
+    CountingAnnotation( final AnnotationType annotation ) {
+      super( annotation );
+    }
+
+    @Override public boolean apply( final MondrianSchemaHandler handler ) throws ModelerException {
+      applied++;
+      this.handler = handler;
+      return super.apply( handler );
+    }
+  }
+}
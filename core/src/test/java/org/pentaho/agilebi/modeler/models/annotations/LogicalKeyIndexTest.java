@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogicalKeyIndexTest {
+
+  @Test
+  public void testLogicalKeysFollowEqualsLogically() throws Exception {
+    assertEquals( measure( "Sales" ).getLogicalKey(), measure( "SALES" ).getLogicalKey() );
+    assertNotEquals( measure( "Sales" ).getLogicalKey(), measure( "Cost" ).getLogicalKey() );
+    assertEquals( attribute( "City", "Geo", null ).getLogicalKey(), attribute( "city", "GEO", "Geo" ).getLogicalKey() );
+    assertNotEquals( attribute( "City", "Geo", null ).getLogicalKey(),
+      attribute( "City", "Geo", "Other" ).getLogicalKey() );
+    assertNotEquals( measure( "City" ).getLogicalKey(), attribute( "City", null, null ).getLogicalKey() );
+    assertTrue( LogicalKeyIndex.isKeyed( measure( "Sales" ) ) );
+    assertTrue( LogicalKeyIndex.isKeyed( attribute( "City", "Geo", null ) ) );
+    assertFalse( LogicalKeyIndex.isKeyed( new FieldMatchedMeasure( "Sales", "sales" ) ) );
+  }
+
+  @Test
+  public void testFindsFirstLogicallyEqualAnnotation() throws Exception {
+    ModelAnnotation first = new ModelAnnotation<CreateMeasure>( measure( "Sales" ) );
+    ModelAnnotation second = new ModelAnnotation<CreateMeasure>( measure( "sales" ) );
+    ModelAnnotation city = new ModelAnnotation<CreateAttribute>( attribute( "City", "Geo", null ) );
+    ModelAnnotation byField = new ModelAnnotation<CreateMeasure>( new FieldMatchedMeasure( "Cost", "amount" ) );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation(), first, second, city, byField );
+
+    LogicalKeyIndex index = new LogicalKeyIndex( group );
+
+    assertSame( first, index.find( measure( "SALES" ) ) );
+    assertSame( city, index.find( attribute( "city", "geo", "geo" ) ) );
+    assertSame( byField, index.find( new FieldMatchedMeasure( "Other", "AMOUNT" ) ) );
+    assertNull( index.find( measure( "Cost" ) ) );
+    assertNull( index.find( attribute( "City", "Place", null ) ) );
+  }
+
+  @Test
+  public void testInjectionMergesLogicallyEqualAnnotations() throws Exception {
+    ModelAnnotationGroup group = new ModelAnnotationGroup();
+    CreateMeasure templated = measure( "Measure 0" );
+    templated.setFormatString( "#" );
+    group.add( new ModelAnnotation<CreateMeasure>( templated ) );
+
+    List<CreateMeasure> injected = new ArrayList<CreateMeasure>();
+    for ( int i = 0; i < 20000; i++ ) {
+      CreateMeasure measure = measure( ( i % 2 == 0 ? "MEASURE " : "Measure " ) + ( i / 2 ) );
+      measure.setDescription( "injected " + i );
+      injected.add( measure );
+    }
+    group.addInjectedAnnotations( injected );
+
+    assertEquals( 10000, group.size() );
+    assertSame( templated, group.get( 0 ).getAnnotation() );
+    assertEquals( "#", templated.getFormatString() );
+    assertEquals( "injected 1", templated.getDescription() );
+    assertEquals( "Measure 0", templated.getName() );
+    assertEquals( "injected 19999", ( (CreateMeasure) group.get( 9999 ).getAnnotation() ).getDescription() );
+  }
+
+  @Test
+  public void testGroupEquality() throws Exception {
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( measure( "Sales" ) ) );
+    ModelAnnotationGroup copy = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( measure( "Sales" ) ) );
+    copy.get( 0 ).setName( group.get( 0 ).getName() );
+
+    assertEquals( group, copy );
+    assertNotEquals( group, new ModelAnnotationGroup() );
+    assertNotEquals( group, Arrays.asList( group.get( 0 ) ) );
+    assertFalse( group.equals( null ) );
+  }
+
+  private static CreateMeasure measure( final String name ) {
+    CreateMeasure createMeasure = new CreateMeasure();
+    createMeasure.setName( name );
+    return createMeasure;
+  }
+
+  private static CreateAttribute attribute( final String name, final String dimension, final String hierarchy ) {
+    CreateAttribute createAttribute = new CreateAttribute();
+    createAttribute.setName( name );
+    createAttribute.setDimension( dimension );
+    createAttribute.setHierarchy( hierarchy );
+    return createAttribute;
+  }
+
+  /**
+   * Matches on the field instead of the name without providing a logical key, as a third party type might.
+   */
+  private static class FieldMatchedMeasure extends CreateMeasure {
+    FieldMatchedMeasure( final String name, final String field ) {
+      setName( name );
+      setField( field );
+    }
+
+    @Override public boolean equalsLogically( final AnnotationType obj ) {
+      return obj instanceof FieldMatchedMeasure && getField().equalsIgnoreCase( obj.getField() );
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.metastore.api.IMetaStore;
+import org.pentaho.metastore.persist.MetaStoreFactory;
+import org.pentaho.metastore.stores.memory.MemoryMetaStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelAnnotationCacheTest {
+
+  private IMetaStore metaStore;
+  private ModelAnnotationManager manager;
+  private long now;
+
+  @Before
+  public void setUp() throws Exception {
+    metaStore = new MemoryMetaStore();
+    manager = new ModelAnnotationManager();
+    ModelAnnotationCache.get( metaStore, () -> now );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ModelAnnotationManager.setCacheTimeToLive( 0 );
+  }
+
+  @Test
+  public void testReadsAreServedFromCacheAsCopies() throws Exception {
+    manager.createGroup( group( "g", "before" ), metaStore );
+    ModelAnnotationGroup first = manager.readGroup( "g", metaStore );
+    first.setDescription( "changed by caller" );
+
+    writeBehindManagersBack( group( "g", "external" ) );
+    ModelAnnotationGroup second = manager.readGroup( "g", metaStore );
+
+    assertNotSame( first, second );
+    assertEquals( "before", second.getDescription() );
+    assertEquals( 1, second.size() );
+
+    ModelAnnotationManager.invalidateCache( metaStore );
+    assertEquals( "external", manager.readGroup( "g", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testWritesInvalidateGroupsAndNames() throws Exception {
+    assertFalse( manager.containsGroup( "g", metaStore ) );
+    manager.createGroup( group( "g", "v1" ), metaStore );
+    assertTrue( manager.containsGroup( "g", metaStore ) );
+    assertEquals( "v1", manager.readGroup( "g", metaStore ).getDescription() );
+
+    manager.updateGroup( group( "g", "v2" ), metaStore );
+    assertEquals( "v2", manager.readGroup( "g", metaStore ).getDescription() );
+
+    new ModelAnnotationManager().deleteGroup( "g", metaStore );
+    assertFalse( manager.containsGroup( "g", metaStore ) );
+    assertEquals( 0, manager.listGroupNames( metaStore ).size() );
+  }
+
+  @Test
+  public void testSharedDimensionsAreCachedSeparately() throws Exception {
+    ModelAnnotationManager sharedDimensionManager = new ModelAnnotationManager( true );
+    sharedDimensionManager.createGroup( group( "g", "shared" ), metaStore );
+
+    assertTrue( sharedDimensionManager.containsGroup( "g", metaStore ) );
+    assertFalse( manager.containsGroup( "g", metaStore ) );
+  }
+
+  @Test
+  public void testEntriesExpireAfterTimeToLive() throws Exception {
+    ModelAnnotationManager.setCacheTimeToLive( 1000 );
+    manager.createGroup( group( "g", "before" ), metaStore );
+    manager.readGroup( "g", metaStore );
+    writeBehindManagersBack( group( "g", "external" ) );
+
+    now += 999;
+    assertEquals( "before", manager.readGroup( "g", metaStore ).getDescription() );
+    now += 1;
+    assertEquals( "external", manager.readGroup( "g", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testPreloadFillsTheCache() throws Exception {
+    writeBehindManagersBack( group( "a", "first" ) );
+    writeBehindManagersBack( group( "b", "second" ) );
+    manager.preload( metaStore );
+
+    writeBehindManagersBack( group( "c", "third" ) );
+    assertEquals( 2, manager.listGroupNames( metaStore ).size() );
+    assertFalse( manager.containsGroup( "c", metaStore ) );
+    assertEquals( "second", manager.readGroup( "b", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testListingDoesNotCacheGroups() throws Exception {
+    writeBehindManagersBack( group( "g", "before" ) );
+    assertEquals( 1, manager.listGroups( metaStore ).size() );
+    writeBehindManagersBack( group( "g", "external" ) );
+
+    assertEquals( "external", manager.readGroup( "g", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testCachesAreKeptPerMetaStoreInstance() throws Exception {
+    IMetaStore other = new MemoryMetaStore();
+    assertSame( ModelAnnotationCache.get( metaStore ), ModelAnnotationCache.get( metaStore ) );
+    assertNotSame( ModelAnnotationCache.get( metaStore ), ModelAnnotationCache.get( other ) );
+  }
+
+  private void writeBehindManagersBack( ModelAnnotationGroup group ) throws Exception {
+    if ( !metaStore.namespaceExists( ModelAnnotationManager.DEFAULT_NAMESPACE ) ) {
+      metaStore.createNamespace( ModelAnnotationManager.DEFAULT_NAMESPACE );
+    }
+    MetaStoreFactory<ModelAnnotationGroup> factory =
+        new MetaStoreFactory<ModelAnnotationGroup>( ModelAnnotationGroup.class, metaStore,
+            ModelAnnotationManager.DEFAULT_NAMESPACE );
+    factory.setObjectFactory( new ModelAnnotationObjectFactory() );
+    if ( factory.loadElement( group.getName() ) != null ) {
+      factory.deleteElement( group.getName() );
+    }
+    factory.saveElement( group );
+  }
+
+  private ModelAnnotationGroup group( String name, String description ) {
+    CreateMeasure createMeasure = new CreateMeasure();
+    createMeasure.setName( "m" );
+    createMeasure.setField( "f" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( createMeasure ) );
+    group.setName( name );
+    group.setDescription( description );
+    return group;
+  }
+}
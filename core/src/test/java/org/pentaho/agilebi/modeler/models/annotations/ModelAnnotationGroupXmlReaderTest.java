@@ -22,6 +22,10 @@ import org.pentaho.metadata.model.concept.types.AggregationType;
 import org.pentaho.metadata.model.concept.types.DataType;
 import org.w3c.dom.Document;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -243,4 +247,53 @@ public class ModelAnnotationGroupXmlReaderTest {
     Assert.assertEquals( 1, readAnnotations.size() );
     Assert.assertEquals( familyAnnotation, readAnnotations.get( 0 ) );
   }
+
+  @Test
+  public void testStreamingReadMatchesDomRead() throws Exception {
+    CreateMeasure measure = new CreateMeasure();
+    measure.setName( "Sales & <Returns>" );
+    measure.setFormatString( "#,##0" );
+    measure.setAggregateType( AggregationType.AVERAGE );
+    ModelAnnotation<CreateMeasure> measureAnnotation = new ModelAnnotation<CreateMeasure>( "sales", measure );
+    measureAnnotation.setName( "measure" );
+    CreateAttribute attribute = new CreateAttribute();
+    attribute.setName( "Year" );
+    attribute.setDimension( "Date" );
+    ModelAnnotation<CreateAttribute> attributeAnnotation = new ModelAnnotation<CreateAttribute>( attribute );
+    attributeAnnotation.setName( "attribute" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( measureAnnotation, attributeAnnotation );
+    group.setSharedDimension( true );
+    group.setDescription( "desc" );
+
+    ColumnMapping columnMapping = new ColumnMapping();
+    columnMapping.setName( "cm" );
+    columnMapping.setColumnName( "CM" );
+    columnMapping.setColumnDataType( DataType.NUMERIC );
+    DataProvider dataProvider = new DataProvider();
+    dataProvider.setName( "dp" );
+    dataProvider.setTableName( "facts" );
+    dataProvider.setColumnMappings( Arrays.asList( columnMapping ) );
+    group.setDataProviders( Arrays.asList( dataProvider ) );
+
+    String xml = new ModelAnnotationGroupXmlWriter( group ).getXML();
+    ModelAnnotationGroupXmlReader reader = new ModelAnnotationGroupXmlReader();
+    ModelAnnotationGroup fromDom = reader.readModelAnnotationGroup( XMLHandler.loadXMLString( xml ) );
+    ModelAnnotationGroup fromReader = reader.readModelAnnotationGroup( new StringReader( xml ) );
+    ModelAnnotationGroup fromStream =
+        reader.readModelAnnotationGroup( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+
+    Assert.assertEquals( fromDom, fromReader );
+    Assert.assertEquals( fromDom, fromStream );
+    Assert.assertEquals( "Sales & <Returns>", ( (CreateMeasure) fromReader.get( 0 ).getAnnotation() ).getName() );
+    Assert.assertEquals( DataType.NUMERIC,
+        fromReader.getDataProviders().get( 0 ).getColumnMappings().get( 0 ).getColumnDataType() );
+  }
+
+  @Test
+  public void testStreamingReadWithoutAnnotationsElement() throws Exception {
+    ModelAnnotationGroup group =
+        new ModelAnnotationGroupXmlReader().readModelAnnotationGroup( new StringReader( "<step><other/></step>" ) );
+    Assert.assertTrue( group.isEmpty() );
+    Assert.assertTrue( group.getDataProviders().isEmpty() );
+  }
 }
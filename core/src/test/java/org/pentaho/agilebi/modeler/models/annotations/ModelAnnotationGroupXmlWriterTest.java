@@ -17,13 +17,19 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.pentaho.agilebi.modeler.models.annotations.data.ColumnMapping;
 import org.pentaho.agilebi.modeler.models.annotations.data.DataProvider;
+import org.pentaho.agilebi.modeler.models.annotations.util.KeyValueClosure;
 import org.pentaho.agilebi.modeler.models.annotations.util.XMLUtil;
 import org.pentaho.metadata.model.concept.types.AggregationType;
 import org.pentaho.metadata.model.concept.types.DataType;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Rowell Belen
@@ -163,4 +169,244 @@ public class ModelAnnotationGroupXmlWriterTest {
         + "    </data-providers>"
         + "  </annotations>" ), XMLUtil.prettyPrint( xml ) );
   }
+
+  @Test
+  public void testStreamingMatchesLegacyPrettyPrint() throws Exception {
+    CreateMeasure measure = new CreateMeasure();
+    measure.setName( "Sales & <Returns>" );
+    measure.setFormatString( "#,##0\r\n;(#)" );
+    measure.setAggregateType( AggregationType.SUM );
+    ModelAnnotation<CreateMeasure> measureAnnotation = new ModelAnnotation<CreateMeasure>( "sales", measure );
+    measureAnnotation.setName( "measure" );
+    ModelAnnotation<BlankAnnotation> blank = new ModelAnnotation<BlankAnnotation>( new BlankAnnotation() );
+    blank.setName( "blank" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( measureAnnotation, blank );
+    group.setDescription( "  spread\n  out  " );
+
+    ColumnMapping columnMapping = new ColumnMapping();
+    columnMapping.setName( "cm" );
+    columnMapping.setColumnDataType( DataType.DATE );
+    DataProvider mapped = new DataProvider();
+    mapped.setName( "mapped" );
+    mapped.setColumnMappings( Arrays.asList( columnMapping ) );
+    DataProvider unmapped = new DataProvider();
+    unmapped.setName( "unmapped" );
+    group.setDataProviders( Arrays.asList( mapped, unmapped ) );
+
+    assertStreamingMatchesLegacy( group );
+    assertStreamingMatchesLegacy( new ModelAnnotationGroup() );
+    assertStreamingMatchesLegacy( null );
+  }
+
+  @Test
+  public void testGoldenEmptyGroups() throws Exception {
+    Assert.assertEquals( "\n<annotations> \n  <sharedDimension>N</sharedDimension>  \n"
+        + "  <description/> \n</annotations>\n",
+        new ModelAnnotationGroupXmlWriter( new ModelAnnotationGroup() ).getXML() );
+    Assert.assertEquals( "\n<annotations></annotations>\n", new ModelAnnotationGroupXmlWriter( null ).getXML() );
+  }
+
+  @Test
+  public void testGoldenLayout() throws Exception {
+    CreateMeasure measure = new CreateMeasure();
+    measure.setFormatString( "xxxx" );
+    measure.setAggregateType( AggregationType.SUM );
+    measure.setDescription( "some description" );
+    measure.setField( "col1" );
+    ModelAnnotation<CreateMeasure> measureAnnotation = new ModelAnnotation<CreateMeasure>( measure );
+    measureAnnotation.setName( "m" );
+    LinkDimension linkDimension = new LinkDimension();
+    linkDimension.setName( "ldName" );
+    linkDimension.setSharedDimension( "shared" );
+    linkDimension.setField( "ld" );
+    ModelAnnotation<LinkDimension> linkAnnotation = new ModelAnnotation<LinkDimension>( linkDimension );
+    linkAnnotation.setName( "ld" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( measureAnnotation, linkAnnotation );
+    group.setDescription( "Golden & Layout" );
+
+    ColumnMapping columnMapping = new ColumnMapping();
+    columnMapping.setName( "cm" );
+    columnMapping.setColumnName( "CM" );
+    columnMapping.setColumnDataType( DataType.NUMERIC );
+    DataProvider dataProvider = new DataProvider();
+    dataProvider.setName( "dp" );
+    dataProvider.setTableName( "SALES" );
+    dataProvider.setColumnMappings( Arrays.asList( columnMapping ) );
+    group.setDataProviders( Arrays.asList( dataProvider ) );
+
+    Assert.assertEquals( "\n"
+        + "<annotations> \n"
+        + "  <annotation> \n"
+        + "    <name>m</name>  \n"
+        + "    <field>col1</field>  \n"
+        + "    <type>CREATE_MEASURE</type>  \n"
+        + "    <properties> \n"
+        + "      <property> \n"
+        + "        <name>formatString</name>  \n"
+        + "        <value><![CDATA[xxxx]]></value> \n"
+        + "      </property>  \n"
+        + "      <property> \n"
+        + "        <name>hidden</name>  \n"
+        + "        <value><![CDATA[false]]></value> \n"
+        + "      </property>  \n"
+        + "      <property> \n"
+        + "        <name>description</name>  \n"
+        + "        <value><![CDATA[some description]]></value> \n"
+        + "      </property>  \n"
+        + "      <property> \n"
+        + "        <name>aggregateType</name>  \n"
+        + "        <value><![CDATA[SUM]]></value> \n"
+        + "      </property> \n"
+        + "    </properties> \n"
+        + "  </annotation>  \n"
+        + "  <annotation> \n"
+        + "    <name>ld</name>  \n"
+        + "    <field>ld</field>  \n"
+        + "    <type>LINK_DIMENSION</type>  \n"
+        + "    <properties> \n"
+        + "      <property> \n"
+        + "        <name>sharedDimension</name>  \n"
+        + "        <value><![CDATA[shared]]></value> \n"
+        + "      </property>  \n"
+        + "      <property> \n"
+        + "        <name>name</name>  \n"
+        + "        <value><![CDATA[ldName]]></value> \n"
+        + "      </property> \n"
+        + "    </properties> \n"
+        + "  </annotation>  \n"
+        + "  <sharedDimension>N</sharedDimension>  \n"
+        + "  <description>Golden &amp; Layout</description>  \n"
+        + "  <data-providers> \n"
+        + "    <data-provider> \n"
+        + "      <name>dp</name>  \n"
+        + "      <schemaName/>  \n"
+        + "      <tableName>SALES</tableName>  \n"
+        + "      <databaseMetaRef/>  \n"
+        + "      <column-mappings> \n"
+        + "        <column-mapping> \n"
+        + "          <name>cm</name>  \n"
+        + "          <columnName>CM</columnName>  \n"
+        + "          <dataType>NUMERIC</dataType> \n"
+        + "        </column-mapping> \n"
+        + "      </column-mappings> \n"
+        + "    </data-provider> \n"
+        + "  </data-providers> \n"
+        + "</annotations>\n", new ModelAnnotationGroupXmlWriter( group ).getXML() );
+  }
+
+  @Test
+  public void testEveryAnnotationTypeStreamsTheLegacyBytes() throws Exception {
+    List<AnnotationType> annotations = everyAnnotationType();
+    Set<ModelAnnotation.Type> types = EnumSet.noneOf( ModelAnnotation.Type.class );
+    ModelAnnotationGroup group = new ModelAnnotationGroup();
+    for ( AnnotationType annotation : annotations ) {
+      ModelAnnotation<AnnotationType> modelAnnotation = new ModelAnnotation<AnnotationType>( annotation );
+      modelAnnotation.setName( annotation.getType().name().toLowerCase() );
+      group.add( modelAnnotation );
+      types.add( annotation.getType() );
+    }
+    // REMOVE_MEASURE has no annotation class
+    Assert.assertEquals( EnumSet.complementOf( EnumSet.of( ModelAnnotation.Type.REMOVE_MEASURE ) ), types );
+
+    ModelAnnotationGroupXmlWriter xmlWriter = new ModelAnnotationGroupXmlWriter( group );
+    final String xml = xmlWriter.getXML();
+    Assert.assertEquals( xmlWriter.getLegacyXml(), xml );
+    for ( AnnotationType annotation : annotations ) {
+      Assert.assertTrue( xml.contains( "    <type>" + annotation.getType() + "</type>  \n" ) );
+      annotation.iterateProperties( new KeyValueClosure() {
+        @Override
+        public void execute( String key, Serializable serializable ) {
+          if ( !"field".equals( key ) ) {
+            Assert.assertTrue( key, xml.contains( "      <property> \n"
+                + "        <name>" + key + "</name>  \n"
+                + "        <value><![CDATA[" + serializable + "]]></value> \n"
+                + "      </property>" ) );
+          }
+        }
+      } );
+    }
+  }
+
+  @Test
+  public void testUnparseableValueKeepsLegacyOutput() throws Exception {
+    CreateMeasure measure = new CreateMeasure();
+    measure.setName( "ends]]>early" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( "m", measure ) );
+    group.get( 0 ).setName( "m" );
+
+    assertStreamingMatchesLegacy( group );
+  }
+
+  @Test
+  public void testWriteToStream() throws Exception {
+    CreateMeasure measure = new CreateMeasure();
+    measure.setName( "Ventes \u00e9t\u00e9" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( "m", measure ) );
+    group.get( 0 ).setName( "m" );
+    ModelAnnotationGroupXmlWriter xmlWriter = new ModelAnnotationGroupXmlWriter( group );
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    xmlWriter.write( out );
+    Assert.assertEquals( xmlWriter.getXML(), new String( out.toByteArray(), StandardCharsets.UTF_8 ) );
+  }
+
+  private void assertStreamingMatchesLegacy( ModelAnnotationGroup group ) {
+    ModelAnnotationGroupXmlWriter xmlWriter = new ModelAnnotationGroupXmlWriter( group );
+    Assert.assertEquals( xmlWriter.getLegacyXml(), xmlWriter.getXML() );
+  }
+
+  private List<AnnotationType> everyAnnotationType() {
+    CreateMeasure createMeasure = new CreateMeasure();
+    createMeasure.setName( "Sales" );
+    createMeasure.setAggregateType( AggregationType.SUM );
+    createMeasure.setFormatString( "#,###" );
+    createMeasure.setField( "SALES" );
+    CreateAttribute createAttribute = new CreateAttribute();
+    createAttribute.setName( "City" );
+    createAttribute.setDimension( "Geo" );
+    createAttribute.setHierarchy( "Geo" );
+    createAttribute.setParentAttribute( "State" );
+    createAttribute.setGeoType( ModelAnnotation.GeoType.City );
+    createAttribute.setField( "CITY" );
+    CreateDimensionKey createDimensionKey = new CreateDimensionKey();
+    createDimensionKey.setName( "Customer Key" );
+    createDimensionKey.setDimension( "Customer" );
+    createDimensionKey.setField( "CUSTOMER_ID" );
+    LinkDimension linkDimension = new LinkDimension();
+    linkDimension.setName( "Customer" );
+    linkDimension.setSharedDimension( "Shared Customer" );
+    linkDimension.setField( "CUSTOMER_ID" );
+    CreateCalculatedMember createCalculatedMember = new CreateCalculatedMember();
+    createCalculatedMember.setName( "Double Sales" );
+    createCalculatedMember.setFormula( "[Measures].[Sales] * 2" );
+    createCalculatedMember.setDecimalPlaces( 2 );
+    RemoveAttribute removeAttribute = new RemoveAttribute();
+    removeAttribute.setName( "City" );
+    removeAttribute.setLevel( "[Geo].[City]" );
+    UpdateMeasure updateMeasure = new UpdateMeasure();
+    updateMeasure.setName( "Revenue" );
+    updateMeasure.setMeasure( "[Measures].[Sales]" );
+    updateMeasure.setCube( "Sales" );
+    updateMeasure.setAggregationType( AggregationType.AVERAGE );
+    UpdateCalculatedMember updateCalculatedMember = new UpdateCalculatedMember();
+    updateCalculatedMember.setName( "Triple Sales" );
+    updateCalculatedMember.setSourceCalculatedMeasure( "Double Sales" );
+    updateCalculatedMember.setFormula( "[Measures].[Sales] * 3" );
+    BlankAnnotation blankAnnotation = new BlankAnnotation();
+    blankAnnotation.setField( "BLANK" );
+    ShowHideAttribute showHideAttribute = new ShowHideAttribute();
+    showHideAttribute.setName( "City" );
+    showHideAttribute.setDimension( "Geo" );
+    showHideAttribute.setVisible( false );
+    ShowHideMeasure showHideMeasure = new ShowHideMeasure();
+    showHideMeasure.setName( "Sales" );
+    showHideMeasure.setCube( "Sales" );
+    UpdateAttribute updateAttribute = new UpdateAttribute();
+    updateAttribute.setName( "Town" );
+    updateAttribute.setLevel( "City" );
+    updateAttribute.setFormatString( "##" );
+    return Arrays.<AnnotationType>asList( createMeasure, createAttribute, createDimensionKey, linkDimension,
+        createCalculatedMember, removeAttribute, updateMeasure, updateCalculatedMember, blankAnnotation,
+        showHideAttribute, showHideMeasure, updateAttribute );
+  }
 }
@@ -0,0 +1,145 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.metastore.api.IMetaStoreElement;
+import org.pentaho.metastore.api.IMetaStoreElementType;
+import org.pentaho.metastore.api.exceptions.MetaStoreException;
+import org.pentaho.metastore.stores.memory.MemoryMetaStore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModelAnnotationManagerTest {
+
+  private FailingMetaStore metaStore;
+  private ModelAnnotationManager manager;
+
+  @Before
+  public void setUp() throws Exception {
+    metaStore = new FailingMetaStore();
+    manager = new ModelAnnotationManager();
+  }
+
+  @Test
+  public void testSaveGroupsCreatesAndReplaces() throws Exception {
+    manager.createGroup( group( "a", "old" ), metaStore );
+    manager.saveGroups( Arrays.asList( group( "a", "new" ), group( "b", "added" ) ), metaStore );
+
+    assertEquals( new HashSet<String>( Arrays.asList( "a", "b" ) ),
+        new HashSet<String>( manager.listGroupNames( metaStore ) ) );
+    assertEquals( "new", manager.readGroup( "a", metaStore ).getDescription() );
+    assertEquals( "added", manager.readGroup( "b", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testReplaceGroup() throws Exception {
+    manager.createGroup( group( "a", "old" ), metaStore );
+    manager.replaceGroup( group( "a", "new" ), metaStore );
+
+    assertEquals( 1, manager.listGroupNames( metaStore ).size() );
+    assertEquals( "new", manager.readGroup( "a", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testFailedSaveRestoresPreviousState() throws Exception {
+    manager.createGroup( group( "a", "old" ), metaStore );
+    metaStore.failOn = "bad";
+    try {
+      manager.saveGroups( Arrays.asList( group( "a", "new" ), group( "b", "added" ), group( "bad", "x" ) ),
+          metaStore );
+      fail( "should have got exception" );
+    } catch ( MetaStoreException e ) {
+      // expected
+    }
+
+    assertEquals( Collections.singletonList( "a" ), manager.listGroupNames( metaStore ) );
+    assertEquals( "old", manager.readGroup( "a", metaStore ).getDescription() );
+  }
+
+  @Test
+  public void testDeleteGroupsSkipsMissingNames() throws Exception {
+    manager.saveGroups( Arrays.asList( group( "a", "1" ), group( "b", "2" ), group( "c", "3" ) ), metaStore );
+    manager.deleteGroups( Arrays.asList( "a", "c", "missing" ), metaStore );
+
+    assertEquals( Collections.singletonList( "b" ), manager.listGroupNames( metaStore ) );
+    assertNull( manager.readGroup( "a", metaStore ) );
+  }
+
+  @Test
+  public void testDeleteAllGroups() throws Exception {
+    ModelAnnotationManager sharedDimensionManager = new ModelAnnotationManager( true );
+    manager.saveGroups( Arrays.asList( group( "a", "1" ), group( "b", "2" ) ), metaStore );
+    sharedDimensionManager.createGroup( group( "shared", "3" ), metaStore );
+    manager.deleteAllGroups( metaStore );
+
+    assertTrue( manager.listGroupNames( metaStore ).isEmpty() );
+    assertFalse( sharedDimensionManager.listGroupNames( metaStore ).isEmpty() );
+  }
+
+  @Test
+  public void testWritesDoNotListStoredNames() throws Exception {
+    manager.saveGroups( Arrays.asList( group( "a", "1" ), group( "b", "2" ), group( "c", "3" ) ), metaStore );
+    metaStore.listings = 0;
+    manager.replaceGroup( group( "a", "new" ), metaStore );
+    manager.updateGroup( group( "b", "new" ), metaStore );
+    manager.deleteGroups( Arrays.asList( "a", "missing" ), metaStore );
+    assertEquals( 0, metaStore.listings );
+
+    manager.deleteAllGroups( metaStore );
+    assertEquals( 1, metaStore.listings );
+    assertTrue( manager.listGroupNames( metaStore ).isEmpty() );
+  }
+
+  private ModelAnnotationGroup group( String name, String description ) {
+    CreateMeasure createMeasure = new CreateMeasure();
+    createMeasure.setName( "m" );
+    createMeasure.setField( "f" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( new ModelAnnotation<CreateMeasure>( createMeasure ) );
+    group.setName( name );
+    group.setDescription( description );
+    return group;
+  }
+
+  private static class FailingMetaStore extends MemoryMetaStore {
+    private String failOn;
+    private int listings;
+
+    @Override
+    public List<IMetaStoreElement> getElements( String namespace, IMetaStoreElementType elementType )
+        throws MetaStoreException {
+      listings++;
+      return super.getElements( namespace, elementType );
+    }
+
+    @Override
+    public void createElement( String namespace, IMetaStoreElementType elementType, IMetaStoreElement element )
+        throws MetaStoreException {
+      if ( element.getName().equals( failOn ) ) {
+        throw new MetaStoreException( "cannot create " + failOn );
+      }
+      super.createElement( namespace, elementType, element );
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+import org.pentaho.metadata.model.concept.types.AggregationType;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelPropertyDescriptorTest {
+
+  @Test
+  public void testDescriptorIsBuiltOncePerClass() throws Exception {
+    ModelPropertyDescriptor descriptor = ModelPropertyDescriptor.forClass( CreateMeasure.class );
+    assertSame( descriptor, ModelPropertyDescriptor.forClass( CreateMeasure.class ) );
+    assertSame( descriptor, new CreateMeasure().getModelPropertyDescriptor() );
+    assertNotSame( descriptor, ModelPropertyDescriptor.forClass( CreateAttribute.class ) );
+  }
+
+  @Test
+  public void testPropertiesAreSortedByOrder() throws Exception {
+    ModelPropertyDescriptor descriptor = ModelPropertyDescriptor.forClass( CreateAttribute.class );
+    List<ModelProperty> properties = descriptor.getModelProperties();
+    for ( int i = 1; i < properties.size(); i++ ) {
+      assertTrue( properties.get( i - 1 ).order() <= properties.get( i ).order() );
+    }
+    assertEquals( descriptor.getIds().size(), properties.size() );
+    assertEquals( properties.size(), descriptor.getNames().size() );
+    try {
+      properties.clear();
+      fail( "descriptor lists are shared and must not be modified" );
+    } catch ( UnsupportedOperationException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLookupsMatchModelPropertyIdsAndNames() throws Exception {
+    ModelPropertyDescriptor descriptor = ModelPropertyDescriptor.forClass( CreateMeasure.class );
+    for ( ModelProperty property : descriptor.getModelProperties() ) {
+      assertSame( property, descriptor.getById( property.id() ).getModelProperty() );
+      assertSame( property, descriptor.getByName( property.name() ).getModelProperty() );
+    }
+    assertNull( descriptor.getById( "doesNotExist" ) );
+    assertNull( descriptor.getByName( null ) );
+    assertEquals( AggregationType.class, descriptor.getByName( "Aggregation Type" ).getType() );
+  }
+
+  @Test
+  public void testAccessorsReadAndWriteThroughBeanMethods() throws Exception {
+    CreateMeasure createMeasure = new CreateMeasure();
+    ModelPropertyDescriptor.Accessor accessor =
+      ModelPropertyDescriptor.forClass( CreateMeasure.class ).getById( "aggregateType" );
+
+    accessor.set( createMeasure, AggregationType.MINIMUM );
+    assertEquals( AggregationType.MINIMUM, createMeasure.getAggregateType() );
+    assertEquals( AggregationType.MINIMUM, accessor.get( createMeasure ) );
+    assertEquals( AggregationType.COUNT, accessor.convert( "COUNT" ) );
+  }
+
+  @Test
+  public void testPrimitiveValuesAreWidenedAndConverted() throws Exception {
+    MockAnnotationType mockAnnotationType = new MockAnnotationType();
+    mockAnnotationType.setModelPropertyValueById( "l", 7 );
+    mockAnnotationType.setModelPropertyValueById( "d", 2 );
+    mockAnnotationType.setModelPropertyValueById( "i", "12" );
+    mockAnnotationType.setModelPropertyValueById( "s", "not a number" );
+
+    assertEquals( 7L, mockAnnotationType.getL() );
+    assertEquals( 2D, mockAnnotationType.getD(), 0 );
+    assertEquals( 12, mockAnnotationType.getI() );
+    assertEquals( 0, mockAnnotationType.getS() );
+    assertEquals( 7L, mockAnnotationType.getModelPropertyValueById( "l" ) );
+  }
+}
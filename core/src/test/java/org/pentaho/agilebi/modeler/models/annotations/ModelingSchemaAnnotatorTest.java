@@ -20,6 +20,7 @@ import org.pentaho.platform.api.repository.RepositoryException;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 public class ModelingSchemaAnnotatorTest {
@@ -49,4 +50,50 @@ public class ModelingSchemaAnnotatorTest {
     }
     fail( "should have got exception" );
   }
+
+  @Test
+  public void testRepeatedInputsAreServedFromCache() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 4, 1024 * 1024 );
+    ModelingSchemaAnnotator annotator = new ModelingSchemaAnnotator( cache );
+    String first = annotate( annotator );
+    String second = annotate( annotator );
+
+    assertEquals( first, second );
+    assertEquals( 1, cache.getMissCount() );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test
+  public void testStreamingModeIsPartOfTheCacheKey() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 4, 1024 * 1024 );
+    ModelingSchemaAnnotator annotator = new ModelingSchemaAnnotator( cache );
+    annotator.setStreaming( false );
+    annotate( annotator );
+    annotator.setStreaming( true );
+    annotate( annotator );
+    annotate( annotator );
+
+    assertEquals( 2, cache.getMissCount() );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 2, cache.size() );
+  }
+
+  @Test
+  public void testDisabledCacheIsBypassed() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( false, 4, 1024 * 1024 );
+    ModelingSchemaAnnotator annotator = new ModelingSchemaAnnotator( cache );
+    assertEquals( annotate( annotator ), annotate( annotator ) );
+
+    assertFalse( cache.isEnabled() );
+    assertEquals( 0, cache.getHitCount() );
+    assertEquals( 0, cache.getMissCount() );
+    assertEquals( 0, cache.size() );
+  }
+
+  private String annotate( ModelingSchemaAnnotator annotator ) throws Exception {
+    InputStream schemaInput = getClass().getResourceAsStream( "resources/simple.mondrian.xml" );
+    InputStream annotationsInput = getClass().getResourceAsStream( "resources/annotations.xml" );
+    return IOUtils.toString( annotator.getInputStream( schemaInput, annotationsInput ) );
+  }
 }
@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SchemaAnnotationCacheTest {
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvictedBySize() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 2, 100 );
+    cache.put( "a", new byte[] { 1 } );
+    cache.put( "b", new byte[] { 2 } );
+    cache.get( "a" );
+    cache.put( "c", new byte[] { 3 } );
+
+    assertNull( cache.get( "b" ) );
+    assertArrayEquals( new byte[] { 1 }, cache.get( "a" ) );
+    assertArrayEquals( new byte[] { 3 }, cache.get( "c" ) );
+    assertEquals( 1, cache.getEvictionCount() );
+    assertEquals( 3, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  @Test
+  public void testEntriesAreEvictedByWeight() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 10, 10 );
+    cache.put( "a", new byte[ 6 ] );
+    cache.put( "b", new byte[ 4 ] );
+    assertEquals( 10, cache.getWeight() );
+
+    cache.put( "c", new byte[ 3 ] );
+    assertNull( cache.get( "a" ) );
+    assertEquals( 7, cache.getWeight() );
+    assertEquals( 1, cache.getEvictionCount() );
+
+    cache.put( "d", new byte[ 11 ] );
+    assertNull( cache.get( "d" ) );
+    assertEquals( 2, cache.size() );
+  }
+
+  @Test
+  public void testShrinkingLimitsEvicts() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 10, 100 );
+    cache.put( "a", new byte[ 1 ] );
+    cache.put( "b", new byte[ 1 ] );
+    cache.put( "c", new byte[ 1 ] );
+    cache.setMaxEntries( 1 );
+
+    assertEquals( 1, cache.size() );
+    assertEquals( 2, cache.getEvictionCount() );
+    assertArrayEquals( new byte[ 1 ], cache.get( "c" ) );
+  }
+
+  @Test
+  public void testDisablingClearsAndBypasses() throws Exception {
+    SchemaAnnotationCache cache = new SchemaAnnotationCache( 10, 100 );
+    cache.put( "a", new byte[ 1 ] );
+    cache.setEnabled( false );
+    cache.put( "b", new byte[ 1 ] );
+
+    assertEquals( 0, cache.size() );
+    assertEquals( 0, cache.getWeight() );
+    assertNull( cache.get( "a" ) );
+    assertEquals( 0, cache.getMissCount() );
+  }
+}
@@ -0,0 +1,141 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.models.annotations.data.DataProvider;
+import org.pentaho.metastore.stores.memory.MemoryMetaStore;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class SharedDimensionCacheTest {
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+    SharedDimensionCache cache = new SharedDimensionCache( 2 );
+    SharedDimensionCache.Entry a = mock( SharedDimensionCache.Entry.class );
+    SharedDimensionCache.Entry b = mock( SharedDimensionCache.Entry.class );
+    SharedDimensionCache.Entry c = mock( SharedDimensionCache.Entry.class );
+    cache.put( "a", a );
+    cache.put( "b", b );
+    cache.get( "a" );
+    cache.put( "c", c );
+
+    assertSame( a, cache.get( "a" ) );
+    assertNull( cache.get( "b" ) );
+    assertSame( c, cache.get( "c" ) );
+  }
+
+  @Test
+  public void testInvalidateDropsOnlyTheNamedDimension() throws Exception {
+    SharedDimensionCache cache = new SharedDimensionCache( 10 );
+    ModelAnnotationGroup date = group( "Date", "date_dim" );
+    ModelAnnotationGroup dateTime = group( "DateTime", "date_dim" );
+    String dateKey = key( "Date", date );
+    String dateTimeKey = key( "DateTime", dateTime );
+    cache.put( dateKey, mock( SharedDimensionCache.Entry.class ) );
+    cache.put( dateTimeKey, mock( SharedDimensionCache.Entry.class ) );
+
+    cache.invalidate( "Date" );
+    assertNull( cache.get( dateKey ) );
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test
+  public void testKeyFollowsGroupContent() throws Exception {
+    ModelAnnotationGroup group = group( "Date", "date_dim" );
+    String key = key( "Date", group );
+    assertEquals( key, key( "Date", group( "Date", "date_dim" ) ) );
+
+    group.getDataProviders().get( 0 ).setTableName( "other_dim" );
+    assertNotEquals( key, key( "Date", group ) );
+  }
+
+  @Test
+  public void testKeyLeavesUnnamedAnnotationsAlone() throws Exception {
+    ModelAnnotationGroup group = group( "Date", "date_dim" );
+    group.get( 0 ).setName( null );
+
+    String key = key( "Date", group );
+    assertNull( group.get( 0 ).getName() );
+    assertEquals( key, key( "Date", group ) );
+  }
+
+  @Test
+  public void testSharedDimensionWritesInvalidate() throws Exception {
+    MemoryMetaStore metaStore = new MemoryMetaStore();
+    SharedDimensionCache cache = SharedDimensionCache.get( metaStore );
+    assertSame( cache, SharedDimensionCache.get( metaStore ) );
+    ModelAnnotationGroup group = group( "Date", "date_dim" );
+    String key = key( "Date", group );
+    SharedDimensionCache.Entry entry = mock( SharedDimensionCache.Entry.class );
+    cache.put( key, entry );
+
+    new ModelAnnotationManager().createGroup( group, metaStore );
+    assertSame( entry, cache.get( key ) );
+    new ModelAnnotationManager( true ).createGroup( group, new MemoryMetaStore() );
+    assertSame( entry, cache.get( key ) );
+    new ModelAnnotationManager( true ).createGroup( group, metaStore );
+    assertNull( cache.get( key ) );
+
+    cache.put( key, entry );
+    ModelAnnotationManager.invalidateCache( metaStore );
+    assertNull( cache.get( key ) );
+  }
+
+  @Test
+  public void testEntriesExpireAfterTimeToLive() throws Exception {
+    final long[] now = { 0 };
+    ModelAnnotationManager.setCacheTimeToLive( 1000 );
+    try {
+      SharedDimensionCache cache = new SharedDimensionCache( 10, () -> now[0] );
+      SharedDimensionCache.Entry entry = mock( SharedDimensionCache.Entry.class );
+      cache.put( "a", entry );
+      now[0] = 999;
+      assertSame( entry, cache.get( "a" ) );
+      now[0] = 1000;
+      assertNull( cache.get( "a" ) );
+      assertEquals( 0, cache.size() );
+    } finally {
+      ModelAnnotationManager.setCacheTimeToLive( 0 );
+    }
+  }
+
+  private String key( String name, ModelAnnotationGroup group ) {
+    return SharedDimensionCache.key( name, group, group.getDataProviders().get( 0 ), null, "en_US" );
+  }
+
+  private ModelAnnotationGroup group( String name, String table ) {
+    CreateDimensionKey dimensionKey = new CreateDimensionKey();
+    dimensionKey.setName( "key" );
+    dimensionKey.setDimension( name );
+    dimensionKey.setField( "id" );
+    ModelAnnotation<CreateDimensionKey> annotation = new ModelAnnotation<CreateDimensionKey>( dimensionKey );
+    annotation.setName( "key" );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( annotation );
+    group.setName( name );
+    group.setSharedDimension( true );
+    DataProvider dataProvider = new DataProvider();
+    dataProvider.setName( "dp" );
+    dataProvider.setTableName( table );
+    group.setDataProviders( Collections.singletonList( dataProvider ) );
+    return group;
+  }
+}
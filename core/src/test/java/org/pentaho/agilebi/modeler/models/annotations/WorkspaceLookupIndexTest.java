@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalTable;
+import org.pentaho.metadata.model.concept.types.LocalizedString;
+import org.pentaho.metadata.util.XmiParser;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WorkspaceLookupIndexTest {
+
+  private static final String PRODUCT_XMI_FILE = "src/test/resources/products.xmi";
+
+  private ModelerWorkspace workspace;
+  private MockAnnotationType annotation;
+
+  @Before
+  public void setUp() throws Exception {
+    workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( "" ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( PRODUCT_XMI_FILE ) ) );
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    annotation = new MockAnnotationType();
+  }
+
+  @Test
+  public void testLookupsMatchTreeWalks() throws Exception {
+    List<String> names = new ArrayList<String>();
+    for ( LogicalTable table : workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables() ) {
+      for ( LogicalColumn column : table.getLogicalColumns() ) {
+        String name = column.getName( workspace.getLocale() );
+        names.add( name );
+        names.add( name.toUpperCase() );
+        names.add( column.getId() );
+      }
+    }
+    names.add( "nothing like it" );
+
+    List<Object> expected = lookUp( names );
+    try ( WorkspaceLookupIndex index = WorkspaceLookupIndex.open( workspace ) ) {
+      assertEquals( expected, lookUp( names ) );
+    }
+  }
+
+  @Test
+  public void testIndexSeesNodesAddedAndRemoved() throws Exception {
+    try ( WorkspaceLookupIndex index = WorkspaceLookupIndex.open( workspace ) ) {
+      MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+      String measureName = measure.getLogicalColumn().getName( workspace.getLocale() );
+      assertSame( measure, index.findMeasure( measureName ) );
+      workspace.getModel().getMeasures().remove( measure );
+      assertNull( index.findMeasure( measureName ) );
+
+      HierarchyMetaData hierarchy = workspace.getModel().getDimensions().get( 0 ).get( 0 );
+      LevelMetaData level = new LevelMetaData( hierarchy, "Extra" );
+      hierarchy.add( level );
+      assertNull( index.findLevel( "Extra Column" ) );
+      LogicalColumn column = (LogicalColumn) measure.getLogicalColumn().clone();
+      column.setName( new LocalizedString( workspace.getLocale(), "Extra Column" ) );
+      level.setLogicalColumn( column );
+      assertSame( level, index.findLevel( "extra column" ) );
+    }
+  }
+
+  @Test
+  public void testIndexSeesLogicalColumnsAfterDomainChanged() throws Exception {
+    try ( WorkspaceLookupIndex index = WorkspaceLookupIndex.open( workspace ) ) {
+      assertNull( index.findLogicalColumn( "Extra Column" ) );
+      LogicalTable table = workspace.getLogicalModel( ModelerPerspective.ANALYSIS ).getLogicalTables().get( 0 );
+      LogicalColumn column = (LogicalColumn) table.getLogicalColumns().get( 0 ).clone();
+      column.setId( "EXTRA_COLUMN" );
+      column.setName( new LocalizedString( workspace.getLocale(), "Extra Column" ) );
+      table.addLogicalColumn( column );
+      workspace.domainChanged();
+      assertSame( column, index.findLogicalColumn( "extra column" ) );
+    }
+  }
+
+  @Test
+  public void testOpenRunsShareTheIndex() throws Exception {
+    assertNull( WorkspaceLookupIndex.get( workspace ) );
+    try ( WorkspaceLookupIndex outer = WorkspaceLookupIndex.open( workspace ) ) {
+      try ( WorkspaceLookupIndex inner = WorkspaceLookupIndex.open( workspace ) ) {
+        assertSame( outer, inner );
+      }
+      assertSame( outer, WorkspaceLookupIndex.get( workspace ) );
+    }
+    assertNull( WorkspaceLookupIndex.get( workspace ) );
+  }
+
+  @Test
+  public void testFoldMatchesEqualsIgnoreCase() throws Exception {
+    assertEquals( WorkspaceLookupIndex.fold( "Product Line" ), WorkspaceLookupIndex.fold( "PRODUCT line" ) );
+    assertNotEquals( WorkspaceLookupIndex.fold( "Product Line" ), WorkspaceLookupIndex.fold( "Product_Line" ) );
+    assertNull( WorkspaceLookupIndex.fold( null ) );
+  }
+
+  private List<Object> lookUp( final List<String> names ) throws Exception {
+    List<Object> found = new ArrayList<Object>();
+    for ( String name : names ) {
+      found.add( annotation.locateLevel( workspace, name ) );
+      found.add( annotation.locateLogicalColumn( workspace, name ) );
+    }
+    return found;
+  }
+}
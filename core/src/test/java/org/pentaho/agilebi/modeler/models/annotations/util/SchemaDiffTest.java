@@ -0,0 +1,255 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import mondrian.olap.MondrianDef;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaDiff.Action;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaDiff.Change;
+import org.pentaho.agilebi.modeler.models.annotations.util.SchemaDiff.Target;
+import org.pentaho.agilebi.modeler.util.ModelerWorkspaceHelper;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.olap.OlapCalculatedMember;
+import org.pentaho.metadata.model.olap.OlapCube;
+import org.pentaho.metadata.util.XmiParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.getMondrianDoc;
+
+public class SchemaDiffTest {
+  private static final String MONDRIAN_TEST_FILE_PATH = "src/test/resources/hideshow.mondrian.xml";
+  private static final String CUBE = "products";
+
+  private Document from;
+  private Document to;
+
+  @Before
+  public void setUp() throws Exception {
+    from = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+    to = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+  }
+
+  @Test
+  public void testSameSchemaHasNoChanges() throws Exception {
+    SchemaDiff diff = SchemaDiff.compare( from, to );
+
+    assertTrue( diff.isEmpty() );
+    assertTrue( diff.getAffectedCubes().isEmpty() );
+  }
+
+  @Test
+  public void testPatchesMeasuresAndLevels() throws Exception {
+    MondrianSchemaHandler handler = new MondrianSchemaHandler( to );
+    MondrianDef.Measure renamed = new MondrianDef.Measure();
+    renamed.name = "Cost";
+    handler.updateMeasure( CUBE, "[Measures].[Price]", renamed );
+    handler.showHideAttribute( CUBE, "Customer", "cust", "Gender", false );
+    MondrianDef.Measure added = new MondrianDef.Measure();
+    added.name = "Units";
+    added.column = "units";
+    added.aggregator = "sum";
+    handler.addMeasure( CUBE, added );
+    Element hidden = handler.getIndex().getDescendants( to.getDocumentElement(), "Measure", "hiddenMeasure" ).get( 0 );
+    hidden.getParentNode().removeChild( hidden );
+    Element level =
+      handler.getIndex().getDescendants( to.getDocumentElement(), "Level", "Product Name" ).get( 0 );
+    level.setAttribute( "caption", "Name" );
+
+    SchemaDiff diff = roundTrip( SchemaDiff.compare( from, to ) );
+
+    List<Change> changes = diff.getChanges();
+    assertEquals( 6, changes.size() );
+    assertChange( changes.get( 0 ), Action.REPLACE, Target.LEVEL, null, "Product Name" );
+    assertEquals( "Product Dimension", changes.get( 0 ).getDimension() );
+    assertNull( changes.get( 0 ).getHierarchy() );
+    assertChange( changes.get( 1 ), Action.REMOVE, Target.MEASURE, CUBE, "Price" );
+    assertChange( changes.get( 2 ), Action.REMOVE, Target.MEASURE, CUBE, "hiddenMeasure" );
+    assertChange( changes.get( 3 ), Action.REPLACE, Target.LEVEL, CUBE, "Gender" );
+    assertEquals( "cust", changes.get( 3 ).getHierarchy() );
+    assertChange( changes.get( 4 ), Action.ADD, Target.MEASURE, CUBE, "Cost" );
+    assertChange( changes.get( 5 ), Action.ADD, Target.MEASURE, CUBE, "Units" );
+    assertEquals( Collections.singleton( CUBE ), diff.getAffectedCubes() );
+
+    new MondrianSchemaHandler( from ).apply( diff );
+    assertTrue( SchemaDiff.compare( from, to ).isEmpty() );
+  }
+
+  @Test
+  public void testReorderedMeasuresReplaceTheCube() throws Exception {
+    MondrianSchemaHandler handler = new MondrianSchemaHandler( to );
+    Element price = handler.getIndex().getDescendants( to.getDocumentElement(), "Measure", "Price" ).get( 0 );
+    Element visible =
+      handler.getIndex().getDescendants( to.getDocumentElement(), "Measure", "visibleMeasure" ).get( 0 );
+    price.getParentNode().insertBefore( visible, price );
+
+    SchemaDiff diff = SchemaDiff.compare( from, to );
+
+    assertEquals( 1, diff.getChanges().size() );
+    assertChange( diff.getChanges().get( 0 ), Action.REPLACE, Target.CUBE, null, CUBE );
+    new MondrianSchemaHandler( from ).apply( diff );
+    assertTrue( SchemaDiff.compare( from, to ).isEmpty() );
+  }
+
+  @Test
+  public void testChangeWithoutTargetIsRejected() throws Exception {
+    new MondrianSchemaHandler( to ).showHideMeasure( CUBE, "Price", false );
+    SchemaDiff diff = SchemaDiff.compare( from, to );
+    new MondrianSchemaHandler( from ).getIndex().getCube( CUBE ).setAttribute( "name", "sales" );
+
+    try {
+      new MondrianSchemaHandler( from ).apply( diff );
+      fail( "cube was renamed" );
+    } catch ( ModelerException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFailedPatchLeavesTheSchemaUnchanged() throws Exception {
+    MondrianDef.Measure units = new MondrianDef.Measure();
+    units.name = "Units";
+    units.column = "units";
+    units.aggregator = "sum";
+    MondrianSchemaHandler handler = new MondrianSchemaHandler( to );
+    handler.showHideAttribute( CUBE, "Customer", "cust", "Gender", false );
+    handler.addMeasure( CUBE, units );
+    SchemaDiff diff = SchemaDiff.compare( from, to );
+    assertEquals( 2, diff.getChanges().size() );
+    MondrianSchemaHandler patched = new MondrianSchemaHandler( from );
+    patched.addMeasure( CUBE, units );
+    Node before = from.getDocumentElement().cloneNode( true );
+
+    try {
+      patched.apply( diff );
+      fail( "measure added twice" );
+    } catch ( ModelerException e ) {
+      // expected
+    }
+    assertTrue( before.isEqualNode( from.getDocumentElement() ) );
+    assertTrue( patched.showHideAttribute( CUBE, "Customer", "cust", "Gender", false ) );
+  }
+
+  @Test
+  public void testFailedPatchPutsBackTheOriginalElements() throws Exception {
+    MondrianDef.Measure units = new MondrianDef.Measure();
+    units.name = "Units";
+    units.column = "units";
+    units.aggregator = "sum";
+    MondrianSchemaHandler handler = new MondrianSchemaHandler( to );
+    Element removed = handler.getIndex().getDescendants( to.getDocumentElement(), "Measure", "hiddenMeasure" ).get( 0 );
+    removed.getParentNode().removeChild( removed );
+    handler.showHideAttribute( CUBE, "Customer", "cust", "Gender", false );
+    handler.addMeasure( CUBE, units );
+    SchemaDiff diff = SchemaDiff.compare( from, to );
+    assertEquals( 3, diff.getChanges().size() );
+    MondrianSchemaHandler patched = new MondrianSchemaHandler( from );
+    patched.addMeasure( CUBE, units );
+    Element hidden =
+      patched.getIndex().getDescendants( from.getDocumentElement(), "Measure", "hiddenMeasure" ).get( 0 );
+    Element gender = patched.getIndex().getDescendants( from.getDocumentElement(), "Level", "Gender" ).get( 0 );
+    Node before = from.getDocumentElement().cloneNode( true );
+
+    try {
+      patched.apply( diff );
+      fail( "measure added twice" );
+    } catch ( ModelerException e ) {
+      // expected
+    }
+    assertTrue( before.isEqualNode( from.getDocumentElement() ) );
+    assertSame( hidden,
+      patched.getIndex().getDescendants( from.getDocumentElement(), "Measure", "hiddenMeasure" ).get( 0 ) );
+    assertSame( gender, patched.getIndex().getDescendants( from.getDocumentElement(), "Level", "Gender" ).get( 0 ) );
+    assertSame( from.getDocumentElement(), hidden.getParentNode().getParentNode() );
+  }
+
+  @Test
+  public void testComparesWorkspaces() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    ModelerWorkspace before = loadWorkspace();
+    ModelerWorkspace after = loadWorkspace();
+    after.getModel().getMeasures().get( 0 ).setName( "Buy Price" );
+
+    SchemaDiff diff = SchemaDiff.compare( before, after, "en_US" );
+
+    assertEquals( Collections.singleton( "products_38GA" ), diff.getAffectedCubes() );
+    for ( Change change : diff.getChanges() ) {
+      assertEquals( Target.MEASURE, change.getTarget() );
+    }
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testComparesCalculatedMembersOfWorkspaces() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    ModelerWorkspace before = loadWorkspace();
+    ModelerWorkspace after = loadWorkspace();
+    after.getWorkspaceHelper().populateDomain( after );
+    LogicalModel logicalModel = after.getLogicalModel( ModelerPerspective.ANALYSIS );
+    List<OlapCube> cubes = (List<OlapCube>) logicalModel.getProperty( LogicalModel.PROPERTY_OLAP_CUBES );
+    cubes.get( 0 ).getOlapCalculatedMembers().add(
+      new OlapCalculatedMember( "Double Price", "Measures", "[Measures].[BUYPRICE] * 2", "##.##", false ) );
+
+    SchemaDiff diff = SchemaDiff.compare( before, after, "en_US" );
+
+    assertEquals( 1, diff.getChanges().size() );
+    assertChange( diff.getChanges().get( 0 ), Action.ADD, Target.CALCULATED_MEMBER, "products_38GA", "Double Price" );
+  }
+
+  private static ModelerWorkspace loadWorkspace() throws Exception {
+    ModelerWorkspace workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( "en_US" ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+    return workspace;
+  }
+
+  private static void assertChange( final Change change, final Action action, final Target target,
+                                    final String cube, final String name ) {
+    assertEquals( action, change.getAction() );
+    assertEquals( target, change.getTarget() );
+    assertEquals( cube, change.getCube() );
+    assertEquals( name, change.getName() );
+  }
+
+  private static SchemaDiff roundTrip( final SchemaDiff diff ) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream( bytes );
+    out.writeObject( diff );
+    out.close();
+    return (SchemaDiff) new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+  }
+}
@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import mondrian.olap.MondrianDef;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotation;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup;
+import org.pentaho.agilebi.modeler.models.annotations.ModelAnnotationGroup.ApplyStatus;
+import org.pentaho.agilebi.modeler.models.annotations.ShowHideMeasure;
+import org.pentaho.agilebi.modeler.models.annotations.UpdateMeasure;
+import org.w3c.dom.Document;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.CAPTION_ATTRIB;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.LEVEL_ELEMENT_NAME;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.MEASURE_ELEMENT_NAME;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.getMondrianDoc;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.validateNodeAttribute;
+
+public class SchemaEditBatchTest {
+  private static final String MONDRIAN_TEST_FILE_PATH = "src/test/resources/hideshow.mondrian.xml";
+  private static final String CUBE = "products";
+
+  private Document schema;
+  private SchemaEditBatch batch;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+    batch = new SchemaEditBatch( schema );
+  }
+
+  @Test
+  public void testAppliesQueuedEdits() throws Exception {
+    MondrianDef.Measure renamed = new MondrianDef.Measure();
+    renamed.name = "Cost";
+    batch.add( SchemaEditBatch.updateMeasure( CUBE, "[Measures].[Price]", renamed ) );
+    batch.add( SchemaEditBatch.showHideMeasure( CUBE, "Cost", false ) );
+    batch.add( SchemaEditBatch.showHideAttribute( CUBE, "Customer", "cust", "Gender", false ) );
+    batch.add( SchemaEditBatch.captionLevel( CUBE, "Product", "Product", "Product Category", "Category" ) );
+    assertEquals( 4, batch.size() );
+
+    assertTrue( batch.apply() );
+    assertEquals( 0, batch.size() );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Cost", "visible", "false" ) );
+    assertTrue( validateNodeAttribute( schema, LEVEL_ELEMENT_NAME, "Gender", "visible", "false" ) );
+    assertTrue( validateNodeAttribute( schema, LEVEL_ELEMENT_NAME, "Product Category", CAPTION_ATTRIB, "Category" ) );
+  }
+
+  @Test
+  public void testLaterEditsOfAnAttributeWin() throws Exception {
+    batch.add( SchemaEditBatch.showHideMeasure( CUBE, "Price", false ) );
+    batch.add( SchemaEditBatch.captionLevel( CUBE, "Location", "", "State", "Province" ),
+      SchemaEditBatch.showHideMeasure( CUBE, "[Measures].[Price]", true ) );
+    batch.add( SchemaEditBatch.captionLevel( CUBE, "Location", "", "State", "Region" ) );
+    assertEquals( 4, batch.size() );
+
+    assertTrue( batch.apply() );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Price", "visible", "true" ) );
+    assertTrue( validateNodeAttribute( schema, LEVEL_ELEMENT_NAME, "State", CAPTION_ATTRIB, "Region" ) );
+  }
+
+  @Test
+  public void testCreatingAnElementTwiceIsRefused() throws Exception {
+    MondrianDef.Measure measure = new MondrianDef.Measure();
+    measure.name = "Added";
+    batch.add( SchemaEditBatch.addMeasure( null, measure ) );
+    try {
+      batch.add( SchemaEditBatch.showHideMeasure( CUBE, "Added", false ),
+        SchemaEditBatch.addMeasure( CUBE, measure ) );
+      fail( "measure created twice in the first cube" );
+    } catch ( SchemaEditConflictException e ) {
+      assertEquals( 1, batch.size() );
+    }
+
+    batch.add( SchemaEditBatch.showHideMeasure( CUBE, "Added", false ) );
+    assertEquals( 2, batch.size() );
+    batch.clear();
+    batch.add( SchemaEditBatch.addMeasure( CUBE, measure ) );
+    assertEquals( 1, batch.size() );
+  }
+
+  @Test
+  public void testFailedEditsDoNotStopTheOthers() throws Exception {
+    SchemaEditBatch.Edit missing = SchemaEditBatch.showHideMeasure( CUBE, "Missing", false );
+    SchemaEditBatch.Edit invalid = SchemaEditBatch.showHideMeasure( CUBE, "In\"valid", false );
+    SchemaEditBatch.Edit price = SchemaEditBatch.showHideMeasure( CUBE, "Price", false );
+    batch.add( missing, invalid, price );
+
+    assertFalse( batch.apply() );
+    assertFalse( missing.isApplied() );
+    assertNull( missing.getError() );
+    assertFalse( invalid.isApplied() );
+    assertNotNull( invalid.getError() );
+    assertTrue( price.isApplied() );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Price", "visible", "false" ) );
+  }
+
+  @Test
+  public void testGroupQueuesTheEditsOfItsAnnotations() throws Exception {
+    UpdateMeasure updateMeasure = new UpdateMeasure();
+    updateMeasure.setMeasure( "[Measures].[Price]" );
+    updateMeasure.setName( "Cost" );
+    updateMeasure.setCube( CUBE );
+    ModelAnnotation<UpdateMeasure> rename = new ModelAnnotation<UpdateMeasure>( updateMeasure );
+    ModelAnnotation<ShowHideMeasure> hide = showHide( "Cost", false );
+    ModelAnnotation<ShowHideMeasure> show = showHide( "Cost", true );
+    ModelAnnotationGroup group = new ModelAnnotationGroup( hide, rename, show );
+
+    Map<ApplyStatus, List<ModelAnnotation>> statusMap = group.applyAnnotations( batch );
+
+    assertEquals( Arrays.<ModelAnnotation>asList( hide, rename, show ), statusMap.get( ApplyStatus.SUCCESS ) );
+    assertTrue( statusMap.get( ApplyStatus.FAILED ).isEmpty() );
+    assertTrue( validateNodeAttribute( schema, MEASURE_ELEMENT_NAME, "Cost", "visible", "true" ) );
+  }
+
+  private ModelAnnotation<ShowHideMeasure> showHide( final String name, final boolean visible ) {
+    ShowHideMeasure showHideMeasure = new ShowHideMeasure();
+    showHideMeasure.setName( name );
+    showHideMeasure.setCube( CUBE );
+    showHideMeasure.setVisible( visible );
+    return new ModelAnnotation<ShowHideMeasure>( showHideMeasure );
+  }
+}
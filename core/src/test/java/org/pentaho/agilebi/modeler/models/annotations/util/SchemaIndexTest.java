@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import mondrian.olap.MondrianDef;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaIndexTest {
+  private static final String TEST_FILE_PATH = "src/test/resources/products.with.calc.measures.mondrian.xml";
+  private static final String CUBE_NAME = "products_38GA";
+
+  private Document schema;
+  private MondrianSchemaHandler handler;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( TEST_FILE_PATH );
+    handler = new MondrianSchemaHandler( schema );
+  }
+
+  @Test
+  public void testIndexIsKeptByTheHandler() {
+    SchemaIndex index = handler.getIndex();
+    assertSame( index, handler.getIndex() );
+    assertSame( schema, index.getSchema() );
+    handler.setSchema( schema );
+    assertNotSame( index, handler.getIndex() );
+  }
+
+  @Test
+  public void testLookupsAreInDocumentOrder() {
+    SchemaIndex index = handler.getIndex();
+    Element cube = index.getCube( CUBE_NAME );
+    assertSame( cube, index.getCube( null ) );
+    assertNull( index.getCube( "missing" ) );
+
+    List<Element> measures = index.getChildren( cube, "Measure" );
+    assertEquals( 3, measures.size() );
+    assertEquals( "bc_BUYPRICE", measures.get( 0 ).getAttribute( "name" ) );
+    assertEquals( "bc_MSRP", measures.get( 1 ).getAttribute( "name" ) );
+    assertEquals( "bc_QUANTITYINSTOCK", measures.get( 2 ).getAttribute( "name" ) );
+
+    Element shared = index.getSharedDimension( "MSRP" );
+    List<Element> levels = index.getDescendants( shared, SchemaIndex.LEVEL_ELEMENT_NAME, "MSRP" );
+    assertEquals( 1, levels.size() );
+    assertTrue( index.getDescendants( cube, SchemaIndex.LEVEL_ELEMENT_NAME ).isEmpty() );
+  }
+
+  @Test
+  public void testHandlerEditsKeepTheIndex() throws ModelerException {
+    SchemaIndex index = handler.getIndex();
+    Element cube = index.getCube( CUBE_NAME );
+    assertEquals( 3, index.getChildren( cube, "Measure" ).size() );
+
+    MondrianDef.Measure added = new MondrianDef.Measure();
+    added.name = "Added";
+    added.column = "MSRP";
+    added.aggregator = "sum";
+    handler.addMeasure( CUBE_NAME, added );
+    List<Element> measures = index.getChildren( cube, "Measure" );
+    assertEquals( 4, measures.size() );
+    assertEquals( "Added", measures.get( 3 ).getAttribute( "name" ) );
+
+    MondrianDef.Measure renamed = new MondrianDef.Measure();
+    renamed.name = "Renamed";
+    assertTrue( handler.updateMeasure( CUBE_NAME, "Added", renamed ) );
+    assertTrue( index.getChildren( cube, "Measure", "Added" ).isEmpty() );
+    assertSame( measures.get( 3 ), index.getChildren( cube, "Measure", "Renamed" ).get( 0 ) );
+
+    assertTrue( handler.showHideMeasure( CUBE_NAME, "[Measures].[Renamed]", false ) );
+    assertEquals( "false", measures.get( 3 ).getAttribute( "visible" ) );
+    assertFalse( handler.showHideMeasure( CUBE_NAME, "Added", false ) );
+    assertEquals( 0, index.getRebuilds() );
+  }
+
+  @Test
+  public void testForeignChangesNeedInvalidate() throws ModelerException {
+    SchemaIndex index = handler.getIndex();
+    Element cube = index.getCube( CUBE_NAME );
+    Element measure = index.getChildren( cube, "Measure", "bc_MSRP" ).get( 0 );
+
+    measure.setAttribute( "name", "Outside" );
+    assertSame( measure, index.getChildren( cube, "Measure", "bc_MSRP" ).get( 0 ) );
+    index.invalidate();
+    assertEquals( 1, index.getRebuilds() );
+    assertTrue( index.getChildren( cube, "Measure", "bc_MSRP" ).isEmpty() );
+    assertTrue( handler.showHideMeasure( CUBE_NAME, "Outside", false ) );
+
+    cube.removeChild( measure );
+    index.invalidate();
+    assertEquals( 2, index.getRebuilds() );
+    assertFalse( handler.showHideMeasure( CUBE_NAME, "Outside", true ) );
+  }
+
+  @Test
+  public void testLevelLookupFollowsDimensionUsage() throws ModelerException {
+    assertTrue( handler.captionLevel( CUBE_NAME, "MSRP", "MSRP", "MSRP", "Retail Price" ) );
+    SchemaIndex index = handler.getIndex();
+    Element level =
+      index.getDescendants( index.getSharedDimension( "MSRP" ), SchemaIndex.LEVEL_ELEMENT_NAME, "MSRP" ).get( 0 );
+    assertEquals( "Retail Price", level.getAttribute( "caption" ) );
+    assertFalse( handler.captionLevel( CUBE_NAME, "MSRP", "Other", "MSRP", "Retail Price" ) );
+  }
+
+  @Test( expected = ModelerException.class )
+  public void testQuotedNamesAreRejected() throws ModelerException {
+    handler.showHideMeasure( CUBE_NAME, "bad\"name", false );
+  }
+}
@@ -0,0 +1,107 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.models.annotations.util;
+
+import mondrian.olap.MondrianDef;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.pentaho.agilebi.modeler.models.annotations.AnnotationUtil.getMondrianDoc;
+
+public class SchemaStreamPatcherTest {
+  private static final String MONDRIAN_TEST_FILE_PATH = "src/test/resources/hideshow.mondrian.xml";
+  private static final String CUBE = "products";
+
+  private byte[] schema;
+  private SchemaEditBatch batch;
+  private ByteArrayOutputStream out;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = Files.readAllBytes( new File( MONDRIAN_TEST_FILE_PATH ).toPath() );
+    batch = new SchemaEditBatch();
+    out = new ByteArrayOutputStream();
+  }
+
+  @Test
+  public void testPatchesLikeTheDocumentBatch() throws Exception {
+    MondrianDef.Measure renamed = new MondrianDef.Measure();
+    renamed.name = "Cost";
+    MondrianDef.Measure added = new MondrianDef.Measure();
+    added.name = "Units";
+    added.column = "units";
+    added.aggregator = "sum";
+    batch.add( SchemaEditBatch.updateMeasure( CUBE, "[Measures].[Price]", renamed ) );
+    batch.add( SchemaEditBatch.showHideMeasure( CUBE, "Cost", false ) );
+    batch.add( SchemaEditBatch.addMeasure( CUBE, added ) );
+    batch.add( SchemaEditBatch.showHideAttribute( CUBE, "Customer", "cust", "Gender", false ) );
+    batch.add( SchemaEditBatch.captionLevel( CUBE, "Location", "Location", "City", "Town" ) );
+
+    assertTrue( new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out ) );
+
+    Document expected = getMondrianDoc( MONDRIAN_TEST_FILE_PATH );
+    SchemaEditBatch documentBatch = new SchemaEditBatch( expected );
+    for ( SchemaEditBatch.Edit edit : batch.getEdits() ) {
+      documentBatch.add( edit );
+    }
+    assertTrue( documentBatch.apply() );
+    assertTrue( expected.getDocumentElement().isEqualNode( parse( out.toByteArray() ).getDocumentElement() ) );
+  }
+
+  @Test
+  public void testAddsMeasureWithoutCube() throws Exception {
+    MondrianDef.Measure added = new MondrianDef.Measure();
+    added.name = "Units";
+    added.column = "units";
+    added.aggregator = "sum";
+    batch.add( SchemaEditBatch.addMeasure( null, added ) );
+
+    assertTrue( new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out ) );
+    assertTrue( new String( out.toByteArray(), "UTF-8" ).contains( "Units" ) );
+  }
+
+  @Test
+  public void testSharedDimensionIsNotPatched() throws Exception {
+    batch.add( SchemaEditBatch.captionLevel( CUBE, "Product", "Product", "Product Category", "Category" ) );
+
+    assertFalse( new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out ) );
+  }
+
+  @Test
+  public void testEditWithoutCubeIsNotPatched() throws Exception {
+    batch.add( SchemaEditBatch.showHideMeasure( null, "Price", false ) );
+
+    assertFalse( new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out ) );
+  }
+
+  @Test
+  public void testMissingCubeIsNotPatched() throws Exception {
+    batch.add( SchemaEditBatch.showHideMeasure( "sales", "Price", false ) );
+
+    assertFalse( new SchemaStreamPatcher( batch ).patch( new ByteArrayInputStream( schema ), out ) );
+  }
+
+  private static Document parse( final byte[] xml ) throws Exception {
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( new ByteArrayInputStream( xml ) );
+  }
+}
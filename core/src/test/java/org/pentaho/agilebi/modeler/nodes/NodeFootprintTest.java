@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.nodes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
+import org.pentaho.agilebi.modeler.util.SpoonModelerMessages;
+import org.pentaho.metadata.model.LogicalColumn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the lazily allocated node state and the shared child listeners of {@link AbstractMetaDataModelNode}.
+ */
+public class NodeFootprintTest {
+
+  private static final int LEVELS_PER_HIERARCHY = 25;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+  }
+
+  @Test
+  public void testNewNodeAllocatesNoMessagesOrAnnotations() {
+    LevelMetaData level = new LevelMetaData();
+    assertSame( Collections.emptySet(), level.getValidationMessages() );
+    assertFalse( level.hasMemberAnnotations() );
+    assertTrue( level.getMemberAnnotations().isEmpty() );
+    assertFalse( level.hasMemberAnnotations() );
+    assertTrue( "".equals( level.getValidationMessagesString() ) );
+  }
+
+  @Test
+  public void testSharedListenersDispatchToParent() {
+    HierarchyMetaData hierarchy = new HierarchyMetaData( "hier" );
+    LevelMetaData first = new LevelMetaData( hierarchy, "first" );
+    LevelMetaData second = new LevelMetaData( hierarchy, "second" );
+    hierarchy.add( first );
+    hierarchy.add( second );
+    String duplicate = ModelerMessagesHolder.getMessages().getString(
+        "validation.hierarchy.DUPLICATE_LEVEL_NAMES", "first" );
+    assertFalse( hierarchy.getValidationMessages().contains( duplicate ) );
+
+    second.setName( "first" );
+    assertTrue( hierarchy.getValidationMessages().contains( duplicate ) );
+    assertTrue( second.getValidationMessages().contains( duplicate ) );
+
+    hierarchy.remove( second );
+    second.setName( "second" );
+    first.setName( "renamed" );
+    assertFalse( hierarchy.getValidationMessagesString().contains( "first" ) );
+  }
+
+  @Test
+  public void testMovedChildDispatchesToNewParent() {
+    // the add-then-remove move of CreateAttribute.moveGeoLocationFields
+    HierarchyMetaData hierarchy = new HierarchyMetaData( "hier" );
+    LevelMetaData oldLevel = new LevelMetaData( hierarchy, "old" );
+    LevelMetaData newLevel = new LevelMetaData( hierarchy, "new" );
+    MemberPropertyMetaData latitude = new MemberPropertyMetaData( oldLevel, "latitude" );
+    MemberPropertyMetaData longitude = new MemberPropertyMetaData( oldLevel, "longitude" );
+    oldLevel.add( latitude );
+    oldLevel.add( longitude );
+
+    newLevel.add( latitude );
+    newLevel.add( longitude );
+    oldLevel.remove( latitude );
+    oldLevel.remove( longitude );
+    assertSame( newLevel, latitude.getParent() );
+    assertSame( newLevel, longitude.getParent() );
+    assertEquals( 0, oldLevel.size() );
+
+    String duplicate = ModelerMessagesHolder.getMessages().getString(
+        "validation.level.DUPLICATE_MEMBER_PROPERTY_NAMES", "latitude" );
+    longitude.setName( "latitude" );
+    assertTrue( newLevel.getValidationMessages().contains( duplicate ) );
+    assertFalse( oldLevel.getValidationMessages().contains( duplicate ) );
+
+    longitude.setName( "longitude" );
+    assertFalse( newLevel.getValidationMessages().contains( duplicate ) );
+  }
+
+  @Test
+  public void testValidTreeKeepsLazyStateUnallocated() {
+    int levels = 5000;
+    List<HierarchyMetaData> hierarchies = new ArrayList<HierarchyMetaData>();
+    for ( int i = 0; i < levels; i += LEVELS_PER_HIERARCHY ) {
+      HierarchyMetaData hierarchy = new HierarchyMetaData( "h" + i );
+      for ( int j = i; j < i + LEVELS_PER_HIERARCHY && j < levels; j++ ) {
+        LevelMetaData level = new LevelMetaData( hierarchy, "l" + j );
+        level.setLogicalColumn( new LogicalColumn() );
+        hierarchy.add( level );
+      }
+      hierarchies.add( hierarchy );
+    }
+
+    int checked = 0;
+    for ( HierarchyMetaData hierarchy : hierarchies ) {
+      hierarchy.validateTree();
+      for ( LevelMetaData level : hierarchy ) {
+        assertTrue( level.isValid() );
+        assertSame( Collections.emptySet(), level.getValidationMessages() );
+        assertFalse( level.hasMemberAnnotations() );
+        checked++;
+      }
+    }
+    assertEquals( levels, checked );
+  }
+}
@@ -0,0 +1,215 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.geo.GeoContext;
+import org.pentaho.agilebi.modeler.geo.GeoRole;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.nodes.TimeRole;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.types.AggregationType;
+import org.pentaho.metadata.model.olap.OlapCalculatedMember;
+import org.pentaho.metadata.model.olap.OlapCube;
+import org.pentaho.metadata.util.MondrianModelExporter;
+import org.pentaho.metadata.util.XmiParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MondrianSchemaWriterTest {
+
+  private static final String LOCALE = "en_US";
+  private static final String PRODUCTS_XMI = "src/test/resources/products.xmi";
+  private static final String PRODUCTS_SCHEMA = "src/test/resources/products.mondrian.xml";
+  private static final String MULTI_TABLE_XMI = "src/test/resources/multi-table-model-2.0.xmi";
+
+  private ModelerWorkspace workspace;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    workspace = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( PRODUCTS_XMI ) ) );
+  }
+
+  @Test
+  public void testMatchesProductsSchema() throws Exception {
+    String expected = new String( Files.readAllBytes( Paths.get( PRODUCTS_SCHEMA ) ), "UTF-8" );
+
+    assertEquals( StringUtils.deleteWhitespace( expected ),
+        StringUtils.deleteWhitespace( new MondrianSchemaWriter( workspace, LOCALE ).getSchemaXml() ) );
+  }
+
+  @Test
+  public void testMatchesExporterAfterEdits() throws Exception {
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    MeasureMetaData measure = workspace.getModel().getMeasures().get( 0 );
+    measure.setName( "Buy Price" );
+    measure.setDefaultAggregation( AggregationType.AVERAGE );
+    workspace.getModel().getMeasures().get( 1 ).setFormat( "$#,##0.00" );
+    workspace.getModel().getDimensions().remove( 0 );
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+
+    StringWriter out = new StringWriter();
+    assertTrue( ModelerWorkspaceUtil.writeMondrianSchemaXml( workspace, LOCALE, out ) );
+    String exported =
+        new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+            .createMondrianModelXML();
+    assertTrue( parse( exported ).isEqualNode( parse( out.toString() ) ) );
+    assertTrue( out.toString().contains( "name=\"Buy Price\"" ) );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testMatchesExporterWithCalculatedMembers() throws Exception {
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    LogicalModel logicalModel = workspace.getLogicalModel( ModelerPerspective.ANALYSIS );
+    OlapCube cube = ( (List<OlapCube>) logicalModel.getProperty( LogicalModel.PROPERTY_OLAP_CUBES ) ).get( 0 );
+    cube.getOlapCalculatedMembers().add(
+        new OlapCalculatedMember( "Double Price", "Measures", "[Measures].[BUYPRICE] * 2", "##.##", false ) );
+    cube.getOlapCalculatedMembers().add( new OlapCalculatedMember( "Total & More", "Measures",
+        "Aggregate([PRODUCTLINE].members) > 0", null, true, true ) );
+
+    String written = ModelerWorkspaceUtil.getMondrianSchemaXml( workspace, LOCALE );
+    String exported = new MondrianModelExporter( logicalModel, LOCALE ).createMondrianModelXML();
+    assertTrue( parse( exported ).isEqualNode( parse( written ) ) );
+    assertTrue( written.contains( "<CalculatedMember name=\"Double Price\"" ) );
+    assertTrue( written.contains( "name=\"Total &amp; More\" dimension=\"Measures\" visible=\"false\"" ) );
+  }
+
+  @Test
+  public void testSchemaXmlSyncsTheDomain() throws Exception {
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    workspace.getModel().getMeasures().get( 0 ).setFormat( "$#,##0.00" );
+
+    String written = ModelerWorkspaceUtil.getMondrianSchemaXml( workspace, LOCALE );
+    String exported =
+        new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+            .createMondrianModelXML();
+    assertTrue( written.contains( "formatString=\"$#,##0.00\"" ) );
+    assertTrue( parse( exported ).isEqualNode( parse( written ) ) );
+  }
+
+  @Test
+  public void testSeparatesLinesWithNewlines() throws Exception {
+    String written = new MondrianSchemaWriter( workspace, LOCALE ).getSchemaXml();
+
+    assertFalse( written.contains( "\r" ) );
+    assertTrue( written.endsWith( "</Schema>\n" ) );
+  }
+
+  @Test
+  public void testMatchesExporterForStarSchema() throws Exception {
+    workspace.setDomain( new XmiParser().parseXmi( new FileInputStream( MULTI_TABLE_XMI ) ), true );
+
+    String written = assertMatchesExporter();
+    assertTrue( written.contains( "primaryKey=\"" ) );
+    assertTrue( written.contains( "foreignKey=\"" ) );
+  }
+
+  @Test
+  public void testMatchesExporterForTimeDimension() throws Exception {
+    DimensionMetaData dimension = workspace.getModel().getDimensions().get( 0 );
+    dimension.setTimeDimension( true );
+    for ( HierarchyMetaData hierarchy : dimension ) {
+      for ( LevelMetaData level : hierarchy ) {
+        level.setDataRole( TimeRole.YEARS );
+      }
+    }
+
+    String written = assertMatchesExporter();
+    assertTrue( written.contains( "type=\"TimeDimension\"" ) );
+    assertTrue( written.contains( "levelType=\"TimeYears\"" ) );
+  }
+
+  @Test
+  public void testMatchesExporterForGeoDimension() throws Exception {
+    GeoRole country = new GeoRole( "country", "country, ctry" );
+    GeoRole state = new GeoRole( "state", "state, province" );
+    state.getRequiredParentRoles().add( country );
+    LevelMetaData level = workspace.getModel().getDimensions().get( 0 ).get( 0 ).get( 0 );
+    level.getMemberAnnotations().put( GeoContext.ANNOTATION_DATA_ROLE, state );
+    level.getMemberAnnotations().put( GeoContext.ANNOTATION_GEO_ROLE, state );
+
+    String written = assertMatchesExporter();
+    assertTrue( written.contains( "name=\"" + GeoContext.ANNOTATION_GEO_ROLE + "\">state</Annotation>" ) );
+    assertTrue( written.contains( "name=\"" + GeoContext.ANNOTATION_GEO_PARENTS + "\">country</Annotation>" ) );
+  }
+
+  @Test
+  public void testWritesLevelDescriptionAnnotation() throws Exception {
+    LevelMetaData level = workspace.getModel().getDimensions().get( 0 ).get( 0 ).get( 0 );
+    level.setDescription( "Price paid" );
+
+    String schema = new MondrianSchemaWriter( workspace, LOCALE ).getSchemaXml();
+    assertTrue( schema.contains( "<Annotation name=\"description." + LOCALE + "\">Price paid</Annotation>" ) );
+  }
+
+  /**
+   * Populates the domain, then checks the writer produces the same schema as the exporter.
+   *
+   * @return the written schema
+   */
+  private String assertMatchesExporter() throws Exception {
+    workspace.getWorkspaceHelper().populateDomain( workspace );
+    String written = ModelerWorkspaceUtil.getMondrianSchemaXml( workspace, LOCALE );
+    String exported =
+        new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+            .createMondrianModelXML();
+    assertTrue( parse( exported ).isEqualNode( parse( written ) ) );
+    return written;
+  }
+
+  private static Node parse( final String xml ) throws Exception {
+    Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse( new ByteArrayInputStream( xml.getBytes( "UTF-8" ) ) );
+    removeWhitespace( document.getDocumentElement() );
+    return document.getDocumentElement();
+  }
+
+  private static void removeWhitespace( final Node node ) {
+    Node child = node.getFirstChild();
+    while ( child != null ) {
+      Node next = child.getNextSibling();
+      if ( child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty() ) {
+        node.removeChild( child );
+      } else {
+        removeWhitespace( child );
+      }
+      child = next;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.agilebi.modeler.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.agilebi.modeler.ModelSubtree;
+import org.pentaho.agilebi.modeler.ModelerException;
+import org.pentaho.agilebi.modeler.ModelerMessagesHolder;
+import org.pentaho.agilebi.modeler.ModelerPerspective;
+import org.pentaho.agilebi.modeler.ModelerWorkspace;
+import org.pentaho.agilebi.modeler.nodes.DimensionMetaData;
+import org.pentaho.agilebi.modeler.nodes.HierarchyMetaData;
+import org.pentaho.agilebi.modeler.nodes.LevelMetaData;
+import org.pentaho.agilebi.modeler.nodes.MeasureMetaData;
+import org.pentaho.agilebi.modeler.nodes.annotations.AnalyzerDateFormatAnnotation;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.SqlPhysicalTable;
+import org.pentaho.metadata.util.MondrianModelExporter;
+import org.pentaho.metadata.util.XmiParser;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WorkspaceTemplateTest {
+
+  private static final String LOCALE = "en_US";
+
+  private ModelerWorkspace source;
+
+  @Before
+  public void setUp() throws Exception {
+    if ( ModelerMessagesHolder.getMessages() == null ) {
+      ModelerMessagesHolder.setMessages( new SpoonModelerMessages() );
+    }
+    source = new ModelerWorkspace( new ModelerWorkspaceHelper( LOCALE ) );
+    source.setDomain( new XmiParser().parseXmi( new FileInputStream( "src/test/resources/products.xmi" ) ) );
+    source.getWorkspaceHelper().populateDomain( source );
+  }
+
+  @Test
+  public void testCopyIsIndependentDeepCopy() throws Exception {
+    ModelerWorkspace copy = WorkspaceTemplate.copy( source );
+
+    assertNotSame( source.getDomain(), copy.getDomain() );
+    assertEquals( toMondrian( source ), toMondrian( copy ) );
+    assertEquals( source.getModel().getDimensions().size(), copy.getModel().getDimensions().size() );
+    assertEquals( source.getModel().getMeasures().size(), copy.getModel().getMeasures().size() );
+    assertEquals( source.getRelationalModel().getCategories().size(),
+        copy.getRelationalModel().getCategories().size() );
+
+    // every node of the copy points into the copied domain
+    LogicalModel copyOlapModel = copy.getLogicalModel( ModelerPerspective.ANALYSIS );
+    for ( DimensionMetaData dim : copy.getModel().getDimensions() ) {
+      for ( HierarchyMetaData hier : dim ) {
+        for ( LevelMetaData level : hier ) {
+          assertTrue( copyOlapModel.getLogicalTables().contains( level.getLogicalColumn().getLogicalTable() ) );
+        }
+      }
+    }
+
+    MeasureMetaData measure = copy.getModel().getMeasures().get( 0 );
+    String sourceName = source.getModel().getMeasures().get( 0 ).getName();
+    measure.setName( "Copied Measure" );
+    copy.getWorkspaceHelper().populateDomain( copy );
+    assertEquals( sourceName, source.getModel().getMeasures().get( 0 ).getName() );
+    assertFalse( toMondrian( source ).contains( "Copied Measure" ) );
+    assertTrue( toMondrian( copy ).contains( "Copied Measure" ) );
+  }
+
+  @Test
+  public void testTemplateLeavesSourceUntouched() throws Exception {
+    TableModelerSource modelSource = new TableModelerSource( null, "PRODUCTS", null );
+    source.setModelSource( modelSource );
+    MeasureMetaData measure = source.getModel().getMeasures().get( 0 );
+    measure.setFormat( "#,###.00" );
+    Set<ModelSubtree> dirty = new HashSet<ModelSubtree>( source.getDirtySubtrees() );
+    assertTrue( dirty.contains( ModelSubtree.MEASURES ) );
+    String sourceSchema = toMondrian( source );
+
+    WorkspaceTemplate template = new WorkspaceTemplate( source );
+    assertEquals( dirty, source.getDirtySubtrees() );
+    assertEquals( sourceSchema, toMondrian( source ) );
+
+    // later edits of the source do not reach new instances
+    measure.setName( "Renamed Later" );
+    ModelerWorkspace instance = template.instantiate();
+    MeasureMetaData copied = instance.getModel().getMeasures().get( 0 );
+    assertNotSame( measure, copied );
+    assertEquals( "#,###.00", copied.getFormat() );
+    assertFalse( "Renamed Later".equals( copied.getName() ) );
+    assertSame( modelSource, instance.getModelSource() );
+    assertNotSame( measure.getLogicalColumn(), copied.getLogicalColumn() );
+    assertNotSame( source.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables().get( 0 ),
+        instance.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables().get( 0 ) );
+    assertTrue( instance.getDirtySubtrees().isEmpty() );
+  }
+
+  @Test
+  public void testInstantiateRebindsPhysicalTables() throws Exception {
+    WorkspaceTemplate template = new WorkspaceTemplate( source );
+    SqlPhysicalTable sourceTable =
+        (SqlPhysicalTable) source.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables().get( 0 );
+    String sourceTarget = sourceTable.getTargetTable();
+
+    for ( int i = 0; i < 10; i++ ) {
+      ModelerWorkspace instance =
+          template.instantiate( Collections.singletonMap( sourceTable.getId(), "PRODUCTS_" + i ) );
+      SqlPhysicalTable table =
+          (SqlPhysicalTable) instance.getDomain().getPhysicalModels().get( 0 ).getPhysicalTables().get( 0 );
+      assertEquals( "PRODUCTS_" + i, table.getTargetTable() );
+      assertEquals( source.getModel().getDimensions().size(), instance.getModel().getDimensions().size() );
+    }
+    assertEquals( sourceTarget, sourceTable.getTargetTable() );
+  }
+
+  @Test
+  public void testInstancesShareNoMutableState() throws Exception {
+    LevelMetaData level = source.getModel().getDimensions().get( 0 ).get( 0 ).get( 0 );
+    AnalyzerDateFormatAnnotation annotation = new AnalyzerDateFormatAnnotation( "[yyyy]" );
+    level.getMemberAnnotations().put( annotation.getName(), annotation );
+    MeasureMetaData measure = source.getModel().getMeasures().get( 0 );
+    measure.setFormatstring( new ArrayList<String>( Arrays.asList( "#" ) ) );
+
+    WorkspaceTemplate template = new WorkspaceTemplate( source );
+    ModelerWorkspace first = template.instantiate();
+    ModelerWorkspace second = template.instantiate();
+    assertSame( source.getWorkspaceHelper(), first.getWorkspaceHelper() );
+
+    AnalyzerDateFormatAnnotation firstAnnotation = (AnalyzerDateFormatAnnotation) first.getModel().getDimensions()
+        .get( 0 ).get( 0 ).get( 0 ).getMemberAnnotations().get( annotation.getName() );
+    AnalyzerDateFormatAnnotation secondAnnotation = (AnalyzerDateFormatAnnotation) second.getModel().getDimensions()
+        .get( 0 ).get( 0 ).get( 0 ).getMemberAnnotations().get( annotation.getName() );
+    assertNotSame( annotation, firstAnnotation );
+    assertNotSame( firstAnnotation, secondAnnotation );
+    firstAnnotation.setValue( "[MM]" );
+    assertEquals( "[yyyy]", secondAnnotation.getValue() );
+    assertEquals( "[yyyy]", annotation.getValue() );
+
+    first.getModel().getMeasures().get( 0 ).getFormatstring().add( "0.00" );
+    assertEquals( Arrays.asList( "#" ), second.getModel().getMeasures().get( 0 ).getFormatstring() );
+    assertEquals( Arrays.asList( "#" ), measure.getFormatstring() );
+  }
+
+  @Test( expected = ModelerException.class )
+  public void testInstantiateRejectsUnknownTable() throws Exception {
+    new WorkspaceTemplate( source ).instantiate( Collections.singletonMap( "NO_SUCH_TABLE", "X" ) );
+  }
+
+  private String toMondrian( ModelerWorkspace workspace ) throws Exception {
+    return new MondrianModelExporter( workspace.getLogicalModel( ModelerPerspective.ANALYSIS ), LOCALE )
+        .createMondrianModelXML();
+  }
+}